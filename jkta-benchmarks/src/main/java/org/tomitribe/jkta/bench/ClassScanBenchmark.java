@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.scan.AnnotationScanner;
+import org.tomitribe.jkta.usage.scan.BytecodeUsage;
+import org.tomitribe.jkta.usage.scan.ClassScanner;
+import org.tomitribe.jkta.usage.scan.FieldScanner;
+import org.tomitribe.jkta.usage.scan.MethodScanner;
+import org.tomitribe.jkta.usage.scan.Usage;
+import org.tomitribe.util.IO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Scanning every class of the jar ASM was loaded from, the shaded
+ * benchmarks jar when run as below, with a full visit: a fresh
+ * ByteArrayOutputStream, scanner and per member visitors for every
+ * class as the scanners used to work, compared to the per thread
+ * scanner and class buffer.  Run with the gc profiler to see the
+ * allocation rate of each:
+ *
+ * <pre>
+ * java -jar benchmarks.jar ClassScanBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassScanBenchmark {
+
+    private final List<byte[]> classes = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+        final File jar = new File(ClassReader.class.getProtectionDomain().getCodeSource().getLocation().getFile());
+
+        try (ZipInputStream in = new ZipInputStream(IO.read(jar))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (!entry.getName().endsWith(".class")) continue;
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                IO.copy(in, bytes);
+                classes.add(bytes.toByteArray());
+            }
+        }
+    }
+
+    @Benchmark
+    public long perMember() throws IOException {
+        final PackageUsage<Object> usage = new PackageUsage<>();
+        long versions = 0;
+        for (final byte[] bytecode : classes) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            IO.copy(new ByteArrayInputStream(bytecode), bytes);
+
+            final PerMemberScanner scanner = new PerMemberScanner(usage);
+            new ClassReader(bytes.toByteArray()).accept(scanner, 0);
+            versions += scanner.getVersion();
+        }
+        return versions + usage.getJavax();
+    }
+
+    @Benchmark
+    public long pooled() throws IOException {
+        final PackageUsage<Object> usage = new PackageUsage<>();
+        long versions = 0;
+        for (final byte[] bytecode : classes) {
+            versions += ClassScanner.scan(new ByteArrayInputStream(bytecode), bytecode.length, usage, true);
+        }
+        return versions + usage.getJavax();
+    }
+
+    /**
+     * Hands out new field, method and annotation scanners for every
+     * member as ClassScanner used to
+     */
+    private static class PerMemberScanner extends ClassScanner {
+        private final BytecodeUsage bytecodeUsage;
+
+        PerMemberScanner(final Usage<?> usage) {
+            super(usage);
+            this.bytecodeUsage = new BytecodeUsage(usage);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
+            super.visitAnnotation(descriptor, visible);
+            return new AnnotationScanner(this.api, bytecodeUsage);
+        }
+
+        @Override
+        public FieldVisitor visitField(final int access, final String name, final String descriptor, final String signature, final Object value) {
+            super.visitField(access, name, descriptor, signature, value);
+            return new FieldScanner(this.api, bytecodeUsage);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature, final String[] exceptions) {
+            super.visitMethod(access, name, descriptor, signature, exceptions);
+            return new MethodScanner(this.api, bytecodeUsage);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.objectweb.asm.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.scan.BytecodeUsage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting the classes named in the field and method descriptors and
+ * the generic signatures of Tomcat's bytecode with BytecodeUsage, and
+ * for reference the same descriptors taken apart with ASM's Type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescriptorBenchmark {
+
+    private static final int SIZE = 8192;
+
+    private final String[] descriptors = new String[SIZE];
+    private final String[] signatures = new String[SIZE];
+
+    @Setup
+    public void setup() throws IOException {
+        final List<String> descriptors = new ArrayList<>();
+        final List<String> signatures = new ArrayList<>();
+        Samples.references(Samples.classes("tomcat"), s -> {
+        }, descriptors::add, signatures::add);
+
+        for (int i = 0; i < SIZE; i++) {
+            this.descriptors[i] = descriptors.get((int) ((long) i * descriptors.size() / SIZE));
+            this.signatures[i] = signatures.get((int) ((long) i * signatures.size() / SIZE));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long descriptors() {
+        final PackageUsage<Object> usage = new PackageUsage<>();
+        final BytecodeUsage bytecodeUsage = new BytecodeUsage(usage);
+        for (final String descriptor : descriptors) {
+            bytecodeUsage.addDesc(descriptor);
+        }
+        return usage.getJavax() + usage.getJakarta();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long asmType() {
+        final PackageUsage<Object> usage = new PackageUsage<>();
+        final BytecodeUsage bytecodeUsage = new BytecodeUsage(usage);
+        for (final String descriptor : descriptors) {
+            final Type type = Type.getType(descriptor);
+            if (type.getSort() == Type.METHOD) {
+                for (final Type argument : type.getArgumentTypes()) {
+                    bytecodeUsage.addType(argument);
+                }
+                bytecodeUsage.addType(type.getReturnType());
+            } else {
+                bytecodeUsage.addType(type);
+            }
+        }
+        return usage.getJavax() + usage.getJakarta();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long signatures() {
+        final PackageUsage<Object> usage = new PackageUsage<>();
+        final BytecodeUsage bytecodeUsage = new BytecodeUsage(usage);
+        for (final String signature : signatures) {
+            bytecodeUsage.addSignature(signature);
+        }
+        return usage.getJavax() + usage.getJakarta();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomitribe.jkta.usage.ArchiveReader;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.JarUsage;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.ScanOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JarUsage.of from the file on disk, hashing included, for a small jar
+ * (tomcat-api.jar, 11 KB), a large one (catalina.jar, 1.6 MB) and the
+ * whole Tomcat zip with its nested jars (12 MB), with each reader.
+ * The files are read from the page cache after the first iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JarUsageBenchmark {
+
+    @Param({"small", "large", "nested"})
+    private String jar;
+
+    @Param({"stream", "directory"})
+    private ArchiveReader reader;
+
+    private File file;
+    private ScanOptions options;
+
+    @Setup
+    public void setup() throws IOException {
+        file = file(jar);
+        options = ScanOptions.builder().reader(reader).build();
+    }
+
+    @Benchmark
+    public long of() throws IOException, NoSuchAlgorithmException {
+        final PackageUsage<Jar> usage = JarUsage.of(file, options);
+        return usage.getContext().getClasses() + usage.getJavax();
+    }
+
+    static File file(final String jar) throws IOException {
+        switch (jar) {
+            case "small":
+                return Samples.tomcatJar("lib/tomcat-api.jar");
+            case "large":
+                return Samples.tomcatJar("lib/catalina.jar");
+            case "nested":
+                return Samples.tomcat();
+            default:
+                throw new IllegalArgumentException("Unknown jar " + jar);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageMatcher;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching the class names referenced by Tomcat's bytecode, such as
+ * "java/lang/String" or "jakarta/servlet/ServletRequest", to a Package:
+ * trying each Package in turn as names were matched before PackageMatcher,
+ * the PackageMatcher trie, and PackageUsage.accept which counts the match.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackageMatchBenchmark {
+
+    private static final int NAMES = 8192;
+
+    private final String[] names = new String[NAMES];
+    private final PackageMatcher matcher = PackageMatcher.get();
+    private final Package[] packages = Package.values();
+
+    @Setup
+    public void setup() throws IOException {
+        final List<String> referenced = new ArrayList<>();
+        Samples.references(Samples.classes("tomcat"), referenced::add, s -> {
+        }, s -> {
+        });
+
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = referenced.get((int) ((long) i * referenced.size() / NAMES));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NAMES)
+    public long linear() {
+        long matched = 0;
+        for (final String name : names) {
+            final String dotted = name.replace('/', '.');
+            for (final Package aPackage : packages) {
+                if (aPackage.matches(dotted)) {
+                    matched += aPackage.ordinal();
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NAMES)
+    public long matcher() {
+        long matched = 0;
+        for (final String name : names) {
+            matched += matcher.match(name);
+        }
+        return matched;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NAMES)
+    public long accept() {
+        final PackageUsage<Object> usage = new PackageUsage<>();
+        for (final String name : names) {
+            usage.accept(name);
+        }
+        return usage.getJavax() + usage.getJakarta();
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.tomitribe.jkta.usage.Is;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Real classes and jars for the benchmarks: the Tomcat distribution the
+ * tests use, from the local Maven repository, and the
+ * activemq-pool classes from src/test/resources/scan, which the
+ * benchmarks jar carries under scan/.
+ */
+public class Samples {
+
+    private Samples() {
+    }
+
+    /**
+     * The zip is a dependency of jkta, so it is in the local repository
+     * once jkta has been built
+     */
+    public static File tomcat() {
+        final File home = new File(System.getProperty("user.home"));
+        final String repository = System.getProperty("maven.repo.local", new File(home, ".m2/repository").getPath());
+        final File zip = new File(repository, "org/apache/tomcat/tomcat/10.0.0-M5/tomcat-10.0.0-M5.zip");
+        if (!zip.isFile()) throw new IllegalStateException("Not found " + zip + ", build jkta or set -Dmaven.repo.local");
+        return zip;
+    }
+
+    /**
+     * @param source tomcat for every class in the distribution, including
+     *               those in its jars, or activemq for activemq-pool
+     */
+    public static List<byte[]> classes(final String source) throws IOException {
+        final List<byte[]> classes = new ArrayList<>();
+        switch (source) {
+            case "tomcat":
+                try (InputStream in = IO.read(tomcat())) {
+                    forEachClass(in, classes::add);
+                }
+                break;
+            case "activemq":
+                forEachResource("scan/activemq-pool/", classes::add);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown source " + source);
+        }
+        return classes;
+    }
+
+    /**
+     * Copies a jar out of the Tomcat distribution, such as lib/catalina.jar
+     */
+    public static File tomcatJar(final String path) throws IOException {
+        final File file = new File(Files.tmpdir(), new File(path).getName());
+        try (ZipFile zip = new ZipFile(tomcat())) {
+            final ZipEntry entry = zip.getEntry("apache-tomcat-10.0.0-M5/" + path);
+            if (entry == null) throw new IllegalArgumentException("Not in Tomcat " + path);
+            try (InputStream in = zip.getInputStream(entry)) {
+                IO.copy(in, file);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Every class name, descriptor and signature referenced by the
+     * classes, in the order they were found
+     */
+    public static void references(final List<byte[]> classes, final Consumer<String> names, final Consumer<String> descriptors,
+                                  final Consumer<String> signatures) {
+        final ClassVisitor visitor = new ClassVisitor(Opcodes.ASM8) {
+            @Override
+            public void visit(final int version, final int access, final String name, final String signature, final String superName,
+                              final String[] interfaces) {
+                if (superName != null) names.accept(superName);
+                for (final String anInterface : interfaces) {
+                    names.accept(anInterface);
+                }
+                if (signature != null) signatures.accept(signature);
+            }
+
+            @Override
+            public FieldVisitor visitField(final int access, final String name, final String descriptor, final String signature,
+                                           final Object value) {
+                descriptors.accept(descriptor);
+                if (signature != null) signatures.accept(signature);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature,
+                                             final String[] exceptions) {
+                descriptors.accept(descriptor);
+                if (signature != null) signatures.accept(signature);
+                return new MethodVisitor(api) {
+                    @Override
+                    public void visitTypeInsn(final int opcode, final String type) {
+                        names.accept(type);
+                    }
+
+                    @Override
+                    public void visitFieldInsn(final int opcode, final String owner, final String name, final String descriptor) {
+                        names.accept(owner);
+                        descriptors.accept(descriptor);
+                    }
+
+                    @Override
+                    public void visitMethodInsn(final int opcode, final String owner, final String name, final String descriptor,
+                                                final boolean isInterface) {
+                        names.accept(owner);
+                        descriptors.accept(descriptor);
+                    }
+                };
+            }
+        };
+
+        for (final byte[] bytecode : classes) {
+            new ClassReader(bytecode).accept(visitor, ClassReader.SKIP_FRAMES);
+        }
+    }
+
+    private static void forEachClass(final InputStream in, final Consumer<byte[]> consumer) throws IOException {
+        final ZipInputStream zipInputStream = new ZipInputStream(in);
+
+        ZipEntry entry;
+        while ((entry = zipInputStream.getNextEntry()) != null) {
+            if (entry.getName().endsWith(".class")) {
+                consumer.accept(read(zipInputStream));
+            } else if (Is.Zip.accept(entry.getName())) {
+                forEachClass(zipInputStream, consumer);
+            }
+        }
+    }
+
+    private static void forEachResource(final String prefix, final Consumer<byte[]> consumer) throws IOException {
+        final File location = new File(Samples.class.getProtectionDomain().getCodeSource().getLocation().getFile());
+
+        if (location.isDirectory()) {
+            for (final File file : Files.collect(new File(location, prefix), ".*\\.class")) {
+                consumer.accept(IO.readBytes(file));
+            }
+            return;
+        }
+
+        try (ZipFile jar = new ZipFile(location)) {
+            jar.stream()
+                    .filter(entry -> entry.getName().startsWith(prefix))
+                    .filter(entry -> entry.getName().endsWith(".class"))
+                    .forEach(entry -> {
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            consumer.accept(read(in));
+                        } catch (IOException e) {
+                            throw new IllegalStateException(entry.getName(), e);
+                        }
+                    });
+        }
+    }
+
+    private static byte[] read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IO.copy(in, bytes);
+        return bytes.toByteArray();
+    }
+}
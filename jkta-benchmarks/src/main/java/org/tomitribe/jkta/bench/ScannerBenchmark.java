@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.scan.ClassScanner;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassScanner over every class of the Tomcat distribution and of
+ * activemq-pool, already in memory, with and without the constant
+ * pool prefilter.  Tomcat 10 is mostly unaffected code while
+ * activemq-pool uses javax.jms and javax.transaction throughout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScannerBenchmark {
+
+    @Param({"tomcat", "activemq"})
+    private String source;
+
+    @Param({"false", "true"})
+    private boolean fullVisit;
+
+    private List<byte[]> classes;
+
+    @Setup
+    public void setup() throws IOException {
+        classes = Samples.classes(source);
+    }
+
+    @Benchmark
+    public long scan() {
+        final PackageUsage<Object> usage = new PackageUsage<>();
+        long versions = 0;
+        for (final byte[] bytecode : classes) {
+            versions += ClassScanner.scan(bytecode, usage, fullVisit);
+        }
+        return versions + usage.getJavax() + usage.getJakarta();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.UsageAdder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Adding rows to the footer totals from several threads at once: the
+ * AtomicReference and PackageUsage.add loop Summary used to run compared
+ * to the striped UsageAdder.  Run with a few thread counts to see how
+ * each one scales, for example:
+ *
+ * <pre>
+ * java -jar benchmarks.jar SummaryBenchmark -t 1
+ * java -jar benchmarks.jar SummaryBenchmark -t 8
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class SummaryBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private PackageUsage<Jar>[] usages;
+
+    private final AtomicInteger scanned = new AtomicInteger();
+    private final AtomicInteger affected = new AtomicInteger();
+    private final AtomicReference<PackageUsage<?>> total = new AtomicReference<>(new PackageUsage<>());
+    private final AtomicReference<JarSummary> jars = new AtomicReference<>(new JarSummary(0, 0));
+
+    private final UsageAdder adder = new UsageAdder();
+
+    @Setup
+    public void setup() {
+        usages = Usages.random(ROWS, new File("/repository"), 42);
+    }
+
+    @State(Scope.Thread)
+    public static class Row {
+        private int next;
+
+        PackageUsage<Jar> next(final PackageUsage<Jar>[] usages) {
+            return usages[next++ & (ROWS - 1)];
+        }
+    }
+
+    /**
+     * What Summary and JarTsv7 did for every row before UsageAdder
+     */
+    @Benchmark
+    public void atomicReference(final Row row) {
+        final PackageUsage<Jar> usage = row.next(usages);
+        total.accumulateAndGet(usage, PackageUsage::add);
+        scanned.incrementAndGet();
+        if (usage.getJavax() > 0) affected.incrementAndGet();
+        jars.accumulateAndGet(new JarSummary(usage.getContext()), JarSummary::add);
+    }
+
+    @Benchmark
+    public void usageAdder(final Row row) {
+        adder.addJar(row.next(usages));
+    }
+
+    /**
+     * The size and classes totals JarTsv7 kept before UsageAdder
+     */
+    private static class JarSummary {
+        private final long size;
+        private final long classes;
+
+        JarSummary(final Jar jar) {
+            this(jar.getSize(), jar.getClasses());
+        }
+
+        JarSummary(final long size, final long classes) {
+            this.size = size;
+            this.classes = classes;
+        }
+
+        JarSummary add(final JarSummary that) {
+            final long size = that.size == -1 ? 0 : that.size;
+            final long classes = that.classes == -1 ? 0 : that.classes;
+            return new JarSummary(this.size + size, this.classes + classes);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.tsv.JarTsv7;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Reading v7 TSV rows: the original line and String.split based
+ * parsing compared to the TsvReader with one or more threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TsvReaderBenchmark {
+
+    private static final int ROWS = 100000;
+
+    @Param({"1", "4"})
+    private int threads;
+
+    private byte[] tsv;
+
+    @Setup
+    public void setup() {
+        final File repository = new File("/repository");
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScanTsv.toJarTsv(new PrintStream(bytes), Arrays.stream(Usages.random(ROWS, repository, 42)), repository);
+        tsv = bytes.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long lines() {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(tsv)));
+        final JarTsv7 format = new JarTsv7(s -> {
+        });
+        return reader.lines()
+                .skip(1)
+                .filter(s -> !s.startsWith("0000000000000000000000000000000000000000\t"))
+                .map(format::read)
+                .filter(Objects::nonNull)
+                .mapToLong(PackageUsage::getJavax)
+                .sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long tsvReader() {
+        return ScanTsv.fromJarTsv(new ByteArrayInputStream(tsv), threads, s -> {
+        })
+                .mapToLong(PackageUsage::getJavax)
+                .sum();
+    }
+}
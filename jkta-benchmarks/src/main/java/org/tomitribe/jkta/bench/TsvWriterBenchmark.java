@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.tsv.JarTsv7;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.jkta.usage.tsv.TsvWriter;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.stream.Stream;
+
+/**
+ * Writing v7 TSV rows: the String-per-row path printed with println,
+ * the original quadratic reduce that used to build those Strings, and
+ * the TsvWriter encoding straight into a byte buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TsvWriterBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private final File repository = new File("/repository");
+    private PackageUsage<Jar>[] usages;
+    private PrintStream out;
+
+    @Setup
+    public void setup() {
+        usages = Usages.random(ROWS, repository, 42);
+        out = new PrintStream(new NullOutputStream());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void println() {
+        final JarTsv7 formatter = new JarTsv7(repository);
+        for (final PackageUsage<Jar> usage : usages) {
+            out.println(formatter.write(usage));
+        }
+        out.flush();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void reduce() {
+        for (final PackageUsage<Jar> usage : usages) {
+            out.println(reduce(usage));
+        }
+        out.flush();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void tsvWriter() {
+        final JarTsv7 formatter = new JarTsv7(repository);
+        final TsvWriter writer = new TsvWriter(out);
+        for (final PackageUsage<Jar> usage : usages) {
+            formatter.write(usage, writer);
+        }
+        writer.flush();
+    }
+
+    /**
+     * How each row was built before TsvWriter
+     */
+    private String reduce(final PackageUsage<Jar> usage) {
+        final Jar jar = usage.getContext();
+        return Stream.of(
+                jar.getSha1(),
+                jar.getLastModified(),
+                jar.getInternalDate(),
+                jar.getSize(),
+                jar.getClasses(),
+                ScanTsv.versions(jar),
+                ScanTsv.childPath(repository, jar.getJar()),
+                usage.toTsv())
+                .map(s -> s + "")
+                .reduce((s, s2) -> s + "\t" + s2)
+                .get();
+    }
+
+    public static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.bench;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Realistic looking scan results for the benchmarks
+ */
+public class Usages {
+
+    private Usages() {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static PackageUsage<Jar>[] random(final int count, final File repository, final long seed) {
+        final Random random = new Random(seed);
+        final PackageUsage<Jar>[] usages = new PackageUsage[count];
+
+        for (int i = 0; i < count; i++) {
+            final String sha1 = String.format("%040x", random.nextLong() & Long.MAX_VALUE);
+            final File file = new File(repository, String.format("org/example/group%s/artifact%s/1.%s/artifact%s-1.%s.jar", i % 50, i, i % 10, i, i % 10));
+            final Jar jar = new Jar(file, sha1, 1588703994000L + random.nextInt(), 1588729158000L + random.nextInt(),
+                    random.nextInt(2000), random.nextInt(5_000_000), new int[]{50 + random.nextInt(6)});
+
+            final int[] packages = new int[Package.values().length];
+            int javax = 0;
+            int jakarta = 0;
+            for (int p = 0; p < packages.length; p++) {
+                if (random.nextInt(8) != 0) continue;
+
+                packages[p] = random.nextInt(500);
+                if (Package.values()[p].isJavax()) javax += packages[p];
+                if (Package.values()[p].isJakarta()) jakarta += packages[p];
+            }
+
+            usages[i] = new PackageUsage<>(jar, javax, jakarta, packages);
+        }
+
+        return usages;
+    }
+}
@@ -18,6 +18,7 @@ package org.tomitribe.jkta;
 
 import org.tomitribe.jkta.central.CentralCommand;
 import org.tomitribe.jkta.usage.UsageCommand;
+import org.tomitribe.jkta.usage.corpus.CorpusCommand;
 import org.tomitribe.tio.ColoredMatches;
 
 import java.util.Arrays;
@@ -30,6 +31,7 @@ public class Loader implements org.tomitribe.crest.api.Loader {
         return Arrays.asList(
                 CentralCommand.class,
                 ColoredMatches.class,
+                CorpusCommand.class,
                 UsageCommand.class
         ).iterator();
     }
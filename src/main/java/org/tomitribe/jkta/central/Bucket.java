@@ -16,20 +16,25 @@
  */
 package org.tomitribe.jkta.central;
 
-import com.amazonaws.services.s3.AmazonS3;
+import java.io.IOException;
+import java.io.InputStream;
 
-import java.io.OutputStream;
+/**
+ * Where scan results are uploaded, an Amazon S3 bucket or a local directory
+ */
+public interface Bucket {
 
-public class Bucket {
-    private final AmazonS3 client;
-    private final String name;
+    /**
+     * The entry only appears in the bucket once the stream is closed.
+     * If the stream is aborted instead nothing appears.
+     */
+    PartOutputStream upload(String key) throws IOException;
 
-    public Bucket(final AmazonS3 client, final String name) {
-        this.client = client;
-        this.name = name;
-    }
+    InputStream download(String key) throws IOException;
 
-    public OutputStream upload(final String key) {
-        return new S3OutputStream(client, name, key);
-    }
+    /**
+     * Throws away any unfinished upload of the key, such as the parts
+     * left behind by a scan that died
+     */
+    void discard(String key) throws IOException;
 }
@@ -31,15 +31,29 @@ import org.tomitribe.crest.api.Required;
 import org.tomitribe.jkta.Version;
 import org.tomitribe.jkta.usage.Dir;
 import org.tomitribe.jkta.usage.Format;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.ScanSettings;
+import org.tomitribe.jkta.usage.Shard;
 import org.tomitribe.jkta.usage.UsageCommand;
+import org.tomitribe.jkta.usage.tsv.Gzip;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.util.Duration;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Size;
+import org.tomitribe.util.SizeUnit;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Command("central")
 public class CentralCommand {
@@ -72,9 +86,36 @@ public class CentralCommand {
      * During the scan the tsv results are streamed directly into the S3 entry
      * without any buffering on the the disk.  This allows a scan to run several
      * hours or days without concerns of either running out of disk or losing
-     * hours of work.  Roughly 5MB is buffered in memory at a time before being
-     * flushed to the S3 entry, thus several dozen or hundreds of scan processes
-     * can be run on the same machine without memory concerns.
+     * hours of work.  The results are uploaded in parts of --part-size, several
+     * at a time, while the scan continues.  At most --upload-buffers parts, 60MB
+     * by default, are held in memory.  When they are all full the scan waits for
+     * an upload to finish, so memory stays bounded however slow the network is.
+     * If the scan or an upload fails the S3 upload is aborted and no entry
+     * appears.
+     *
+     * With --blocks the TSV is compressed as independent gzip members of about 64KB
+     * each, on --compress-threads at once, so compression keeps up with a fast scan.
+     * The entry is still an ordinary .tsv.gz.  An index of the rows in each member is
+     * uploaded next to it with the same name plus .idx, which lets `usage grep`
+     * inflate the scan on several cores or read just a range of its rows.
+     *
+     * CHECKPOINT
+     *
+     * With --checkpoint the scan is uploaded as a series of segments rather than one
+     * entry.  A segment is finished and uploaded every --checkpoint-interval, and only
+     * then are the jars in it recorded as done in the local checkpoint file.  If the
+     * scan dies, run the same command again with --resume.  It reads only the checkpoint,
+     * skips every jar already in an uploaded segment and carries on with a new segment,
+     * so at most one interval of work is lost.  Segments are named after the scan:
+     *
+     *      scan-2020_05_07_16_11-a6f0usy-0.4-00001.tsv.gz
+     *
+     * Once the scan is done `jkta central merge --checkpoint=...` joins the segments
+     * into the single scan entry, with the footer totals of the whole scan.
+     *
+     * For a trial run without AWS give a directory as --bucket=file:/some/dir.
+     * Parts are then written there in the same way and joined into the entry
+     * at the end.
      *
      * The entry name of the scan is both date-stamped and includes a random suffix
      * to avoid collisions when doing parallel processing.  For example a scan at
@@ -105,53 +146,211 @@ public class CentralCommand {
      *  - `JKTA_SECRET_KEY` the AWS Secret Access Key corresponding to the Access Key ID.  If
      *    unspecified the command will immediately terminate with status code 22.
      *
-     * @param include A Java regular expression indicating which files should be
-     *                scanned in the specified directory.  The --include is applied
-     *                before the --exclude pattern allowing the include to serve
-     *                as a course-grained select.
-     * @param exclude A Java regular expression indicating which files should be
-     *                excluded from the scan.  The --exclude is applied after the --include
-     *                allowing the exclude to further refine any files matched.
-     * @param bucket The AWS S3 bucket where the scan tsv.gz files will be uploaded
+     * Neither is needed for a local bucket.  Without --region an Amazon S3 bucket
+     * terminates the command with status code 23.  A --checkpoint file that already
+     * exists without --resume terminates it with status code 24, and --resume without
+     * a checkpoint file with status code 25.
+     *
+     * @param settings The options of the scan, the same as for `jkta usage jars`.  See
+     *                 {@link ScanSettings}.  The entry is always a tsv whatever --format.
+     * @param bucket The AWS S3 bucket where the scan tsv.gz files will be uploaded,
+     *               or file: followed by a local directory
      * @param region The AWS region where the S3 bucket lives.  S3 bucket names
-     *               are unique per region
-     * @param repository The path to the local maven repository itself.  Used to ensure
-     *                   only the path starting at the groupId is reported in the tsv.
-     *                   Defaults to the current working directory.
+     *               are unique per region.  Required unless the bucket is local.
+     * @param partSize The size of each uploaded part.  Amazon S3 needs at least 5mb.
+     * @param uploadThreads The number of parts uploaded at the same time.
+     * @param uploadBuffers The number of parts held in memory while waiting or
+     *                      uploading, including the one being written.
+     * @param blocks Compress the TSV as independent blocks in parallel and upload an
+     *               index of them as well.
+     * @param compressThreads The number of blocks compressed at the same time.
+     * @param checkpoint Upload the scan in segments and record each uploaded segment
+     *                   in this local file.
+     * @param checkpointInterval How long each segment is written before it is uploaded.
+     * @param resume Carry on the scan recorded in the --checkpoint file.
      */
+    //CHECKSTYLE:OFF
     @Command("scan-and-stream")
     public void scanAndStream(@Out PrintStream stdout,
                               @In InputStream stdin,
-                              @Option("include") Pattern include,
-                              @Option("exclude") Pattern exclude,
+                              final ScanSettings settings,
                               @Option("bucket") @Required final String bucket,
-                              @Option("region") @Required final Regions region,
-                              @Option("repository") @Default("${user.dir}") Dir repository
+                              @Option("region") final Regions region,
+                              @Option("part-size") @Default("10mb") final Size partSize,
+                              @Option("upload-threads") @Default("4") final int uploadThreads,
+                              @Option("upload-buffers") @Default("6") final int uploadBuffers,
+                              @Option("blocks") final boolean blocks,
+                              @Option("compress-threads") @Default("2") final int compressThreads,
+                              @Option("checkpoint") final File checkpoint,
+                              @Option("checkpoint-interval") @Default("15 minutes") final Duration checkpointInterval,
+                              @Option("resume") final boolean resume
     ) throws Exception {
+        //CHECKSTYLE:ON
+
+        if (resume && (checkpoint == null || !checkpoint.isFile())) throw new CheckpointNotFound(checkpoint);
+        if (!resume && checkpoint != null && checkpoint.exists()) throw new CheckpointExists(checkpoint);
 
         final UsageCommand usage = new UsageCommand();
-        final PrintOutput results = usage.jars(Format.tsv, include, exclude, repository, stdin);
+        final ScanSettings scan = settings.toBuilder().format(Format.tsv).build();
+        final Dir repository = scan.getRepository();
+
+        final Upload upload = Upload.builder()
+                .partSize(partSize.getSize(SizeUnit.BYTES))
+                .threads(uploadThreads)
+                .buffers(uploadBuffers)
+                .build();
+        final Bucket javax2jakarta = bucket(bucket, region, upload);
+        final int blockThreads = blocks ? Math.max(1, compressThreads) : 0;
+        final String location = region == null ? bucket : region + " " + bucket;
+
+        if (checkpoint == null) {
+            final PrintOutput results = usage.jars(scan, stdin);
+
+            final String keyName = keyName();
+            stdout.printf("Scanning '%s' to %s/%s%n", repository.dir(), location, keyName);
+
+            final ScanEntry entry = new ScanEntry(javax2jakarta, keyName, blockThreads);
+            try {
+                final PrintStream out = new PrintStream(entry) {
+                    @Override
+                    protected void setError() {
+                        // stop the scan rather than keep scanning into a failed upload
+                        throw new IllegalStateException("Upload of " + keyName + " failed", entry.getFailure());
+                    }
+                };
+                results.write(out);
+                out.flush();
+                entry.close();
+            } catch (Exception e) {
+                entry.abort();
+                throw e;
+            }
+            return;
+        }
+
+        try (Checkpoint journal = resume ? Checkpoint.resume(checkpoint) : Checkpoint.create(checkpoint, keyName())) {
+            for (final String unfinished : journal.getUnfinished()) {
+                javax2jakarta.discard(unfinished);
+            }
+
+            if (resume) {
+                stdout.printf("Resuming '%s' to %s/%s after %s jars in %s segments%n", repository.dir(), location, journal.getScan(),
+                        journal.getDone(), journal.getSegments().size());
+            } else {
+                stdout.printf("Scanning '%s' to %s/%s in segments%n", repository.dir(), location, journal.getScan());
+            }
+
+            final File base = repository.dir();
+            final Shard shard = scan.getShard();
+            final Predicate<File> sharded = shard == null ? file -> true : shard.filter(base);
+            final PrintOutput results = usage.jars(scan, file -> sharded.test(file) && !journal.isDone(ScanTsv.childPath(base, file)), stdin);
+
+            final SegmentOutputStream segments = new SegmentOutputStream(journal, javax2jakarta, blockThreads,
+                    Math.max(1, checkpointInterval.getTime(TimeUnit.MILLISECONDS)), TimeUnit.MILLISECONDS);
+            try {
+                final PrintStream out = new PrintStream(segments) {
+                    @Override
+                    protected void setError() {
+                        // stop the scan rather than keep scanning into a failed upload
+                        throw new IllegalStateException("Upload of a segment failed", segments.getFailure());
+                    }
+                };
+                results.write(out);
+                out.flush();
+                segments.close();
+            } catch (Exception e) {
+                segments.abort();
+                throw e;
+            }
+
+            stdout.printf("Uploaded %s segments, join them with: jkta central merge --checkpoint=%s%n",
+                    journal.getSegments().size(), checkpoint.getPath());
+        }
+    }
+
+    /**
+     * Joins the uploaded segments of a scan made with --checkpoint into the
+     * single entry the scan is named after.  Every segment is read once, in
+     * order, and the footer totals are those of the whole scan.  The segments
+     * are left in the bucket.
+     *
+     * @param checkpoint The checkpoint file of the scan.
+     * @param bucket The bucket the segments were uploaded to, as given to scan-and-stream.
+     * @param region The AWS region of the bucket.  Required unless the bucket is local.
+     * @param blocks Compress the merged TSV as independent blocks with an index.
+     * @param compressThreads The number of blocks compressed at the same time.
+     */
+    @Command("merge")
+    public void merge(@Out PrintStream stdout,
+                      @Option("checkpoint") @Required final File checkpoint,
+                      @Option("bucket") @Required final String bucket,
+                      @Option("region") final Regions region,
+                      @Option("blocks") final boolean blocks,
+                      @Option("compress-threads") @Default("2") final int compressThreads
+    ) throws Exception {
+        if (!checkpoint.isFile()) throw new CheckpointNotFound(checkpoint);
+
+        final Bucket javax2jakarta = bucket(bucket, region, Upload.defaults());
+
+        final List<String> segments;
+        final String keyName;
+        try (Checkpoint journal = Checkpoint.resume(checkpoint)) {
+            segments = journal.getSegments();
+            keyName = journal.getScan();
+        }
+
+        final Stream<PackageUsage<Jar>> usages = segments.stream().flatMap(segment -> {
+            try {
+                final InputStream in = Gzip.inflate(javax2jakarta.download(segment));
+                return ScanTsv.fromJarTsv(in, 1, line -> {
+                    throw new IllegalStateException("Invalid row in " + segment + ": " + line);
+                }).onClose(() -> IO.close(in));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        final ScanEntry entry = new ScanEntry(javax2jakarta, keyName, blocks ? Math.max(1, compressThreads) : 0);
+        try {
+            final PrintStream out = new PrintStream(entry) {
+                @Override
+                protected void setError() {
+                    throw new IllegalStateException("Upload of " + keyName + " failed", entry.getFailure());
+                }
+            };
+            ScanTsv.toJarTsv(out, usages, new File(""), () -> "merged from " + segments.size() + " segments");
+            out.flush();
+            entry.close();
+        } catch (Exception e) {
+            entry.abort();
+            throw e;
+        }
+
+        stdout.printf("Merged %s segments into %s%n", segments.size(), keyName);
+    }
+
+    private static String keyName() {
+        final String date = new SimpleDateFormat("yyyy_MM_dd_HH_mm").format(new Date());
+        return String.format("scan-%s-%s-%s.tsv.gz", date, Id.generate().get(), Version.VERSION);
+    }
+
+    private static Bucket bucket(final String bucket, final Regions region, final Upload upload) {
+        if (bucket.startsWith("file:")) {
+            return new LocalBucket(new File(bucket.substring("file:".length())), upload);
+        }
 
         final String accessKey = System.getenv("JKTA_ACCESS_KEY");
         final String secretKey = System.getenv("JKTA_SECRET_KEY");
 
         if (accessKey == null) throw new AccessKeyNotSpecified();
         if (secretKey == null) throw new SecretKeyNotSpecified();
+        if (region == null) throw new RegionNotSpecified();
 
         final AmazonS3 client = AmazonS3ClientBuilder.standard()
                 .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKey, secretKey)))
                 .withRegion(region)
                 .build();
 
-        final String date = new SimpleDateFormat("yyyy_MM_dd_HH_mm").format(new Date());
-
-        final String keyName = String.format("scan-%s-%s-%s.tsv.gz", date, Id.generate().get(), Version.VERSION);
-        stdout.printf("Scanning '%s' to %s %s/%s%n", repository.dir(), region, bucket, keyName);
-        final Bucket javax2jakarta = new Bucket(client, bucket);
-        final OutputStream entry = javax2jakarta.upload(keyName);
-        final GZIPOutputStream gzip = new GZIPOutputStream(entry);
-        try (final PrintStream out = new PrintStream(gzip)) {
-            results.write(out);
-        }
+        return new S3Bucket(client, bucket, upload);
     }
 }
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import org.tomitribe.util.hash.XxHash64;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A local journal of a scan that is uploaded as a series of segments.
+ *
+ * The journal is a text file of tab separated records:
+ *
+ *     scan    the key of the whole scan
+ *     start   the key of a segment whose upload began
+ *     row     the path of a jar written to that segment
+ *     commit  the key and row count of a segment once it is in the bucket
+ *
+ * Rows only count as done once the commit of their segment follows them,
+ * and the journal is only forced to disk at each commit, so a scan that
+ * dies loses at most the segment it was writing.  Resuming reads nothing
+ * but this file, and keeps a 64 bit hash of each done path rather than
+ * the path itself.
+ */
+public class Checkpoint implements Closeable {
+
+    private final File file;
+    private final String scan;
+    private final List<String> segments = new ArrayList<>();
+    private final List<String> unfinished = new ArrayList<>();
+    private final long[] done;
+    private final FileChannel channel;
+    private final Writer writer;
+
+    private Checkpoint(final File file, final String scan, final List<String> segments, final List<String> unfinished,
+                       final long[] done, final FileChannel channel) {
+        this.file = file;
+        this.scan = scan;
+        this.segments.addAll(segments);
+        this.unfinished.addAll(unfinished);
+        this.done = done;
+        this.channel = channel;
+        this.writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /**
+     * Starts a new journal for the scan, failing if the file exists
+     */
+    public static Checkpoint create(final File file, final String scan) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        final Checkpoint checkpoint = new Checkpoint(file, scan, Collections.emptyList(), Collections.emptyList(), new long[0], channel);
+        checkpoint.record("scan", scan);
+        checkpoint.sync();
+        return checkpoint;
+    }
+
+    /**
+     * Reads the journal to carry on where it left off.  A record cut
+     * short by a crash is dropped from the file before appending.
+     */
+    public static Checkpoint resume(final File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(complete(channel));
+
+            String scan = null;
+            final List<String> segments = new ArrayList<>();
+            final List<String> started = new ArrayList<>();
+            long[] done = new long[1024];
+            int count = 0;
+            int committed = 0;
+
+            channel.position(0);
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] record = line.split("\t", 2);
+                if (record.length != 2) throw new IOException("Invalid checkpoint record: " + line);
+
+                switch (record[0]) {
+                    case "scan":
+                        scan = record[1];
+                        break;
+                    case "start":
+                        started.add(record[1]);
+                        // rows of a segment that never committed are not done
+                        count = committed;
+                        break;
+                    case "row":
+                        if (count == done.length) done = Arrays.copyOf(done, done.length * 2);
+                        done[count++] = hash(record[1]);
+                        break;
+                    case "commit":
+                        final String key = record[1].split("\t")[0];
+                        started.remove(key);
+                        segments.add(key);
+                        committed = count;
+                        break;
+                    default:
+                        throw new IOException("Invalid checkpoint record: " + line);
+                }
+            }
+
+            if (scan == null) throw new IOException("Not a checkpoint: " + file);
+
+            done = Arrays.copyOf(done, committed);
+            Arrays.sort(done);
+
+            channel.position(channel.size());
+            return new Checkpoint(file, scan, segments, started, done, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the key of the whole scan
+     */
+    public String getScan() {
+        return scan;
+    }
+
+    /**
+     * @return the keys of the committed segments in the order they were written
+     */
+    public List<String> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * @return the keys of segments that were started but never committed
+     */
+    public List<String> getUnfinished() {
+        return Collections.unmodifiableList(unfinished);
+    }
+
+    /**
+     * @return the number of rows in committed segments when the journal was read
+     */
+    public int getDone() {
+        return done.length;
+    }
+
+    /**
+     * @param path the path as written in the TSV
+     * @return true if the path is in a segment committed before resuming
+     */
+    public boolean isDone(final String path) {
+        return Arrays.binarySearch(done, hash(path)) >= 0;
+    }
+
+    /**
+     * @return the key of the next segment, numbered after all those ever started
+     */
+    public String nextSegment() {
+        final String base = scan.endsWith(".tsv.gz") ? scan.substring(0, scan.length() - ".tsv.gz".length()) : scan;
+        return String.format("%s-%05d.tsv.gz", base, segments.size() + unfinished.size() + 1);
+    }
+
+    public void start(final String segment) throws IOException {
+        unfinished.add(segment);
+        record("start", segment);
+    }
+
+    public void row(final String path) throws IOException {
+        record("row", path);
+    }
+
+    /**
+     * Records the segment as uploaded and forces the journal to disk
+     */
+    public void commit(final String segment, final long rows) throws IOException {
+        record("commit", segment + "\t" + rows);
+        sync();
+        unfinished.remove(segment);
+        segments.add(segment);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void record(final String type, final String value) throws IOException {
+        if (value.indexOf('\n') != -1 || value.indexOf('\r') != -1) {
+            throw new IllegalArgumentException("Line breaks cannot be recorded: " + value);
+        }
+        writer.write(type);
+        writer.write('\t');
+        writer.write(value);
+        writer.write('\n');
+    }
+
+    private void sync() throws IOException {
+        writer.flush();
+        channel.force(false);
+    }
+
+    private static long hash(final String path) {
+        return XxHash64.hash(path);
+    }
+
+    /**
+     * @return the length of the file up to and including its last newline
+     */
+    private static long complete(final FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long end = channel.size();
+        while (end > 0) {
+            final long start = Math.max(0, end - buffer.capacity());
+            buffer.clear().limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) == -1) break;
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') return start + i + 1;
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+}
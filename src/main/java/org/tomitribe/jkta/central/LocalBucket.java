@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A directory used as a bucket, with the same multipart behaviour as
+ * Amazon S3 so uploads can be tried and measured without AWS.  Parts
+ * are written to a key.parts directory as they arrive, and joined into
+ * the entry when the upload completes.
+ */
+public class LocalBucket implements Bucket {
+
+    private final File dir;
+    private final Upload upload;
+
+    public LocalBucket(final File dir) {
+        this(dir, Upload.defaults());
+    }
+
+    public LocalBucket(final File dir, final Upload upload) {
+        this.dir = dir;
+        this.upload = upload;
+    }
+
+    @Override
+    public PartOutputStream upload(final String key) throws IOException {
+        return new PartOutputStream(multipart(new File(dir, key)), upload);
+    }
+
+    @Override
+    public InputStream download(final String key) throws IOException {
+        return IO.read(new File(dir, key));
+    }
+
+    @Override
+    public void discard(final String key) {
+        final File file = new File(dir, key);
+        Files.remove(new File(file.getParentFile(), file.getName() + ".parts"));
+        Files.remove(new File(file.getParentFile(), file.getName() + ".tmp"));
+    }
+
+    /**
+     * The multipart upload of the file, which subclasses may wrap to
+     * slow down or fail parts
+     */
+    protected Multipart multipart(final File file) throws IOException {
+        return new LocalMultipart(file);
+    }
+
+    static class LocalMultipart implements Multipart {
+        private final File file;
+        private final File parts;
+
+        LocalMultipart(final File file) throws IOException {
+            this.file = file;
+            this.parts = new File(file.getParentFile(), file.getName() + ".parts");
+            Files.mkdirs(parts);
+        }
+
+        @Override
+        public void part(final int number, final byte[] bytes, final int length) throws IOException {
+            try (OutputStream out = IO.write(part(number))) {
+                out.write(bytes, 0, length);
+            }
+        }
+
+        @Override
+        public void complete(final int count) throws IOException {
+            final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (OutputStream out = IO.write(tmp)) {
+                for (int number = 1; number <= count; number++) {
+                    IO.copy(part(number), out);
+                }
+            }
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.remove(parts);
+        }
+
+        @Override
+        public void abort() {
+            Files.remove(parts);
+        }
+
+        private File part(final int number) {
+            return new File(parts, String.format("%05d", number));
+        }
+    }
+}
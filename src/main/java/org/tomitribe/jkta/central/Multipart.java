@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import java.io.IOException;
+
+/**
+ * One entry uploaded in numbered parts, in any order and from several
+ * threads at once, that only appears once completed
+ */
+public interface Multipart {
+
+    /**
+     * @param number starting at one
+     */
+    void part(int number, byte[] bytes, int length) throws IOException;
+
+    /**
+     * Assembles the parts one to parts in order
+     */
+    void complete(int parts) throws IOException;
+
+    /**
+     * Discards the parts uploaded so far
+     */
+    void abort();
+}
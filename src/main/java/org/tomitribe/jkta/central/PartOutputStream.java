@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits what is written into parts and uploads them on a pool of
+ * threads while the caller keeps writing.
+ *
+ * Each part is held in one of a fixed number of buffers, which are
+ * reused.  When every buffer is either full and waiting or uploading,
+ * write blocks until an upload finishes, so a scan can never get more
+ * than the buffers ahead of the network.
+ *
+ * The first failed part fails every later write and close, and the
+ * upload is aborted rather than completed.
+ */
+public class PartOutputStream extends OutputStream {
+
+    private static final AtomicInteger UPLOADS = new AtomicInteger();
+
+    private final Multipart multipart;
+    private final int partSize;
+    private final int buffers;
+    private final Semaphore free;
+    private final ConcurrentLinkedQueue<byte[]> pool = new ConcurrentLinkedQueue<>();
+    private final ExecutorService executor;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private byte[] buffer;
+    private int position;
+    private int parts;
+    private boolean closed;
+
+    public PartOutputStream(final Multipart multipart, final Upload upload) {
+        if (upload.getPartSize() < 1 || upload.getPartSize() > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid part size " + upload.getPartSize());
+        }
+        if (upload.getThreads() < 1) throw new IllegalArgumentException("Invalid upload threads " + upload.getThreads());
+        if (upload.getBuffers() < 1) throw new IllegalArgumentException("Invalid upload buffers " + upload.getBuffers());
+
+        this.multipart = multipart;
+        this.partSize = (int) upload.getPartSize();
+        this.buffers = upload.getBuffers();
+        this.free = new Semaphore(buffers);
+
+        final int id = UPLOADS.incrementAndGet();
+        final AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(upload.getThreads(), runnable -> {
+            final Thread thread = new Thread(runnable, "jkta-upload-" + id + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        check();
+
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (buffer == null) buffer = acquire();
+
+            final int count = Math.min(remaining, partSize - position);
+            System.arraycopy(b, offset, buffer, position, count);
+            position += count;
+            offset += count;
+            remaining -= count;
+
+            if (position == partSize) submit();
+        }
+    }
+
+    /**
+     * Uploads the last part, waits for every part and completes the
+     * upload, or aborts it if any part failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+
+        try {
+            if (failure.get() == null && (buffer != null || parts == 0)) {
+                if (buffer == null) buffer = acquire();
+                submit();
+            }
+
+            drain();
+            check();
+            multipart.complete(parts);
+        } catch (IOException | RuntimeException e) {
+            multipart.abort();
+            throw e;
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Discards everything written so far.  Nothing appears in the bucket.
+     */
+    public void abort() {
+        if (closed) return;
+
+        // parts still queued are skipped rather than uploaded
+        failure.compareAndSet(null, new IOException("Upload aborted"));
+        try {
+            drain();
+        } catch (InterruptedIOException e) {
+            // abort regardless
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+            multipart.abort();
+        }
+    }
+
+    public int getParts() {
+        return parts;
+    }
+
+    /**
+     * @return why a part failed or null if none has
+     */
+    public Throwable getFailure() {
+        return failure.get();
+    }
+
+    private void submit() {
+        final byte[] bytes = buffer;
+        final int length = position;
+        final int number = ++parts;
+        buffer = null;
+        position = 0;
+
+        executor.execute(() -> {
+            try {
+                if (failure.get() == null) multipart.part(number, bytes, length);
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                pool.add(bytes);
+                free.release();
+            }
+        });
+    }
+
+    private byte[] acquire() throws IOException {
+        try {
+            free.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for an upload buffer");
+        }
+
+        // a failure may have happened while waiting
+        try {
+            check();
+        } catch (IOException e) {
+            free.release();
+            throw e;
+        }
+
+        final byte[] bytes = pool.poll();
+        return bytes != null ? bytes : new byte[partSize];
+    }
+
+    /**
+     * Waits for every part handed to the executor
+     */
+    private void drain() throws InterruptedIOException {
+        final int held = buffer != null ? 1 : 0;
+        try {
+            free.acquire(buffers - held);
+            free.release(buffers - held);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for parts to upload");
+        }
+    }
+
+    private void check() throws IOException {
+        if (closed) throw new IOException("Stream closed");
+
+        final Throwable t = failure.get();
+        if (t != null) throw new IOException("Upload of a part failed: " + t.getMessage(), t);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import com.amazonaws.services.s3.model.MultipartUpload;
+import com.amazonaws.services.s3.model.MultipartUploadListing;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Uploads each entry to Amazon S3 as a multipart upload
+ */
+public class S3Bucket implements Bucket {
+
+    /**
+     * Amazon S3 rejects parts smaller than this, other than the last
+     */
+    public static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final AmazonS3 client;
+    private final String name;
+    private final Upload upload;
+
+    public S3Bucket(final AmazonS3 client, final String name) {
+        this(client, name, Upload.defaults());
+    }
+
+    public S3Bucket(final AmazonS3 client, final String name, final Upload upload) {
+        if (upload.getPartSize() < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("Amazon S3 parts must be at least 5mb: " + upload.getPartSize());
+        }
+        this.client = client;
+        this.name = name;
+        this.upload = upload;
+    }
+
+    @Override
+    public PartOutputStream upload(final String key) {
+        return new PartOutputStream(new S3Multipart(key), upload);
+    }
+
+    @Override
+    public InputStream download(final String key) {
+        return client.getObject(name, key).getObjectContent();
+    }
+
+    /**
+     * Aborts every multipart upload of exactly this key still in progress
+     */
+    @Override
+    public void discard(final String key) {
+        ListMultipartUploadsRequest request = new ListMultipartUploadsRequest(name).withPrefix(key);
+        while (true) {
+            final MultipartUploadListing listing = client.listMultipartUploads(request);
+            for (final MultipartUpload upload : listing.getMultipartUploads()) {
+                if (!upload.getKey().equals(key)) continue;
+                client.abortMultipartUpload(new AbortMultipartUploadRequest(name, key, upload.getUploadId()));
+            }
+            if (!listing.isTruncated()) return;
+
+            request = new ListMultipartUploadsRequest(name).withPrefix(key)
+                    .withKeyMarker(listing.getNextKeyMarker())
+                    .withUploadIdMarker(listing.getNextUploadIdMarker());
+        }
+    }
+
+    private class S3Multipart implements Multipart {
+        private final String key;
+        private final String uploadId;
+        private final List<PartETag> tags = new ArrayList<>();
+
+        S3Multipart(final String key) {
+            this.key = key;
+            this.uploadId = client.initiateMultipartUpload(new InitiateMultipartUploadRequest(name, key)).getUploadId();
+        }
+
+        @Override
+        public void part(final int number, final byte[] bytes, final int length) {
+            final PartETag tag = client.uploadPart(new UploadPartRequest()
+                    .withBucketName(name)
+                    .withKey(key)
+                    .withUploadId(uploadId)
+                    .withPartNumber(number)
+                    .withInputStream(new ByteArrayInputStream(bytes, 0, length))
+                    .withPartSize(length))
+                    .getPartETag();
+
+            synchronized (tags) {
+                tags.add(tag);
+            }
+        }
+
+        @Override
+        public void complete(final int parts) {
+            final List<PartETag> sorted;
+            synchronized (tags) {
+                sorted = new ArrayList<>(tags);
+            }
+            sorted.sort(Comparator.comparingInt(PartETag::getPartNumber));
+
+            if (sorted.size() != parts) {
+                throw new IllegalStateException("Uploaded " + sorted.size() + " of " + parts + " parts of " + key);
+            }
+            client.completeMultipartUpload(new CompleteMultipartUploadRequest(name, key, uploadId, sorted));
+        }
+
+        @Override
+        public void abort() {
+            client.abortMultipartUpload(new AbortMultipartUploadRequest(name, key, uploadId));
+        }
+    }
+}
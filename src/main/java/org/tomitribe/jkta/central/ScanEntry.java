@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import org.tomitribe.jkta.usage.tsv.BlockGzipOutputStream;
+import org.tomitribe.jkta.usage.tsv.BlockIndex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gzipped TSV uploaded to a bucket as it is written, block compressed
+ * with its index uploaded next to it when asked for.  Nothing appears
+ * in the bucket unless it is closed.
+ */
+class ScanEntry extends OutputStream {
+
+    private final Bucket bucket;
+    private final String key;
+    private final PartOutputStream entry;
+    private final BlockGzipOutputStream blocks;
+    private final OutputStream gzip;
+
+    /**
+     * @param compressThreads the threads compressing blocks or zero
+     *                        for a plain single member gzip
+     */
+    ScanEntry(final Bucket bucket, final String key, final int compressThreads) throws IOException {
+        this.bucket = bucket;
+        this.key = key;
+        this.entry = bucket.upload(key);
+        try {
+            this.blocks = compressThreads > 0 ? new BlockGzipOutputStream(entry, compressThreads) : null;
+            this.gzip = blocks != null ? blocks : new GZIPOutputStream(entry);
+        } catch (IOException | RuntimeException e) {
+            entry.abort();
+            throw e;
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return why the upload failed or null if it has not
+     */
+    public Throwable getFailure() {
+        return entry.getFailure();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        gzip.write(b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        gzip.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        gzip.flush();
+    }
+
+    /**
+     * Finishes the gzip and completes the upload, then uploads the
+     * index if there is one
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            gzip.close();
+        } catch (IOException | RuntimeException e) {
+            abort();
+            throw e;
+        }
+
+        if (blocks == null) return;
+
+        final PartOutputStream index = bucket.upload(key + BlockIndex.SUFFIX);
+        try {
+            blocks.getIndex().write(index);
+            index.close();
+        } catch (IOException | RuntimeException e) {
+            index.abort();
+            throw e;
+        }
+    }
+
+    public void abort() {
+        if (blocks != null) blocks.abort();
+        entry.abort();
+    }
+}
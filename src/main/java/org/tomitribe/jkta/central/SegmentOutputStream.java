@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits a jar TSV into segments, each uploaded as its own entry with
+ * the header repeated.  Once a segment has been open for the interval
+ * it is finished at the next row, and only after its upload completes
+ * are its rows committed to the checkpoint.
+ *
+ * Segments hold rows only.  The footer is left out as its totals would
+ * only cover this run, the merge writes the footer of the whole scan.
+ */
+class SegmentOutputStream extends OutputStream {
+
+    private static final byte[] FOOTER = "0000000000000000000000000000000000000000\t".getBytes();
+
+    /**
+     * The path is the seventh column of the v7 rows written by the scan
+     */
+    private static final int PATH = 6;
+
+    private final Checkpoint checkpoint;
+    private final Bucket bucket;
+    private final int compressThreads;
+    private final long interval;
+
+    private byte[] line = new byte[8192];
+    private int length;
+    private byte[] header;
+    private ScanEntry segment;
+    private long started;
+    private long rows;
+
+    /**
+     * @param compressThreads see {@link ScanEntry}
+     */
+    SegmentOutputStream(final Checkpoint checkpoint, final Bucket bucket, final int compressThreads,
+                        final long interval, final TimeUnit unit) {
+        this.checkpoint = checkpoint;
+        this.bucket = bucket;
+        this.compressThreads = compressThreads;
+        this.interval = unit.toNanos(interval);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        final int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            if (b[i] != '\n') continue;
+            append(b, start, i + 1 - start);
+            line();
+            start = i + 1;
+        }
+        append(b, start, end - start);
+    }
+
+    /**
+     * Writes any last partial line and finishes the segment
+     */
+    @Override
+    public void close() throws IOException {
+        if (length > 0) line();
+        finish();
+    }
+
+    /**
+     * Drops the segment being written.  Its rows were never committed,
+     * so a resumed scan will scan them again.
+     */
+    public void abort() {
+        if (segment != null) segment.abort();
+        segment = null;
+    }
+
+    /**
+     * @return why the upload of the current segment failed or null
+     */
+    public Throwable getFailure() {
+        return segment == null ? null : segment.getFailure();
+    }
+
+    private void line() throws IOException {
+        final byte[] bytes = Arrays.copyOf(line, length);
+        length = 0;
+
+        if (header == null) {
+            header = bytes;
+            return;
+        }
+
+        if (startsWith(bytes, FOOTER)) return;
+
+        if (segment == null) {
+            final String key = checkpoint.nextSegment();
+            checkpoint.start(key);
+            segment = new ScanEntry(bucket, key, compressThreads);
+            segment.write(header);
+            started = System.nanoTime();
+            rows = 0;
+        }
+
+        segment.write(bytes);
+        checkpoint.row(path(bytes));
+        rows++;
+
+        if (System.nanoTime() - started >= interval) finish();
+    }
+
+    private void finish() throws IOException {
+        if (segment == null) return;
+
+        final ScanEntry finished = segment;
+        segment = null;
+        finished.close();
+        checkpoint.commit(finished.getKey(), rows);
+    }
+
+    private void append(final byte[] b, final int off, final int len) {
+        if (length + len > line.length) line = Arrays.copyOf(line, Math.max(line.length * 2, length + len));
+        System.arraycopy(b, off, line, length, len);
+        length += len;
+    }
+
+    private static String path(final byte[] row) {
+        int start = 0;
+        for (int column = 0; column < PATH; column++) {
+            while (start < row.length && row[start] != '\t') {
+                start++;
+            }
+            start++;
+        }
+
+        int end = start;
+        while (end < row.length && row[end] != '\t' && row[end] != '\n' && row[end] != '\r') {
+            end++;
+        }
+        if (start > row.length) throw new IllegalStateException("Row has no path: " + new String(row, Charset.defaultCharset()));
+        return new String(row, start, end - start, Charset.defaultCharset());
+    }
+
+    private static boolean startsWith(final byte[] bytes, final byte[] prefix) {
+        if (bytes.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * How an entry is split into parts and uploaded.  At most buffers parts
+ * are held in memory at once, the one being written included, so an
+ * upload uses up to buffers times partSize of memory.  A writer that
+ * gets ahead of the uploads waits for a buffer to be free.
+ */
+@Data
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class Upload {
+
+    /**
+     * Bytes in each part but the last
+     */
+    private final long partSize;
+
+    /**
+     * Parts uploaded concurrently
+     */
+    private final int threads;
+
+    /**
+     * Parts held in memory, whether being written, waiting or uploading
+     */
+    private final int buffers;
+
+    public static Upload defaults() {
+        return Upload.builder()
+                .partSize(10 * 1024 * 1024)
+                .threads(4)
+                .buffers(6)
+                .build();
+    }
+}
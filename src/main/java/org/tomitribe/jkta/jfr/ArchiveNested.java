@@ -14,37 +14,37 @@
  *  See the License for the specific language governing permissions and
  *  limitations under the License.
  */
-package org.tomitribe.jkta.usage.tsv;
+package org.tomitribe.jkta.jfr;
 
-import org.tomitribe.jkta.usage.Jar;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
 
-public class JarSummary {
-    private final long size;
-    private final long classes;
+@Name("org.tomitribe.jkta.ArchiveNested")
+@Label("Nested Archive")
+@Description("An archive scanned inside another archive")
+@Category("jkta")
+@Threshold("20 ms")
+public class ArchiveNested extends Event {
 
-    public JarSummary(final Jar jar) {
-        this(jar.getSize(), jar.getClasses());
-    }
-
-    public JarSummary(final long size, final long classes) {
-        this.size = size;
-        this.classes = classes;
-    }
+    @Label("Entry")
+    private String entry;
 
-    public long getSize() {
-        return size;
-    }
-
-    public long getClasses() {
-        return classes;
-    }
+    @Label("Classes")
+    private long classes;
 
-    public JarSummary add(final JarSummary that) {
-        final long size = that.size == -1 ? 0 : that.size;
-        final long classes = that.classes == -1 ? 0 : that.classes;
-        return new JarSummary(
-                this.size + size,
-                this.classes + classes
-        );
+    /**
+     * Ends the event and commits it with these fields if it lasted
+     * longer than its threshold
+     */
+    public void commit(final String entry, final long classes) {
+        end();
+        if (!shouldCommit()) return;
+        this.entry = entry;
+        this.classes = classes;
+        commit();
     }
 }
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("org.tomitribe.jkta.ClassParse")
+@Label("Class Parse")
+@Description("A class read and checked for javax and jakarta usage")
+@Category("jkta")
+@Threshold("1 ms")
+public class ClassParse extends Event {
+
+    @Label("Name")
+    private String name;
+
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+
+    @Label("Prefiltered")
+    @Description("Skipped after the constant pool showed no affected packages")
+    private boolean prefiltered;
+
+    /**
+     * Ends the event and commits it with these fields if it lasted
+     * longer than its threshold.  Callers call {@link #end()} and check
+     * {@link #shouldCommit()} first when the name is not already at hand,
+     * so it is only looked up for recorded parses.
+     */
+    public void commit(final String name, final long bytes, final boolean prefiltered) {
+        end();
+        if (!shouldCommit()) return;
+        this.name = name;
+        this.bytes = bytes;
+        this.prefiltered = prefiltered;
+        commit();
+    }
+}
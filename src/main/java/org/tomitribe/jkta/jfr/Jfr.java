@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.jfr;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * JDK Flight Recorder events are only created when the running JVM has
+ * the jdk.jfr API, which Java 8 builds before 8u262 do not.  Every event
+ * has a threshold, so outside of a recording and for the common fast
+ * case an event costs an allocation the JIT can usually remove.
+ */
+public class Jfr {
+
+    public static final boolean ENABLED = available();
+
+    private Jfr() {
+    }
+
+    /**
+     * Starts a recording with the JVM's default settings and the jkta events
+     * at their thresholds.  The recording is written to the file when closed.
+     *
+     * @return the recording or null if file is null
+     */
+    public static Closeable record(final File file) throws IOException {
+        if (file == null) return null;
+        if (!ENABLED) throw new IllegalStateException("JDK Flight Recorder is not available in this JVM");
+        return new Recorder(file);
+    }
+
+    private static boolean available() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -14,35 +14,33 @@
  *  See the License for the specific language governing permissions and
  *  limitations under the License.
  */
-package org.tomitribe.jkta.usage.scan;
+package org.tomitribe.jkta.jfr;
 
-import org.objectweb.asm.signature.SignatureVisitor;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
 
-public class SignatureScanner extends SignatureVisitor {
-    private final BytecodeUsage bytecodeUsage;
+@Name("org.tomitribe.jkta.TsvWrite")
+@Label("TSV Write")
+@Description("A row of scan results written as TSV")
+@Category("jkta")
+@Threshold("1 ms")
+public class TsvWrite extends Event {
 
-    public SignatureScanner(final int api, final BytecodeUsage bytecodeUsage) {
-        super(api);
-        this.bytecodeUsage = bytecodeUsage;
-    }
-
-    @Override
-    public SignatureVisitor visitArrayType() {
-        return this;
-    }
-
-    @Override
-    public void visitClassType(final String name) {
-        bytecodeUsage.addName(name);
-    }
-
-    @Override
-    public void visitInnerClassType(final String name) {
-        bytecodeUsage.addName(name);
-    }
+    @Label("Path")
+    private String path;
 
-    @Override
-    public SignatureVisitor visitTypeArgument(final char wildcard) {
-        return this;
+    /**
+     * Ends the event and commits it with these fields if it lasted
+     * longer than its threshold
+     */
+    public void commit(final String path) {
+        end();
+        if (!shouldCommit()) return;
+        this.path = path;
+        commit();
     }
 }
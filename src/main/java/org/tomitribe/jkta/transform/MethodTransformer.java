@@ -164,7 +164,7 @@ public class MethodTransformer extends MethodVisitor {
     private static void add(final BytecodeUsage bytecodeUsage, final Object[] references) {
         for (final Object o : references) {
             if (o instanceof String) {
-                bytecodeUsage.addType(Type.getObjectType((String) o));
+                bytecodeUsage.addObjectType((String) o);
             }
         }
     }
@@ -19,13 +19,17 @@ package org.tomitribe.jkta.transform;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
+import org.tomitribe.jkta.jfr.Jfr;
+import org.tomitribe.jkta.jfr.Transform;
 import org.tomitribe.jkta.usage.Is;
 import org.tomitribe.util.IO;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -62,7 +66,7 @@ public class Transformation {
 
             try {
                 if (path.endsWith(".class")) {
-                    scanClass(zipInputStream, zipOutputStream);
+                    scanClass(path, zipInputStream, zipOutputStream);
                 } else if (isZip(path)) {
                     scanJar(zipInputStream, zipOutputStream);
                 } else {
@@ -90,13 +94,25 @@ public class Transformation {
         return Is.Zip.accept(path);
     }
 
-    private static void scanClass(final InputStream in, final OutputStream outputStream) throws IOException {
+    private static void scanClass(final String path, final InputStream in, final OutputStream outputStream) throws IOException {
+        final Transform event = Jfr.ENABLED ? new Transform() : null;
+        if (event != null) event.begin();
+
+        final ByteArrayOutputStream original = new ByteArrayOutputStream();
+        IO.copy(in, original);
+        final byte[] input = original.toByteArray();
+
         final ClassWriter classWriter = new ClassWriter(Opcodes.ASM8);
         final ClassTransformer classTransformer = new ClassTransformer(classWriter);
-        final ClassReader classReader = new ClassReader(in);
+        final ClassReader classReader = new ClassReader(input);
         classReader.accept(classTransformer, 0);
         final byte[] bytes = classWriter.toByteArray();
         outputStream.write(bytes);
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) event.commit(path, !Arrays.equals(input, bytes));
+        }
     }
 
 }
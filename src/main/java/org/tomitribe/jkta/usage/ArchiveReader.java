@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+/**
+ * How the entries of a jar are read when it is scanned
+ */
+public enum ArchiveReader {
+    /**
+     * Reads the whole jar front to back with a ZipInputStream.  Every
+     * entry is inflated, including resources that are never scanned.
+     */
+    stream,
+
+    /**
+     * Opens the jar through its central directory with ZipFile and
+     * only inflates classes and nested archives.  The SHA-1 is taken
+     * from a memory mapping of the file.  Falls back to the stream
+     * reader for files without a readable central directory.
+     */
+    directory
+}
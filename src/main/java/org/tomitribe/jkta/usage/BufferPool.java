@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Byte arrays whole files are read into, reused once released.
+ *
+ * The arrays handed out and those kept for reuse never add up to more
+ * than the limit, so {@link #acquire(int)} blocks until enough has been
+ * released.  A single file larger than the limit is still let through
+ * once nothing else is held.
+ *
+ * Memory held in other forms, such as the classes inflated from a file,
+ * is counted against the same limit with {@link #reserve(long)}.
+ */
+class BufferPool {
+
+    private final long limit;
+    private final Deque<byte[]> free = new ArrayDeque<>();
+    private long used;
+    private long retained;
+    private long handedOff;
+
+    BufferPool(final long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return an array of at least the given size
+     */
+    public synchronized byte[] acquire(final int size) throws InterruptedException {
+        while (used > 0 && used + size > limit) {
+            wait();
+        }
+
+        final Iterator<byte[]> iterator = free.iterator();
+        while (iterator.hasNext()) {
+            final byte[] bytes = iterator.next();
+            if (bytes.length >= size) {
+                iterator.remove();
+                retained -= bytes.length;
+                used += bytes.length;
+                return bytes;
+            }
+        }
+
+        // Nothing big enough, make room by letting go of smaller arrays
+        evict(size);
+        used += size;
+        return new byte[size];
+    }
+
+    /**
+     * Counts bytes held outside the pool against the limit.
+     *
+     * Only bytes already handed off are sure to be released without
+     * waiting on the pool, so this blocks while there are some and the
+     * limit is reached.  With none the reservation is let through over
+     * the limit, and further reads wait until it has been released.
+     */
+    public synchronized void reserve(final long size) throws InterruptedException {
+        while (handedOff > 0 && used + size > limit) {
+            wait();
+        }
+
+        evict(size);
+        used += size;
+    }
+
+    /**
+     * Marks reserved bytes as passed on to be released by
+     * work that never waits on the pool
+     */
+    public synchronized void handOff(final long size) {
+        handedOff += size;
+    }
+
+    /**
+     * Releases reserved bytes that were handed off
+     */
+    public synchronized void release(final long size) {
+        handedOff -= size;
+        used -= size;
+        notifyAll();
+    }
+
+    public synchronized void release(final byte[] bytes) {
+        used -= bytes.length;
+
+        if (used + retained + bytes.length <= limit) {
+            free.addLast(bytes);
+            retained += bytes.length;
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Makes room by letting go of arrays kept for reuse
+     */
+    private void evict(final long size) {
+        while (!free.isEmpty() && used + retained + size > limit) {
+            retained -= free.removeFirst().length;
+        }
+    }
+}
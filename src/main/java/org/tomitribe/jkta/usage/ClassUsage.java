@@ -16,7 +16,6 @@
  */
 package org.tomitribe.jkta.usage;
 
-import org.objectweb.asm.ClassReader;
 import org.tomitribe.jkta.usage.scan.ClassScanner;
 import org.tomitribe.jkta.usage.scan.Usage;
 import org.tomitribe.util.IO;
@@ -35,6 +34,10 @@ public class ClassUsage {
     }
 
     public static void forEachClass(final File jar, final Consumer<PackageUsage<Clazz>> consumer) throws IOException {
+        forEachClass(jar, ScanOptions.defaults(), consumer);
+    }
+
+    public static void forEachClass(final File jar, final ScanOptions options, final Consumer<PackageUsage<Clazz>> consumer) throws IOException {
         final ZipInputStream zipInputStream = new ZipInputStream(IO.read(jar));
 
         ZipEntry entry;
@@ -43,7 +46,7 @@ public class ClassUsage {
 
             if (path.endsWith(".class")) {
                 final PackageUsage<Clazz> usage = new PackageUsage<>();
-                final int version = scan(zipInputStream, usage);
+                final int version = scan(zipInputStream, usage, options);
 
                 consumer.accept(new PackageUsage<>(new Clazz(path, version)).add(usage));
             } else {
@@ -87,10 +90,7 @@ public class ClassUsage {
         }
     };
 
-    private static int scan(final InputStream in, final Usage<?> usage) throws IOException {
-        final ClassScanner classScanner = new ClassScanner(usage);
-        final ClassReader classReader = new ClassReader(in);
-        classReader.accept(classScanner, 0);
-        return classScanner.getVersion();
+    private static int scan(final InputStream in, final Usage<?> usage, final ScanOptions options) throws IOException {
+        return ClassScanner.scan(in, -1, usage, options.isFullVisit());
     }
 }
@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.tomitribe.util.Hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Parses each distinct jar content only once during a scan.
+ *
+ * Every jar is hashed first, read through a reused buffer rather than
+ * mapped.  Only the first path seen with a given SHA-1 is then mapped and
+ * scanned from the mapping without being hashed again, so a repository of
+ * mostly duplicates never holds a mapping for each of them.  Every later
+ * path with the same SHA-1 gets a copy of that result with its own path
+ * and modification time.
+ *
+ * Nothing but primitive arrays is held per distinct jar: its 20 byte digest
+ * in one byte array and, once scanned, the few counts a copy needs encoded
+ * as variable length numbers in another.  The result itself is released as
+ * soon as it has been handed on to be written.  Loose class files are not
+ * deduplicated as their result depends on their own modification time.
+ */
+public class Dedupe {
+
+    private static final int DIGEST = 20;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * Offset of an entry whose first copy is still being scanned
+     */
+    private static final int SCANNING = -1;
+
+    /**
+     * Offset of an entry whose first copy could not be scanned
+     */
+    private static final int FAILED = -2;
+
+    /**
+     * Open-addressing table of entry numbers plus one, zero is empty
+     */
+    private int[] table = new int[INITIAL_CAPACITY];
+
+    /**
+     * The digest of each entry, in the order they were added
+     */
+    private byte[] digests = new byte[INITIAL_CAPACITY / 2 * DIGEST];
+
+    /**
+     * Where the encoded result of each entry starts in {@link #results}
+     */
+    private int[] offsets = new int[INITIAL_CAPACITY / 2];
+
+    private byte[] results = new byte[INITIAL_CAPACITY * 16];
+    private int length;
+    private int count;
+
+    private final AtomicLong distinct = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    public PackageUsage<Jar> scan(final File file, final Function<MappedJar, PackageUsage<Jar>> scanner) throws IOException, NoSuchAlgorithmException {
+        if (file.getName().endsWith(".class")) return scanner.apply(MappedJar.of(file));
+
+        final byte[] digest = MappedJar.digest(file);
+        final int entry = putIfAbsent(digest);
+
+        if (entry < 0) {
+            distinct.incrementAndGet();
+            PackageUsage<Jar> usage = null;
+            try {
+                usage = scanner.apply(MappedJar.of(file, digest));
+                return usage;
+            } finally {
+                complete(-entry - 1, usage);
+            }
+        }
+
+        duplicates.incrementAndGet();
+        return copy(entry, file, Hex.toString(digest));
+    }
+
+    public long getDistinct() {
+        return distinct.get();
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public String summary() {
+        return String.format("dedupe %s distinct %s duplicates", distinct.get(), duplicates.get());
+    }
+
+    /**
+     * @return the entry already held for this digest or, if there was
+     * none, minus one minus the entry added for it
+     */
+    private synchronized int putIfAbsent(final byte[] digest) {
+        if ((count + 1) * 2 > table.length) grow();
+
+        int slot = slot(digest, table.length);
+        while (table[slot] != 0) {
+            final int entry = table[slot] - 1;
+            if (equals(entry, digest)) return entry;
+            slot = (slot + 1) & (table.length - 1);
+        }
+
+        final int entry = count++;
+        if (entry == offsets.length) {
+            offsets = Arrays.copyOf(offsets, entry * 2);
+            digests = Arrays.copyOf(digests, entry * 2 * DIGEST);
+        }
+        System.arraycopy(digest, 0, digests, entry * DIGEST, DIGEST);
+        offsets[entry] = SCANNING;
+        table[slot] = entry + 1;
+        return -entry - 1;
+    }
+
+    /**
+     * Keeps what a copy needs of the first result and wakes any
+     * copies already waiting for it
+     */
+    private synchronized void complete(final int entry, final PackageUsage<Jar> usage) {
+        if (usage == null) {
+            offsets[entry] = FAILED;
+        } else {
+            final Jar jar = usage.getContext();
+            offsets[entry] = length;
+            putLong(jar.getInternalDate());
+            putLong(jar.getClasses());
+            putLong(jar.getSize());
+            putInts(jar.getJavaVersions());
+            putLong(usage.getJavax());
+            putLong(usage.getJakarta());
+
+            // Most packages are never referenced, so only the used ones are kept
+            final int[] packages = usage.getPackages();
+            int used = 0;
+            for (final int references : packages) {
+                if (references != 0) used++;
+            }
+            putLong(used);
+            for (int i = 0; i < packages.length; i++) {
+                if (packages[i] == 0) continue;
+                putLong(i);
+                putLong(packages[i]);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits for the first copy if another thread is still scanning it
+     */
+    private synchronized PackageUsage<Jar> copy(final int entry, final File file, final String sha1) {
+        while (offsets[entry] == SCANNING) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        if (offsets[entry] == FAILED) return null;
+
+        final int[] position = {offsets[entry]};
+        final long internalDate = getLong(position);
+        final long classes = getLong(position);
+        final long size = getLong(position);
+        final int[] versions = getInts(position);
+        final int javax = (int) getLong(position);
+        final int jakarta = (int) getLong(position);
+
+        final int[] packages = new int[Package.values().length];
+        for (int used = (int) getLong(position); used > 0; used--) {
+            packages[(int) getLong(position)] = (int) getLong(position);
+        }
+
+        final Jar jar = new Jar(file, sha1, file.lastModified(), internalDate, classes, size, versions);
+        return new PackageUsage<>(jar, javax, jakarta, packages);
+    }
+
+    private void putInts(final int[] ints) {
+        if (ints == null) {
+            putLong(0);
+            return;
+        }
+        putLong(ints.length);
+        for (final int i : ints) {
+            putLong(i);
+        }
+    }
+
+    private int[] getInts(final int[] position) {
+        final int[] ints = new int[(int) getLong(position)];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = (int) getLong(position);
+        }
+        return ints;
+    }
+
+    /**
+     * Appends the value zigzag encoded, seven bits a byte, so small
+     * counts and dates before the epoch both stay short
+     */
+    private void putLong(final long value) {
+        if (length + 10 > results.length) results = Arrays.copyOf(results, results.length * 2);
+
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            results[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        results[length++] = (byte) zigzag;
+    }
+
+    private long getLong(final int[] position) {
+        long zigzag = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = results[position[0]++];
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private void grow() {
+        final int[] grown = new int[table.length * 2];
+        final byte[] digest = new byte[DIGEST];
+
+        for (int entry = 0; entry < count; entry++) {
+            System.arraycopy(digests, entry * DIGEST, digest, 0, DIGEST);
+            int slot = slot(digest, grown.length);
+            while (grown[slot] != 0) {
+                slot = (slot + 1) & (grown.length - 1);
+            }
+            grown[slot] = entry + 1;
+        }
+        table = grown;
+    }
+
+    private boolean equals(final int entry, final byte[] digest) {
+        final int offset = entry * DIGEST;
+        for (int i = 0; i < DIGEST; i++) {
+            if (digests[offset + i] != digest[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * A SHA-1 is already evenly distributed, so its first
+     * four bytes are used as the hash
+     */
+    private static int slot(final byte[] digest, final int capacity) {
+        final int hash = (digest[0] & 0xFF) << 24 | (digest[1] & 0xFF) << 16 | (digest[2] & 0xFF) << 8 | (digest[3] & 0xFF);
+        return hash & (capacity - 1);
+    }
+}
@@ -19,5 +19,10 @@ package org.tomitribe.jkta.usage;
 public enum Format {
     tsv,
     json,
-    plain
+    plain,
+
+    /**
+     * Binary columns that can be memory-mapped, see {@link org.tomitribe.jkta.usage.columnar.ColumnarWriter}
+     */
+    columnar
 }
@@ -16,8 +16,10 @@
  */
 package org.tomitribe.jkta.usage;
 
-import org.apache.commons.math3.stat.descriptive.SynchronizedDescriptiveStatistics;
-import org.objectweb.asm.ClassReader;
+import org.tomitribe.jkta.jfr.ArchiveNested;
+import org.tomitribe.jkta.jfr.JarScan;
+import org.tomitribe.jkta.jfr.Jfr;
+import org.tomitribe.jkta.usage.metrics.ScanMetrics;
 import org.tomitribe.jkta.usage.scan.ClassScanner;
 import org.tomitribe.jkta.usage.scan.Usage;
 import org.tomitribe.util.Hex;
@@ -30,54 +32,187 @@ import java.io.OutputStream;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 public class JarUsage {
 
+    private static final ScanMetrics METRICS = ScanMetrics.get();
+
+    /**
+     * The internal date of an archive is this percentile, in the range
+     * (0, 100], of the dates of its own entries.  Nested archives are
+     * dated separately and do not contribute to their parent's date.
+     */
+    private static final double INTERNAL_DATE_PERCENTILE = 0.9;
+
+    /**
+     * How the internal date was estimated, noted in the TSV footer
+     * of scans where any internal date was not exact
+     */
+    public static final String INTERNAL_DATE = "internal date p" + INTERNAL_DATE_PERCENTILE + " by " + new QuantileSketch();
+
     private JarUsage() {
     }
 
     public static PackageUsage<Jar> of(final File jar) throws NoSuchAlgorithmException, IOException {
+        return of(jar, ScanOptions.defaults());
+    }
+
+    public static PackageUsage<Jar> of(final File jar, final ScanOptions options) throws NoSuchAlgorithmException, IOException {
+        return of(jar, null, options);
+    }
+
+    /**
+     * Scans the bytes already mapped and hashed rather than
+     * reading the file again
+     */
+    public static PackageUsage<Jar> of(final MappedJar jar, final ScanOptions options) throws NoSuchAlgorithmException, IOException {
+        return of(jar.getFile(), jar, options);
+    }
+
+    private static PackageUsage<Jar> of(final File jar, final MappedJar mapped, final ScanOptions options) throws NoSuchAlgorithmException, IOException {
+        final long start = System.nanoTime();
+        final JarScan event = Jfr.ENABLED ? new JarScan() : null;
+        if (event != null) event.begin();
+        try {
+            final PackageUsage<Jar> usage = scan(jar, mapped, options);
+            if (event != null) event.commit(jar.getPath(), usage.getContext().getSize(), usage.getContext().getClasses());
+            return usage;
+        } finally {
+            METRICS.scanned(jar.getPath(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param mapped the jar already mapped and hashed or null to read and hash it here
+     */
+    private static PackageUsage<Jar> scan(final File jar, final MappedJar mapped, final ScanOptions options) throws NoSuchAlgorithmException, IOException {
         if (jar.getName().endsWith(".class")) {
-            return ofClass(jar);
+            return ofClass(jar, mapped, options);
         }
-        final InputStream inputStream = IO.read(jar);
-        final PackageUsage<?> usage = new PackageUsage<>();
+        if (options.getReader() == ArchiveReader.directory) {
+            return ofDirectory(jar, mapped, options);
+        }
+        return ofStream(jar, mapped, options);
+    }
 
+    private static PackageUsage<Jar> ofStream(final File jar, final MappedJar mapped, final ScanOptions options) throws NoSuchAlgorithmException, IOException {
+        final PackageUsage<?> usage = new PackageUsage<>();
         final Set<Integer> versions = new HashSet<>();
-        final MessageDigest md = MessageDigest.getInstance("SHA-1");
-        final DigestInputStream digestIn = new DigestInputStream(inputStream, md);
         final AtomicLong classes = new AtomicLong();
 
-        final long internalDate = scanJar(usage, versions, digestIn, classes);
+        final long internalDate;
+        final String hash;
+        if (mapped != null) {
+            internalDate = scanJar(usage, versions, mapped.open(), classes, options);
+            hash = mapped.getSha1();
+        } else {
+            final MessageDigest md = MessageDigest.getInstance("SHA-1");
+            final DigestInputStream digestIn = new DigestInputStream(IO.read(jar), md);
+            internalDate = scanJar(usage, versions, digestIn, classes, options);
+            hash = Hex.toString(md.digest());
+        }
 
-        final byte[] messageDigest = md.digest();
-        final String hash = Hex.toString(messageDigest);
         return new PackageUsage<>(new Jar(jar, hash, jar.lastModified(), internalDate, classes.get(), jar.length(), versions(versions))).add(usage);
     }
 
-    private static PackageUsage<Jar> ofClass(final File clazz) throws IOException, NoSuchAlgorithmException {
-        final InputStream inputStream = IO.read(clazz);
+    /**
+     * Reads the jar through its central directory so resources such as
+     * images and fonts are never inflated.  Nested archives are still
+     * read as a stream.
+     */
+    private static PackageUsage<Jar> ofDirectory(final File jar, final MappedJar mapped, final ScanOptions options) throws NoSuchAlgorithmException, IOException {
+        final ZipFile zipFile;
+        try {
+            zipFile = new ZipFile(jar);
+        } catch (ZipException e) {
+            // no usable central directory, the stream reader may still get something
+            return ofStream(jar, mapped, options);
+        }
+
         final PackageUsage<?> usage = new PackageUsage<>();
+        final Set<Integer> versions = new HashSet<>();
+        final AtomicLong classes = new AtomicLong();
 
-        final MessageDigest md = MessageDigest.getInstance("SHA-1");
-        final DigestInputStream digestIn = new DigestInputStream(inputStream, md);
+        final long internalDate;
+        try (ZipFile closeable = zipFile) {
+            internalDate = scanZipFile(usage, versions, closeable, classes, options);
+        }
+
+        final String hash = mapped != null ? mapped.getSha1() : sha1(jar);
+        return new PackageUsage<>(new Jar(jar, hash, jar.lastModified(), internalDate, classes.get(), jar.length(), versions(versions))).add(usage);
+    }
 
-        final int version = scanClass(digestIn, usage);
+    private static long scanZipFile(final Usage<?> usage, final Set<Integer> versions, final ZipFile zipFile,
+                                    final AtomicLong classes, final ScanOptions options) throws IOException {
+        final QuantileSketch entryDates = new QuantileSketch();
+
+        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+            final String path = entry.getName();
+
+            final long time = getTime(entry);
+            if (time != -1) {
+                entryDates.add(time);
+            }
+
+            if (path.endsWith(".class")) {
+                classes.incrementAndGet();
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    versions.add(scanClass(in, entry.getSize(), usage, options));
+                }
+            } else if (isZip(path)) {
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    scanNested(usage, versions, path, in, classes, options);
+                }
+            }
+        }
+
+        return internalDate(entryDates);
+    }
+
+    public static String sha1(final File file) throws NoSuchAlgorithmException, IOException {
+        return Hex.toString(digest(file));
+    }
+
+    /**
+     * The SHA-1 of the file hashed in one sequential pass, see {@link MappedJar#digest(File)}
+     */
+    public static byte[] digest(final File file) throws NoSuchAlgorithmException, IOException {
+        return MappedJar.digest(file);
+    }
+
+    private static PackageUsage<Jar> ofClass(final File clazz, final MappedJar mapped, final ScanOptions options) throws IOException, NoSuchAlgorithmException {
+        final PackageUsage<?> usage = new PackageUsage<>();
+
+        final int version;
+        final String hash;
+        if (mapped != null) {
+            version = scanClass(mapped.open(), clazz.length(), usage, options);
+            hash = mapped.getSha1();
+        } else {
+            final MessageDigest md = MessageDigest.getInstance("SHA-1");
+            final DigestInputStream digestIn = new DigestInputStream(IO.read(clazz), md);
+            version = scanClass(digestIn, clazz.length(), usage, options);
+            hash = Hex.toString(md.digest());
+        }
 
-        final byte[] messageDigest = md.digest();
-        final String hash = Hex.toString(messageDigest);
         return new PackageUsage<>(new Jar(clazz, hash, clazz.lastModified(), clazz.lastModified(), 1, clazz.length(), new int[]{version})).add(usage);
     }
 
-    private static long scanJar(final Usage<?> usage, final Set<Integer> versions, final InputStream inputStream, final AtomicLong classes) throws IOException {
-        final SynchronizedDescriptiveStatistics entryDates = new SynchronizedDescriptiveStatistics();
+    private static long scanJar(final Usage<?> usage, final Set<Integer> versions, final InputStream inputStream,
+                                final AtomicLong classes, final ScanOptions options) throws IOException {
+        final QuantileSketch entryDates = new QuantileSketch();
         final ZipInputStream zipInputStream = new ZipInputStream(inputStream);
 
         ZipEntry entry;
@@ -86,15 +221,15 @@ public class JarUsage {
 
             final long time = getTime(entry);
             if (time != -1) {
-                entryDates.addValue(time);
+                entryDates.add(time);
             }
 
             if (path.endsWith(".class")) {
                 classes.incrementAndGet();
-                final int version = scanClass(zipInputStream, usage);
+                final int version = scanClass(zipInputStream, entry.getSize(), usage, options);
                 versions.add(version);
             } else if (isZip(path)) {
-                scanJar(usage, versions, zipInputStream, classes);
+                scanNested(usage, versions, path, zipInputStream, classes, options);
             } else {
                 IO.copy(zipInputStream, ignore);
             }
@@ -102,14 +237,33 @@ public class JarUsage {
 
         // make sure all bytes are read just in case
         IO.copy(inputStream, ignore);
-        return (long) entryDates.getPercentile(0.9);
+        return internalDate(entryDates);
+    }
+
+    private static void scanNested(final Usage<?> usage, final Set<Integer> versions, final String path, final InputStream inputStream,
+                                   final AtomicLong classes, final ScanOptions options) throws IOException {
+        final ArchiveNested event = Jfr.ENABLED ? new ArchiveNested() : null;
+        if (event != null) event.begin();
+        final long before = classes.get();
+
+        scanJar(usage, versions, inputStream, classes, options);
+
+        if (event != null) event.commit(path, classes.get() - before);
+    }
+
+    /**
+     * The internal date of an archive from the dates of its own entries
+     */
+    public static long internalDate(final QuantileSketch entryDates) {
+        if (!entryDates.isExact()) METRICS.estimated();
+        return (long) entryDates.getPercentile(INTERNAL_DATE_PERCENTILE);
     }
 
     private static boolean isZip(final String path) {
         return Is.Zip.accept(path);
     }
 
-    private static int[] versions(final Set<Integer> set) {
+    static int[] versions(final Set<Integer> set) {
         final int[] ints = new int[set.size()];
         final Iterator<Integer> iterator = set.iterator();
         for (int i = 0; i < ints.length; i++) {
@@ -161,11 +315,12 @@ public class JarUsage {
         }
     };
 
-    private static int scanClass(final InputStream in, final Usage<?> usage) throws IOException {
-        final ClassScanner classScanner = new ClassScanner(usage);
-        final ClassReader classReader = new ClassReader(in);
-        classReader.accept(classScanner, 0);
-        return classScanner.getVersion();
+    /**
+     * Reads the class into the calling thread's reusable buffer, sized up
+     * front when the size of the entry is known
+     */
+    private static int scanClass(final InputStream in, final long size, final Usage<?> usage, final ScanOptions options) throws IOException {
+        return ClassScanner.scan(in, size, usage, options.isFullVisit());
     }
 
     static String summary(final int scanned, final int affected) {
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.tomitribe.jkta.usage.metrics.Phase;
+import org.tomitribe.jkta.usage.metrics.ScanMetrics;
+import org.tomitribe.util.Hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A file mapped into memory and hashed in one sequential pass.
+ *
+ * The mapping is kept so the same bytes can then be scanned without
+ * opening, reading or hashing the file a second time.  A mapping is only
+ * released when it is garbage collected, so files that are hashed but
+ * may never be scanned are hashed with {@link #digest(File)} instead,
+ * which reads them through one reused buffer per thread.
+ */
+public class MappedJar {
+
+    /**
+     * Largest region of a file mapped at once
+     */
+    private static final long MAP_SIZE = 1L << 30;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    private static final ScanMetrics METRICS = ScanMetrics.get();
+
+    private final File file;
+    private final byte[] digest;
+    private final List<MappedByteBuffer> regions;
+
+    private MappedJar(final File file, final byte[] digest, final List<MappedByteBuffer> regions) {
+        this.file = file;
+        this.digest = digest;
+        this.regions = regions;
+    }
+
+    public static MappedJar of(final File file) throws NoSuchAlgorithmException, IOException {
+        final long start = System.nanoTime();
+        final MessageDigest md = MessageDigest.getInstance("SHA-1");
+        final List<MappedByteBuffer> regions = map(file);
+        for (final MappedByteBuffer region : regions) {
+            md.update(region.duplicate());
+        }
+
+        final byte[] digest = md.digest();
+        METRICS.record(Phase.hash, System.nanoTime() - start);
+        return new MappedJar(file, digest, regions);
+    }
+
+    /**
+     * Maps a file whose SHA-1 is already known without hashing it again
+     */
+    public static MappedJar of(final File file, final byte[] digest) throws IOException {
+        return new MappedJar(file, digest, map(file));
+    }
+
+    private static List<MappedByteBuffer> map(final File file) throws IOException {
+        final List<MappedByteBuffer> regions = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            for (long position = 0; position < size; position += MAP_SIZE) {
+                regions.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position)));
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * The SHA-1 of the file read in one sequential pass without mapping it
+     *
+     * @return the 20 byte SHA-1 of the file
+     */
+    public static byte[] digest(final File file) throws NoSuchAlgorithmException, IOException {
+        final long start = System.nanoTime();
+        final MessageDigest md = MessageDigest.getInstance("SHA-1");
+        final ByteBuffer buffer = BUFFER.get();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        final byte[] digest = md.digest();
+        METRICS.record(Phase.hash, System.nanoTime() - start);
+        return digest;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the 20 byte SHA-1 of the file
+     */
+    public byte[] getDigest() {
+        return digest;
+    }
+
+    public String getSha1() {
+        return Hex.toString(digest);
+    }
+
+    /**
+     * @return a stream over the mapped bytes from the start of the file
+     */
+    public InputStream open() {
+        final List<InputStream> streams = new ArrayList<>(regions.size());
+        for (final MappedByteBuffer region : regions) {
+            streams.add(new RegionInputStream(region.duplicate()));
+        }
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+
+    private static class RegionInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        RegionInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) return -1;
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+
+            final int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
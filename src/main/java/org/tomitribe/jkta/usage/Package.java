@@ -16,6 +16,9 @@
  */
 package org.tomitribe.jkta.usage;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.Stream;
 
 public enum Package {
@@ -88,16 +91,32 @@ public enum Package {
     ;
     private final String name;
     private final String[] excluded;
+    private final boolean javax;
+    private final boolean jakarta;
 
     Package(final String name, final String... excluded) {
         this.name = name;
         this.excluded = excluded;
+        this.javax = name.startsWith("javax");
+        this.jakarta = name.startsWith("jakarta");
     }
 
     public String getName() {
         return name;
     }
 
+    public List<String> getExcluded() {
+        return Collections.unmodifiableList(Arrays.asList(excluded));
+    }
+
+    public boolean isJavax() {
+        return javax;
+    }
+
+    public boolean isJakarta() {
+        return jakarta;
+    }
+
     public boolean matches(final String classOrPackage) {
         for (final String s : excluded) {
             if (classOrPackage.startsWith(s)) return false;
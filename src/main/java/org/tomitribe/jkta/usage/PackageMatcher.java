@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves a class or package name to the ordinal of the first {@link Package}
+ * that {@link Package#matches(String) matches} it, in a single left-to-right
+ * pass over the name.
+ *
+ * The package names and their exclusions are compiled into a trie.  Whether
+ * a package matches a name only depends on which of those strings are a prefix
+ * of the name, and every one of them is a prefix of the deepest trie state the
+ * name reaches.  So the first-match answer can be computed ahead of time for
+ * every state and the walk just stops as soon as the name leaves the trie.
+ *
+ * Both '.' and '/' are treated as the same character, so internal names such
+ * as "javax/ejb/EJB" can be matched without converting them first.
+ */
+public class PackageMatcher {
+
+    private static final PackageMatcher INSTANCE = new PackageMatcher(Package.values());
+
+    /**
+     * Character to character class.  Class zero means the character
+     * does not appear in any package name
+     */
+    private final byte[] classes = new byte[128];
+
+    /**
+     * Number of character classes, including the zero class
+     */
+    private final int width;
+
+    /**
+     * Flattened state table indexed by (state * width + class).  As
+     * nothing ever transitions back to the root state, zero means the
+     * name has left the trie.
+     */
+    private final int[] transitions;
+
+    /**
+     * The ordinal of the first matching package for each state or -1
+     */
+    private final int[] results;
+
+    PackageMatcher(final Package[] packages) {
+        final List<String> strings = new ArrayList<>();
+        for (final Package aPackage : packages) {
+            strings.add(aPackage.getName());
+            strings.addAll(aPackage.getExcluded());
+        }
+
+        int width = 1;
+        for (final String string : strings) {
+            for (final char c : string.toCharArray()) {
+                if (c >= classes.length) throw new IllegalStateException("Unsupported package name: " + string);
+                if (classes[c] == 0) classes[c] = (byte) width++;
+            }
+        }
+        classes['/'] = classes['.'];
+        this.width = width;
+
+        // Build the trie, remembering the string each state represents
+        final List<Map<Character, Integer>> trie = new ArrayList<>();
+        final List<String> prefixes = new ArrayList<>();
+        trie.add(new HashMap<>());
+        prefixes.add("");
+
+        for (final String string : strings) {
+            int state = 0;
+            for (int i = 0; i < string.length(); i++) {
+                final Integer next = trie.get(state).get(string.charAt(i));
+                if (next != null) {
+                    state = next;
+                    continue;
+                }
+
+                trie.add(new HashMap<>());
+                prefixes.add(string.substring(0, i + 1));
+                trie.get(state).put(string.charAt(i), trie.size() - 1);
+                state = trie.size() - 1;
+            }
+        }
+
+        this.transitions = new int[trie.size() * width];
+        this.results = new int[trie.size()];
+
+        for (int state = 0; state < trie.size(); state++) {
+            for (final Map.Entry<Character, Integer> entry : trie.get(state).entrySet()) {
+                transitions[state * width + classes[entry.getKey()]] = entry.getValue();
+            }
+            results[state] = firstMatch(packages, prefixes.get(state));
+        }
+    }
+
+    public static PackageMatcher get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the ordinal of the matching Package or -1 if there is none
+     */
+    public int match(final String name) {
+        return match(name, 0, name.length());
+    }
+
+    /**
+     * Matches the characters of name between start (inclusive) and
+     * end (exclusive) as if they were their own string.
+     *
+     * @return the ordinal of the matching Package or -1 if there is none
+     */
+    public int match(final String name, final int start, final int end) {
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            final char c = name.charAt(i);
+            if (c >= classes.length) break;
+
+            final int next = transitions[state * width + classes[c]];
+            if (next == 0) break;
+            state = next;
+        }
+        return results[state];
+    }
+
+    /**
+     * Same as {@link #match(String, int, int)} for ascii or modified
+     * UTF-8 bytes such as those found in a class file constant pool.
+     *
+     * @return the ordinal of the matching Package or -1 if there is none
+     */
+    public int match(final byte[] name, final int start, final int end) {
+        int state = 0;
+        for (int i = start; i < end; i++) {
+            final int c = name[i];
+            if (c < 0) break;
+
+            final int next = transitions[state * width + classes[c]];
+            if (next == 0) break;
+            state = next;
+        }
+        return results[state];
+    }
+
+    private static int firstMatch(final Package[] packages, final String prefix) {
+        for (final Package aPackage : packages) {
+            if (aPackage.matches(prefix)) return aPackage.ordinal();
+        }
+        return -1;
+    }
+}
@@ -17,6 +17,7 @@
 package org.tomitribe.jkta.usage;
 
 import org.tomitribe.jkta.usage.scan.Usage;
+import org.tomitribe.jkta.usage.tsv.TsvWriter;
 
 import java.util.Iterator;
 import java.util.stream.Collectors;
@@ -30,6 +31,9 @@ import java.util.stream.Stream;
  */
 public class PackageUsage<Context> implements Usage<Context> {
 
+    private static final PackageMatcher MATCHER = PackageMatcher.get();
+    private static final Package[] PACKAGES = Package.values();
+
     private final Context context;
     protected int javax = 0;
     protected int jakarta = 0;
@@ -57,20 +61,22 @@ public class PackageUsage<Context> implements Usage<Context> {
 
     @Override
     public void accept(final String reference) {
-        final Package match = match(reference);
-        if (match == null) return;
-
-        packages[match.ordinal()]++;
+        count(MATCHER.match(reference));
+    }
 
-        if (match.getName().startsWith("javax")) javax++;
-        if (match.getName().startsWith("jakarta")) jakarta++;
+    @Override
+    public void accept(final String name, final int start, final int end) {
+        count(MATCHER.match(name, start, end));
     }
 
-    private Package match(final String reference) {
-        for (final Package aPackage : Package.values()) {
-            if (aPackage.matches(reference)) return aPackage;
-        }
-        return null;
+    private void count(final int match) {
+        if (match == -1) return;
+
+        final Package aPackage = PACKAGES[match];
+        packages[match]++;
+
+        if (aPackage.isJavax()) javax++;
+        if (aPackage.isJakarta()) jakarta++;
     }
 
     @Override
@@ -126,6 +132,13 @@ public class PackageUsage<Context> implements Usage<Context> {
         return sb.toString();
     }
 
+    /**
+     * Writes the same columns as {@link #toTsv()}
+     */
+    public void toTsv(final TsvWriter out) {
+        out.write(javax).tab().write(jakarta).tab().write(packages);
+    }
+
     public static Usage<?> fromTsv(final String line) {
         return fromTsv(null, line);
     }
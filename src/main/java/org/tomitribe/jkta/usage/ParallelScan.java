@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scans a stream of files on a fixed number of worker threads.
+ *
+ * The files are read from the stream a window at a time on a separate
+ * thread, so scanning starts before a long list such as STDIN has been
+ * read to the end.  Each window is scheduled largest file first.  A
+ * handful of huge ears or wars scheduled at the very end of a window
+ * would otherwise leave one thread working while all the others sit idle.
+ *
+ * Results are read from the returned stream on the calling thread, so
+ * anything consuming them (such as the TSV formatter) sees them one at
+ * a time.  In {@link Order#input} mode results that finish early are held
+ * until all the files listed before them are done.
+ *
+ * At most one window of files is ever scheduled, running or finished but
+ * not yet read from the stream.  A file is only scheduled once the result
+ * of another has been read, so a slow consumer or a slow ear holding back
+ * the results listed after it never lets the held results grow.
+ */
+public class ParallelScan {
+
+    private static final int WINDOW = 1024;
+
+    private ParallelScan() {
+    }
+
+    public static <R> Stream<R> map(final Stream<File> files, final Function<File, R> function, final int threads, final Order order) {
+        return map(files, function, threads, order, WINDOW);
+    }
+
+    /**
+     * @param window the most files scheduled, running or waiting to be
+     *               read from the stream at once
+     */
+    static <R> Stream<R> map(final Stream<File> files, final Function<File, R> function, final int threads, final Order order,
+                             final int window) {
+        if (threads <= 1) return files.map(function);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreads("jkta-scan-"));
+        final ExecutorService lister = Executors.newSingleThreadExecutor(new DaemonThreads("jkta-scan-list-"));
+        final BlockingQueue<Result<R>> completed = new LinkedBlockingQueue<>();
+        final Semaphore permits = new Semaphore(window);
+
+        lister.execute(() -> schedule(files, function, window, executor, completed, permits));
+        lister.shutdown();
+
+        final Runnable cancel = () -> {
+            lister.shutdownNow();
+            executor.shutdownNow();
+        };
+
+        final Iterator<R> iterator = order == Order.completion
+                ? new CompletionOrder<>(completed, permits, cancel)
+                : new InputOrder<>(completed, permits, cancel);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(cancel);
+    }
+
+    /**
+     * Reads the files a window at a time and schedules each window largest
+     * first, taking a permit for every file.  The last result queued is
+     * the end with the number of files scheduled and the failure reading
+     * them, if any.
+     */
+    private static <R> void schedule(final Stream<File> files, final Function<File, R> function, final int window,
+                                     final ExecutorService executor, final BlockingQueue<Result<R>> completed,
+                                     final Semaphore permits) {
+        int listed = 0;
+        int scheduled = 0;
+        try {
+            final Iterator<File> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                final List<Task> tasks = new ArrayList<>(window);
+                while (tasks.size() < window && iterator.hasNext()) {
+                    tasks.add(new Task(listed++, iterator.next()));
+                }
+
+                // Largest files first so they don't end up as the long tail
+                tasks.sort(Comparator.comparingLong(Task::getSize).reversed());
+
+                for (final Task task : tasks) {
+                    permits.acquire();
+                    executor.execute(() -> completed.add(task.run(function)));
+                    scheduled++;
+                }
+            }
+            completed.add(Result.end(scheduled, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+            completed.add(Result.end(scheduled, e));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static class Task {
+        private final int index;
+        private final File file;
+        private final long size;
+
+        Task(final int index, final File file) {
+            this.index = index;
+            this.file = file;
+            this.size = file.length();
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        <R> Result<R> run(final Function<File, R> function) {
+            try {
+                return new Result<>(index, function.apply(file), null, false);
+            } catch (RuntimeException | Error e) {
+                return new Result<>(index, null, e, false);
+            }
+        }
+    }
+
+    private static class Result<R> {
+        private final int index;
+        private final R value;
+        private final Throwable failure;
+        private final boolean end;
+
+        Result(final int index, final R value, final Throwable failure, final boolean end) {
+            this.index = index;
+            this.value = value;
+            this.failure = failure;
+            this.end = end;
+        }
+
+        /**
+         * Queued once every file is scheduled, where index is the number of files scheduled
+         */
+        static <R> Result<R> end(final int count, final Throwable failure) {
+            return new Result<>(count, null, failure, true);
+        }
+
+        R get() {
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            if (failure instanceof Error) throw (Error) failure;
+            return value;
+        }
+    }
+
+    private abstract static class Results<R> implements Iterator<R> {
+        private final BlockingQueue<Result<R>> completed;
+        private final Semaphore permits;
+        private final Runnable cancel;
+        private Result<R> end;
+        private int received;
+
+        Results(final BlockingQueue<Result<R>> completed, final Semaphore permits, final Runnable cancel) {
+            this.completed = completed;
+            this.permits = permits;
+            this.cancel = cancel;
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            final Result<R> result = nextResult();
+            permits.release();
+
+            if (result.failure != null) cancel.run();
+            return result.get();
+        }
+
+        abstract Result<R> nextResult();
+
+        /**
+         * @return the next result to finish or null once there are no more
+         */
+        Result<R> take() {
+            while (end == null || received < end.index) {
+                final Result<R> taken;
+                try {
+                    taken = completed.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for scan results", e);
+                }
+
+                if (!taken.end) {
+                    received++;
+                    return taken;
+                }
+                end = taken;
+            }
+
+            if (end.failure != null) {
+                cancel.run();
+                end.get();
+            }
+            return null;
+        }
+    }
+
+    private static class CompletionOrder<R> extends Results<R> {
+        private Result<R> next;
+
+        CompletionOrder(final BlockingQueue<Result<R>> completed, final Semaphore permits, final Runnable cancel) {
+            super(completed, permits, cancel);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) next = take();
+            return next != null;
+        }
+
+        @Override
+        Result<R> nextResult() {
+            final Result<R> result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    private static class InputOrder<R> extends Results<R> {
+        private final Map<Integer, Result<R>> pending = new HashMap<>();
+        private int next;
+
+        InputOrder(final BlockingQueue<Result<R>> completed, final Semaphore permits, final Runnable cancel) {
+            super(completed, permits, cancel);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!pending.containsKey(next)) {
+                final Result<R> taken = take();
+                if (taken == null) return false;
+                pending.put(taken.index, taken);
+            }
+            return true;
+        }
+
+        @Override
+        Result<R> nextResult() {
+            return pending.remove(next++);
+        }
+    }
+
+    private static class DaemonThreads implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String prefix;
+
+        DaemonThreads(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Estimates percentiles of a stream of long values in memory that grows
+ * with the log of the number of values.
+ *
+ * Values are buffered exactly until {@code capacity} of them have been
+ * added.  After that a full buffer is sorted and every other value is
+ * promoted to the next level where it counts twice, the classic
+ * Munro-Paterson compactor.  Each level is an array of {@code capacity}
+ * longs allocated the first time a value reaches it, so a sketch of n
+ * values holds at most {@code capacity * (1 + log2(n / capacity))}
+ * values, 8kb per level with the default capacity.
+ *
+ * Error bound: with no more than {@code capacity} values the result is
+ * exactly what commons-math's {@code DescriptiveStatistics.getPercentile}
+ * returns.  Past that each compaction at level h moves a rank by at most
+ * 2^h and happens at most n / (capacity * 2^h) times, so the value
+ * returned has a rank within {@code n * levels / capacity} of the exact
+ * one.  The minimum and maximum are always exact.
+ *
+ * Sketches can be {@link #merge(QuantileSketch) merged}, so archives
+ * scanned separately can be combined without keeping their values.
+ * Not thread-safe.
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Enough levels for capacity * 2^47 values
+     */
+    private static final int MAX_LEVELS = 48;
+
+    private final int capacity;
+    private final long[][] levels = new long[MAX_LEVELS][];
+    private final int[] sizes = new int[MAX_LEVELS];
+
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Alternates which half of a buffer survives compaction so the
+     * rank errors of successive compactions tend to cancel out
+     */
+    private boolean odd;
+
+    public QuantileSketch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public QuantileSketch(final int capacity) {
+        if (capacity < 2 || capacity % 2 != 0) {
+            throw new IllegalArgumentException("Capacity must be an even number of at least 2: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(final long value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        insert(0, value);
+    }
+
+    /**
+     * Adds all the values seen by the other sketch to this one
+     */
+    public void merge(final QuantileSketch other) {
+        if (other.count == 0) return;
+
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                insert(level, other.levels[level][i]);
+            }
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return true while every value added is still held as is, so
+     * percentiles are exact rather than estimated
+     */
+    public boolean isExact() {
+        return getLevels() <= 1;
+    }
+
+    /**
+     * Number of levels in use, the {@code levels} of the error bound
+     */
+    public int getLevels() {
+        int used = 0;
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            if (levels[level] != null) used = level + 1;
+        }
+        return used;
+    }
+
+    /**
+     * The estimated percentile using the same definition as commons-math's
+     * default (legacy) estimation, where p is in the range (0, 100].
+     *
+     * @return the estimate or NaN if no values were added
+     */
+    public double getPercentile(final double p) {
+        if (p <= 0 || p > 100) throw new IllegalArgumentException("Percentile must be in the range (0, 100]: " + p);
+        if (count == 0) return Double.NaN;
+
+        final double pos = p * (count + 1) / 100;
+        if (pos < 1) return min;
+        if (pos >= count) return max;
+
+        final long rank = (long) Math.floor(pos);
+        final double d = pos - rank;
+
+        final long[][] sorted = sorted();
+        final long lower = valueAt(sorted, rank);
+        final long upper = valueAt(sorted, rank + 1);
+        return lower + d * (upper - lower);
+    }
+
+    @Override
+    public String toString() {
+        return "quantile sketch k=" + capacity;
+    }
+
+    private void insert(final int level, final long value) {
+        if (levels[level] == null) {
+            levels[level] = new long[capacity];
+        }
+
+        if (sizes[level] == capacity) {
+            compact(level);
+        }
+
+        levels[level][sizes[level]++] = value;
+    }
+
+    private void compact(final int level) {
+        final long[] buffer = levels[level];
+        Arrays.sort(buffer, 0, capacity);
+
+        for (int i = odd ? 1 : 0; i < capacity; i += 2) {
+            insert(level + 1, buffer[i]);
+        }
+
+        odd = !odd;
+        sizes[level] = 0;
+    }
+
+    /**
+     * All retained values as {value, weight} pairs in ascending order
+     */
+    private long[][] sorted() {
+        int total = 0;
+        for (final int size : sizes) {
+            total += size;
+        }
+
+        final long[][] pairs = new long[total][];
+        int i = 0;
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            for (int j = 0; j < sizes[level]; j++) {
+                pairs[i++] = new long[]{levels[level][j], 1L << level};
+            }
+        }
+
+        Arrays.sort(pairs, Comparator.comparingLong(pair -> pair[0]));
+        return pairs;
+    }
+
+    /**
+     * The value with the given one-based rank
+     */
+    private long valueAt(final long[][] sorted, final long rank) {
+        long seen = 0;
+        for (final long[] pair : sorted) {
+            seen += pair[1];
+            if (seen >= rank) return pair[0];
+        }
+        return max;
+    }
+}
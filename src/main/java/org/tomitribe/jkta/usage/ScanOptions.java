@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.io.File;
+
+/**
+ * Settings that change how a jar is scanned, but never what the
+ * scan reports.
+ */
+@Data
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class ScanOptions {
+
+    /**
+     * Always drive the full ASM visit, even for classes whose constant
+     * pool shows they have no affected references.  Useful to verify
+     * the constant pool prefilter.
+     */
+    private final boolean fullVisit;
+
+    /**
+     * How the entries of each jar are read.  Null is the same
+     * as {@link ArchiveReader#stream}
+     */
+    private final ArchiveReader reader;
+
+    /**
+     * Directory of the scan cache or null to scan every jar
+     */
+    private final File cacheDir;
+
+    /**
+     * Scan each distinct jar content only once
+     */
+    private final boolean dedupe;
+
+    /**
+     * Threads for each stage of a {@link ScanPipeline} or null to scan
+     * each jar start to finish on one thread
+     */
+    private final Stages pipeline;
+
+    /**
+     * Bytes of files the {@link ScanPipeline} may hold in memory at once,
+     * zero for {@link ScanPipeline#READ_AHEAD}
+     */
+    private final long readAhead;
+
+    public static ScanOptions defaults() {
+        return builder().build();
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.tomitribe.jkta.usage.metrics.Phase;
+import org.tomitribe.jkta.usage.metrics.ScanMetrics;
+import org.tomitribe.jkta.usage.scan.ClassScanner;
+import org.tomitribe.util.Hex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Scans files in three stages, each on its own threads, so slow disks
+ * and busy CPUs can both be kept busy.
+ *
+ * <ol>
+ * <li>read: loads each whole file into an array from a {@link BufferPool}</li>
+ * <li>inflate: hashes the file and inflates its classes, nested archives included</li>
+ * <li>parse: visits the classes with ASM and builds the result</li>
+ * </ol>
+ *
+ * The queues between the stages are bounded and the read stage blocks once
+ * the pool's limit is reached, so a stage that falls behind slows down the
+ * ones before it.  Inflated classes are counted against the same limit
+ * until they have been parsed, and no more than {@link #WINDOW} files are
+ * listed ahead of the next result taken.  The time each stage spends working is reported by
+ * {@link #summary()} to help pick the number of threads for each one.
+ *
+ * Results are the same as {@link JarUsage#of(File, ScanOptions)} with the
+ * stream reader.  Files too large for a single array are scanned that way
+ * on the inflate stage.
+ */
+public class ScanPipeline {
+
+    /**
+     * Default limit of the memory used to hold files read ahead
+     */
+    public static final long READ_AHEAD = 256L * 1024 * 1024;
+
+    /**
+     * Jobs waiting in each queue per thread of the stage taking them
+     */
+    private static final int QUEUED = 2;
+
+    /**
+     * Files listed ahead of the next result taken, which bounds the
+     * results held back in input order waiting for an earlier one
+     */
+    private static final int WINDOW = 1024;
+
+    private static final int MAX_BUFFER = Integer.MAX_VALUE - 8;
+
+    private static final Job END = new Job(-1, null);
+
+    private static final ScanMetrics METRICS = ScanMetrics.get();
+
+    private final ScanOptions options;
+    private final BufferPool pool;
+    private final Stage read;
+    private final Stage inflate;
+    private final Stage parse;
+
+    public ScanPipeline(final Stages stages, final ScanOptions options) {
+        this.options = options;
+        this.pool = new BufferPool(options.getReadAhead() > 0 ? options.getReadAhead() : READ_AHEAD);
+        this.read = new Stage("read", stages.getRead(), this::read);
+        this.inflate = new Stage("inflate", stages.getInflate(), this::inflate);
+        this.parse = new Stage("parse", stages.getParse(), this::parse);
+    }
+
+    /**
+     * Starts the scan.  Each file that fails is passed to the failed
+     * callback and results in a null in the returned stream.
+     */
+    public Stream<PackageUsage<Jar>> map(final Stream<File> files, final Order order, final BiConsumer<File, Exception> failed) {
+        return map(files, order, failed, WINDOW);
+    }
+
+    Stream<PackageUsage<Jar>> map(final Stream<File> files, final Order order, final BiConsumer<File, Exception> failed, final int window) {
+        final Semaphore listed = new Semaphore(window);
+        final BlockingQueue<Job> toRead = new ArrayBlockingQueue<>(read.threads * QUEUED + 1);
+        final BlockingQueue<Job> toInflate = new ArrayBlockingQueue<>(inflate.threads * QUEUED + 1);
+        final BlockingQueue<Job> toParse = new ArrayBlockingQueue<>(parse.threads * QUEUED + 1);
+        final BlockingQueue<Job> done = new ArrayBlockingQueue<>(window + 1);
+
+        final List<Thread> threads = new ArrayList<>();
+        threads.add(thread("jkta-list", () -> list(files, toRead, listed)));
+        threads.addAll(read.start(toRead, toInflate));
+        threads.addAll(inflate.start(toInflate, toParse));
+        threads.addAll(parse.start(toParse, done));
+
+        final Iterator<Job> jobs = order == Order.completion ? new Completed(done) : new InOrder(done);
+
+        final Iterator<PackageUsage<Jar>> results = new Iterator<PackageUsage<Jar>>() {
+            @Override
+            public boolean hasNext() {
+                return jobs.hasNext();
+            }
+
+            @Override
+            public PackageUsage<Jar> next() {
+                final Job job = jobs.next();
+                listed.release();
+                return job.get(failed);
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED), false)
+                .onClose(() -> threads.forEach(Thread::interrupt));
+    }
+
+    /**
+     * The share of its threads' time each stage spent working, such as
+     * "pipeline read 2 threads 15% busy, inflate 2 threads 60% busy, ..."
+     */
+    public String summary() {
+        return Stream.of(read, inflate, parse)
+                .map(Stage::summary)
+                .collect(Collectors.joining(", ", "pipeline ", ""));
+    }
+
+    private static void list(final Stream<File> files, final BlockingQueue<Job> toRead, final Semaphore listed) {
+        final AtomicInteger index = new AtomicInteger();
+        try {
+            final Iterator<File> iterator = files.iterator();
+            while (true) {
+                listed.acquire();
+                if (!iterator.hasNext()) break;
+                toRead.put(new Job(index.getAndIncrement(), iterator.next()));
+            }
+            toRead.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void read(final Job job) throws IOException, InterruptedException {
+        job.started = System.nanoTime();
+        final long length = job.file.length();
+        if (length > MAX_BUFFER) return;
+
+        final byte[] bytes = pool.acquire((int) length);
+
+        try (InputStream in = new FileInputStream(job.file)) {
+            int read = 0;
+            while (read < length) {
+                final int n = in.read(bytes, read, (int) length - read);
+                if (n == -1) break;
+                read += n;
+            }
+            job.length = read;
+        } catch (IOException | RuntimeException e) {
+            pool.release(bytes);
+            throw e;
+        }
+
+        job.bytes = bytes;
+    }
+
+    private void inflate(final Job job) throws IOException, NoSuchAlgorithmException, InterruptedException {
+        if (job.bytes == null) {
+            job.result = JarUsage.of(job.file, options);
+            return;
+        }
+
+        try {
+            final long start = System.nanoTime();
+            final MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(job.bytes, 0, job.length);
+            job.sha1 = Hex.toString(md.digest());
+            METRICS.record(Phase.hash, System.nanoTime() - start);
+
+            if (Is.Clazz.accept(job.file.getName())) {
+                job.internalDate = job.file.lastModified();
+                copy(new ByteArrayInputStream(job.bytes, 0, job.length), job.length, job);
+            } else {
+                job.internalDate = inflate(new ByteArrayInputStream(job.bytes, 0, job.length), job);
+            }
+            pool.handOff(job.inflated);
+        } catch (IOException | InterruptedException | RuntimeException | Error e) {
+            release(job);
+            throw e;
+        } finally {
+            pool.release(job.bytes);
+            job.bytes = null;
+        }
+    }
+
+    /**
+     * Inflates every class of the archive and those nested in it
+     *
+     * @return the internal date of the archive
+     */
+    private long inflate(final InputStream in, final Job job) throws IOException, InterruptedException {
+        final QuantileSketch entryDates = new QuantileSketch();
+        final ZipInputStream zipInputStream = new ZipInputStream(in);
+
+        ZipEntry entry;
+        while ((entry = zipInputStream.getNextEntry()) != null) {
+            final String path = entry.getName();
+
+            final long time = JarUsage.getTime(entry);
+            if (time != -1) {
+                entryDates.add(time);
+            }
+
+            if (Is.Clazz.accept(path)) {
+                copy(zipInputStream, entry.getSize(), job);
+            } else if (Is.Zip.accept(path)) {
+                inflate(zipInputStream, job);
+            }
+        }
+
+        return JarUsage.internalDate(entryDates);
+    }
+
+    /**
+     * Adds the class to the job, counted against the pool's
+     * limit until it has been parsed
+     */
+    private void copy(final InputStream in, final long size, final Job job) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final byte[] bytes = read(in, size);
+        METRICS.inflated(bytes.length, System.nanoTime() - start);
+
+        pool.reserve(bytes.length);
+        job.inflated += bytes.length;
+        job.classes.add(bytes);
+    }
+
+    /**
+     * Lets go of the job's inflated classes
+     */
+    private void release(final Job job) {
+        pool.handOff(job.inflated);
+        pool.release(job.inflated);
+        job.inflated = 0;
+        job.classes = null;
+    }
+
+    private static byte[] read(final InputStream in, final long size) throws IOException {
+        if (size >= 0 && size <= MAX_BUFFER) {
+            final byte[] bytes = new byte[(int) size];
+            new DataInputStream(in).readFully(bytes);
+            return bytes;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void parse(final Job job) {
+        if (job.result != null) return;
+
+        final PackageUsage<?> usage = new PackageUsage<>();
+        final Set<Integer> versions = new HashSet<>();
+        final int classes = job.classes.size();
+        try {
+            for (final byte[] bytecode : job.classes) {
+                versions.add(ClassScanner.scan(bytecode, usage, options.isFullVisit()));
+            }
+        } finally {
+            pool.release(job.inflated);
+            job.inflated = 0;
+            job.classes = null;
+        }
+
+        final File file = job.file;
+        final Jar jar = new Jar(file, job.sha1, file.lastModified(), job.internalDate, classes, file.length(), JarUsage.versions(versions));
+        job.result = new PackageUsage<>(jar).add(usage);
+
+        METRICS.scanned(file.getPath(), System.nanoTime() - job.started);
+    }
+
+    private static Thread thread(final String name, final Runnable runnable) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private interface Step {
+        void run(Job job) throws Exception;
+    }
+
+    /**
+     * One file on its way through the pipeline
+     */
+    private static class Job {
+        private final int index;
+        private final File file;
+
+        private long started;
+        private byte[] bytes;
+        private int length;
+        private String sha1;
+        private long internalDate;
+        private List<byte[]> classes = new ArrayList<>();
+        private long inflated;
+        private PackageUsage<Jar> result;
+        private Throwable failure;
+
+        Job(final int index, final File file) {
+            this.index = index;
+            this.file = file;
+        }
+
+        PackageUsage<Jar> get(final BiConsumer<File, Exception> failed) {
+            if (failure instanceof Error) throw (Error) failure;
+            if (failure != null) {
+                failed.accept(file, (Exception) failure);
+                return null;
+            }
+            return result;
+        }
+    }
+
+    private static class Stage {
+        private final String name;
+        private final int threads;
+        private final Step step;
+        private final AtomicLong busy = new AtomicLong();
+        private final AtomicInteger running = new AtomicInteger();
+        private volatile long started;
+        private volatile long finished;
+
+        Stage(final String name, final int threads, final Step step) {
+            this.name = name;
+            this.threads = threads;
+            this.step = step;
+        }
+
+        List<Thread> start(final BlockingQueue<Job> in, final BlockingQueue<Job> out) {
+            started = System.nanoTime();
+            running.set(threads);
+
+            final List<Thread> list = new ArrayList<>();
+            for (int i = 1; i <= threads; i++) {
+                list.add(thread("jkta-" + name + "-" + i, () -> work(in, out)));
+            }
+            return list;
+        }
+
+        private void work(final BlockingQueue<Job> in, final BlockingQueue<Job> out) {
+            try {
+                while (true) {
+                    final Job job = in.take();
+
+                    if (job == END) {
+                        // leave it for the other threads of this stage
+                        in.put(END);
+                        if (running.decrementAndGet() == 0) {
+                            finished = System.nanoTime();
+                            out.put(END);
+                        }
+                        return;
+                    }
+
+                    final long start = System.nanoTime();
+                    if (job.failure == null) {
+                        try {
+                            step.run(job);
+                        } catch (Exception | Error e) {
+                            job.failure = e;
+                        }
+                    }
+                    busy.addAndGet(System.nanoTime() - start);
+
+                    out.put(job);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        String summary() {
+            final long end = finished != 0 ? finished : System.nanoTime();
+            final long available = Math.max(1, (end - started) * threads);
+            final long percent = Math.round(busy.get() * 100.0 / available);
+            return String.format("%s %s threads %s%% busy", name, threads, percent);
+        }
+    }
+
+    private abstract static class Jobs implements Iterator<Job> {
+        private final BlockingQueue<Job> done;
+        private boolean ended;
+
+        Jobs(final BlockingQueue<Job> done) {
+            this.done = done;
+        }
+
+        Job take() {
+            if (ended) return null;
+            try {
+                final Job job = done.take();
+                if (job != END) return job;
+                ended = true;
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for scan results", e);
+            }
+        }
+    }
+
+    private static class Completed extends Jobs {
+        private Job next;
+
+        Completed(final BlockingQueue<Job> done) {
+            super(done);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) next = take();
+            return next != null;
+        }
+
+        @Override
+        public Job next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            final Job job = next;
+            next = null;
+            return job;
+        }
+    }
+
+    private static class InOrder extends Jobs {
+        private final Map<Integer, Job> pending = new HashMap<>();
+        private int index;
+
+        InOrder(final BlockingQueue<Job> done) {
+            super(done);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!pending.containsKey(index)) {
+                final Job job = take();
+                if (job == null) return false;
+                pending.put(job.index, job);
+            }
+            return true;
+        }
+
+        @Override
+        public Job next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return pending.remove(index++);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import lombok.Builder;
+import lombok.Data;
+import org.tomitribe.crest.api.Default;
+import org.tomitribe.crest.api.Option;
+import org.tomitribe.crest.api.Options;
+import org.tomitribe.util.Duration;
+import org.tomitribe.util.Size;
+import org.tomitribe.util.SizeUnit;
+
+import java.io.File;
+import java.util.regex.Pattern;
+
+/**
+ * The options shared by the commands that scan jars, such as
+ * `usage dir` and `usage jars`.
+ *
+ * Built by crest from the command line.  Code calling the commands
+ * directly uses the builder and only sets what it needs, anything left
+ * unset gets the same value as the command line default.
+ */
+@Data
+@Options
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class ScanSettings {
+
+    private final Format format;
+    private final Pattern include;
+    private final Pattern exclude;
+    private final Dir repository;
+
+    /**
+     * The number of jars to scan concurrently.  The largest jars
+     * are scheduled first when more than one thread is used
+     */
+    private final int threads;
+
+    /**
+     * Whether results are written in the order the jars were listed
+     * or in the order they finished scanning
+     */
+    private final Order order;
+
+    /**
+     * Always visit every class with ASM rather than skipping classes
+     * whose constant pool has no references to the affected packages
+     */
+    private final boolean fullVisit;
+
+    /**
+     * Stream reads every entry of each jar, directory uses the central
+     * directory to inflate only classes and nested archives
+     */
+    private final ArchiveReader reader;
+
+    /**
+     * Keep the results of each scanned jar in this directory and reuse
+     * them for jars that have not changed since the last scan
+     */
+    private final File cacheDir;
+
+    /**
+     * Hash each jar first and scan each distinct content only once.
+     * Every path still gets its own row
+     */
+    private final boolean dedupe;
+
+    /**
+     * Read, hash and inflate, and parse jars on separate threads, given
+     * as the number of threads for each such as 2,2,4.  The time each
+     * stage spent working is noted in the footer.  Not used together
+     * with cache-dir or dedupe
+     */
+    private final Stages pipeline;
+
+    /**
+     * Memory the pipeline may use to hold files read ahead
+     */
+    private final Size readAhead;
+
+    /**
+     * Print the jars scanned, throughput and an ETA to STDERR at this
+     * interval such as "10 seconds"
+     */
+    private final Duration progress;
+
+    /**
+     * Only scan the jars of this shard, given as i/N with i from 0 to N-1.
+     * Jars are split by a hash of their path in the repository, so N
+     * processes given the same list each scan a different part of it.
+     * Join their results with `usage merge`
+     */
+    private final Shard shard;
+
+    /**
+     * Record JDK Flight Recorder events, including the jar scan, class parse
+     * and TSV write events of jkta, and write them to this file when done
+     */
+    private final File jfr;
+
+    //CHECKSTYLE:OFF
+    public ScanSettings(@Option("format") @Default("tsv") final Format format,
+                        @Option("include") final Pattern include,
+                        @Option("exclude") final Pattern exclude,
+                        @Option("repository") @Default("${user.dir}") final Dir repository,
+                        @Option("threads") @Default("1") final int threads,
+                        @Option("order") @Default("input") final Order order,
+                        @Option("full-visit") final boolean fullVisit,
+                        @Option("reader") @Default("stream") final ArchiveReader reader,
+                        @Option("cache-dir") final File cacheDir,
+                        @Option("dedupe") final boolean dedupe,
+                        @Option("pipeline") final Stages pipeline,
+                        @Option("read-ahead") @Default("256mb") final Size readAhead,
+                        @Option("progress") final Duration progress,
+                        @Option("shard") final Shard shard,
+                        @Option("jfr") final File jfr) {
+        this.format = format != null ? format : Format.tsv;
+        this.include = include;
+        this.exclude = exclude;
+        this.repository = repository != null ? repository : Dir.from(System.getProperty("user.dir"));
+        this.threads = Math.max(1, threads);
+        this.order = order != null ? order : Order.input;
+        this.fullVisit = fullVisit;
+        this.reader = reader != null ? reader : ArchiveReader.stream;
+        this.cacheDir = cacheDir;
+        this.dedupe = dedupe;
+        this.pipeline = pipeline;
+        this.readAhead = readAhead;
+        this.progress = progress;
+        this.shard = shard;
+        this.jfr = jfr;
+    }
+    //CHECKSTYLE:ON
+
+    /**
+     * @return the settings that change how each jar is scanned
+     */
+    public ScanOptions toScanOptions() {
+        return ScanOptions.builder()
+                .fullVisit(fullVisit)
+                .reader(reader)
+                .cacheDir(cacheDir)
+                .dedupe(dedupe)
+                .pipeline(pipeline)
+                .readAhead(readAhead != null ? readAhead.getSize(SizeUnit.BYTES) : 0)
+                .build();
+    }
+}
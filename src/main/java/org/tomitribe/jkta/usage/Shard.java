@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.util.hash.XxHash64;
+
+import java.io.File;
+import java.util.function.Predicate;
+
+/**
+ * One of N shards of the jars to scan, written i/N with i counted from
+ * zero.  Each jar belongs to the shard picked by a hash of its path
+ * relative to the repository, so every process or machine given the
+ * same list and repository layout agrees on the split without sharing
+ * anything, and every jar lands in exactly one shard.
+ */
+public class Shard {
+
+    private final int index;
+    private final int count;
+
+    public Shard(final int index, final int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException(String.format("Invalid shard %s/%s, expected 0 <= i < N", index, count));
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    public Shard(final String shard) {
+        this(part(shard, 0), part(shard, 1));
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param path the path relative to the repository, with either separator
+     */
+    public boolean accept(final String path) {
+        return of(path, count) == index;
+    }
+
+    /**
+     * Accepts the files of this shard
+     */
+    public Predicate<File> filter(final File repository) {
+        return file -> accept(ScanTsv.childPath(repository, file));
+    }
+
+    /**
+     * @return the shard the path belongs to out of count
+     */
+    public static int of(final String path, final int count) {
+        final long hash = XxHash64.hash(path.replace('\\', '/'));
+        return (int) Long.remainderUnsigned(hash, count);
+    }
+
+    private static int part(final String shard, final int part) {
+        final String[] parts = shard.split("/");
+        if (parts.length != 2) throw new IllegalArgumentException("Shards must be given as i/N: " + shard);
+        try {
+            return Integer.parseInt(parts[part].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Shards must be given as i/N: " + shard, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
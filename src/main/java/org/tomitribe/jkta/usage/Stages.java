@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import lombok.Data;
+
+/**
+ * The number of threads for each stage of a {@link ScanPipeline}.  Given
+ * on the command line as read,inflate,parse such as "2,2,4".
+ */
+@Data
+public class Stages {
+
+    /**
+     * Threads loading whole files into memory
+     */
+    private final int read;
+
+    /**
+     * Threads hashing each file and inflating its classes
+     */
+    private final int inflate;
+
+    /**
+     * Threads visiting the classes with ASM
+     */
+    private final int parse;
+
+    public Stages(final int read, final int inflate, final int parse) {
+        if (read < 1 || inflate < 1 || parse < 1) {
+            throw new IllegalArgumentException("Each stage needs at least one thread: " + read + "," + inflate + "," + parse);
+        }
+        this.read = read;
+        this.inflate = inflate;
+        this.parse = parse;
+    }
+
+    public Stages(final String value) {
+        this(parse(value));
+    }
+
+    private Stages(final int[] threads) {
+        this(threads[0], threads[1], threads[2]);
+    }
+
+    private static int[] parse(final String value) {
+        final String[] parts = value.split(",");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Expected read,inflate,parse thread counts such as 2,2,4: " + value);
+        }
+
+        final int[] threads = new int[3];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                threads[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected read,inflate,parse thread counts such as 2,2,4: " + value, e);
+            }
+        }
+        return threads;
+    }
+
+    @Override
+    public String toString() {
+        return read + "," + inflate + "," + parse;
+    }
+}
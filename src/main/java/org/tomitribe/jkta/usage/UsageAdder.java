@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+/**
+ * Totals many PackageUsage instances from any number of threads.
+ *
+ * Like a {@link java.util.concurrent.atomic.LongAdder} the counters are
+ * spread over several cells.  Each thread adds to the cell picked by its
+ * id, so threads seldom share a cell and never retry.  Each cell is a row
+ * of plain long counters: scanned, affected, size, classes, javax, jakarta
+ * and then one per package.  Nothing is allocated per add and the cells
+ * are only summed when a total is asked for, such as when the footer of
+ * a report is written.
+ */
+public class UsageAdder {
+
+    private static final int SCANNED = 0;
+    private static final int AFFECTED = 1;
+    private static final int SIZE = 2;
+    private static final int CLASSES = 3;
+    private static final int JAVAX = 4;
+    private static final int JAKARTA = 5;
+    private static final int PACKAGES = 6;
+
+    private static final int WIDTH = PACKAGES + Package.values().length;
+
+    private final long[][] cells;
+    private final int mask;
+
+    public UsageAdder() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public UsageAdder(final int threads) {
+        // A power of two of at least twice the threads
+        int size = 1;
+        while (size < threads * 2) {
+            size <<= 1;
+        }
+
+        this.cells = new long[size][WIDTH];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds the counts of a usage that has no size or classes, such as a class
+     */
+    public void add(final PackageUsage<?> usage) {
+        add(usage, 0, 0);
+    }
+
+    /**
+     * Adds the counts, size and classes of a jar.  A size or classes of -1
+     * means unknown and is not added.
+     */
+    public void addJar(final PackageUsage<Jar> usage) {
+        final Jar jar = usage.getContext();
+        add(usage, jar.getSize(), jar.getClasses());
+    }
+
+    private void add(final PackageUsage<?> usage, final long size, final long classes) {
+        final long[] cell = cells[(int) Thread.currentThread().getId() & mask];
+        final int[] packages = usage.getPackages();
+
+        synchronized (cell) {
+            cell[SCANNED]++;
+            if (usage.getJavax() > 0) cell[AFFECTED]++;
+            if (size > 0) cell[SIZE] += size;
+            if (classes > 0) cell[CLASSES] += classes;
+            cell[JAVAX] += usage.getJavax();
+            cell[JAKARTA] += usage.getJakarta();
+            for (int i = 0; i < packages.length; i++) {
+                cell[PACKAGES + i] += packages[i];
+            }
+        }
+    }
+
+    public long getScanned() {
+        return sum(SCANNED);
+    }
+
+    public long getAffected() {
+        return sum(AFFECTED);
+    }
+
+    public long getSize() {
+        return sum(SIZE);
+    }
+
+    public long getClasses() {
+        return sum(CLASSES);
+    }
+
+    /**
+     * @return the javax, jakarta and package totals
+     */
+    public <Context> PackageUsage<Context> getTotal() {
+        final long[] total = new long[WIDTH];
+        for (final long[] cell : cells) {
+            synchronized (cell) {
+                for (int i = 0; i < WIDTH; i++) {
+                    total[i] += cell[i];
+                }
+            }
+        }
+
+        final int[] packages = new int[Package.values().length];
+        for (int i = 0; i < packages.length; i++) {
+            packages[i] = (int) total[PACKAGES + i];
+        }
+        return new PackageUsage<>(null, (int) total[JAVAX], (int) total[JAKARTA], packages);
+    }
+
+    private long sum(final int column) {
+        long sum = 0;
+        for (final long[] cell : cells) {
+            synchronized (cell) {
+                sum += cell[column];
+            }
+        }
+        return sum;
+    }
+}
@@ -24,127 +24,185 @@ import org.tomitribe.crest.api.Out;
 import org.tomitribe.crest.api.PrintOutput;
 import org.tomitribe.crest.val.Exists;
 import org.tomitribe.crest.val.Readable;
+import org.tomitribe.jkta.jfr.Jfr;
+import org.tomitribe.jkta.usage.aggregate.Aggregator;
+import org.tomitribe.jkta.usage.aggregate.By;
+import org.tomitribe.jkta.usage.cache.ScanCache;
+import org.tomitribe.jkta.usage.columnar.Column;
+import org.tomitribe.jkta.usage.columnar.Columnar;
+import org.tomitribe.jkta.usage.columnar.ColumnarReader;
+import org.tomitribe.jkta.usage.merge.Diff;
+import org.tomitribe.jkta.usage.merge.Key;
+import org.tomitribe.jkta.usage.merge.SortedInputs;
+import org.tomitribe.jkta.usage.metrics.Progress;
+import org.tomitribe.jkta.usage.metrics.ScanMetrics;
+import org.tomitribe.jkta.usage.query.Sort;
+import org.tomitribe.jkta.usage.query.Where;
+import org.tomitribe.jkta.usage.tsv.JarTsv7;
+import org.tomitribe.jkta.usage.tsv.Rows;
 import org.tomitribe.jkta.usage.tsv.ScanTsv;
 import org.tomitribe.jkta.util.Predicates;
+import org.tomitribe.util.Duration;
 import org.tomitribe.util.Join;
 import org.tomitribe.util.PrintString;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Command("usage")
 public class UsageCommand {
 
+    private static final ScanMetrics METRICS = ScanMetrics.get();
+
+    private static final Set<Format> SCAN_FORMATS = EnumSet.of(Format.tsv, Format.columnar, Format.plain);
+
     @Command
-    public PrintOutput jar(@Exists @Readable final File jar) throws IOException, NoSuchAlgorithmException {
+    public PrintOutput jar(@Option("full-visit") final boolean fullVisit,
+                           @Option("jfr") final File jfr,
+                           @Exists @Readable final File jar) throws IOException, NoSuchAlgorithmException {
+        final ScanOptions options = ScanOptions.builder().fullVisit(fullVisit).build();
 
         return out -> {
-            { // print the TSV header
-                final ArrayList<String> columns = new ArrayList<>();
-                columns.add("class name");
-                columns.add("java version");
-                columns.add("javax uses total");
-                columns.add("jakarta uses total");
-                Stream.of(Package.values())
-                        .map(Package::getName)
-                        .forEach(columns::add);
-
-                out.println(Join.join("\t", columns));
+            try (Closeable recording = Jfr.record(jfr)) {
+                { // print the TSV header
+                    final ArrayList<String> columns = new ArrayList<>();
+                    columns.add("class name");
+                    columns.add("java version");
+                    columns.add("javax uses total");
+                    columns.add("jakarta uses total");
+                    Stream.of(Package.values())
+                            .map(Package::getName)
+                            .forEach(columns::add);
+
+                    out.println(Join.join("\t", columns));
+                }
+
+                final UsageAdder total = new UsageAdder();
+                ClassUsage.forEachClass(jar, options, usage -> {
+                    total.add(usage);
+                    final ClassUsage.Clazz clazz = usage.getContext();
+                    out.printf("%s\t%s\t%s\n", clazz.getName(), clazz.getVersion(), usage.toTsv());
+                });
+
+                out.printf("%s\t%s\t%s\n", JarUsage.summary((int) total.getScanned(), (int) total.getAffected()), "-", total.getTotal().toTsv());
             }
-
-            final AtomicInteger scanned = new AtomicInteger();
-            final AtomicInteger affected = new AtomicInteger();
-
-            final AtomicReference<PackageUsage<ClassUsage.Clazz>> total = new AtomicReference<>(new PackageUsage<>());
-            ClassUsage.forEachClass(jar, usage -> {
-                total.accumulateAndGet(usage, PackageUsage::add);
-                scanned.incrementAndGet();
-                if (usage.getJavax() > 0) affected.incrementAndGet();
-                final ClassUsage.Clazz clazz = usage.getContext();
-                out.printf("%s\t%s\t%s\n", clazz.getName(), clazz.getVersion(), usage.toTsv());
-            });
-
-            out.printf("%s\t%s\t%s\n", JarUsage.summary(scanned.get(), affected.get()), "-", total.get().toTsv());
         };
     }
 
     @Command
-    public PrintOutput dir(@Option("format") @Default("tsv") final Format format,
-                           @Option("include") final Pattern include,
-                           @Option("exclude") final Pattern exclude,
-                           @Option("repository") @Default("${user.dir}") Dir repository,
-                           final Dir dir) {
-        final Stream<File> fileStream = dir.searchScannables();
-
-        return scanFiles(format, include, exclude, repository, fileStream);
+    public PrintOutput dir(final ScanSettings settings, final Dir dir) {
+        final Shard shard = settings.getShard();
+        final Stream<File> fileStream = shard == null
+                ? dir.searchScannables()
+                : dir.searchScannables().filter(shard.filter(settings.getRepository().dir()));
+
+        return scanFiles(settings, fileStream);
     }
 
-    private PrintOutput scanFiles(final Format format, final Pattern include, final Pattern exclude, final Dir repository, final Stream<File> fileStream) {
-        final Predicate<File> fileFilter = Predicates.fileFilter(include, exclude);
-        final Stream<PackageUsage<Jar>> usageStream = fileStream
-                .filter(fileFilter)
-                .map(this::jarUsage)
-                .filter(Objects::nonNull);
+    private PrintOutput scanFiles(final ScanSettings settings, final Stream<File> fileStream) {
+        final Format format = settings.getFormat();
+        if (!SCAN_FORMATS.contains(format)) {
+            return printStream -> printStream.println("Unsupported format: " + format);
+        }
 
+        final Predicate<File> fileFilter = Predicates.fileFilter(settings.getInclude(), settings.getExclude());
+        final Stream<File> files = fileStream.filter(fileFilter)
+                .peek(file -> METRICS.listed());
+        final ScanOptions options = settings.toScanOptions();
+        final File repository = settings.getRepository().dir();
 
+        return out -> {
+            try (Closeable recording = Jfr.record(settings.getJfr());
+                 ScanCache cache = ScanCache.open(options.getCacheDir());
+                 Progress ignored = progress(settings.getProgress())) {
+                final long estimated = METRICS.getEstimatedDates();
+                final Dedupe dedupe = options.isDedupe() ? new Dedupe() : null;
+                final ScanPipeline pipeline = pipeline(options, cache, dedupe);
+                final Stream<PackageUsage<Jar>> usageStream = scan(files, settings.getThreads(), settings.getOrder(), options, cache, dedupe, pipeline);
+                write(format, out, usageStream, repository, () -> notes(METRICS.getEstimatedDates() > estimated, cache, dedupe, pipeline));
+            }
+        };
+    }
+
+    private void write(final Format format, final PrintStream out, final Stream<PackageUsage<Jar>> usageStream, final File repository,
+                       final Supplier<String> notes) {
         switch (format) {
             case tsv:
-                return out -> ScanTsv.toJarTsv(out, usageStream, repository.dir());
-            case plain:
-                return out -> {
-                    final PackageUsage<Jar> total = usageStream
-                            .reduce(PackageUsage::add)
-                            .orElse(null);
-                    if (total == null) {
-                        out.println("No jars found");
-                    } else {
-                        out.println(toPlain(total));
-                    }
-                };
-            default: { /* ignored */}
+                ScanTsv.toJarTsv(out, usageStream, repository, notes);
+                return;
+            case columnar:
+                Columnar.write(out, usageStream, repository);
+                return;
+            case plain: {
+                final PackageUsage<Jar> total = usageStream
+                        .reduce(PackageUsage::add)
+                        .orElse(null);
+                if (total == null) {
+                    out.println("No jars found");
+                } else {
+                    out.println(toPlain(total));
+                }
+                final String footer = notes.get();
+                if (footer != null) out.println(footer);
+                return;
+            }
+            default:
+                throw new IllegalStateException("Unsupported format: " + format);
         }
-
-        return printStream -> printStream.println("Unsupported format: " + format);
     }
 
     /**
      * Read a list of jars from STDIN and scan each one for usages of the affected
      * javax and jakarta namespaces.
      *
-     * @param format
-     * @param include
-     * @param exclude
-     * @param repository
+     * @param settings the options of the scan, see {@link ScanSettings}
      * @param stdin
      */
     @Command
-    public PrintOutput jars(@Option("format") @Default("tsv") final Format format,
-                            @Option("include") final Pattern include,
-                            @Option("exclude") final Pattern exclude,
-                            @Option("repository") @Default("${user.dir}") Dir repository,
-                            @In InputStream stdin
-    ) {
+    public PrintOutput jars(final ScanSettings settings, @In InputStream stdin) {
+        final Shard shard = settings.getShard();
+        final Predicate<File> filter = shard == null ? file -> true : shard.filter(settings.getRepository().dir());
+        return jars(settings, filter, stdin);
+    }
+
+    /**
+     * Same as the jars command, only scanning the listed files the filter accepts
+     */
+    public PrintOutput jars(final ScanSettings settings, final Predicate<File> filter, final InputStream stdin) {
+        final Dir repository = settings.getRepository();
         final Stream<File> fileStream = lines(stdin)
                 .map(repository::file)
                 .filter(File::isFile)
-                .filter(new Is.Scannable()::accept);
+                .filter(new Is.Scannable()::accept)
+                .filter(filter);
 
-        return scanFiles(format, include, exclude, repository, fileStream);
+        return scanFiles(settings, fileStream);
     }
 
     //    public static void main(String[] args) {
@@ -162,16 +220,87 @@ public class UsageCommand {
         return bufferedReader.lines();
     }
 
-    private PackageUsage<Jar> jarUsage(final File file) {
+    private Stream<PackageUsage<Jar>> scan(final Stream<File> files, final int threads, final Order order, final ScanOptions options,
+                                           final ScanCache cache, final Dedupe dedupe, final ScanPipeline pipeline) {
+        if (pipeline != null) {
+            return pipeline.map(files, order, UsageCommand::skip)
+                    .filter(Objects::nonNull)
+                    .peek(UsageCommand::produced);
+        }
+
+        return ParallelScan.map(files, file -> jarUsage(file, options, cache, dedupe), threads, order)
+                .filter(Objects::nonNull)
+                .peek(UsageCommand::produced);
+    }
+
+    private static void produced(final PackageUsage<Jar> usage) {
+        METRICS.jar(usage.getContext().getSize());
+    }
+
+    /**
+     * @return a progress line printed to STDERR at the interval or null for none
+     */
+    private static Progress progress(final Duration interval) {
+        if (interval == null) return null;
+        final long millis = Math.max(1, interval.getTime(TimeUnit.MILLISECONDS));
+        return new Progress(METRICS, System.err, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The cache and dedupe both decide per file whether to scan it at all,
+     * so they keep scanning each jar start to finish on one thread
+     */
+    private static ScanPipeline pipeline(final ScanOptions options, final ScanCache cache, final Dedupe dedupe) {
+        if (options.getPipeline() == null || cache != null || dedupe != null) return null;
+        return new ScanPipeline(options.getPipeline(), options);
+    }
+
+    private PackageUsage<Jar> jarUsage(final File file, final ScanOptions options, final ScanCache cache, final Dedupe dedupe) {
+        if (dedupe == null) return jarUsage(file, options, cache);
+
+        try {
+            return dedupe.scan(file, f -> jarUsage(f, options, cache));
+        } catch (Exception e) {
+            return skip(file, e);
+        }
+    }
+
+    private PackageUsage<Jar> jarUsage(final File file, final ScanOptions options, final ScanCache cache) {
         try {
-            return JarUsage.of(file);
+            if (cache != null) return cache.scan(file, options);
+            return JarUsage.of(file, options);
         } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Skipping jar: " + ScanTsv.childPath(new File(""), file) + " : " + e.getMessage());
-            return null;
+            return skip(file, e);
         }
     }
 
+    private PackageUsage<Jar> jarUsage(final MappedJar jar, final ScanOptions options, final ScanCache cache) {
+        try {
+            if (cache != null) return cache.scan(jar, options);
+            return JarUsage.of(jar, options);
+        } catch (Exception e) {
+            return skip(jar.getFile(), e);
+        }
+    }
+
+    private static PackageUsage<Jar> skip(final File file, final Exception e) {
+        e.printStackTrace();
+        System.err.println("Skipping jar: " + ScanTsv.childPath(new File(""), file) + " : " + e.getMessage());
+        return null;
+    }
+
+    /**
+     * @param estimated whether any internal date of this scan was estimated
+     */
+    private static String notes(final boolean estimated, final ScanCache cache, final Dedupe dedupe, final ScanPipeline pipeline) {
+        final List<String> notes = new ArrayList<>();
+        if (estimated) notes.add(JarUsage.INTERNAL_DATE);
+        if (cache != null) notes.add(cache.summary());
+        if (dedupe != null) notes.add(dedupe.summary());
+        if (pipeline != null) notes.add(pipeline.summary());
+        return notes.isEmpty() ? null : Join.join(", ", notes);
+    }
+
     private String toPlain(final PackageUsage<Jar> usage) {
         final Jar jar = usage.getContext();
         final PrintString out = new PrintString();
@@ -187,6 +316,181 @@ public class UsageCommand {
         return out.toString();
     }
 
+    /**
+     * Converts jar usage results between the TSV and columnar formats.  The
+     * format of the input is detected.
+     *
+     * @param to the format to write, tsv or columnar
+     * @param threads number of threads used to parse TSV input
+     * @param input read this file rather than STDIN
+     * @param in
+     */
+    @Command
+    public PrintOutput convert(@Option("to") @Default("columnar") final Format to,
+                               @Option("threads") @Default("1") final int threads,
+                               @Option("input") final File input,
+                               @In final InputStream in) {
+        if (to != Format.tsv && to != Format.columnar) {
+            return printStream -> printStream.println("Unsupported format: " + to);
+        }
+
+        return out -> {
+            try (Stream<PackageUsage<Jar>> usages = Columnar.read(input, in, threads, ColumnarReader::read)) {
+                if (to == Format.columnar) {
+                    Columnar.write(out, usages, new File(""));
+                } else {
+                    ScanTsv.toJarTsv(out, usages, new File(""));
+                }
+            }
+        };
+    }
+
+    /**
+     * Prints the heading and totals of jar usage results in the TSV or
+     * columnar format.  Columnar input only reads the count, size and
+     * class columns.
+     *
+     * @param threads number of threads used to parse TSV input
+     * @param input read this file rather than STDIN
+     * @param in
+     */
+    @Command
+    public PrintOutput summary(@Option("threads") @Default("1") final int threads,
+                               @Option("input") final File input,
+                               @In final InputStream in) {
+        final EnumSet<Column> columns = EnumSet.of(Column.SIZE, Column.CLASSES, Column.JAVAX, Column.JAKARTA);
+
+        return out -> {
+            final JarTsv7 formatter = new JarTsv7();
+            try (Stream<PackageUsage<Jar>> usages = Columnar.read(input, in, threads, reader -> reader.read(columns, EnumSet.allOf(Package.class)))) {
+                usages.forEach(formatter::add);
+            }
+            out.println(formatter.heading());
+            out.println(formatter.summary());
+        };
+    }
+
+    /**
+     * Joins jar usage results, such as those of each --shard of a scan, into one
+     * TSV.  The footer is totaled again from the rows so it matches a scan of all
+     * the jars in one process.
+     *
+     *     jkta usage merge scan-0.tsv.gz scan-1.tsv.gz scan-2.tsv.gz &gt; scan.tsv
+     *
+     * With --by the rows are sort merged by SHA-1 or path.  By SHA-1 each jar is
+     * kept once, whatever its path.  By path only rows with the same path and the
+     * same SHA-1, the same jar listed twice, are dropped, while the same jar at two
+     * paths is kept at each.  Inputs already in order, such as an earlier merge, are
+     * merged straight from the file.  Any other input is sorted holding at most
+     * --max-rows rows in memory, so inputs far larger than the heap can be merged.
+     *
+     *     jkta usage merge --by=sha1 scan-2020-10.tsv.gz scan-2020-11.tsv.gz &gt; all.tsv
+     *
+     * @param by sha1 or path to sort merge the rows and drop duplicates, or none to
+     *           write the rows of each input in turn
+     * @param threads number of threads used to parse each input
+     * @param maxRows the number of rows held in memory before they are sorted and
+     *                spilled to a temporary file
+     * @param inputs TSV or columnar files, each of which may be gzipped
+     */
+    @Command
+    public PrintOutput merge(@Option("by") final Key by,
+                             @Option("threads") @Default("1") final int threads,
+                             @Option("max-rows") @Default("100000") final int maxRows,
+                             final File... inputs) {
+        if (by != null) {
+            return out -> {
+                try (SortedInputs sorted = new SortedInputs(by, threads, maxRows)) {
+                    final Iterator<PackageUsage<Jar>> rows = sorted.read(Arrays.asList(inputs));
+                    ScanTsv.toJarTsv(out, stream(rows), new File(""), sorted::summary);
+                }
+            };
+        }
+
+        return out -> {
+            final Stream<PackageUsage<Jar>> usages = Stream.of(inputs)
+                    .flatMap(input -> read(input, threads));
+
+            ScanTsv.toJarTsv(out, usages, new File(""), () -> "merged from " + inputs.length + " files");
+        };
+    }
+
+    /**
+     * Compares two jar usage results, such as the scans of two months, and writes
+     * a row for each jar added, removed or changed with the new package counts less
+     * the old ones.  A jar that moved from javax to jakarta has negative javax and
+     * positive jakarta counts.  The last row totals the changes.
+     *
+     *     jkta usage diff scan-2020-10.tsv.gz scan-2020-11.tsv.gz
+     *
+     * Both inputs are sorted and compared as they are read, see merge --by.  By
+     * path there may be several jars at one path, each compared with the jar of
+     * the same SHA-1 at that path.
+     *
+     * @param by compare rows with the same sha1 or the same path
+     * @param threads number of threads used to parse each input
+     * @param maxRows the number of rows of each input held in memory before they
+     *                are sorted and spilled to a temporary file
+     * @param before the older TSV or columnar file
+     * @param after the newer TSV or columnar file
+     */
+    @Command
+    public PrintOutput diff(@Option("by") @Default("sha1") final Key by,
+                            @Option("threads") @Default("1") final int threads,
+                            @Option("max-rows") @Default("100000") final int maxRows,
+                            @Exists @Readable final File before,
+                            @Exists @Readable final File after) {
+        return out -> {
+            try (SortedInputs old = new SortedInputs(by, threads, maxRows);
+                 SortedInputs now = new SortedInputs(by, threads, maxRows)) {
+                new Diff(by).write(out, old.read(Collections.singletonList(before)), now.read(Collections.singletonList(after)));
+            }
+        };
+    }
+
+    private static Stream<PackageUsage<Jar>> stream(final Iterator<PackageUsage<Jar>> rows) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED), false);
+    }
+
+    private static Stream<PackageUsage<Jar>> read(final File input, final int threads) {
+        try {
+            return Columnar.read(input, null, threads, ColumnarReader::read);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Totals jar usage results in the TSV or columnar format per groupId, artifact,
+     * version or Java version.  The Maven coordinates come from the Path column, so
+     * the scan should have been run with the Maven repository as --repository.
+     *
+     *     cat uses.tsv | jkta usage aggregate --by=artifactId --threads=8
+     *
+     * @param by groupId, artifactId (groupId:artifactId), version (groupId:artifactId:version)
+     *           or javaVersion (the highest class file version in each jar)
+     * @param threads number of threads used to parse and total the input
+     * @param maxKeys the number of keys held in memory before the totals are sorted and
+     *                spilled to a temporary file
+     * @param input read this file rather than STDIN
+     * @param in
+     */
+    @Command
+    public PrintOutput aggregate(@Option("by") @Default("groupId") final By by,
+                                 @Option("threads") @Default("1") final int threads,
+                                 @Option("max-keys") @Default("100000") final int maxKeys,
+                                 @Option("input") final File input,
+                                 @In final InputStream in) {
+        final EnumSet<Column> columns = EnumSet.of(Column.SIZE, Column.CLASSES, Column.JAVAX, Column.JAKARTA, by.getColumn());
+
+        return out -> {
+            try (Aggregator aggregator = new Aggregator(by, maxKeys)) {
+                Columnar.forEachChunk(input, in, threads, columns, aggregator);
+                aggregator.write(out);
+            }
+        };
+    }
+
     //CHECKSTYLE:OFF
 
     /**
@@ -208,6 +512,20 @@ public class UsageCommand {
      *
      *     cat uses.tsv | jkta usage grep --javax-ejb="[1-9][0-9][0-9].*"
      *
+     * Ranges are easier to write as a --where expression, which is parsed once and
+     * compares the counts as numbers:
+     *
+     *     cat uses.tsv | jkta usage grep --where="javax.ejb>=100 && (javax.ws.rs>0 || jakarta.servlet==0)"
+     *
+     * The ten records with the most EJB uses:
+     *
+     *     cat uses.tsv | jkta usage grep --where="javax.ejb>0" --sort=javax.ejb --limit=10
+     *
+     * Gzipped input is read as is.  A block gzipped scan with its .idx file next to it
+     * is inflated on all the --threads, and a range of rows reads only the blocks holding them:
+     *
+     *     jkta usage grep --input=scan.tsv.gz --rows=100000-200000 --threads=4 --where="javax.ejb>0"
+     *
      * @param in
      * @param javax
      * @param jakarta
@@ -278,6 +596,18 @@ public class UsageCommand {
      * @param jakartaXmlSoap
      * @param jakartaXmlWs
      * @param mode
+     * @param threads number of threads used to parse the input
+     * @param input read this TSV or columnar file rather than STDIN.  Columnar
+     *              files are mapped and only the columns being matched are
+     *              read until a row matches
+     * @param where only keep records matching this expression of package counts
+     *              compared with ==, !=, &gt;, &gt;=, &lt; or &lt;= and combined with &amp;&amp;, || and !
+     * @param sort order the records by this package count, javax or jakarta, largest
+     *             first unless followed by :asc
+     * @param limit write at most this many records.  With --sort only this many
+     *              records are held in memory
+     * @param rows only read these rows of a TSV, given as from-to counting from zero
+     *             with to excluded, or as from- for the rest of the file
      */
     @Command
     @SuppressWarnings("checkstyle:ParameterNumber")
@@ -351,10 +681,16 @@ public class UsageCommand {
                      @Option("jakarta-xml-bind") final Pattern jakartaXmlBind,
                      @Option("jakarta-xml-soap") final Pattern jakartaXmlSoap,
                      @Option("jakarta-xml-ws") final Pattern jakartaXmlWs,
-                     @Option("mode") @Default("AND") final Mode mode
-    ) {
-
-        final Predicate<PackageUsage<?>> usagePredicate = new GrepBuilder(mode)
+                     @Option("mode") @Default("AND") final Mode mode,
+                     @Option("threads") @Default("1") final int threads,
+                     @Option("input") final File input,
+                     @Option("where") final String where,
+                     @Option("sort") final String sort,
+                     @Option("limit") @Default("0") final int limit,
+                     @Option("rows") final Rows rows
+    ) throws IOException {
+
+        final GrepBuilder grep = new GrepBuilder(mode)
                 .with(javaxActivation, Package.JAVAX_ACTIVATION)
                 .with(javaxAnnotation, Package.JAVAX_ANNOTATION)
                 .with(javaxBatch, Package.JAVAX_BATCH)
@@ -422,13 +758,33 @@ public class UsageCommand {
                 .with(jakartaXmlSoap, Package.JAKARTA_XML_SOAP)
                 .with(jakartaXmlWs, Package.JAKARTA_XML_WS)
                 .with(javax, PackageUsage::getJavax)
-                .with(jakarta, PackageUsage::getJavax)
-                .build();
+                .with(jakarta, PackageUsage::getJavax);
+
+        final Set<Package> packages = EnumSet.noneOf(Package.class);
+        packages.addAll(grep.getPackages());
 
-        final Stream<PackageUsage<Jar>> matching = ScanTsv.fromJarTsv(in)
-                .filter(usagePredicate);
+        Predicate<PackageUsage<?>> usagePredicate = grep.build();
+        if (where != null) {
+            final Where expression = Where.parse(where);
+            packages.addAll(expression.getPackages());
+            usagePredicate = usagePredicate.and(expression);
+        }
+
+        final Predicate<PackageUsage<?>> matches = usagePredicate;
+        final Sort sorting = sort == null ? null : Sort.parse(sort);
+
+        final Rows range = rows != null ? rows : Rows.ALL;
+        try (Stream<PackageUsage<Jar>> usages = Columnar.read(input, in, threads, range, reader -> reader.read(matches, packages))) {
+            Stream<PackageUsage<Jar>> matching = usages.filter(matches);
+
+            if (sorting != null) {
+                matching = sorting.sort(matching, limit);
+            } else if (limit > 0) {
+                matching = matching.limit(limit);
+            }
 
-        ScanTsv.toJarTsv(out, matching, new File(""));
+            ScanTsv.toJarTsv(out, matching, new File(""));
+        }
     }
     //CHECKSTYLE:ON
 
@@ -456,6 +812,7 @@ public class UsageCommand {
     public static class GrepBuilder {
         private final Mode mode;
         private Predicate<PackageUsage<?>> compoundPredicate;
+        private final Set<Package> packages = EnumSet.noneOf(Package.class);
 
         public GrepBuilder(final Mode mode) {
             this.mode = mode;
@@ -470,6 +827,7 @@ public class UsageCommand {
 
         public GrepBuilder with(final Pattern pattern, final Package aPackage) {
             if (pattern == null) return this;
+            packages.add(aPackage);
             return with(usage -> pattern.matcher(usage.get(aPackage) + "").matches());
         }
 
@@ -481,5 +839,12 @@ public class UsageCommand {
         public Predicate<PackageUsage<?>> build() {
             return compoundPredicate;
         }
+
+        /**
+         * @return the packages whose counts are matched
+         */
+        public Set<Package> getPackages() {
+            return packages;
+        }
     }
 }
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.aggregate;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.tsv.TsvWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Totals jar usage rows per {@link By key}, such as per groupId.
+ *
+ * Each key has a single long[] of counters: jars, classes, size, the
+ * javax and jakarta totals and one counter per package.  Rows are added
+ * straight into those counters, nothing is allocated per row.
+ *
+ * Chunks of rows can be added from several threads.  Each chunk is first
+ * totalled on its own and then merged into the shared totals.  When the
+ * shared totals hold more than maxKeys keys they are sorted and spilled
+ * to a temporary file.  The spilled runs are merged by key when the
+ * result is written, so memory stays bounded however many keys there are.
+ */
+public class Aggregator implements Consumer<List<PackageUsage<Jar>>>, Closeable {
+
+    private static final int JARS = 0;
+    private static final int CLASSES = 1;
+    private static final int SIZE = 2;
+    private static final int JAVAX = 3;
+    private static final int JAKARTA = 4;
+    private static final int PACKAGES = 5;
+
+    private static final int WIDTH = PACKAGES + Package.values().length;
+
+    private final By by;
+    private final int maxKeys;
+    private final List<File> runs = new ArrayList<>();
+    private Map<String, long[]> totals = new HashMap<>();
+
+    public Aggregator(final By by, final int maxKeys) {
+        this.by = by;
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public void accept(final List<PackageUsage<Jar>> usages) {
+        final Map<String, long[]> chunk = new HashMap<>();
+        for (final PackageUsage<Jar> usage : usages) {
+            add(chunk.computeIfAbsent(by.key(usage.getContext()), s -> new long[WIDTH]), usage);
+        }
+        merge(chunk);
+    }
+
+    private static void add(final long[] total, final PackageUsage<Jar> usage) {
+        final Jar jar = usage.getContext();
+        total[JARS]++;
+        total[CLASSES] += Math.max(0, jar.getClasses());
+        total[SIZE] += Math.max(0, jar.getSize());
+        total[JAVAX] += usage.getJavax();
+        total[JAKARTA] += usage.getJakarta();
+
+        final int[] packages = usage.getPackages();
+        for (int i = 0; i < packages.length; i++) {
+            total[PACKAGES + i] += packages[i];
+        }
+    }
+
+    private static void add(final long[] total, final long[] values) {
+        for (int i = 0; i < total.length; i++) {
+            total[i] += values[i];
+        }
+    }
+
+    private synchronized void merge(final Map<String, long[]> chunk) {
+        for (final Map.Entry<String, long[]> entry : chunk.entrySet()) {
+            final long[] total = totals.putIfAbsent(entry.getKey(), entry.getValue());
+            if (total != null) add(total, entry.getValue());
+        }
+
+        if (totals.size() > maxKeys) spill();
+    }
+
+    /**
+     * Writes the totals sorted by key to a new run file
+     */
+    private void spill() {
+        try {
+            final File file = File.createTempFile("jkta-aggregate-", ".run");
+            file.deleteOnExit();
+            runs.add(file);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                final Iterator<Map.Entry<String, long[]>> sorted = sorted(totals);
+                while (sorted.hasNext()) {
+                    final Map.Entry<String, long[]> entry = sorted.next();
+                    out.writeUTF(entry.getKey());
+                    for (final long value : entry.getValue()) {
+                        out.writeLong(value);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        totals = new HashMap<>();
+    }
+
+    /**
+     * @return how many times the totals were spilled to disk
+     */
+    public int getSpills() {
+        return runs.size();
+    }
+
+    public String heading() {
+        final StringBuilder heading = new StringBuilder();
+        heading.append(by.name()).append("\tJars\tClasses\tSize\tjavax uses total\tjakarta uses total");
+        for (final Package aPackage : Package.values()) {
+            heading.append('\t').append(aPackage.getName());
+        }
+        return heading.toString();
+    }
+
+    /**
+     * Writes the heading and one row per key in key order
+     */
+    public synchronized void write(final OutputStream out) {
+        final TsvWriter writer = new TsvWriter(out);
+        writer.write(heading()).newline();
+
+        final PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparing(Cursor::getKey));
+        try {
+            add(cursors, new MemoryCursor(sorted(totals)));
+            for (final File run : runs) {
+                add(cursors, new FileCursor(run));
+            }
+
+            while (!cursors.isEmpty()) {
+                final String key = cursors.peek().getKey();
+                final long[] total = new long[WIDTH];
+
+                while (!cursors.isEmpty() && cursors.peek().getKey().equals(key)) {
+                    final Cursor cursor = cursors.poll();
+                    add(total, cursor.getValues());
+                    add(cursors, cursor);
+                }
+
+                writer.write(key);
+                for (final long value : total) {
+                    writer.tab().write(value);
+                }
+                writer.newline();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            cursors.forEach(Cursor::close);
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Advances the cursor and queues it again unless it is done
+     */
+    private static void add(final PriorityQueue<Cursor> cursors, final Cursor cursor) throws IOException {
+        if (cursor.next()) {
+            cursors.add(cursor);
+        } else {
+            cursor.close();
+        }
+    }
+
+    private static Iterator<Map.Entry<String, long[]>> sorted(final Map<String, long[]> totals) {
+        final List<Map.Entry<String, long[]>> entries = new ArrayList<>(totals.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        return entries.iterator();
+    }
+
+    @Override
+    public synchronized void close() {
+        runs.forEach(File::delete);
+        runs.clear();
+        totals = new HashMap<>();
+    }
+
+    private interface Cursor {
+        boolean next() throws IOException;
+
+        String getKey();
+
+        long[] getValues();
+
+        void close();
+    }
+
+    private static class MemoryCursor implements Cursor {
+        private final Iterator<Map.Entry<String, long[]>> entries;
+        private Map.Entry<String, long[]> entry;
+
+        MemoryCursor(final Iterator<Map.Entry<String, long[]>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean next() {
+            entry = entries.hasNext() ? entries.next() : null;
+            return entry != null;
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public long[] getValues() {
+            return entry.getValue();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class FileCursor implements Cursor {
+        private final DataInputStream in;
+        private final long[] values = new long[WIDTH];
+        private String key;
+
+        FileCursor(final File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            try {
+                key = in.readUTF();
+            } catch (EOFException e) {
+                return false;
+            }
+
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.readLong();
+            }
+            return true;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.aggregate;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.columnar.Column;
+
+import java.util.Arrays;
+
+/**
+ * How rows are grouped by {@link Aggregator}.
+ *
+ * The Maven coordinates are derived from the repository relative path
+ * of each jar, which in a Maven repository is laid out as
+ * group/path/artifactId/version/artifactId-version.jar.  Paths that do
+ * not follow that layout are grouped under "unknown".
+ */
+public enum By {
+    groupId,
+
+    /**
+     * groupId:artifactId
+     */
+    artifactId,
+
+    /**
+     * groupId:artifactId:version
+     */
+    version,
+
+    /**
+     * The highest class file version in the jar, such as 52 for Java 8
+     */
+    javaVersion;
+
+    public static final String UNKNOWN = "unknown";
+
+    public String key(final Jar jar) {
+        if (this == javaVersion) {
+            final int[] versions = jar.getJavaVersions();
+            if (versions == null || versions.length == 0) return "0";
+
+            int highest = versions[0];
+            for (final int version : versions) {
+                highest = Math.max(highest, version);
+            }
+            return Integer.toString(highest);
+        }
+
+        if (jar.getJar() == null) return UNKNOWN;
+
+        String path = jar.getJar().getPath().replace('\\', '/');
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+
+        final String[] parts = path.split("/");
+        final int length = parts.length;
+        if (length < 4) return UNKNOWN;
+
+        final String artifact = parts[length - 3];
+        final String version = parts[length - 2];
+        if (!parts[length - 1].startsWith(artifact + "-")) return UNKNOWN;
+
+        final String group = String.join(".", Arrays.asList(parts).subList(0, length - 3));
+
+        switch (this) {
+            case groupId: return group;
+            case artifactId: return group + ":" + artifact;
+            default: return group + ":" + artifact + ":" + version;
+        }
+    }
+
+    /**
+     * @return the column a columnar file must read to compute the key
+     */
+    public Column getColumn() {
+        return this == javaVersion ? Column.VERSIONS : Column.PATH;
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.cache;
+
+import org.tomitribe.jkta.Version;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.JarUsage;
+import org.tomitribe.jkta.usage.MappedJar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.ScanOptions;
+import org.tomitribe.util.Hex;
+import org.tomitribe.util.hash.XxHash64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * An on-disk cache of jar scan results so repeat scans of the same
+ * repository only parse the jars that are new or have changed.
+ *
+ * The cache directory holds two files.  "scans.dat" is an append-only
+ * log with one record per scanned jar: its SHA-1, the path, size and
+ * modification time it was seen with, and everything the scan reported.
+ * "scans.idx" is a memory-mapped open-addressing hash table that maps
+ * both the SHA-1 and the path/size/mtime of each record to its offset
+ * in the log.
+ *
+ * A jar whose path, size and modification time match a record is not
+ * even hashed.  Otherwise its SHA-1 is computed and looked up, so jars
+ * that were copied or touched are still hits.  Only real misses are
+ * parsed with ASM.  Loose class files are only matched by path.
+ *
+ * Both files start with a key made from the tool version and the list
+ * of packages.  If either changes the cache is discarded.
+ */
+public class ScanCache implements Closeable {
+
+    private static final int MAGIC = 0x4A4B5443;
+
+    /**
+     * Part of the key.  Changed whenever what a scan reports changes,
+     * such as 2 for internal dates estimated by the quantile sketch.
+     */
+    private static final int FORMAT = 2;
+
+    /**
+     * magic and key
+     */
+    private static final int DATA_HEADER = 12;
+
+    /**
+     * magic, key, indexed length of the data file, capacity and count
+     */
+    private static final int INDEX_HEADER = 32;
+    private static final int INDEXED = 12;
+    private static final int CAPACITY = 20;
+    private static final int COUNT = 24;
+
+    /**
+     * Each slot is a long key and a long offset into the data file.
+     * No record lives at offset zero, so zero marks an empty slot.
+     */
+    private static final int SLOT = 16;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private final long key;
+    private final File indexFile;
+    private final FileChannel data;
+    private final FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int count;
+    private long end;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private ScanCache(final File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + dir.getAbsolutePath());
+        }
+
+        this.key = key();
+        this.indexFile = new File(dir, "scans.idx");
+        this.data = FileChannel.open(new File(dir, "scans.dat").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        final boolean valid = hasHeader(data, key);
+        if (!valid) {
+            data.truncate(0);
+            final ByteBuffer header = ByteBuffer.allocate(DATA_HEADER);
+            header.putInt(MAGIC).putLong(key).flip();
+            write(data, header, 0);
+        }
+        this.end = data.size();
+
+        if (!valid || !hasHeader(indexFile, key)) {
+            indexFile.delete();
+        }
+
+        this.indexChannel = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (indexChannel.size() < INDEX_HEADER) {
+            createIndex(INITIAL_CAPACITY);
+        } else {
+            mapIndex();
+        }
+
+        // Catch up on records the index missed or discard one half written
+        long indexed = index.getLong(INDEXED);
+        if (indexed > end || indexed < DATA_HEADER) {
+            createIndex(capacity);
+            indexed = DATA_HEADER;
+        }
+        reindex(indexed);
+    }
+
+    /**
+     * @param dir the cache directory or null for no caching
+     * @return the opened cache or null if dir is null
+     */
+    public static ScanCache open(final File dir) throws IOException {
+        if (dir == null) return null;
+        return new ScanCache(dir);
+    }
+
+    /**
+     * Returns the cached result for this jar or scans it and adds
+     * the result to the cache.
+     */
+    public PackageUsage<Jar> scan(final File file, final ScanOptions options) throws IOException, NoSuchAlgorithmException {
+        return scan(file, null, options);
+    }
+
+    /**
+     * The same as {@link #scan(File, ScanOptions)} for a jar that is
+     * already mapped and hashed
+     */
+    public PackageUsage<Jar> scan(final MappedJar jar, final ScanOptions options) throws IOException, NoSuchAlgorithmException {
+        return scan(jar.getFile(), jar, options);
+    }
+
+    private PackageUsage<Jar> scan(final File file, final MappedJar mapped, final ScanOptions options) throws IOException, NoSuchAlgorithmException {
+        final String path = file.getAbsolutePath();
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+
+        Record record = findByPath(path, size, lastModified);
+
+        // A class file reports its own modification time as the internal
+        // date, so only archives can be reused from another path
+        if (record == null && !path.endsWith(".class")) {
+            record = findBySha1(mapped != null ? mapped.getSha1() : JarUsage.sha1(file));
+
+            // Remember the new location so it is not hashed next time
+            if (record != null) append(record.seenAt(path, size, lastModified));
+        }
+
+        if (record != null) {
+            hits.incrementAndGet();
+            return record.toUsage(file);
+        }
+
+        misses.incrementAndGet();
+        final PackageUsage<Jar> usage = mapped != null ? JarUsage.of(mapped, options) : JarUsage.of(file, options);
+        append(Record.of(usage, path, size, lastModified));
+        return usage;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public String summary() {
+        return String.format("cache %s hits %s misses", hits.get(), misses.get());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        index.force();
+        indexChannel.close();
+        data.close();
+    }
+
+    private synchronized Record findByPath(final String path, final long size, final long lastModified) throws IOException {
+        final long key = pathKey(path, size, lastModified);
+
+        for (int slot = slot(key); ; slot = next(slot)) {
+            final long offset = index.getLong(position(slot) + 8);
+            if (offset == 0) return null;
+            if (index.getLong(position(slot)) != key) continue;
+
+            final Record record = read(offset);
+            if (record.path.equals(path) && record.size == size && record.lastModified == lastModified) {
+                return record;
+            }
+        }
+    }
+
+    private synchronized Record findBySha1(final String sha1) throws IOException {
+        final long key = sha1Key(sha1);
+
+        for (int slot = slot(key); ; slot = next(slot)) {
+            final long offset = index.getLong(position(slot) + 8);
+            if (offset == 0) return null;
+            if (index.getLong(position(slot)) != key) continue;
+
+            final Record record = read(offset);
+            if (record.sha1.equals(sha1) && !record.path.endsWith(".class")) return record;
+        }
+    }
+
+    private synchronized void append(final Record record) throws IOException {
+        final byte[] bytes = record.toBytes();
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length);
+        buffer.putInt(bytes.length).put(bytes).flip();
+
+        final long offset = end;
+        write(data, buffer, offset);
+        end += buffer.capacity();
+
+        index(record, offset);
+        index.putLong(INDEXED, end);
+    }
+
+    private void reindex(final long from) throws IOException {
+        long offset = from;
+        final ByteBuffer length = ByteBuffer.allocate(4);
+
+        while (offset + 4 <= end) {
+            length.clear();
+            read(data, length, offset);
+            final long next = offset + 4 + length.getInt(0);
+            if (next > end) break;
+
+            index(read(offset), offset);
+            offset = next;
+        }
+
+        // anything past here is a record cut short by a crash
+        if (offset < end) {
+            data.truncate(offset);
+            end = offset;
+        }
+        index.putLong(INDEXED, end);
+    }
+
+    private void index(final Record record, final long offset) throws IOException {
+        put(sha1Key(record.sha1), offset);
+        put(pathKey(record.path, record.size, record.lastModified), offset);
+    }
+
+    private void put(final long key, final long offset) throws IOException {
+        if ((count + 1) * 2 > capacity) grow();
+
+        int slot = slot(key);
+        while (index.getLong(position(slot) + 8) != 0) {
+            slot = next(slot);
+        }
+
+        index.putLong(position(slot), key);
+        index.putLong(position(slot) + 8, offset);
+        index.putInt(COUNT, ++count);
+    }
+
+    private void grow() throws IOException {
+        final long[] keys = new long[count];
+        final long[] offsets = new long[count];
+        int found = 0;
+
+        for (int slot = 0; slot < capacity; slot++) {
+            final long offset = index.getLong(position(slot) + 8);
+            if (offset == 0) continue;
+            keys[found] = index.getLong(position(slot));
+            offsets[found++] = offset;
+        }
+
+        final long indexed = index.getLong(INDEXED);
+        createIndex(capacity * 2);
+        index.putLong(INDEXED, indexed);
+
+        for (int i = 0; i < found; i++) {
+            put(keys[i], offsets[i]);
+        }
+    }
+
+    private void createIndex(final int capacity) throws IOException {
+        indexChannel.truncate(0);
+        this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + (long) capacity * SLOT);
+        this.capacity = capacity;
+        this.count = 0;
+
+        index.putInt(0, MAGIC);
+        index.putLong(4, key);
+        index.putLong(INDEXED, DATA_HEADER);
+        index.putInt(CAPACITY, capacity);
+        index.putInt(COUNT, 0);
+    }
+
+    private void mapIndex() throws IOException {
+        this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+        this.capacity = index.getInt(CAPACITY);
+        this.count = index.getInt(COUNT);
+
+        final boolean intact = Integer.bitCount(capacity) == 1
+                && INDEX_HEADER + (long) capacity * SLOT == indexChannel.size();
+        if (!intact) createIndex(INITIAL_CAPACITY);
+    }
+
+    private Record read(final long offset) throws IOException {
+        final ByteBuffer length = ByteBuffer.allocate(4);
+        read(data, length, offset);
+
+        final ByteBuffer bytes = ByteBuffer.allocate(length.getInt(0));
+        read(data, bytes, offset + 4);
+        return Record.from(bytes.array());
+    }
+
+    private int slot(final long key) {
+        return (int) (XxHash64.hash(key) & (capacity - 1));
+    }
+
+    private int next(final int slot) {
+        return (slot + 1) & (capacity - 1);
+    }
+
+    private static int position(final int slot) {
+        return INDEX_HEADER + slot * SLOT;
+    }
+
+    private static long sha1Key(final String sha1) {
+        return nonZero(Long.parseUnsignedLong(sha1.substring(0, 16), 16));
+    }
+
+    private static long pathKey(final String path, final long size, final long lastModified) {
+        return nonZero(XxHash64.hash(path + "\t" + size + "\t" + lastModified));
+    }
+
+    private static long nonZero(final long key) {
+        return key == 0 ? 1 : key;
+    }
+
+    /**
+     * Anything that changes what a scan reports must change this key
+     */
+    private static long key() {
+        final String packages = Package.names().collect(Collectors.joining(","));
+        return XxHash64.hash(FORMAT + "\t" + Version.VERSION + "\t" + packages);
+    }
+
+    private static boolean hasHeader(final FileChannel channel, final long key) throws IOException {
+        if (channel.size() < DATA_HEADER) return false;
+
+        final ByteBuffer header = ByteBuffer.allocate(DATA_HEADER);
+        read(channel, header, 0);
+        return header.getInt(0) == MAGIC && header.getLong(4) == key;
+    }
+
+    private static boolean hasHeader(final File file, final long key) throws IOException {
+        if (!file.isFile()) return false;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return hasHeader(channel, key);
+        }
+    }
+
+    private static void read(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of cache file");
+        }
+    }
+
+    private static void write(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static class Record {
+        private final String sha1;
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final long internalDate;
+        private final long classes;
+        private final int[] versions;
+        private final int javax;
+        private final int jakarta;
+        private final int[] packages;
+
+        Record(final String sha1, final String path, final long size, final long lastModified, final long internalDate,
+               final long classes, final int[] versions, final int javax, final int jakarta, final int[] packages) {
+            this.sha1 = sha1;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.internalDate = internalDate;
+            this.classes = classes;
+            this.versions = versions;
+            this.javax = javax;
+            this.jakarta = jakarta;
+            this.packages = packages;
+        }
+
+        static Record of(final PackageUsage<Jar> usage, final String path, final long size, final long lastModified) {
+            final Jar jar = usage.getContext();
+            return new Record(jar.getSha1(), path, size, lastModified, jar.getInternalDate(), jar.getClasses(),
+                    jar.getJavaVersions(), usage.getJavax(), usage.getJakarta(), usage.getPackages());
+        }
+
+        Record seenAt(final String path, final long size, final long lastModified) {
+            return new Record(sha1, path, size, lastModified, internalDate, classes, versions, javax, jakarta, packages);
+        }
+
+        PackageUsage<Jar> toUsage(final File file) {
+            final Jar jar = new Jar(file, sha1, file.lastModified(), internalDate, classes, file.length(), versions.clone());
+            return new PackageUsage<>(jar, javax, jakarta, packages);
+        }
+
+        byte[] toBytes() throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + packages.length * 4);
+            final DataOutputStream out = new DataOutputStream(bytes);
+
+            out.write(Hex.fromString(sha1));
+            out.writeUTF(path);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeLong(internalDate);
+            out.writeLong(classes);
+            writeInts(out, versions);
+            out.writeInt(javax);
+            out.writeInt(jakarta);
+            writeInts(out, packages);
+
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        static Record from(final byte[] bytes) throws IOException {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            final byte[] sha1 = new byte[20];
+            in.readFully(sha1);
+
+            return new Record(Hex.toString(sha1), in.readUTF(), in.readLong(), in.readLong(), in.readLong(),
+                    in.readLong(), readInts(in), in.readInt(), in.readInt(), readInts(in));
+        }
+
+        private static void writeInts(final DataOutputStream out, final int[] ints) throws IOException {
+            if (ints == null) {
+                out.writeShort(0);
+                return;
+            }
+            out.writeShort(ints.length);
+            for (final int i : ints) {
+                out.writeInt(i);
+            }
+        }
+
+        private static int[] readInts(final DataInputStream in) throws IOException {
+            final int[] ints = new int[in.readUnsignedShort()];
+            for (int i = 0; i < ints.length; i++) {
+                ints[i] = in.readInt();
+            }
+            return ints;
+        }
+    }
+}
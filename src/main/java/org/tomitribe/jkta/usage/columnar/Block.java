@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.columnar;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.util.Hex;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One mapped block of a columnar file.  Values are read straight from
+ * the buffer so only the pages of the columns actually used are loaded.
+ */
+class Block {
+
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final int columns;
+
+    /**
+     * Column index in this file for each package ordinal or -1 if the
+     * file was written without that package
+     */
+    private final int[] packageColumns;
+
+    private String[] directories;
+
+    Block(final ByteBuffer buffer, final int[] packageColumns) {
+        this.buffer = buffer;
+        this.rows = buffer.getInt(0);
+        this.columns = buffer.getInt(4);
+        this.packageColumns = packageColumns;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    private int offset(final int column) {
+        if (column >= columns) throw new IllegalStateException("Missing column " + column);
+        return (int) buffer.getLong(8 + column * 8);
+    }
+
+    private int offset(final Column column) {
+        return offset(column.ordinal());
+    }
+
+    long getLong(final Column column, final int row) {
+        return buffer.getLong(offset(column) + row * 8);
+    }
+
+    int getInt(final Column column, final int row) {
+        return buffer.getInt(offset(column) + row * 4);
+    }
+
+    /**
+     * @return the count for the package with this ordinal
+     */
+    int getCount(final int ordinal, final int row) {
+        final int column = packageColumns[ordinal];
+        if (column == -1) return 0;
+        return buffer.getInt(offset(column) + row * 4);
+    }
+
+    String getSha1(final int row) {
+        final byte[] bytes = new byte[20];
+        final ByteBuffer sha1 = buffer.duplicate();
+        sha1.position(offset(Column.SHA1) + row * 20);
+        sha1.get(bytes);
+        return Hex.toString(bytes);
+    }
+
+    int[] getVersions(final int row) {
+        final int offsets = offset(Column.VERSIONS);
+        final int values = offsets + (rows + 1) * 4;
+        final int start = buffer.getInt(offsets + row * 4);
+        final int end = buffer.getInt(offsets + row * 4 + 4);
+
+        final int[] versions = new int[end - start];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = buffer.getInt(values + (start + i) * 4);
+        }
+        return versions;
+    }
+
+    File getPath(final int row) {
+        final int ids = offset(Column.PATH);
+        final int nameOffsets = ids + rows * 4;
+        final int dictionary = nameOffsets + (rows + 1) * 4;
+        final int size = buffer.getInt(dictionary);
+        final int dictionaryBytes = dictionary + 4 + (size + 1) * 4;
+        final int nameBytes = dictionaryBytes + buffer.getInt(dictionary + 4 + size * 4);
+
+        if (directories == null) {
+            directories = new String[size];
+            for (int i = 0; i < size; i++) {
+                final int start = buffer.getInt(dictionary + 4 + i * 4);
+                final int end = buffer.getInt(dictionary + 8 + i * 4);
+                directories[i] = string(dictionaryBytes + start, end - start);
+            }
+        }
+
+        final int start = buffer.getInt(nameOffsets + row * 4);
+        final int end = buffer.getInt(nameOffsets + row * 4 + 4);
+        final String name = string(nameBytes + start, end - start);
+
+        return new File(directories[buffer.getInt(ids + row * 4)] + name);
+    }
+
+    Jar getJar(final int row) {
+        return new Jar(getPath(row),
+                getSha1(row),
+                getLong(Column.LAST_MODIFIED, row),
+                getLong(Column.INTERNAL_DATE, row),
+                getLong(Column.CLASSES, row),
+                getLong(Column.SIZE, row),
+                getVersions(row));
+    }
+
+    private String string(final int position, final int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer string = buffer.duplicate();
+        string.position(position);
+        string.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.columnar;
+
+/**
+ * The columns of a columnar scan file besides the per package counts,
+ * which follow as one int column per {@link org.tomitribe.jkta.usage.Package}.
+ * The order of this enum is the order of the columns in each block.
+ */
+public enum Column {
+    /**
+     * 20 bytes per row
+     */
+    SHA1,
+    LAST_MODIFIED,
+    INTERNAL_DATE,
+    SIZE,
+    CLASSES,
+
+    /**
+     * Row offsets followed by the versions of all rows
+     */
+    VERSIONS,
+
+    /**
+     * Per row an id into a dictionary of the directories used in the
+     * block, followed by the file name of each row
+     */
+    PATH,
+    JAVAX,
+    JAKARTA
+}
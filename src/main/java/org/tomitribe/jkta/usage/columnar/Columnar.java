@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.columnar;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.tsv.BlockGzipFile;
+import org.tomitribe.jkta.usage.tsv.Gzip;
+import org.tomitribe.jkta.usage.tsv.Rows;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.jkta.usage.tsv.TsvReader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Reads scan results that may be either TSV or columnar and
+ * writes them as columnar.
+ */
+public class Columnar {
+
+    /**
+     * Rows handed over at once when reading a block gzip file
+     */
+    private static final int CHUNK_ROWS = 4096;
+
+    private Columnar() {
+    }
+
+    public static void write(final OutputStream out, final Stream<PackageUsage<Jar>> usages, final File repository) {
+        final ColumnarWriter writer = new ColumnarWriter(out, repository);
+        usages.forEach(writer::write);
+        writer.close();
+    }
+
+    public static Stream<PackageUsage<Jar>> read(final File file, final InputStream in, final int threads,
+                                                 final Function<ColumnarReader, Stream<PackageUsage<Jar>>> columnar) throws IOException {
+        return read(file, in, threads, Rows.ALL, columnar);
+    }
+
+    /**
+     * @param file the file to read or null to read the stream.  Columnar
+     *             files are mapped directly, a columnar stream is first
+     *             copied to a temporary file.  Either may be gzipped.
+     * @param threads number of threads used to parse TSV input, and to
+     *                inflate it too when it is block gzipped with an index
+     * @param rows the rows of TSV input to read.  Columnar input is
+     *             always read in full.
+     * @param columnar reads the rows of columnar input, such as only
+     *                 the columns the caller needs.  TSV input always
+     *                 returns every row in full.
+     * @return a stream that must be closed when done
+     */
+    public static Stream<PackageUsage<Jar>> read(final File file, final InputStream in, final int threads, final Rows rows,
+                                                 final Function<ColumnarReader, Stream<PackageUsage<Jar>>> columnar) throws IOException {
+        if (file != null && BlockGzipFile.isIndexed(file)) {
+            return ScanTsv.fromJarTsv(file, rows, threads, s -> {
+            });
+        }
+
+        final InputStream raw = new BufferedInputStream(file != null ? new FileInputStream(file) : in);
+        final boolean gzipped = Gzip.isGzip(raw);
+        final InputStream input = Gzip.inflate(raw);
+
+        if (!ColumnarReader.isColumnar(input)) {
+            return rows.slice(ScanTsv.fromJarTsv(input, threads, s -> {
+            })).onClose(() -> close(file, input));
+        }
+
+        if (!rows.equals(Rows.ALL)) {
+            input.close();
+            throw new IllegalArgumentException("Rows can only be selected from TSV input");
+        }
+
+        final ColumnarReader reader;
+        if (file != null && !gzipped) {
+            input.close();
+            reader = ColumnarReader.open(file);
+        } else {
+            reader = ColumnarReader.open(input);
+        }
+
+        return columnar.apply(reader).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Hands every row to the consumer, a chunk of rows at a time, parsing
+     * or decoding up to threads chunks at once.  Chunks are not handed over
+     * in file order, so the consumer must be thread safe.
+     *
+     * Either format may be gzipped, as in {@link #read}.
+     *
+     * @param columns the columns to read from columnar input.  TSV input
+     *                always has every column.
+     */
+    public static void forEachChunk(final File file, final InputStream in, final int threads, final Set<Column> columns,
+                                    final Consumer<List<PackageUsage<Jar>>> consumer) throws IOException {
+        if (file != null && BlockGzipFile.isIndexed(file)) {
+            try (Stream<PackageUsage<Jar>> usages = ScanTsv.fromJarTsv(file, Rows.ALL, threads, s -> {
+            })) {
+                forEachChunk(usages, consumer);
+            }
+            return;
+        }
+
+        final InputStream raw = new BufferedInputStream(file != null ? new FileInputStream(file) : in);
+        final boolean gzipped = Gzip.isGzip(raw);
+
+        try (InputStream input = Gzip.inflate(raw)) {
+
+            if (!ColumnarReader.isColumnar(input)) {
+                TsvReader.forEachChunk(input, threads, s -> {
+                }, consumer);
+                return;
+            }
+
+            try (ColumnarReader reader = file != null && !gzipped ? ColumnarReader.open(file) : ColumnarReader.open(input)) {
+                final Stream<List<PackageUsage<Jar>>> blocks = reader.readBlocks(columns, EnumSet.allOf(Package.class));
+
+                if (threads <= 1) {
+                    blocks.forEach(consumer);
+                    return;
+                }
+
+                // Parallel streams run on the pool that invokes them
+                final ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    pool.submit(() -> blocks.parallel().forEach(consumer)).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted reading columnar file", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                    throw new IllegalStateException(e.getCause());
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands rows that were already parsed in order to the consumer in chunks
+     */
+    private static void forEachChunk(final Stream<PackageUsage<Jar>> usages, final Consumer<List<PackageUsage<Jar>>> consumer) {
+        final List<PackageUsage<Jar>> chunk = new ArrayList<>(CHUNK_ROWS);
+        usages.forEach(usage -> {
+            chunk.add(usage);
+            if (chunk.size() == CHUNK_ROWS) {
+                consumer.accept(new ArrayList<>(chunk));
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) consumer.accept(chunk);
+    }
+
+    private static void close(final File file, final InputStream input) {
+        if (file == null) return;
+        try {
+            input.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.columnar;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.util.IO;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Reads files written by {@link ColumnarWriter}.
+ *
+ * Each block is memory-mapped when it is reached and rows are decoded
+ * from only the columns asked for.  Filtering on a few package counts
+ * or adding up the counts of a large file never decodes a path or hash.
+ *
+ * Package columns are matched by name, so files written by an older or
+ * newer version with a different list of packages can still be read.
+ * Packages missing from the file read as zero.
+ */
+public class ColumnarReader implements Closeable {
+
+    private static final Set<Column> ALL = EnumSet.allOf(Column.class);
+
+    private final FileChannel channel;
+    private final File temporary;
+    private final long[] blocks;
+    private final long rows;
+    private final int[] packageColumns;
+
+    private ColumnarReader(final File file, final File temporary) throws IOException {
+        this.temporary = temporary;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        try {
+            final long size = channel.size();
+            if (size < ColumnarWriter.TAIL) throw new IOException("Not a columnar file: " + file.getAbsolutePath());
+
+            final ByteBuffer tail = ByteBuffer.allocate(ColumnarWriter.TAIL);
+            read(tail, size - ColumnarWriter.TAIL);
+            final int count = tail.getInt(0);
+            this.rows = tail.getLong(4);
+            final long index = tail.getLong(12);
+            if (tail.getInt(20) != ColumnarWriter.MAGIC) throw new IOException("Incomplete columnar file: " + file.getAbsolutePath());
+
+            final ByteBuffer offsets = ByteBuffer.allocate(count * 8);
+            read(offsets, index);
+            this.blocks = new long[count + 1];
+            for (int i = 0; i < count; i++) {
+                blocks[i] = offsets.getLong(i * 8);
+            }
+            blocks[count] = index;
+
+            this.packageColumns = packageColumns(channel);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static ColumnarReader open(final File file) throws IOException {
+        return new ColumnarReader(file, null);
+    }
+
+    /**
+     * Copies the stream to a temporary file so it can be mapped.  The
+     * file is deleted when the reader is closed.
+     */
+    public static ColumnarReader open(final InputStream in) throws IOException {
+        final File file = File.createTempFile("jkta-", ".columnar");
+        file.deleteOnExit();
+        try {
+            IO.copy(in, file);
+            return new ColumnarReader(file, file);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Peeks at the first bytes of the stream, which must support mark
+     */
+    public static boolean isColumnar(final InputStream in) throws IOException {
+        in.mark(4);
+        try {
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                final int b = in.read();
+                if (b == -1) return false;
+                magic = magic << 8 | b;
+            }
+            return magic == ColumnarWriter.MAGIC;
+        } finally {
+            in.reset();
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return every row with all columns
+     */
+    public Stream<PackageUsage<Jar>> read() {
+        return read(ALL, EnumSet.allOf(Package.class));
+    }
+
+    /**
+     * Reads only the given columns and package counts.  Everything else
+     * is left as zero, or null for the hash and path.
+     */
+    public Stream<PackageUsage<Jar>> read(final Set<Column> columns, final Set<Package> packages) {
+        final int[] ordinals = ordinals(packages);
+
+        return blocks().flatMap(block -> IntStream.range(0, block.getRows())
+                .mapToObj(row -> new Row(jar(block, row, columns)).load(block, row, columns, ordinals)));
+    }
+
+    /**
+     * Same as {@link #read(Set, Set)} with one list of rows per block.
+     * Each block is independent, so the stream can be made parallel.
+     */
+    public Stream<List<PackageUsage<Jar>>> readBlocks(final Set<Column> columns, final Set<Package> packages) {
+        final int[] ordinals = ordinals(packages);
+
+        return blocks().map(block -> {
+            final List<PackageUsage<Jar>> rows = new ArrayList<>(block.getRows());
+            for (int row = 0; row < block.getRows(); row++) {
+                rows.add(new Row(jar(block, row, columns)).load(block, row, columns, ordinals));
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Tests each row using only the javax and jakarta totals and the given
+     * package counts.  Only rows that match are read in full.
+     */
+    public Stream<PackageUsage<Jar>> read(final Predicate<PackageUsage<?>> where, final Set<Package> packages) {
+        final int[] ordinals = ordinals(packages);
+        final int[] all = ordinals(EnumSet.allOf(Package.class));
+        final Set<Column> counts = EnumSet.of(Column.JAVAX, Column.JAKARTA);
+        final Row probe = new Row(null);
+
+        return blocks().flatMap(block -> IntStream.range(0, block.getRows())
+                .filter(row -> where.test(probe.load(block, row, counts, ordinals)))
+                .mapToObj(row -> new Row(block.getJar(row)).load(block, row, ALL, all)));
+    }
+
+    private Stream<Block> blocks() {
+        return IntStream.range(0, blocks.length - 1).mapToObj(this::block);
+    }
+
+    private Block block(final int i) {
+        try {
+            return new Block(channel.map(FileChannel.MapMode.READ_ONLY, blocks[i], blocks[i + 1] - blocks[i]), packageColumns);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Jar jar(final Block block, final int row, final Set<Column> columns) {
+        if (columns.containsAll(ALL)) return block.getJar(row);
+
+        final Jar.Builder jar = Jar.builder().javaVersions(new int[0]);
+        if (columns.contains(Column.PATH)) jar.jar(block.getPath(row));
+        if (columns.contains(Column.SHA1)) jar.sha1(block.getSha1(row));
+        if (columns.contains(Column.LAST_MODIFIED)) jar.lastModified(block.getLong(Column.LAST_MODIFIED, row));
+        if (columns.contains(Column.INTERNAL_DATE)) jar.internalDate(block.getLong(Column.INTERNAL_DATE, row));
+        if (columns.contains(Column.SIZE)) jar.size(block.getLong(Column.SIZE, row));
+        if (columns.contains(Column.CLASSES)) jar.classes(block.getLong(Column.CLASSES, row));
+        if (columns.contains(Column.VERSIONS)) jar.javaVersions(block.getVersions(row));
+        return jar.build();
+    }
+
+    private static int[] ordinals(final Set<Package> packages) {
+        return packages.stream().mapToInt(Package::ordinal).toArray();
+    }
+
+    /**
+     * Maps the package names in the file header to the current packages
+     */
+    private static int[] packageColumns(final FileChannel channel) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        if (in.readInt() != ColumnarWriter.MAGIC) throw new IOException("Not a columnar file");
+
+        final int format = in.readInt();
+        if (format != ColumnarWriter.FORMAT) throw new IOException("Unsupported columnar format " + format);
+
+        final Map<String, Integer> columns = new HashMap<>();
+        final int count = in.readShort();
+        for (int i = 0; i < count; i++) {
+            columns.put(in.readUTF(), Column.values().length + i);
+        }
+
+        final int[] packageColumns = new int[Package.values().length];
+        Arrays.fill(packageColumns, -1);
+        for (final Package aPackage : Package.values()) {
+            final Integer column = columns.get(aPackage.getName());
+            if (column != null) packageColumns[aPackage.ordinal()] = column;
+        }
+        return packageColumns;
+    }
+
+    private void read(final ByteBuffer buffer, final long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, offset);
+            if (read == -1) throw new IOException("Unexpected end of columnar file");
+            offset += read;
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            if (temporary != null) temporary.delete();
+        }
+    }
+
+    /**
+     * Gives the reader access to the counts of a PackageUsage
+     */
+    private static class Row extends PackageUsage<Jar> {
+
+        Row(final Jar jar) {
+            super(jar);
+        }
+
+        Row load(final Block block, final int row, final Set<Column> columns, final int[] ordinals) {
+            javax = columns.contains(Column.JAVAX) ? block.getInt(Column.JAVAX, row) : 0;
+            jakarta = columns.contains(Column.JAKARTA) ? block.getInt(Column.JAKARTA, row) : 0;
+            for (final int ordinal : ordinals) {
+                packages[ordinal] = block.getCount(ordinal, row);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.columnar;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.util.Hex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes jar scan results in the columnar format read by {@link ColumnarReader}.
+ *
+ * Rows are collected into blocks of a fixed number of rows.  Each block
+ * is written column by column, so a reader can map a block and touch only
+ * the columns it needs.  The output is written strictly in order, so any
+ * stream will do.
+ *
+ * The file layout is:
+ *
+ * <pre>
+ * header: magic, format, package count and the package names
+ * blocks: row count, column count, offset of each column, column data
+ * index:  offset of each block
+ * tail:   block count, row count, index offset and magic
+ * </pre>
+ */
+public class ColumnarWriter implements Closeable {
+
+    static final int MAGIC = 0x4A4B4346;
+    static final int FORMAT = 1;
+
+    /**
+     * block count, row count, index offset and magic
+     */
+    static final int TAIL = 24;
+
+    private static final int BLOCK_ROWS = 16 * 1024;
+
+    private final DataOutputStream out;
+    private final File repository;
+    private final int blockRows;
+    private final List<Long> blocks = new ArrayList<>();
+    private long position;
+    private long total;
+
+    private int rows;
+    private final byte[] sha1;
+    private final long[] lastModified;
+    private final long[] internalDate;
+    private final long[] size;
+    private final long[] classes;
+    private final int[] versionOffsets;
+    private int[] versions = new int[1024];
+    private final int[] directories;
+    private final Map<String, Integer> directoryIds = new HashMap<>();
+    private final List<String> directoryNames = new ArrayList<>();
+    private final String[] names;
+
+    /**
+     * javax, jakarta and then one column per package
+     */
+    private final int[][] counts;
+
+    public ColumnarWriter(final OutputStream out, final File repository) {
+        this(out, repository, BLOCK_ROWS);
+    }
+
+    ColumnarWriter(final OutputStream out, final File repository, final int blockRows) {
+        this.out = new DataOutputStream(out);
+        this.repository = repository;
+        this.blockRows = blockRows;
+
+        this.sha1 = new byte[blockRows * 20];
+        this.lastModified = new long[blockRows];
+        this.internalDate = new long[blockRows];
+        this.size = new long[blockRows];
+        this.classes = new long[blockRows];
+        this.versionOffsets = new int[blockRows + 1];
+        this.directories = new int[blockRows];
+        this.names = new String[blockRows];
+        this.counts = new int[2 + Package.values().length][blockRows];
+
+        try {
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(FORMAT);
+            this.out.writeShort(Package.values().length);
+            for (final Package aPackage : Package.values()) {
+                this.out.writeUTF(aPackage.getName());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.position = this.out.size();
+    }
+
+    public void write(final PackageUsage<Jar> usage) {
+        final Jar jar = usage.getContext();
+        final int row = rows;
+
+        final byte[] hash = Hex.fromString(jar.getSha1());
+        if (hash.length != 20) throw new IllegalArgumentException("Not a SHA-1 hash: " + jar.getSha1());
+        System.arraycopy(hash, 0, sha1, row * 20, 20);
+
+        lastModified[row] = jar.getLastModified();
+        internalDate[row] = jar.getInternalDate();
+        size[row] = jar.getSize();
+        classes[row] = jar.getClasses();
+
+        final int[] javaVersions = jar.getJavaVersions() == null ? new int[0] : jar.getJavaVersions();
+        final int start = versionOffsets[row];
+        if (start + javaVersions.length > versions.length) {
+            versions = Arrays.copyOf(versions, Math.max(versions.length * 2, start + javaVersions.length));
+        }
+        System.arraycopy(javaVersions, 0, versions, start, javaVersions.length);
+        versionOffsets[row + 1] = start + javaVersions.length;
+
+        // Keep the separator with the directory so the path is rebuilt exactly
+        final String path = ScanTsv.childPath(repository, jar.getJar());
+        final int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf(File.separatorChar));
+        final String directory = path.substring(0, slash + 1);
+        directories[row] = directoryIds.computeIfAbsent(directory, s -> {
+            directoryNames.add(s);
+            return directoryNames.size() - 1;
+        });
+        names[row] = path.substring(slash + 1);
+
+        counts[0][row] = usage.getJavax();
+        counts[1][row] = usage.getJakarta();
+        final int[] packages = usage.getPackages();
+        for (int i = 0; i < packages.length; i++) {
+            counts[2 + i][row] = packages[i];
+        }
+
+        total++;
+        if (++rows == blockRows) flushBlock();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (rows > 0) flushBlock();
+
+            final long index = position;
+            for (final Long block : blocks) {
+                out.writeLong(block);
+            }
+
+            out.writeInt(blocks.size());
+            out.writeLong(total);
+            out.writeLong(index);
+            out.writeInt(MAGIC);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flushBlock() {
+        final int columns = Column.values().length + Package.values().length;
+        final long[] offsets = new long[columns];
+        final int header = 8 + columns * 8;
+
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows * (columns * 4 + 64));
+            final DataOutputStream data = new DataOutputStream(bytes);
+
+            offsets[Column.SHA1.ordinal()] = header + data.size();
+            data.write(sha1, 0, rows * 20);
+
+            offsets[Column.LAST_MODIFIED.ordinal()] = header + data.size();
+            writeLongs(data, lastModified);
+
+            offsets[Column.INTERNAL_DATE.ordinal()] = header + data.size();
+            writeLongs(data, internalDate);
+
+            offsets[Column.SIZE.ordinal()] = header + data.size();
+            writeLongs(data, size);
+
+            offsets[Column.CLASSES.ordinal()] = header + data.size();
+            writeLongs(data, classes);
+
+            offsets[Column.VERSIONS.ordinal()] = header + data.size();
+            writeInts(data, versionOffsets, rows + 1);
+            writeInts(data, versions, versionOffsets[rows]);
+
+            offsets[Column.PATH.ordinal()] = header + data.size();
+            writePaths(data);
+
+            offsets[Column.JAVAX.ordinal()] = header + data.size();
+            writeInts(data, counts[0], rows);
+
+            offsets[Column.JAKARTA.ordinal()] = header + data.size();
+            writeInts(data, counts[1], rows);
+
+            for (int i = 2; i < counts.length; i++) {
+                offsets[Column.values().length + i - 2] = header + data.size();
+                writeInts(data, counts[i], rows);
+            }
+
+            blocks.add(position);
+
+            out.writeInt(rows);
+            out.writeInt(columns);
+            for (final long offset : offsets) {
+                out.writeLong(offset);
+            }
+            bytes.writeTo(out);
+
+            position += header + bytes.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        rows = 0;
+        directoryIds.clear();
+        directoryNames.clear();
+    }
+
+    /**
+     * Directory ids, name offsets, the directory dictionary and then the names
+     */
+    private void writePaths(final DataOutputStream data) throws IOException {
+        writeInts(data, directories, rows);
+
+        final byte[][] encodedNames = new byte[rows][];
+        int offset = 0;
+        data.writeInt(offset);
+        for (int i = 0; i < rows; i++) {
+            encodedNames[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            offset += encodedNames[i].length;
+            data.writeInt(offset);
+        }
+
+        final byte[][] encodedDirectories = new byte[directoryNames.size()][];
+        data.writeInt(directoryNames.size());
+        offset = 0;
+        data.writeInt(offset);
+        for (int i = 0; i < encodedDirectories.length; i++) {
+            encodedDirectories[i] = directoryNames.get(i).getBytes(StandardCharsets.UTF_8);
+            offset += encodedDirectories[i].length;
+            data.writeInt(offset);
+        }
+
+        for (final byte[] directory : encodedDirectories) {
+            data.write(directory);
+        }
+        for (final byte[] name : encodedNames) {
+            data.write(name);
+        }
+    }
+
+    private void writeLongs(final DataOutputStream data, final long[] values) throws IOException {
+        for (int i = 0; i < rows; i++) {
+            data.writeLong(values[i]);
+        }
+    }
+
+    private static void writeInts(final DataOutputStream data, final int[] values, final int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            data.writeInt(values[i]);
+        }
+    }
+}
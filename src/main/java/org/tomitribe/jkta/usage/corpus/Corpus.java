@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.corpus;
+
+import lombok.Builder;
+import lombok.Data;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.JarUsage;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.QuantileSketch;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a repository of generated jars in the Maven layout along with
+ * the usage a scan of each one must report.
+ *
+ * Every archive is generated from a Random seeded by the corpus seed and
+ * the index of the artifact, and every entry and file gets a fixed time,
+ * so the same settings always write byte for byte the same files with
+ * the same hashes and dates.
+ *
+ * Each class references an affected package by one field per reference,
+ * such as a field of type javax.servlet.Generated, which a scan counts
+ * exactly once.  Archives that are nested are a war of jars, or at depth
+ * two and more an ear of a war and jars.
+ */
+@Data
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class Corpus {
+
+    private static final int JAVA_VERSION = Opcodes.V1_8;
+
+    /**
+     * 2015-01-01T00:00:00Z, the earliest date of any archive
+     */
+    private static final long EPOCH = 1420070400000L;
+
+    private static final long YEAR = 365L * 24 * 60 * 60 * 1000;
+    private static final long MONTH = 30L * 24 * 60 * 60 * 1000;
+
+    private final long seed;
+
+    /**
+     * Number of artifacts, each one file in the repository
+     */
+    private final int jars;
+
+    /**
+     * Mean number of classes in each archive, nested ones included
+     */
+    private final long classes;
+
+    /**
+     * Mean bytes of incompressible resources in each archive
+     */
+    private final long size;
+
+    private final Distribution distribution;
+
+    /**
+     * Fraction of artifacts that are a war or ear rather than a jar
+     */
+    private final double nested;
+
+    /**
+     * How deep nested archives go.  One is a war of jars
+     */
+    private final int depth;
+
+    private final References references;
+
+    /**
+     * Writes each artifact under the directory as the stream is consumed.
+     *
+     * @return the usage a scan of each artifact must report
+     */
+    public Stream<PackageUsage<Jar>> generate(final File dir) {
+        return IntStream.range(0, jars).mapToObj(i -> {
+            try {
+                return artifact(dir, i);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private PackageUsage<Jar> artifact(final File dir, final int index) throws IOException {
+        final Random random = new Random(mix(seed * 0x9E3779B97F4A7C15L + index));
+
+        final int levels = depth > 0 && random.nextDouble() < nested ? 1 + random.nextInt(depth) : 0;
+        final String group = "org/example/g" + (index % Math.max(1, jars / 100));
+        final String artifact = "a" + index;
+        final String version = "1." + (index % 10);
+
+        final File file = new File(dir, String.format("%s/%s/%s/%s-%s.%s", group, artifact, version, artifact, version, extension(levels)));
+        final long time = EPOCH + (long) (random.nextDouble() * 5 * YEAR) / 2000 * 2000;
+
+        final Archive archive = new Archive(random, group + "/" + artifact, time);
+        Files.mkdirs(file.getParentFile());
+        try (OutputStream out = IO.write(file)) {
+            archive.write(out, levels, true);
+        }
+
+        if (!file.setLastModified(time)) throw new IOException("Cannot set the time of " + file);
+
+        final String sha1;
+        try {
+            sha1 = JarUsage.sha1(file);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final Jar jar = new Jar(file, sha1, file.lastModified(), JarUsage.internalDate(archive.dates), archive.classes,
+                file.length(), new int[]{JAVA_VERSION});
+        return new PackageUsage<>(jar).add(archive.usage);
+    }
+
+    /**
+     * The SplitMix64 finalizer.  Random seeds that are close together give
+     * nearly the same first numbers, so the seed of each artifact is mixed.
+     */
+    private static long mix(final long seed) {
+        long z = seed;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static String extension(final int levels) {
+        if (levels == 0) return "jar";
+        if (levels == 1) return "war";
+        return "ear";
+    }
+
+    /**
+     * The state of one artifact while it and its nested archives are written
+     */
+    private class Archive {
+        private final Random random;
+        private final String name;
+        private final long time;
+        private final PackageUsage<Object> usage = new PackageUsage<>();
+        private final QuantileSketch dates = new QuantileSketch();
+        private long classes;
+        private int archives;
+
+        Archive(final Random random, final String name, final long time) {
+            this.random = random;
+            this.name = name;
+            this.time = time;
+        }
+
+        /**
+         * @param top whether the entry dates count towards the internal date
+         */
+        private void write(final OutputStream out, final int levels, final boolean top) throws IOException {
+            final ZipOutputStream zip = new ZipOutputStream(out);
+            final String classPrefix = levels == 1 ? "WEB-INF/classes/" : "";
+            final String packageName = name + "/n" + archives++;
+
+            final long count = levels >= 2 ? 0 : Math.max(1, distribution.sample(random, Corpus.this.classes));
+            for (int i = 0; i < count; i++) {
+                final String className = packageName + "/C" + i;
+                entry(zip, classPrefix + className + ".class", top);
+                zip.write(generateClass(className));
+                classes++;
+            }
+
+            final long padding = distribution.sample(random, size);
+            if (padding > 0) {
+                entry(zip, "META-INF/padding.bin", top);
+                final byte[] bytes = new byte[(int) Math.min(padding, Integer.MAX_VALUE - 8)];
+                random.nextBytes(bytes);
+                zip.write(bytes);
+            }
+
+            if (levels > 0) {
+                final int inner = 1 + random.nextInt(3);
+                for (int i = 0; i < inner; i++) {
+                    // the first keeps going down so the full depth is reached
+                    final int level = i == 0 ? levels - 1 : 0;
+                    final String libPrefix = levels == 1 ? "WEB-INF/lib/" : level == 0 ? "lib/" : "";
+
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    write(bytes, level, false);
+
+                    entry(zip, libPrefix + "inner" + i + "." + extension(level), top);
+                    zip.write(bytes.toByteArray());
+                }
+            }
+
+            zip.finish();
+        }
+
+        private void entry(final ZipOutputStream zip, final String path, final boolean top) throws IOException {
+            final ZipEntry entry = new ZipEntry(path);
+            entry.setTime(time - (long) (random.nextDouble() * MONTH) / 2000 * 2000);
+            zip.putNextEntry(entry);
+
+            if (top) dates.add(JarUsage.getTime(entry));
+        }
+
+        private byte[] generateClass(final String className) {
+            final ClassWriter writer = new ClassWriter(0);
+            writer.visit(JAVA_VERSION, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, "java/lang/Object", null);
+
+            int field = 0;
+            for (final Package aPackage : Package.values()) {
+                if (random.nextDouble() >= references.get(aPackage)) continue;
+
+                final String type = aPackage.getName().replace('.', '/') + "/Generated";
+                for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                    writer.visitField(Opcodes.ACC_PUBLIC, "f" + field++, "L" + type + ";", null, null).visitEnd();
+                    usage.accept(type);
+                }
+            }
+
+            writer.visitEnd();
+            return writer.toByteArray();
+        }
+    }
+}
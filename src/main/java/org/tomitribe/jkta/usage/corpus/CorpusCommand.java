@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.corpus;
+
+import org.tomitribe.crest.api.Command;
+import org.tomitribe.crest.api.Default;
+import org.tomitribe.crest.api.Option;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.UsageAdder;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Size;
+import org.tomitribe.util.SizeUnit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.stream.Stream;
+
+@Command("corpus")
+public class CorpusCommand {
+
+    /**
+     * Name of the file with the expected scan results, written in the root
+     * of the generated repository
+     */
+    public static final String EXPECTED = "expected.tsv";
+
+    /**
+     * Generate a repository of jars in the Maven layout for testing and
+     * benchmarking scans offline.  The same options always produce exactly
+     * the same files.
+     *
+     * The rows a scan of the repository must produce are written to
+     * expected.tsv in the same format as usage dir with a repository of
+     * dir.  The rows are in the order the jars were generated, so sort
+     * both files before comparing them.
+     *
+     * @param jars number of artifacts to generate
+     * @param classes mean number of classes in each archive
+     * @param size mean size of the incompressible resources in each archive
+     * @param distribution how the classes and size of each archive vary
+     *                     around the mean
+     * @param nested fraction of the artifacts that are a war or ear of
+     *               other archives rather than a jar
+     * @param depth how deep nested archives go, 1 for a war of jars and 2
+     *              or more for ears of wars
+     * @param references fraction of classes referencing each package, such
+     *                   as *=0.01,javax.servlet=0.2 where * is every package
+     *                   not listed
+     * @param seed changes every generated file while keeping the rest
+     * @param dir where the repository is written
+     */
+    @Command
+    public String generate(@Option("jars") @Default("1000") final int jars,
+                           @Option("classes") @Default("50") final int classes,
+                           @Option("size") @Default("0kb") final Size size,
+                           @Option("distribution") @Default("lognormal") final Distribution distribution,
+                           @Option("nested") @Default("0.05") final double nested,
+                           @Option("depth") @Default("2") final int depth,
+                           @Option("references") @Default("*=0.02") final References references,
+                           @Option("seed") @Default("1") final long seed,
+                           final File dir) throws IOException {
+        final Corpus corpus = Corpus.builder()
+                .jars(jars)
+                .classes(classes)
+                .size(size.getSize(SizeUnit.BYTES))
+                .distribution(distribution)
+                .nested(nested)
+                .depth(depth)
+                .references(references)
+                .seed(seed)
+                .build();
+
+        Files.mkdirs(dir);
+        final UsageAdder total = new UsageAdder();
+        try (PrintStream out = new PrintStream(IO.write(new File(dir, EXPECTED)))) {
+            final Stream<PackageUsage<Jar>> usages = corpus.generate(dir).peek(total::addJar);
+            ScanTsv.toJarTsv(out, usages, dir);
+        }
+
+        return String.format("Generated %s jars with %s classes, %s affected, in %s", total.getScanned(),
+                total.getClasses(), total.getAffected(), dir.getAbsolutePath());
+    }
+}
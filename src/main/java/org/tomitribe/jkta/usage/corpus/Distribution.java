@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.corpus;
+
+import java.util.Random;
+
+/**
+ * How the number of classes and the size of each generated archive
+ * vary around the mean that was asked for
+ */
+public enum Distribution {
+
+    /**
+     * Always the mean
+     */
+    fixed {
+        @Override
+        public long sample(final Random random, final long mean) {
+            return mean;
+        }
+    },
+
+    /**
+     * Anywhere from zero to twice the mean
+     */
+    uniform {
+        @Override
+        public long sample(final Random random, final long mean) {
+            return (long) (random.nextDouble() * 2 * mean);
+        }
+    },
+
+    /**
+     * Mostly small with a long tail of large archives, as in a real
+     * repository.  Sigma is 1, so one in fifty is over five times
+     * the mean.
+     */
+    lognormal {
+        @Override
+        public long sample(final Random random, final long mean) {
+            return (long) (mean * Math.exp(random.nextGaussian() - 0.5));
+        }
+    };
+
+    public abstract long sample(Random random, long mean);
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.corpus;
+
+import org.tomitribe.jkta.usage.Package;
+
+import java.util.Arrays;
+
+/**
+ * The fraction of generated classes that reference each {@link Package}.
+ * Given on the command line as package=fraction pairs where * stands for
+ * every package not listed, such as "*=0.01,javax.servlet=0.2".
+ */
+public class References {
+
+    private final double[] fractions = new double[Package.values().length];
+
+    public References(final double fraction) {
+        Arrays.fill(fractions, check(fraction, "*"));
+    }
+
+    public References(final String value) {
+        final String[] pairs = value.split(",");
+
+        for (final String pair : pairs) {
+            final String[] parts = parse(pair, value);
+            if (parts[0].equals("*")) {
+                Arrays.fill(fractions, fraction(parts, value));
+            }
+        }
+
+        for (final String pair : pairs) {
+            final String[] parts = parse(pair, value);
+            if (parts[0].equals("*")) continue;
+            fractions[find(parts[0]).ordinal()] = fraction(parts, value);
+        }
+    }
+
+    /**
+     * @return the fraction of classes, from 0 to 1, referencing the package
+     */
+    public double get(final Package aPackage) {
+        return fractions[aPackage.ordinal()];
+    }
+
+    private static String[] parse(final String pair, final String value) {
+        final String[] parts = pair.trim().split("=");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected package=fraction pairs such as *=0.01,javax.servlet=0.2: " + value);
+        }
+        return parts;
+    }
+
+    private static double fraction(final String[] parts, final String value) {
+        try {
+            return check(Double.parseDouble(parts[1].trim()), parts[0]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected package=fraction pairs such as *=0.01,javax.servlet=0.2: " + value, e);
+        }
+    }
+
+    private static double check(final double fraction, final String name) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Fraction for " + name + " must be between 0 and 1: " + fraction);
+        }
+        return fraction;
+    }
+
+    private static Package find(final String name) {
+        for (final Package aPackage : Package.values()) {
+            if (aPackage.getName().equals(name.trim())) return aPackage;
+        }
+        throw new IllegalArgumentException("Unknown package " + name);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (final Package aPackage : Package.values()) {
+            if (sb.length() > 0) sb.append(",");
+            sb.append(aPackage.getName()).append("=").append(get(aPackage));
+        }
+        return sb.toString();
+    }
+}
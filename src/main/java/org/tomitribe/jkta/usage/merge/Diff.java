@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.merge;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.tsv.TsvWriter;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Compares two sets of rows sorted by the same {@link Key} in a single
+ * pass, as a merge join, and writes a row for every jar that was added,
+ * removed or changed.  Rows with the same key are compared, such as the
+ * same jar at a new path or a new jar at the same path.
+ *
+ * By path there may be several jars at one path.  When either side has
+ * more than one, the rows with the same SHA-1 are compared and the rest
+ * are added or removed.
+ *
+ * The counts of each row are the new counts less the old ones, so an
+ * added jar has its counts, a removed jar has them negated and a jar
+ * that moved from javax to jakarta has negative javax and positive
+ * jakarta counts.  The last row totals every change.
+ */
+public class Diff {
+
+    public static final String ADDED = "added";
+    public static final String REMOVED = "removed";
+    public static final String CHANGED = "changed";
+
+    private static final int JAVAX = 0;
+    private static final int JAKARTA = 1;
+    private static final int PACKAGES = 2;
+
+    private final Key key;
+    private final long[] total = new long[PACKAGES + Package.values().length];
+    private final long[] deltas = new long[total.length];
+    private long added;
+    private long removed;
+    private long changed;
+
+    public Diff(final Key key) {
+        this.key = key;
+    }
+
+    public String heading() {
+        final StringBuilder heading = new StringBuilder();
+        heading.append("Change\tSHA-1\tPath\tjavax uses total\tjakarta uses total");
+        for (final Package aPackage : Package.values()) {
+            heading.append('\t').append(aPackage.getName());
+        }
+        return heading.toString();
+    }
+
+    /**
+     * Writes the heading, one row per change and the totals
+     */
+    public void write(final OutputStream out, final Iterator<PackageUsage<Jar>> before, final Iterator<PackageUsage<Jar>> after) {
+        final TsvWriter writer = new TsvWriter(out);
+        writer.write(heading()).newline();
+
+        PackageUsage<Jar> old = before.hasNext() ? before.next() : null;
+        PackageUsage<Jar> now = after.hasNext() ? after.next() : null;
+
+        while (old != null || now != null) {
+            final int compare = old == null ? 1 : now == null ? -1 : key.of(old).compareTo(key.of(now));
+
+            if (compare < 0) {
+                removed++;
+                write(writer, REMOVED, old, old, null);
+                old = before.hasNext() ? before.next() : null;
+            } else if (compare > 0) {
+                added++;
+                write(writer, ADDED, now, null, now);
+                now = after.hasNext() ? after.next() : null;
+            } else {
+                final String same = key.of(old);
+                final List<PackageUsage<Jar>> olds = new ArrayList<>();
+                final List<PackageUsage<Jar>> nows = new ArrayList<>();
+                while (old != null && key.of(old).equals(same)) {
+                    olds.add(old);
+                    old = before.hasNext() ? before.next() : null;
+                }
+                while (now != null && key.of(now).equals(same)) {
+                    nows.add(now);
+                    now = after.hasNext() ? after.next() : null;
+                }
+                write(writer, olds, nows);
+            }
+        }
+
+        writer.write("total").tab()
+                .write("0000000000000000000000000000000000000000").tab()
+                .write(summary());
+        for (final long value : total) {
+            writer.tab().write(value);
+        }
+        writer.newline();
+        writer.flush();
+    }
+
+    /**
+     * Writes the changes between rows with the same key, both in SHA-1 order
+     */
+    private void write(final TsvWriter writer, final List<PackageUsage<Jar>> olds, final List<PackageUsage<Jar>> nows) {
+        if (olds.size() == 1 && nows.size() == 1) {
+            compare(writer, olds.get(0), nows.get(0));
+            return;
+        }
+
+        int o = 0;
+        int n = 0;
+        while (o < olds.size() || n < nows.size()) {
+            final int compare = o == olds.size() ? 1 : n == nows.size() ? -1
+                    : olds.get(o).getContext().getSha1().compareTo(nows.get(n).getContext().getSha1());
+
+            if (compare < 0) {
+                final PackageUsage<Jar> gone = olds.get(o++);
+                removed++;
+                write(writer, REMOVED, gone, gone, null);
+            } else if (compare > 0) {
+                final PackageUsage<Jar> next = nows.get(n++);
+                added++;
+                write(writer, ADDED, next, null, next);
+            } else {
+                compare(writer, olds.get(o++), nows.get(n++));
+            }
+        }
+    }
+
+    private void compare(final TsvWriter writer, final PackageUsage<Jar> old, final PackageUsage<Jar> now) {
+        if (!isChanged(old, now)) return;
+        changed++;
+        write(writer, CHANGED, now, old, now);
+    }
+
+    private boolean isChanged(final PackageUsage<Jar> old, final PackageUsage<Jar> now) {
+        return !old.getContext().getSha1().equals(now.getContext().getSha1())
+                || !Key.path.of(old).equals(Key.path.of(now))
+                || old.getJavax() != now.getJavax()
+                || old.getJakarta() != now.getJakarta()
+                || !Arrays.equals(old.getPackages(), now.getPackages());
+    }
+
+    private void write(final TsvWriter writer, final String change, final PackageUsage<Jar> row,
+                       final PackageUsage<Jar> old, final PackageUsage<Jar> now) {
+        Arrays.fill(deltas, 0);
+        if (now != null) add(now, 1);
+        if (old != null) add(old, -1);
+
+        writer.write(change).tab()
+                .write(row.getContext().getSha1()).tab()
+                .write(Key.path.of(row));
+        for (int i = 0; i < deltas.length; i++) {
+            writer.tab().write(deltas[i]);
+            total[i] += deltas[i];
+        }
+        writer.newline();
+    }
+
+    private void add(final PackageUsage<Jar> usage, final int sign) {
+        deltas[JAVAX] += sign * usage.getJavax();
+        deltas[JAKARTA] += sign * usage.getJakarta();
+
+        final int[] packages = usage.getPackages();
+        for (int i = 0; i < packages.length; i++) {
+            deltas[PACKAGES + i] += sign * packages[i];
+        }
+    }
+
+    public String summary() {
+        return String.format("%s added, %s removed, %s changed", added, removed, changed);
+    }
+
+    public long getAdded() {
+        return added;
+    }
+
+    public long getRemoved() {
+        return removed;
+    }
+
+    public long getChanged() {
+        return changed;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.merge;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Drops rows with the same key and SHA-1 as the row before them, which
+ * in rows sorted by {@link Key#comparator()} are all the duplicates.
+ * By {@link Key#sha1} that is every row of a jar after the first.  By
+ * {@link Key#path} it is only the same jar listed twice at one path.
+ */
+public class Distinct implements Iterator<PackageUsage<Jar>> {
+
+    private final Key key;
+    private final Iterator<PackageUsage<Jar>> rows;
+    private PackageUsage<Jar> previous;
+    private PackageUsage<Jar> next;
+    private long dropped;
+
+    public Distinct(final Key key, final Iterator<PackageUsage<Jar>> rows) {
+        this.key = key;
+        this.rows = rows;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && rows.hasNext()) {
+            final PackageUsage<Jar> row = rows.next();
+            if (previous != null && key.same(previous, row)) {
+                dropped++;
+            } else {
+                next = row;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public PackageUsage<Jar> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        previous = next;
+        next = null;
+        return previous;
+    }
+
+    /**
+     * @return the number of duplicate rows dropped so far
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.merge;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.tsv.JarTsv7;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.jkta.usage.tsv.TsvWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Sorts any number of rows holding at most maxRows of them in memory.
+ *
+ * Rows are collected until there are maxRows of them, then sorted and
+ * spilled to a temporary file as TSV.  When the rows spilled all follow
+ * the last row of the previous run they are appended to it, so input
+ * that is already in order, such as a previous merge, ends up as a
+ * single run however long it is.
+ *
+ * The runs and the rows still in memory are merged when the rows are
+ * read back.  At most fanIn runs are ever open at once: while there are
+ * more, the oldest are first merged into a new run, so memory and file
+ * handles stay bounded however many rows there are.
+ */
+public class ExternalSort implements Consumer<PackageUsage<Jar>>, Closeable {
+
+    private static final int FAN_IN = 64;
+
+    private final Comparator<PackageUsage<Jar>> comparator;
+    private final int maxRows;
+    private final int fanIn;
+    private final List<File> runs = new ArrayList<>();
+    private final List<RunIterator> readers = new ArrayList<>();
+    private List<PackageUsage<Jar>> rows = new ArrayList<>();
+    private PackageUsage<Jar> last;
+    private long count;
+    private int spills;
+    private int created;
+    private int passes;
+
+    public ExternalSort(final Comparator<PackageUsage<Jar>> comparator, final int maxRows) {
+        this(comparator, maxRows, FAN_IN);
+    }
+
+    ExternalSort(final Comparator<PackageUsage<Jar>> comparator, final int maxRows, final int fanIn) {
+        if (maxRows < 1) throw new IllegalArgumentException("maxRows must be at least 1: " + maxRows);
+        if (fanIn < 2) throw new IllegalArgumentException("fanIn must be at least 2: " + fanIn);
+        this.comparator = comparator;
+        this.maxRows = maxRows;
+        this.fanIn = fanIn;
+    }
+
+    @Override
+    public void accept(final PackageUsage<Jar> usage) {
+        rows.add(usage);
+        count++;
+        if (rows.size() >= maxRows) spill();
+    }
+
+    /**
+     * Writes the rows in memory sorted to the end of the last run if
+     * they follow it, or else to a new run
+     */
+    private void spill() {
+        rows.sort(comparator);
+        spills++;
+
+        final boolean append = last != null && comparator.compare(last, rows.get(0)) <= 0;
+        if (!append) created++;
+        try {
+            final File file = append ? runs.get(runs.size() - 1) : newRun();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, append))) {
+                write(rows.iterator(), out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        last = rows.get(rows.size() - 1);
+        rows = new ArrayList<>();
+    }
+
+    private File newRun() throws IOException {
+        final File file = File.createTempFile("jkta-sort-", ".run");
+        file.deleteOnExit();
+        runs.add(file);
+        return file;
+    }
+
+    /**
+     * Writes the columns of each row as {@link JarTsv7} reads them, in
+     * UTF-8 whatever the default charset so they read back the same
+     */
+    private static void write(final Iterator<PackageUsage<Jar>> usages, final OutputStream out) {
+        final TsvWriter writer = new TsvWriter(out, 64 * 1024, StandardCharsets.UTF_8);
+        usages.forEachRemaining(usage -> {
+            final Jar jar = usage.getContext();
+            writer.write(jar.getSha1()).tab()
+                    .write(jar.getLastModified()).tab()
+                    .write(jar.getInternalDate()).tab()
+                    .write(jar.getSize()).tab()
+                    .write(jar.getClasses()).tab();
+            ScanTsv.versions(jar, writer).tab();
+            writer.write(jar.getJar().getPath()).tab();
+            usage.toTsv(writer);
+            writer.newline();
+        });
+        writer.flush();
+    }
+
+    /**
+     * @return how many times the rows were spilled to disk
+     */
+    public int getSpills() {
+        return spills;
+    }
+
+    /**
+     * @return the number of runs spilled rows were written to, as rows
+     * that follow the previous run are appended to it
+     */
+    public int getRuns() {
+        return created;
+    }
+
+    /**
+     * @return how many times runs were merged into a new run to keep
+     * the number open at once within the fan-in
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * @return the number of rows added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Every row added so far in order.  No more rows should be added
+     * once this is called.
+     */
+    public Iterator<PackageUsage<Jar>> sorted() {
+        rows.sort(comparator);
+
+        try {
+            final int inMemory = rows.isEmpty() ? 0 : 1;
+            while (runs.size() + inMemory > fanIn) {
+                mergeOldest(Math.min(fanIn, runs.size() + inMemory - fanIn + 1));
+            }
+
+            final List<Iterator<PackageUsage<Jar>>> inputs = new ArrayList<>();
+            for (final File run : runs) {
+                inputs.add(open(run));
+            }
+            inputs.add(rows.iterator());
+
+            return new Merge<>(inputs, comparator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replaces the oldest runs with one run holding all their rows
+     */
+    private void mergeOldest(final int width) throws IOException {
+        final List<File> oldest = new ArrayList<>(runs.subList(0, width));
+        runs.subList(0, width).clear();
+
+        final List<Iterator<PackageUsage<Jar>>> inputs = new ArrayList<>();
+        for (final File run : oldest) {
+            inputs.add(open(run));
+        }
+
+        final File merged = newRun();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(merged))) {
+            write(new Merge<>(inputs, comparator), out);
+        }
+        passes++;
+
+        for (final Iterator<PackageUsage<Jar>> input : inputs) {
+            final RunIterator reader = (RunIterator) input;
+            reader.close();
+            readers.remove(reader);
+        }
+        oldest.forEach(File::delete);
+    }
+
+    private RunIterator open(final File run) throws IOException {
+        final RunIterator iterator = new RunIterator(run);
+        readers.add(iterator);
+        return iterator;
+    }
+
+    @Override
+    public void close() {
+        for (final RunIterator reader : readers) {
+            reader.close();
+        }
+        readers.clear();
+        runs.forEach(File::delete);
+        runs.clear();
+        rows = new ArrayList<>();
+    }
+
+    private static class RunIterator implements Iterator<PackageUsage<Jar>>, Closeable {
+        private final JarTsv7 format = new JarTsv7(line -> {
+            throw new IllegalStateException("Unreadable row in sort run: " + line);
+        });
+        private final BufferedReader reader;
+        private String line;
+
+        RunIterator(final File file) throws IOException {
+            this.reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (line != null) return true;
+            try {
+                line = reader.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return line != null;
+        }
+
+        @Override
+        public PackageUsage<Jar> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            final PackageUsage<Jar> usage = format.read(line);
+            line = null;
+            return usage;
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // the run is deleted next either way
+            }
+        }
+    }
+}
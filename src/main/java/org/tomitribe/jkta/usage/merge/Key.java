@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.merge;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.util.Comparator;
+
+/**
+ * The order rows are merged and compared in.  Rows with the same key
+ * are ordered by SHA-1 so rows with the same key and SHA-1 are always
+ * next to each other.
+ */
+public enum Key {
+    sha1,
+
+    /**
+     * The path of the jar relative to the repository
+     */
+    path;
+
+    public String of(final Jar jar) {
+        if (this == sha1) return jar.getSha1();
+        if (jar.getJar() == null) return "";
+        return jar.getJar().getPath().replace('\\', '/');
+    }
+
+    public String of(final PackageUsage<Jar> usage) {
+        return of(usage.getContext());
+    }
+
+    public Comparator<PackageUsage<Jar>> comparator() {
+        final Comparator<PackageUsage<Jar>> byKey = Comparator.comparing(this::of);
+        return byKey.thenComparing(Key.sha1::of);
+    }
+
+    /**
+     * @return true if the rows have the same key and SHA-1
+     */
+    public boolean same(final PackageUsage<Jar> a, final PackageUsage<Jar> b) {
+        return of(a).equals(of(b)) && a.getContext().getSha1().equals(b.getContext().getSha1());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.merge;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * A k-way merge of sorted iterators.  Only the next element of each
+ * iterator is held, so any number of inputs of any size can be merged.
+ * Equal elements come out in the order of the iterators given.
+ */
+public class Merge<T> implements Iterator<T> {
+
+    private final PriorityQueue<Cursor<T>> cursors;
+
+    public Merge(final List<Iterator<T>> inputs, final Comparator<T> comparator) {
+        final Comparator<Cursor<T>> byElement = (a, b) -> comparator.compare(a.element, b.element);
+        this.cursors = new PriorityQueue<>(Math.max(1, inputs.size()), byElement.thenComparing(cursor -> cursor.index));
+
+        for (int i = 0; i < inputs.size(); i++) {
+            final Cursor<T> cursor = new Cursor<>(i, inputs.get(i));
+            if (cursor.next()) cursors.add(cursor);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !cursors.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        final Cursor<T> cursor = cursors.poll();
+        if (cursor == null) throw new NoSuchElementException();
+
+        final T element = cursor.element;
+        if (cursor.next()) cursors.add(cursor);
+        return element;
+    }
+
+    private static class Cursor<T> {
+        private final int index;
+        private final Iterator<T> iterator;
+        private T element;
+
+        Cursor(final int index, final Iterator<T> iterator) {
+            this.index = index;
+            this.iterator = iterator;
+        }
+
+        boolean next() {
+            if (!iterator.hasNext()) return false;
+            element = iterator.next();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.merge;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.columnar.Columnar;
+import org.tomitribe.jkta.usage.columnar.ColumnarReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads any number of TSV or columnar files, plain or gzipped, as one
+ * stream of rows sorted by a {@link Key} with the duplicates dropped.
+ *
+ * Files already in order, such as a previous merge, are merged straight
+ * from the file and never held or written anywhere.  The order of each
+ * file is checked by reading it through first, keeping nothing, up to
+ * the first row out of order.  Only files with such a row are read into
+ * an {@link ExternalSort} holding at most maxRows in memory.  At most
+ * FAN_IN files are merged straight from the file so the number open at
+ * once stays bounded; any more in order are sorted like the rest.
+ */
+public class SortedInputs implements Closeable {
+
+    private static final int FAN_IN = 64;
+
+    private final Key key;
+    private final int threads;
+    private final ExternalSort sort;
+    private final List<Stream<PackageUsage<Jar>>> streams = new ArrayList<>();
+    private Distinct distinct;
+    private int inputs;
+
+    public SortedInputs(final Key key, final int threads, final int maxRows) {
+        this.key = key;
+        this.threads = threads;
+        this.sort = new ExternalSort(key.comparator(), maxRows);
+    }
+
+    public Iterator<PackageUsage<Jar>> read(final List<File> files) throws IOException {
+        final List<Iterator<PackageUsage<Jar>>> sorted = new ArrayList<>();
+
+        for (final File file : files) {
+            inputs++;
+            if (streams.size() < FAN_IN && isSorted(file)) {
+                final Stream<PackageUsage<Jar>> stream = open(file);
+                streams.add(stream);
+                sorted.add(stream.iterator());
+                continue;
+            }
+
+            try (Stream<PackageUsage<Jar>> stream = open(file)) {
+                stream.forEach(sort);
+            }
+        }
+
+        sorted.add(sort.sorted());
+        distinct = new Distinct(key, new Merge<>(sorted, key.comparator()));
+        return distinct;
+    }
+
+    /**
+     * @return true if no row of the file comes before the row above it
+     */
+    private boolean isSorted(final File file) throws IOException {
+        final Comparator<PackageUsage<Jar>> comparator = key.comparator();
+
+        try (Stream<PackageUsage<Jar>> stream = open(file)) {
+            final Iterator<PackageUsage<Jar>> rows = stream.iterator();
+            PackageUsage<Jar> previous = null;
+            while (rows.hasNext()) {
+                final PackageUsage<Jar> row = rows.next();
+                if (previous != null && comparator.compare(previous, row) > 0) return false;
+                previous = row;
+            }
+            return true;
+        }
+    }
+
+    private Stream<PackageUsage<Jar>> open(final File file) throws IOException {
+        return Columnar.read(file, null, threads, ColumnarReader::read);
+    }
+
+    /**
+     * @return the number of duplicate rows dropped so far
+     */
+    public long getDropped() {
+        return distinct == null ? 0 : distinct.getDropped();
+    }
+
+    public String summary() {
+        return String.format("%s inputs by %s, %s in order, %s rows sorted in %s runs, %s duplicates dropped",
+                inputs, key, streams.size(), sort.getCount(), sort.getRuns(), getDropped());
+    }
+
+    @Override
+    public void close() {
+        streams.forEach(Stream::close);
+        streams.clear();
+        sort.close();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.metrics;
+
+/**
+ * The steps of a scan whose latency is recorded
+ */
+public enum Phase {
+    /**
+     * Computing the SHA-1 of a whole jar.  Not recorded by the stream
+     * reader, which hashes the jar as it inflates it
+     */
+    hash,
+
+    /**
+     * Inflating a single class out of its archive
+     */
+    inflate,
+
+    /**
+     * Visiting a single class with ASM, including the constant pool check
+     */
+    visit,
+
+    /**
+     * Writing a single TSV row
+     */
+    write
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.metrics;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints a line such as the following at a fixed interval while a scan
+ * runs, and once more when it is closed:
+ *
+ * <pre>
+ * 1204 of 5000 jars, 3.1 GB read, 40.2 jars/s, 102.7 MB/s, 91031 classes, eta 0:01:34
+ * </pre>
+ *
+ * Counts start from zero when the progress is created.  The ETA covers
+ * the jars listed so far, which is all of them once the scan lists files
+ * ahead of scanning, such as with more than one thread or a pipeline.
+ */
+public class Progress implements Closeable {
+
+    private final ScanMetrics metrics;
+    private final PrintStream out;
+    private final ScheduledExecutorService executor;
+    private final long started = System.nanoTime();
+    private final long listed;
+    private final long jars;
+    private final long bytes;
+    private final long classes;
+
+    public Progress(final ScanMetrics metrics, final PrintStream out, final long interval, final TimeUnit unit) {
+        this.metrics = metrics;
+        this.out = out;
+        this.listed = metrics.getListed();
+        this.jars = metrics.getJars();
+        this.bytes = metrics.getBytesRead();
+        this.classes = metrics.getClasses();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "jkta-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleAtFixedRate(this::print, interval, interval, unit);
+    }
+
+    public String line() {
+        final double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+        final long listed = metrics.getListed() - this.listed;
+        final long jars = metrics.getJars() - this.jars;
+        final long bytes = metrics.getBytesRead() - this.bytes;
+        final long classes = metrics.getClasses() - this.classes;
+
+        final double jarsPerSecond = jars / seconds;
+        final String eta = jarsPerSecond > 0 && listed >= jars
+                ? duration((long) ((listed - jars) / jarsPerSecond))
+                : "?";
+
+        return String.format("%s of %s jars, %s read, %.1f jars/s, %s/s, %s classes, eta %s",
+                jars, listed, bytes(bytes), jarsPerSecond, bytes((long) (bytes / seconds)), classes, eta);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        print();
+    }
+
+    private void print() {
+        out.println(line());
+    }
+
+    private static String duration(final long seconds) {
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    private static String bytes(final long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        if (bytes < 1024L * 1024 * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+}
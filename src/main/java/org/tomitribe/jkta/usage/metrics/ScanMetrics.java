@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies of every scan in this JVM.  Everything is
+ * recorded with LongAdders so it stays on all the time; the cost is
+ * a few System.nanoTime calls per class.
+ *
+ * The instance returned by {@link #get()} is registered with the platform
+ * MBean server as org.tomitribe.jkta:type=ScanMetrics.
+ */
+public class ScanMetrics implements ScanMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.tomitribe.jkta:type=ScanMetrics";
+
+    private static final ScanMetrics INSTANCE = register(new ScanMetrics());
+
+    private final LongAdder listed = new LongAdder();
+    private final LongAdder jars = new LongAdder();
+    private final LongAdder classes = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesInflated = new LongAdder();
+    private final LongAdder estimatedDates = new LongAdder();
+    private final Histogram[] latencies = new Histogram[Phase.values().length];
+    private final SlowestJars slowest = new SlowestJars(10);
+
+    public ScanMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Histogram();
+        }
+    }
+
+    public static ScanMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * A file was listed to be scanned
+     */
+    public void listed() {
+        listed.increment();
+    }
+
+    /**
+     * A jar's results were produced, scanned or not
+     */
+    public void jar(final long bytes) {
+        jars.increment();
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * A jar was scanned from start to finish in the given time
+     */
+    public void scanned(final String path, final long nanos) {
+        slowest.record(path, nanos);
+    }
+
+    /**
+     * An internal date was estimated from more entry dates
+     * than the quantile sketch holds exactly
+     */
+    public void estimated() {
+        estimatedDates.increment();
+    }
+
+    public void inflated(final long bytes, final long nanos) {
+        bytesInflated.add(bytes);
+        latencies[Phase.inflate.ordinal()].record(nanos);
+    }
+
+    public void visited(final long nanos) {
+        classes.increment();
+        latencies[Phase.visit.ordinal()].record(nanos);
+    }
+
+    public void record(final Phase phase, final long nanos) {
+        latencies[phase.ordinal()].record(nanos);
+    }
+
+    public Histogram getHistogram(final Phase phase) {
+        return latencies[phase.ordinal()];
+    }
+
+    @Override
+    public long getListed() {
+        return listed.sum();
+    }
+
+    @Override
+    public long getJars() {
+        return jars.sum();
+    }
+
+    @Override
+    public long getClasses() {
+        return classes.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesInflated() {
+        return bytesInflated.sum();
+    }
+
+    @Override
+    public long getEstimatedDates() {
+        return estimatedDates.sum();
+    }
+
+    @Override
+    public Map<String, Long> getLatencies() {
+        final Map<String, Long> map = new LinkedHashMap<>();
+        for (final Phase phase : Phase.values()) {
+            final Histogram histogram = getHistogram(phase);
+            map.put(phase + ".count", histogram.getCount());
+            map.put(phase + ".p50", micros(histogram.getPercentile(50)));
+            map.put(phase + ".p99", micros(histogram.getPercentile(99)));
+            map.put(phase + ".max", micros(histogram.getMax()));
+        }
+        return map;
+    }
+
+    @Override
+    public List<String> getSlowestJars() {
+        return slowest.get();
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static ScanMetrics register(final ScanMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException | RuntimeException e) {
+            // metrics are still recorded, just not visible over JMX
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registered as org.tomitribe.jkta:type=ScanMetrics
+ */
+public interface ScanMetricsMXBean {
+
+    long getListed();
+
+    long getJars();
+
+    long getClasses();
+
+    long getBytesRead();
+
+    long getBytesInflated();
+
+    /**
+     * Internal dates estimated rather than computed exactly
+     */
+    long getEstimatedDates();
+
+    /**
+     * Count, p50, p99 and max in microseconds of each {@link Phase}
+     * keyed as "visit.p99"
+     */
+    Map<String, Long> getLatencies();
+
+    List<String> getSlowestJars();
+}
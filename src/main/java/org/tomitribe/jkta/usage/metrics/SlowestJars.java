@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The jars that took the longest to scan.  Once the list is full only
+ * jars slower than all of those kept take the lock.
+ */
+public class SlowestJars {
+
+    private final int size;
+    private final PriorityQueue<Entry> slowest = new PriorityQueue<>(Comparator.comparingLong(Entry::getNanos));
+    private volatile long threshold = -1;
+
+    public SlowestJars(final int size) {
+        this.size = size;
+    }
+
+    public void record(final String path, final long nanos) {
+        if (nanos <= threshold) return;
+
+        synchronized (slowest) {
+            slowest.add(new Entry(path, nanos));
+            if (slowest.size() > size) slowest.poll();
+            if (slowest.size() == size) threshold = slowest.peek().getNanos();
+        }
+    }
+
+    /**
+     * @return the slowest jars first as "path millis ms"
+     */
+    public List<String> get() {
+        final List<Entry> entries;
+        synchronized (slowest) {
+            entries = new ArrayList<>(slowest);
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::getNanos).reversed());
+
+        final List<String> list = new ArrayList<>(entries.size());
+        for (final Entry entry : entries) {
+            list.add(entry.getPath() + " " + TimeUnit.NANOSECONDS.toMillis(entry.getNanos()) + " ms");
+        }
+        return list;
+    }
+
+    private static class Entry {
+        private final String path;
+        private final long nanos;
+
+        Entry(final String path, final long nanos) {
+            this.path = path;
+            this.nanos = nanos;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.query;
+
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+/**
+ * A count that can be named in a query: the "javax" and "jakarta"
+ * totals or the name of a package such as "javax.ejb".
+ */
+public class Field {
+
+    private static final int JAVAX = -1;
+    private static final int JAKARTA = -2;
+
+    private final String name;
+    private final int ordinal;
+
+    private Field(final String name, final int ordinal) {
+        this.name = name;
+        this.ordinal = ordinal;
+    }
+
+    public static Field parse(final String name) {
+        if ("javax".equals(name)) return new Field(name, JAVAX);
+        if ("jakarta".equals(name)) return new Field(name, JAKARTA);
+
+        for (final Package aPackage : Package.values()) {
+            if (aPackage.getName().equals(name)) return new Field(name, aPackage.ordinal());
+        }
+
+        throw new IllegalArgumentException(String.format("Unknown field '%s'.  Expected javax, jakarta or a package name such as javax.ejb", name));
+    }
+
+    public int get(final PackageUsage<?> usage) {
+        if (ordinal >= 0) return usage.getPackages()[ordinal];
+        return ordinal == JAVAX ? usage.getJavax() : usage.getJakarta();
+    }
+
+    /**
+     * @return the package counted or null for the javax and jakarta totals
+     */
+    public Package getPackage() {
+        return ordinal >= 0 ? Package.values()[ordinal] : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
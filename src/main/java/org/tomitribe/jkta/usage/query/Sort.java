@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.query;
+
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Orders rows by one {@link Field}, largest first unless ":asc" is given,
+ * such as "javax.ejb" or "jakarta:asc".  Rows with the same count keep
+ * their input order.
+ */
+public class Sort {
+
+    private final Field field;
+    private final boolean ascending;
+
+    private Sort(final Field field, final boolean ascending) {
+        this.field = field;
+        this.ascending = ascending;
+    }
+
+    public static Sort parse(final String text) {
+        final int colon = text.lastIndexOf(':');
+        if (colon == -1) return new Sort(Field.parse(text.trim()), false);
+
+        final String direction = text.substring(colon + 1).trim();
+        final Field field = Field.parse(text.substring(0, colon).trim());
+
+        if ("asc".equalsIgnoreCase(direction)) return new Sort(field, true);
+        if ("desc".equalsIgnoreCase(direction)) return new Sort(field, false);
+        throw new IllegalArgumentException(String.format("Unknown sort direction '%s'.  Expected asc or desc", direction));
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Comparator<PackageUsage<?>> comparator() {
+        final Comparator<PackageUsage<?>> comparator = Comparator.comparingInt(field::get);
+        return ascending ? comparator : comparator.reversed();
+    }
+
+    /**
+     * @param limit when more than zero only this many rows are kept while
+     *              sorting, so finding the top rows of a large file only
+     *              holds that many rows in memory
+     */
+    public <T extends PackageUsage<?>> Stream<T> sort(final Stream<T> usages, final int limit) {
+        if (limit <= 0) return usages.sorted(comparator());
+
+        final Comparator<Ranked<T>> order = Comparator.<Ranked<T>, PackageUsage<?>>comparing(ranked -> ranked.usage, comparator())
+                .thenComparingLong(ranked -> ranked.index);
+
+        // The worst of the rows kept is at the head so it can be dropped
+        final PriorityQueue<Ranked<T>> kept = new PriorityQueue<>(limit + 1, order.reversed());
+        final long[] index = {0};
+
+        usages.forEach(usage -> {
+            kept.add(new Ranked<>(index[0]++, usage));
+            if (kept.size() > limit) kept.poll();
+        });
+
+        final List<Ranked<T>> sorted = new ArrayList<>(kept);
+        sorted.sort(order);
+        return sorted.stream().map(ranked -> ranked.usage);
+    }
+
+    @Override
+    public String toString() {
+        return field + (ascending ? ":asc" : ":desc");
+    }
+
+    private static class Ranked<T> {
+        private final long index;
+        private final T usage;
+
+        Ranked(final long index, final T usage) {
+            this.index = index;
+            this.usage = usage;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.query;
+
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A boolean expression over the counts of a row, such as:
+ *
+ * <pre>
+ * javax.ejb>0 &amp;&amp; (javax.ws.rs>=10 || jakarta.servlet==0)
+ * </pre>
+ *
+ * Each comparison is between a {@link Field} and an integer using one of
+ * ==, !=, &gt;, &gt;=, &lt; or &lt;=.  Comparisons can be combined with
+ * &amp;&amp;, || and ! and grouped with parentheses.  &amp;&amp; binds
+ * tighter than ||.
+ *
+ * The expression is parsed once into a tree of int comparisons that is
+ * evaluated left to right and stops as soon as the result is known.
+ */
+public class Where implements Predicate<PackageUsage<?>> {
+
+    private final String expression;
+    private final Predicate<PackageUsage<?>> predicate;
+    private final Set<Package> packages = EnumSet.noneOf(Package.class);
+
+    private Where(final String expression) {
+        this.expression = expression;
+        this.predicate = new Parser(expression).parse();
+    }
+
+    public static Where parse(final String expression) {
+        return new Where(expression);
+    }
+
+    @Override
+    public boolean test(final PackageUsage<?> usage) {
+        return predicate.test(usage);
+    }
+
+    /**
+     * @return the packages whose counts are compared
+     */
+    public Set<Package> getPackages() {
+        return packages;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private enum Operator {
+        EQ("=="), NE("!="), GE(">="), LE("<="), GT(">"), LT("<");
+
+        private final String symbol;
+
+        Operator(final String symbol) {
+            this.symbol = symbol;
+        }
+
+        boolean test(final int count, final int value) {
+            switch (this) {
+                case EQ: return count == value;
+                case NE: return count != value;
+                case GE: return count >= value;
+                case LE: return count <= value;
+                case GT: return count > value;
+                case LT: return count < value;
+                default: throw new IllegalStateException(name());
+            }
+        }
+    }
+
+    private static class Comparison implements Predicate<PackageUsage<?>> {
+        private final Field field;
+        private final Operator operator;
+        private final int value;
+
+        Comparison(final Field field, final Operator operator, final int value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(final PackageUsage<?> usage) {
+            return operator.test(field.get(usage), value);
+        }
+    }
+
+    private static class And implements Predicate<PackageUsage<?>> {
+        private final Predicate<PackageUsage<?>> left;
+        private final Predicate<PackageUsage<?>> right;
+
+        And(final Predicate<PackageUsage<?>> left, final Predicate<PackageUsage<?>> right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(final PackageUsage<?> usage) {
+            return left.test(usage) && right.test(usage);
+        }
+    }
+
+    private static class Or implements Predicate<PackageUsage<?>> {
+        private final Predicate<PackageUsage<?>> left;
+        private final Predicate<PackageUsage<?>> right;
+
+        Or(final Predicate<PackageUsage<?>> left, final Predicate<PackageUsage<?>> right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(final PackageUsage<?> usage) {
+            return left.test(usage) || right.test(usage);
+        }
+    }
+
+    private static class Not implements Predicate<PackageUsage<?>> {
+        private final Predicate<PackageUsage<?>> predicate;
+
+        Not(final Predicate<PackageUsage<?>> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean test(final PackageUsage<?> usage) {
+            return !predicate.test(usage);
+        }
+    }
+
+    /**
+     * Recursive descent parser.  Each method consumes the
+     * text it parsed and any whitespace after it.
+     */
+    private class Parser {
+        private final String text;
+        private int position;
+
+        Parser(final String text) {
+            this.text = text;
+        }
+
+        Predicate<PackageUsage<?>> parse() {
+            skipWhitespace();
+            final Predicate<PackageUsage<?>> predicate = or();
+            if (position < text.length()) throw error("Unexpected '" + text.charAt(position) + "'");
+            return predicate;
+        }
+
+        private Predicate<PackageUsage<?>> or() {
+            Predicate<PackageUsage<?>> predicate = and();
+            while (consume("||")) {
+                predicate = new Or(predicate, and());
+            }
+            return predicate;
+        }
+
+        private Predicate<PackageUsage<?>> and() {
+            Predicate<PackageUsage<?>> predicate = not();
+            while (consume("&&")) {
+                predicate = new And(predicate, not());
+            }
+            return predicate;
+        }
+
+        private Predicate<PackageUsage<?>> not() {
+            if (!text.startsWith("!=", position) && consume("!")) return new Not(not());
+            if (consume("(")) {
+                final Predicate<PackageUsage<?>> predicate = or();
+                if (!consume(")")) throw error("Expected ')'");
+                return predicate;
+            }
+            return comparison();
+        }
+
+        private Predicate<PackageUsage<?>> comparison() {
+            final Field field = field();
+            final Operator operator = operator();
+            final int value = value();
+
+            if (field.getPackage() != null) packages.add(field.getPackage());
+            return new Comparison(field, operator, value);
+        }
+
+        private Field field() {
+            final int start = position;
+            while (position < text.length() && isFieldChar(text.charAt(position))) {
+                position++;
+            }
+            if (start == position) throw error("Expected a package name, javax or jakarta");
+
+            final String name = text.substring(start, position);
+            skipWhitespace();
+
+            try {
+                return Field.parse(name);
+            } catch (IllegalArgumentException e) {
+                position = start;
+                throw error(e.getMessage());
+            }
+        }
+
+        private Operator operator() {
+            for (final Operator operator : Operator.values()) {
+                if (consume(operator.symbol)) return operator;
+            }
+            throw error("Expected one of == != > >= < <=");
+        }
+
+        private int value() {
+            final int start = position;
+            if (position < text.length() && text.charAt(position) == '-') position++;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+
+            try {
+                final int value = Integer.parseInt(text.substring(start, position));
+                skipWhitespace();
+                return value;
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Expected a number");
+            }
+        }
+
+        private boolean consume(final String token) {
+            if (!text.startsWith(token, position)) return false;
+            position += token.length();
+            skipWhitespace();
+            return true;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private boolean isFieldChar(final char c) {
+            return Character.isLetterOrDigit(c) || c == '.' || c == '_';
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(String.format("%s at position %s of '%s'", message, position, text));
+        }
+    }
+}
@@ -19,16 +19,20 @@ package org.tomitribe.jkta.usage.scan;
 import org.objectweb.asm.ConstantDynamic;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.signature.SignatureReader;
 
 public class BytecodeUsage {
 
-    private final Usage usage;
-    private final int api;
+    private Usage usage;
 
-    public BytecodeUsage(final Usage usage, final int api) {
+    public BytecodeUsage(final Usage usage) {
+        this.usage = usage;
+    }
+
+    /**
+     * Points this and every scanner sharing it at the next class's usage
+     */
+    void setUsage(final Usage usage) {
         this.usage = usage;
-        this.api = api;
     }
 
     public void addName(final String name) {
@@ -36,9 +40,7 @@ public class BytecodeUsage {
             return;
         }
 
-        final String className = name.replace('/', '.');
-
-        usage.accept(className);
+        usage.accept(name, 0, name.length());
     }
 
     public Usage getUsage() {
@@ -52,27 +54,23 @@ public class BytecodeUsage {
     }
 
     public void addDesc(final String desc) {
-        addType(Type.getType(desc));
+        if (desc == null) return;
+        DescriptorScanner.descriptor(desc, usage);
     }
 
     public void addSignature(final String signature) {
-        if (signature != null) {
-            new SignatureReader(signature).accept(new SignatureScanner(api, this));
-        }
+        if (signature == null) return;
+        DescriptorScanner.signature(signature, usage);
     }
 
     public void addTypeSignature(final String signature) {
-        if (signature != null) {
-            new SignatureReader(signature).acceptType(new SignatureScanner(api, this));
-        }
+        if (signature == null) return;
+        DescriptorScanner.typeSignature(signature, usage);
     }
 
     public void addMethodDesc(final String desc) {
-        addType(Type.getReturnType(desc));
-        final Type[] types = Type.getArgumentTypes(desc);
-        for (Type type : types) {
-            addType(type);
-        }
+        if (desc == null) return;
+        DescriptorScanner.descriptor(desc, usage);
     }
 
     public void addHandle(final Handle handle) {
@@ -92,7 +90,12 @@ public class BytecodeUsage {
 
     public void addObjectType(final String type) {
         if (type == null) return;
-        addType(Type.getObjectType(type));
+
+        if (type.startsWith("[")) {
+            DescriptorScanner.descriptor(type, usage);
+        } else {
+            addName(type);
+        }
     }
 
     public void addType(final Type t) {
@@ -101,7 +104,7 @@ public class BytecodeUsage {
                 addType(t.getElementType());
                 break;
             case Type.OBJECT:
-                addName(t.getClassName());
+                addName(t.getInternalName());
                 break;
             case Type.METHOD:
                 addMethodDesc(t.getDescriptor());
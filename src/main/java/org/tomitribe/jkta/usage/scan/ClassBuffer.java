@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.scan;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A growable byte array a class file is read into, reused for every
+ * class a thread scans so each class does not need an array of its own.
+ */
+class ClassBuffer {
+
+    private static final int INITIAL_SIZE = 8 * 1024;
+
+    /**
+     * Arrays grown beyond this size for an unusually large class
+     * are dropped afterwards rather than held on to
+     */
+    private static final int MAX_RETAINED = 1024 * 1024;
+
+    private byte[] bytes = new byte[INITIAL_SIZE];
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Reads the stream to the end
+     *
+     * @param size the expected size such as ZipEntry.getSize() or -1 if not known
+     * @return the number of bytes read into {@link #getBytes()}
+     */
+    public int read(final InputStream in, final long size) throws IOException {
+        if (size >= 0 && size < Integer.MAX_VALUE) {
+            // one extra byte so end of stream is seen without growing
+            ensure((int) size + 1);
+        }
+
+        int length = 0;
+        while (true) {
+            if (length == bytes.length) {
+                ensure(length + 1);
+            }
+
+            final int read = in.read(bytes, length, bytes.length - length);
+            if (read == -1) return length;
+            length += read;
+        }
+    }
+
+    /**
+     * Called once the bytes are no longer needed
+     */
+    public void release() {
+        if (bytes.length > MAX_RETAINED) {
+            bytes = new byte[INITIAL_SIZE];
+        }
+    }
+
+    private void ensure(final int capacity) {
+        if (capacity <= bytes.length) return;
+
+        int size = bytes.length;
+        while (size < capacity) {
+            size = size > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : size * 2;
+        }
+
+        final byte[] grown = new byte[size];
+        System.arraycopy(bytes, 0, grown, 0, bytes.length);
+        bytes = grown;
+    }
+}
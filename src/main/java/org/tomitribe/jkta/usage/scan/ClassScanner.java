@@ -17,21 +17,117 @@
 package org.tomitribe.jkta.usage.scan;
 
 import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.TypePath;
-
+import org.tomitribe.jkta.jfr.ClassParse;
+import org.tomitribe.jkta.jfr.Jfr;
+import org.tomitribe.jkta.usage.metrics.ScanMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Visits a class and everything in it with a single set of visitors.
+ * The field, method and annotation scanners keep no state of their own
+ * so one of each is created up front and handed out for every member,
+ * rather than one per member.
+ *
+ * The static scan methods use one scanner and one {@link ClassBuffer}
+ * per thread, so scanning a class allocates nothing of ours beyond what
+ * ClassReader needs.
+ */
 public class ClassScanner extends ClassVisitor {
 
+    private static final ScanMetrics METRICS = ScanMetrics.get();
+
+    private static final ThreadLocal<ClassScanner> SCANNERS = ThreadLocal.withInitial(() -> new ClassScanner(null));
+
     private final BytecodeUsage bytecodeUsage;
+    private final AnnotationScanner annotationScanner;
+    private final FieldScanner fieldScanner;
+    private final MethodScanner methodScanner;
+    private ClassBuffer buffer;
     private int version;
 
     public ClassScanner(final Usage usage) {
         super(Opcodes.ASM8);
-        this.bytecodeUsage = new BytecodeUsage(usage, this.api);
+        this.bytecodeUsage = new BytecodeUsage(usage);
+        this.annotationScanner = new AnnotationScanner(this.api, bytecodeUsage);
+        this.fieldScanner = new FieldScanner(this.api, bytecodeUsage, annotationScanner);
+        this.methodScanner = new MethodScanner(this.api, bytecodeUsage, annotationScanner);
+    }
+
+    /**
+     * Counts the usages in the class file.  Unless fullVisit is set the
+     * constant pool is checked first and classes with no references to
+     * any affected package are not visited at all.
+     *
+     * @return the class file version
+     */
+    public static int scan(final byte[] bytecode, final Usage usage, final boolean fullVisit) {
+        return SCANNERS.get().scan(bytecode, bytecode.length, usage, fullVisit);
+    }
+
+    /**
+     * Same as {@link #scan(byte[], Usage, boolean)} reading the class from
+     * the stream into a buffer reused by the calling thread.
+     *
+     * @param size the size of the class if known, such as ZipEntry.getSize(), or -1
+     * @return the class file version
+     */
+    public static int scan(final InputStream in, final long size, final Usage usage, final boolean fullVisit) throws IOException {
+        final ClassScanner scanner = SCANNERS.get();
+        if (scanner.buffer == null) {
+            scanner.buffer = new ClassBuffer();
+        }
+
+        final ClassBuffer buffer = scanner.buffer;
+        try {
+            final long start = System.nanoTime();
+            final int length = buffer.read(in, size);
+            METRICS.inflated(length, System.nanoTime() - start);
+
+            return scanner.scan(buffer.getBytes(), length, usage, fullVisit);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private int scan(final byte[] bytecode, final int length, final Usage usage, final boolean fullVisit) {
+        final long start = System.nanoTime();
+        final ClassParse event = Jfr.ENABLED ? new ClassParse() : null;
+        if (event != null) event.begin();
+        try {
+            final boolean prefiltered = !fullVisit && !ConstantPool.references(bytecode, length);
+            final int version = prefiltered ? ConstantPool.version(bytecode) : visit(bytecode, length, usage);
+
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.commit(new ClassReader(bytecode, 0, length).getClassName(), length, prefiltered);
+                }
+            }
+            return version;
+        } finally {
+            METRICS.visited(System.nanoTime() - start);
+        }
+    }
+
+    private int visit(final byte[] bytecode, final int length, final Usage usage) {
+        bytecodeUsage.setUsage(usage);
+        try {
+            final ClassReader classReader = new ClassReader(bytecode, 0, length);
+            classReader.accept(this, 0);
+            return version;
+        } finally {
+            // don't hold on to the usage while the thread sits idle
+            bytecodeUsage.setUsage(null);
+        }
     }
 
     public Usage getUsage() {
@@ -56,7 +152,7 @@ public class ClassScanner extends ClassVisitor {
     @Override
     public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
         bytecodeUsage.addDesc(descriptor);
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 
     @Override
@@ -77,7 +173,7 @@ public class ClassScanner extends ClassVisitor {
             bytecodeUsage.addType((Type) value);
         }
 
-        return new FieldScanner(this.api, bytecodeUsage);
+        return fieldScanner;
     }
 
     @Override
@@ -90,7 +186,7 @@ public class ClassScanner extends ClassVisitor {
 
         bytecodeUsage.addNames(exceptions);
 
-        return new MethodScanner(this.api, bytecodeUsage);
+        return methodScanner;
     }
 
     @Override
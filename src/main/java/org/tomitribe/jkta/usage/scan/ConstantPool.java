@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.scan;
+
+import org.tomitribe.jkta.usage.PackageMatcher;
+
+/**
+ * Reads just enough of a class file to decide if a full ASM visit is needed.
+ *
+ * Every class name, descriptor and signature the {@link ClassScanner} can
+ * possibly count is stored in a CONSTANT_Utf8 entry of the constant pool.  The
+ * Class, NameAndType and MethodType entries only point at those.  If none of the
+ * Utf8 entries contain a name matching one of the affected packages, the class
+ * has no usages and the visit can be skipped entirely.
+ *
+ * The check errs on the side of a full visit.  String constants such as
+ * "javax.ejb.EJB" also live in Utf8 entries and will cause a class to be
+ * visited even though they are never counted.  Anything we don't understand
+ * is left for ASM to deal with.
+ */
+public class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELDREF = 9;
+    private static final int METHODREF = 10;
+    private static final int INTERFACE_METHODREF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private static final PackageMatcher MATCHER = PackageMatcher.get();
+
+    private ConstantPool() {
+    }
+
+    /**
+     * The class file version as reported to ClassVisitor.visit
+     */
+    public static int version(final byte[] bytecode) {
+        return readInt(bytecode, 4);
+    }
+
+    /**
+     * @param bytecode the class file
+     * @param length the number of valid bytes in the array
+     * @return false only if the class certainly has no references to any affected package
+     */
+    public static boolean references(final byte[] bytecode, final int length) {
+        if (length < 10) return true;
+
+        final int count = readUnsignedShort(bytecode, 8);
+        int offset = 10;
+
+        for (int i = 1; i < count; i++) {
+            if (offset >= length) return true;
+
+            switch (bytecode[offset]) {
+                case UTF8: {
+                    if (offset + 3 > length) return true;
+                    final int start = offset + 3;
+                    final int end = start + readUnsignedShort(bytecode, offset + 1);
+                    if (end > length) return true;
+                    if (matches(bytecode, start, end)) return true;
+                    offset = end;
+                    break;
+                }
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    offset += 3;
+                    break;
+                case METHOD_HANDLE:
+                    offset += 4;
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELDREF:
+                case METHODREF:
+                case INTERFACE_METHODREF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    offset += 5;
+                    break;
+                case LONG:
+                case DOUBLE:
+                    offset += 9;
+                    i++; // these take up two slots in the pool
+                    break;
+                default:
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * All affected package names start with 'j', so only try the matcher
+     * at those positions.  Descriptors like "Ljavax/ejb/EJB;" and signatures
+     * put the name right after an 'L', class entries at the very start.
+     */
+    private static boolean matches(final byte[] bytecode, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (bytecode[i] == 'j' && MATCHER.match(bytecode, i, end) != -1) return true;
+        }
+        return false;
+    }
+
+    private static int readUnsignedShort(final byte[] b, final int offset) {
+        return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(final byte[] b, final int offset) {
+        return ((b[offset] & 0xFF) << 24)
+                | ((b[offset + 1] & 0xFF) << 16)
+                | ((b[offset + 2] & 0xFF) << 8)
+                | (b[offset + 3] & 0xFF);
+    }
+}
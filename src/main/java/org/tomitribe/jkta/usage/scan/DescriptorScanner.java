@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.scan;
+
+/**
+ * Finds the class names in descriptors and generic signatures and hands
+ * them to a {@link Usage} as a range of the original string.
+ *
+ * This replaces parsing with ASM's Type and SignatureReader, both of which
+ * create new objects for every type they see.  Here nothing is allocated;
+ * the parse follows SignatureReader exactly, so the same class names are
+ * reported.  Inner class names after a '.' are skipped as they can never
+ * contain a package.
+ */
+public class DescriptorScanner {
+
+    private DescriptorScanner() {
+    }
+
+    /**
+     * A field descriptor, method descriptor or internal name of an
+     * array class such as "[Ljavax/ejb/EJB;"
+     */
+    public static void descriptor(final String descriptor, final Usage<?> usage) {
+        if (descriptor.isEmpty()) return;
+
+        if (descriptor.charAt(0) == '(') {
+            method(descriptor, 0, usage);
+        } else {
+            type(descriptor, 0, usage);
+        }
+    }
+
+    /**
+     * A class, method or field signature
+     */
+    public static void signature(final String signature, final Usage<?> usage) {
+        if (signature.isEmpty()) return;
+
+        int offset = 0;
+
+        if (signature.charAt(0) == '<') {
+            offset = typeParameters(signature, usage);
+        }
+
+        if (signature.charAt(offset) == '(') {
+            method(signature, offset, usage);
+        } else {
+            while (offset < signature.length()) {
+                offset = type(signature, offset, usage);
+            }
+        }
+    }
+
+    /**
+     * A single field type signature
+     */
+    public static void typeSignature(final String signature, final Usage<?> usage) {
+        if (signature.isEmpty()) return;
+        type(signature, 0, usage);
+    }
+
+    /**
+     * Parses "(params)return^exception^exception" starting at the '('
+     */
+    private static void method(final String signature, final int start, final Usage<?> usage) {
+        int offset = start + 1;
+        while (signature.charAt(offset) != ')') {
+            offset = type(signature, offset, usage);
+        }
+
+        offset = type(signature, offset + 1, usage);
+
+        // Exceptions, if this is a signature
+        while (offset < signature.length()) {
+            offset = type(signature, offset + 1, usage);
+        }
+    }
+
+    /**
+     * Parses the formal type parameters and their bounds, such as
+     * "&lt;T:Ljava/lang/Object;E::Ljava/lang/Comparable&lt;TE;&gt;;&gt;"
+     *
+     * @return the offset after the closing '&gt;'
+     */
+    private static int typeParameters(final String signature, final Usage<?> usage) {
+        int offset = 2;
+        char c;
+
+        do {
+            // Skip the name of the type parameter
+            offset = signature.indexOf(':', offset) + 1;
+
+            c = signature.charAt(offset);
+            if (c == 'L' || c == '[' || c == 'T') {
+                offset = type(signature, offset, usage);
+            }
+
+            while ((c = signature.charAt(offset++)) == ':') {
+                offset = type(signature, offset, usage);
+            }
+        } while (c != '>');
+
+        return offset;
+    }
+
+    /**
+     * Parses one type starting at offset
+     *
+     * @return the offset just after the type
+     */
+    private static int type(final String signature, final int start, final Usage<?> usage) {
+        int offset = start;
+
+        switch (signature.charAt(offset++)) {
+            case '[':
+                return type(signature, offset, usage);
+
+            case 'T':
+                return signature.indexOf(';', offset) + 1;
+
+            case 'L':
+                return classType(signature, offset, usage);
+
+            default:
+                // primitives and void
+                return offset;
+        }
+    }
+
+    /**
+     * Parses a class type starting just after the 'L'.  Only the outer
+     * class name is reported, before any type arguments or inner classes.
+     *
+     * @return the offset just after the closing ';'
+     */
+    private static int classType(final String signature, final int start, final Usage<?> usage) {
+        int offset = start;
+        boolean reported = false;
+
+        while (true) {
+            final char c = signature.charAt(offset++);
+
+            if (c == ';' || c == '.' || c == '<') {
+                if (!reported) {
+                    usage.accept(signature, start, offset - 1);
+                    reported = true;
+                }
+
+                if (c == ';') return offset;
+                if (c == '<') offset = typeArguments(signature, offset, usage) + 1;
+            }
+        }
+    }
+
+    /**
+     * Parses type arguments starting just after the '&lt;'
+     *
+     * @return the offset of the closing '&gt;'
+     */
+    private static int typeArguments(final String signature, final int start, final Usage<?> usage) {
+        int offset = start;
+        char c;
+
+        while ((c = signature.charAt(offset)) != '>') {
+            switch (c) {
+                case '*':
+                    offset++;
+                    break;
+                case '+':
+                case '-':
+                    offset = type(signature, offset + 1, usage);
+                    break;
+                default:
+                    offset = type(signature, offset, usage);
+            }
+        }
+
+        return offset;
+    }
+}
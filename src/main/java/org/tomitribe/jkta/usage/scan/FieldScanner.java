@@ -23,21 +23,30 @@ import org.objectweb.asm.TypePath;
 public class FieldScanner extends FieldVisitor {
 
     private final BytecodeUsage bytecodeUsage;
+    private final AnnotationScanner annotationScanner;
 
     public FieldScanner(final int api, final BytecodeUsage bytecodeUsage) {
+        this(api, bytecodeUsage, new AnnotationScanner(api, bytecodeUsage));
+    }
+
+    /**
+     * @param annotationScanner returned for every annotation rather than creating one each time
+     */
+    public FieldScanner(final int api, final BytecodeUsage bytecodeUsage, final AnnotationScanner annotationScanner) {
         super(api);
         this.bytecodeUsage = bytecodeUsage;
+        this.annotationScanner = annotationScanner;
     }
 
     @Override
     public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
         bytecodeUsage.addDesc(descriptor);
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 
     @Override
     public AnnotationVisitor visitTypeAnnotation(final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
         bytecodeUsage.addDesc(descriptor);
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 }
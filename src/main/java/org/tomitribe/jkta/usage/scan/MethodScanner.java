@@ -26,33 +26,42 @@ import org.objectweb.asm.TypePath;
 
 public class MethodScanner extends MethodVisitor {
     private final BytecodeUsage bytecodeUsage;
+    private final AnnotationScanner annotationScanner;
 
     public MethodScanner(final int api, final BytecodeUsage bytecodeUsage) {
+        this(api, bytecodeUsage, new AnnotationScanner(api, bytecodeUsage));
+    }
+
+    /**
+     * @param annotationScanner returned for every annotation rather than creating one each time
+     */
+    public MethodScanner(final int api, final BytecodeUsage bytecodeUsage, final AnnotationScanner annotationScanner) {
         super(api);
         this.bytecodeUsage = bytecodeUsage;
+        this.annotationScanner = annotationScanner;
     }
 
     @Override
     public AnnotationVisitor visitAnnotationDefault() {
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 
     @Override
     public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
         bytecodeUsage.addDesc(descriptor);
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 
     @Override
     public AnnotationVisitor visitTypeAnnotation(final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
         bytecodeUsage.addDesc(descriptor);
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 
     @Override
     public AnnotationVisitor visitParameterAnnotation(final int parameter, final String descriptor, final boolean visible) {
         bytecodeUsage.addDesc(descriptor);
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 
     @Override
@@ -138,7 +147,7 @@ public class MethodScanner extends MethodVisitor {
     @Override
     public AnnotationVisitor visitInsnAnnotation(final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
         bytecodeUsage.addDesc(descriptor);
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 
     @Override
@@ -150,20 +159,20 @@ public class MethodScanner extends MethodVisitor {
     @Override
     public AnnotationVisitor visitTryCatchAnnotation(final int typeRef, final TypePath typePath, final String descriptor, final boolean visible) {
         bytecodeUsage.addDesc(descriptor);
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 
     @Override
     public AnnotationVisitor visitLocalVariableAnnotation(final int typeRef, final TypePath typePath, final Label[] start, final Label[] end,
                                                           final int[] index, final String descriptor, final boolean visible) {
         bytecodeUsage.addDesc(descriptor);
-        return new AnnotationScanner(this.api, bytecodeUsage);
+        return annotationScanner;
     }
 
     private static void add(final BytecodeUsage bytecodeUsage, final Object[] references) {
         for (final Object o : references) {
             if (o instanceof String) {
-                bytecodeUsage.addType(Type.getObjectType((String) o));
+                bytecodeUsage.addObjectType((String) o);
             }
         }
     }
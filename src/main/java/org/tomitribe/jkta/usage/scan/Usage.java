@@ -21,4 +21,15 @@ import java.util.function.Consumer;
 public interface Usage<Context> extends Consumer<String> {
 
     Context getContext();
+
+    /**
+     * Accepts the internal or binary class name found between start
+     * (inclusive) and end (exclusive) of the given string.
+     *
+     * Implementations able to match a range of a string in place should
+     * override this to avoid the substring.
+     */
+    default void accept(final String name, final int start, final int end) {
+        accept(name.substring(start, end).replace('/', '.'));
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a file written by {@link BlockGzipOutputStream} using its index.
+ *
+ * Each member is read with a positional read, so several threads can
+ * inflate and parse members at once, and members outside the rows
+ * asked for are never read at all.
+ */
+public class BlockGzipFile implements Closeable {
+
+    private final File file;
+    private final FileChannel channel;
+    private final BlockIndex index;
+
+    private BlockGzipFile(final File file, final FileChannel channel, final BlockIndex index) {
+        this.file = file;
+        this.channel = channel;
+        this.index = index;
+    }
+
+    /**
+     * @return true if the file has an index next to it
+     */
+    public static boolean isIndexed(final File file) {
+        return BlockIndex.of(file).isFile();
+    }
+
+    public static BlockGzipFile open(final File file) throws IOException {
+        final BlockIndex index;
+        try (InputStream in = new FileInputStream(BlockIndex.of(file))) {
+            index = BlockIndex.read(in);
+        }
+        return new BlockGzipFile(file, FileChannel.open(file.toPath(), StandardOpenOption.READ), index);
+    }
+
+    public BlockIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @param threads number of threads inflating and parsing members,
+     *                rows are still returned in the order of the file
+     */
+    public Stream<PackageUsage<Jar>> read(final Rows rows, final int threads, final Consumer<String> failed) throws IOException {
+        final List<BlockIndex.Member> members = index.getMembers();
+        if (members.isEmpty() || members.get(0).getLine() != 0 || members.get(0).getLines() != 1) {
+            throw new IOException("The index of " + file + " does not start with the header");
+        }
+
+        final byte[] heading = inflate(members.get(0));
+        int end = heading.length;
+        while (end > 0 && (heading[end - 1] == '\n' || heading[end - 1] == '\r')) {
+            end--;
+        }
+        final String header = new String(heading, 0, end, Charset.defaultCharset());
+
+        // The header is line zero, so row r is line r + 1
+        final long from = rows.getFrom() + 1;
+        final long to = rows.getTo() == Long.MAX_VALUE ? Long.MAX_VALUE : rows.getTo() + 1;
+
+        final Iterator<Supplier<byte[]>> blocks = members.stream()
+                .filter(member -> member.getLine() < to && member.getLine() + member.getLines() > from)
+                .map(member -> (Supplier<byte[]>) () -> lines(member, from, to))
+                .collect(Collectors.toList())
+                .iterator();
+
+        return TsvReader.read(header, blocks, threads, failed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Inflates the member and keeps only the lines in the range
+     */
+    private byte[] lines(final BlockIndex.Member member, final long from, final long to) {
+        final byte[] bytes;
+        try {
+            bytes = inflate(member);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final long first = member.getLine();
+        final long last = first + member.getLines();
+        if (first >= from && last <= to) return bytes;
+
+        final int start = skip(bytes, 0, Math.max(0, from - first));
+        final int end = skip(bytes, start, Math.min(last, to) - Math.max(first, from));
+        return Arrays.copyOfRange(bytes, start, end);
+    }
+
+    /**
+     * @return the position after the given number of lines
+     */
+    private static int skip(final byte[] bytes, final int start, final long lines) {
+        int position = start;
+        for (long i = 0; i < lines && position < bytes.length; position++) {
+            if (bytes[position] == '\n') i++;
+        }
+        return position;
+    }
+
+    private byte[] inflate(final BlockIndex.Member member) throws IOException {
+        final ByteBuffer compressed = ByteBuffer.allocate(member.getLength());
+        while (compressed.hasRemaining()) {
+            final int read = channel.read(compressed, member.getOffset() + compressed.position());
+            if (read == -1) throw new EOFException("Truncated block at " + member.getOffset() + " in " + file);
+        }
+
+        final byte[] bytes = new byte[member.getSize()];
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.array()), Math.max(512, member.getLength()))) {
+            int length = 0;
+            while (length < bytes.length) {
+                final int read = in.read(bytes, length, bytes.length - length);
+                if (read == -1) throw new EOFException("Block at " + member.getOffset() + " in " + file + " is shorter than indexed");
+                length += read;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes TSV as a series of independent gzip members of about 64KB
+ * each, compressed on several threads and written in order.
+ *
+ * Members always end on a line boundary and the header line is a
+ * member of its own, so any member can be inflated and parsed alone
+ * given the header.  Concatenated members are still a valid gzip file
+ * and read the same as one with a single member.
+ *
+ * Once closed, {@link #getIndex()} maps the lines of each member to
+ * its offset in the file.
+ */
+public class BlockGzipOutputStream extends OutputStream {
+
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    /**
+     * A Deflater holds native memory, so each thread keeps one
+     */
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    private final OutputStream out;
+    private final int blockSize;
+    private final ExecutorService executor;
+    private final int window;
+    private final Queue<Future<Member>> pending = new ArrayDeque<>();
+    private final BlockIndex index = new BlockIndex();
+
+    private byte[] buffer;
+    private int length;
+    private boolean header = true;
+    private long line;
+    private long offset;
+    private boolean closed;
+
+    public BlockGzipOutputStream(final OutputStream out, final int threads) {
+        this(out, threads, BLOCK_SIZE);
+    }
+
+    BlockGzipOutputStream(final OutputStream out, final int threads, final int blockSize) {
+        if (blockSize < 1) throw new IllegalArgumentException("Invalid block size " + blockSize);
+        this.out = out;
+        this.blockSize = blockSize;
+        this.buffer = new byte[blockSize];
+        this.window = Math.max(1, threads) * 2;
+        this.executor = threads <= 1 ? null : Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "jkta-gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            // only a line longer than the buffer makes it grow
+            if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+            final int count = Math.min(remaining, buffer.length - length);
+            System.arraycopy(b, offset, buffer, length, count);
+            final int from = length;
+            length += count;
+            offset += count;
+            remaining -= count;
+
+            if (header) {
+                final int newline = indexOf(buffer, from, length);
+                if (newline != -1) {
+                    header = false;
+                    cut(newline + 1);
+                }
+            } else if (length >= blockSize) {
+                final int newline = lastIndexOf(buffer, length);
+                if (newline != -1) cut(newline + 1);
+            }
+        }
+    }
+
+    /**
+     * Compresses and writes everything buffered, including a partial
+     * last line, then an empty member marking the end of the file.
+     * The underlying stream is left open.
+     */
+    public void finish() throws IOException {
+        if (closed) return;
+        try {
+            if (length > 0) cut(length);
+            while (!pending.isEmpty()) {
+                write(get(pending.remove()));
+            }
+            write(compress(new byte[0]));
+        } finally {
+            closed = true;
+            if (executor != null) executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        finish();
+        out.close();
+    }
+
+    /**
+     * Drops anything not yet written without closing the underlying stream
+     */
+    public void abort() {
+        closed = true;
+        pending.clear();
+        if (executor != null) executor.shutdownNow();
+    }
+
+    /**
+     * @return the members written so far, complete once finished
+     */
+    public BlockIndex getIndex() {
+        return index;
+    }
+
+    private void cut(final int end) throws IOException {
+        final byte[] block = Arrays.copyOf(buffer, end);
+        System.arraycopy(buffer, end, buffer, 0, length - end);
+        length -= end;
+
+        // Wait for the oldest so only a few blocks are held at once
+        if (pending.size() >= window) write(get(pending.remove()));
+
+        if (executor == null) {
+            pending.add(CompletableFuture.completedFuture(compress(block)));
+        } else {
+            pending.add(executor.submit(() -> compress(block)));
+        }
+    }
+
+    private void write(final Member member) throws IOException {
+        out.write(member.bytes);
+
+        if (member.size > 0) {
+            index.add(new BlockIndex.Member(line, member.lines, offset, member.bytes.length, member.size));
+        }
+        line += member.lines;
+        offset += member.bytes.length;
+    }
+
+    private static Member compress(final byte[] block) {
+        final Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(block);
+        deflater.finish();
+
+        byte[] bytes = new byte[block.length + block.length / 100 + 64];
+        System.arraycopy(HEADER, 0, bytes, 0, HEADER.length);
+        int length = HEADER.length;
+        while (!deflater.finished()) {
+            if (length == bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            length += deflater.deflate(bytes, length, bytes.length - length);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(block);
+
+        bytes = Arrays.copyOf(bytes, length + 8);
+        writeInt(bytes, length, (int) crc.getValue());
+        writeInt(bytes, length + 4, block.length);
+
+        int lines = 0;
+        for (final byte b : block) {
+            if (b == '\n') lines++;
+        }
+        // a partial last line is a line too
+        if (block.length > 0 && block[block.length - 1] != '\n') lines++;
+
+        return new Member(bytes, block.length, lines);
+    }
+
+    private static void writeInt(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static Member get(final Future<Member> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted compressing a block");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static int indexOf(final byte[] bytes, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(final byte[] bytes, final int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static class Member {
+        private final byte[] bytes;
+        private final int size;
+        private final int lines;
+
+        Member(final byte[] bytes, final int size, final int lines) {
+            this.bytes = bytes;
+            this.size = size;
+            this.lines = lines;
+        }
+    }
+}
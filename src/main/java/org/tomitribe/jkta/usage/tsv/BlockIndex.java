@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import lombok.Data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The sidecar index of a file written by {@link BlockGzipOutputStream},
+ * one TSV line per gzip member giving the lines it holds and where its
+ * bytes are.  Lines are counted from zero, the header being line zero.
+ */
+public class BlockIndex {
+
+    public static final String SUFFIX = ".idx";
+
+    private static final String HEADING = "LINE\tLINES\tOFFSET\tLENGTH\tSIZE";
+
+    private final List<Member> members = new ArrayList<>();
+
+    public void add(final Member member) {
+        members.add(member);
+    }
+
+    public List<Member> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * @return the number of lines in the file, including the header
+     */
+    public long getLines() {
+        if (members.isEmpty()) return 0;
+        final Member last = members.get(members.size() - 1);
+        return last.getLine() + last.getLines();
+    }
+
+    /**
+     * @return the index file kept next to this block gzip file
+     */
+    public static File of(final File file) {
+        return new File(file.getPath() + SUFFIX);
+    }
+
+    public void write(final OutputStream out) {
+        final PrintStream print = new PrintStream(out, false);
+        print.print(HEADING + "\n");
+        for (final Member member : members) {
+            print.print(member.getLine() + "\t" + member.getLines() + "\t" + member.getOffset() + "\t"
+                    + member.getLength() + "\t" + member.getSize() + "\n");
+        }
+        print.flush();
+    }
+
+    public static BlockIndex read(final InputStream in) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        final String heading = reader.readLine();
+        if (!HEADING.equals(heading)) throw new IOException("Not a block index: " + heading);
+
+        final BlockIndex index = new BlockIndex();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) continue;
+
+            final String[] fields = line.split("\t");
+            if (fields.length != 5) throw new IOException("Invalid block index line: " + line);
+            try {
+                index.add(new Member(Long.parseLong(fields[0]), Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid block index line: " + line, e);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * One gzip member
+     */
+    @Data
+    public static class Member {
+        /**
+         * The file line number of the first line in this member
+         */
+        private final long line;
+        private final int lines;
+
+        /**
+         * Where the compressed member starts in the file
+         */
+        private final long offset;
+        private final int length;
+
+        /**
+         * Bytes of TSV once inflated
+         */
+        private final int size;
+    }
+}
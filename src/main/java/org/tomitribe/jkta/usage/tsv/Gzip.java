@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads input that may or may not be gzipped
+ */
+public class Gzip {
+
+    private static final int BUFFER = 64 * 1024;
+
+    private Gzip() {
+    }
+
+    /**
+     * Peeks at the first two bytes.  The stream must support mark.
+     */
+    public static boolean isGzip(final InputStream in) throws IOException {
+        in.mark(2);
+        try {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * @return the inflated content if the input is gzipped, otherwise the
+     * input itself.  Either way the stream returned supports mark.
+     */
+    public static InputStream inflate(final InputStream in) throws IOException {
+        final InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in, BUFFER);
+        if (!isGzip(buffered)) return buffered;
+        return new BufferedInputStream(new GZIPInputStream(new Members(buffered), BUFFER), BUFFER);
+    }
+
+    /**
+     * GZIPInputStream only reads on past the end of a member when available()
+     * is above zero, which a pipe may well not be at that moment.  So block
+     * gzip files read from STDIN would end after the first member.
+     */
+    private static class Members extends FilterInputStream {
+        Members(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int available() throws IOException {
+            final int available = super.available();
+            if (available > 0) return available;
+
+            in.mark(1);
+            final int b = in.read();
+            in.reset();
+            return b == -1 ? 0 : 1;
+        }
+    }
+}
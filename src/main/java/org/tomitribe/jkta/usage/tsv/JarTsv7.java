@@ -21,21 +21,30 @@ import org.tomitribe.jkta.usage.Package;
 import org.tomitribe.jkta.usage.PackageUsage;
 
 import java.io.File;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 public class JarTsv7 implements Format<Jar> {
     private final Summary summary = new Summary();
     private final File repository;
-    private final AtomicReference<JarSummary> jars = new AtomicReference<>(new JarSummary(0, 0));
     private final Consumer<String> failed;
+    private final Supplier<String> notes;
 
     public JarTsv7(final File repository) {
         this(repository, s -> {
         });
     }
 
+    /**
+     * @param notes text appended to the summary in the footer such
+     *              as the cache hits and misses, or null if there is none
+     */
+    public JarTsv7(final File repository, final Supplier<String> notes) {
+        this(repository, s -> {
+        }, notes);
+    }
+
     public JarTsv7() {
         this(s -> {
         });
@@ -46,8 +55,13 @@ public class JarTsv7 implements Format<Jar> {
     }
 
     public JarTsv7(final File repository, final Consumer<String> failed) {
+        this(repository, failed, () -> null);
+    }
+
+    public JarTsv7(final File repository, final Consumer<String> failed, final Supplier<String> notes) {
         this.failed = failed;
         this.repository = repository;
+        this.notes = notes;
     }
 
     @Override
@@ -65,12 +79,19 @@ public class JarTsv7 implements Format<Jar> {
         ), Package.names());
     }
 
+    /**
+     * Adds the usage to the totals written by {@link #summary()}
+     * without writing it
+     */
+    public void add(final PackageUsage<Jar> usage) {
+        summary.add(usage);
+    }
+
     @Override
     public String write(final PackageUsage<Jar> usage) {
         final Jar jar = usage.getContext();
 
-        summary.add(usage);
-        jars.accumulateAndGet(new JarSummary(jar), JarSummary::add);
+        add(usage);
 
         return ScanTsv.tabbed(Stream.of(
                 jar.getSha1(),
@@ -84,6 +105,28 @@ public class JarTsv7 implements Format<Jar> {
         ));
     }
 
+    /**
+     * Same as {@link #write(PackageUsage)} followed by a newline, encoded
+     * straight into the writer without building the row as a String
+     */
+    public void write(final PackageUsage<Jar> usage, final TsvWriter out) {
+        final Jar jar = usage.getContext();
+
+        add(usage);
+
+        out.write(jar.getSha1()).tab()
+                .write(jar.getLastModified()).tab()
+                .write(jar.getInternalDate()).tab()
+                .write(jar.getSize()).tab()
+                .write(jar.getClasses()).tab();
+
+        ScanTsv.versions(jar, out).tab();
+
+        out.write(ScanTsv.childPath(repository, jar.getJar())).tab();
+        usage.toTsv(out);
+        out.newline();
+    }
+
     @Override
     public PackageUsage<Jar> read(final String line) {
         try {
@@ -109,14 +152,17 @@ public class JarTsv7 implements Format<Jar> {
 
     @Override
     public String summary() {
+        final String notes = this.notes.get();
+        final String text = notes == null ? summary.summary() : summary.summary() + ", " + notes;
+
         return ScanTsv.tabbed(Stream.of(
                 "0000000000000000000000000000000000000000",
                 System.currentTimeMillis(),
                 System.currentTimeMillis(),
-                jars.get().getSize(),
-                jars.get().getClasses(),
+                summary.getSize(),
+                summary.getClasses(),
                 0,
-                summary.summary(),
+                text,
                 summary.getTotal().toTsv()
         ));
     }
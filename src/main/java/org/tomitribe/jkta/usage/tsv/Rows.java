@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import java.util.stream.Stream;
+
+/**
+ * A range of the rows of a jar TSV, counted from zero after the header.
+ * Written as from-to, where to is not included, or as from- for every
+ * row from there to the end.
+ */
+public class Rows {
+
+    public static final Rows ALL = new Rows(0, Long.MAX_VALUE);
+
+    private final long from;
+    private final long to;
+
+    public Rows(final long from, final long to) {
+        if (from < 0 || to < from) throw new IllegalArgumentException(String.format("Invalid rows %s-%s", from, to));
+        this.from = from;
+        this.to = to;
+    }
+
+    public Rows(final String rows) {
+        this(from(rows), to(rows));
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    /**
+     * @return the first row after the range
+     */
+    public long getTo() {
+        return to;
+    }
+
+    /**
+     * Applies the range to rows that were read from the start
+     */
+    public <T> Stream<T> slice(final Stream<T> stream) {
+        if (this.equals(ALL)) return stream;
+        return stream.skip(from).limit(to - from);
+    }
+
+    private static long from(final String rows) {
+        final int dash = dash(rows);
+        return Long.parseLong(rows.substring(0, dash).trim());
+    }
+
+    private static long to(final String rows) {
+        final String to = rows.substring(dash(rows) + 1).trim();
+        return to.isEmpty() ? Long.MAX_VALUE : Long.parseLong(to);
+    }
+
+    private static int dash(final String rows) {
+        final int dash = rows.indexOf('-');
+        if (dash < 1) throw new IllegalArgumentException("Rows must be given as from-to or from-: " + rows);
+        return dash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Rows)) return false;
+        final Rows rows = (Rows) o;
+        return from == rows.from && to == rows.to;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(from) * 31 + Long.hashCode(to);
+    }
+
+    @Override
+    public String toString() {
+        return to == Long.MAX_VALUE ? from + "-" : from + "-" + to;
+    }
+}
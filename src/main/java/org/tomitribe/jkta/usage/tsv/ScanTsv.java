@@ -16,23 +16,27 @@
  */
 package org.tomitribe.jkta.usage.tsv;
 
+import org.tomitribe.jkta.jfr.Jfr;
+import org.tomitribe.jkta.jfr.TsvWrite;
 import org.tomitribe.jkta.usage.Jar;
 import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.metrics.Phase;
+import org.tomitribe.jkta.usage.metrics.ScanMetrics;
 import org.tomitribe.util.IO;
 import org.tomitribe.util.Join;
 import org.tomitribe.util.hash.XxHash64;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -41,6 +45,8 @@ public class ScanTsv {
     private ScanTsv() {
     }
 
+    private static final ScanMetrics METRICS = ScanMetrics.get();
+
     private static final long version5 = XxHash64.hash(load("headers/v5.tsv"));
     private static final long version6 = XxHash64.hash(load("headers/v6.tsv"));
     private static final long version7 = XxHash64.hash(load("headers/v7.tsv"));
@@ -60,10 +66,31 @@ public class ScanTsv {
     }
 
     public static void toJarTsv(final PrintStream out, final Stream<PackageUsage<Jar>> usages, final File repository) {
-        final org.tomitribe.jkta.usage.tsv.Format<Jar> formatter = jarFormatter(repository);
-        out.println(formatter.heading());
-        usages.map(formatter::write).forEach(out::println);
-        out.println(formatter.summary());
+        toJarTsv(out, usages, repository, () -> null);
+    }
+
+    /**
+     * @param notes text added to the summary in the footer once all
+     *              jars have been written, or null if there is none
+     */
+    public static void toJarTsv(final PrintStream out, final Stream<PackageUsage<Jar>> usages, final File repository,
+                                final Supplier<String> notes) {
+        final JarTsv7 formatter = new JarTsv7(repository, notes);
+        final TsvWriter writer = new TsvWriter(out);
+
+        writer.write(formatter.heading()).newline();
+        usages.forEach(usage -> {
+            final long start = System.nanoTime();
+            final TsvWrite event = Jfr.ENABLED ? new TsvWrite() : null;
+            if (event != null) event.begin();
+
+            formatter.write(usage, writer);
+
+            if (event != null) event.commit(usage.getContext().getJar().getPath());
+            METRICS.record(Phase.write, System.nanoTime() - start);
+        });
+        writer.write(formatter.summary()).newline();
+        writer.flush();
     }
 
     public static Stream<PackageUsage<Jar>> fromJarTsv(final InputStream content) {
@@ -72,48 +99,53 @@ public class ScanTsv {
     }
 
     public static Stream<PackageUsage<Jar>> fromJarTsv(final InputStream content, final Consumer<String> failed) {
-        final InputStreamReader reader = new InputStreamReader(content);
-        final BufferedReader bufferedReader = new BufferedReader(reader);
-
-        final String header = bufferedReader.lines()
-                .limit(1)
-                .collect(Collectors.toList()).get(0);
-
-        final long version = XxHash64.hash(header);
+        return fromJarTsv(content, 1, failed);
+    }
 
-        if (version == version7) {
-            return bufferedReader.lines()
-                    .filter(ScanTsv::skipFooter) // skip summary
-                    .map(new JarTsv7(failed)::read)
-                    .filter(Objects::nonNull);
-        }
+    /**
+     * @param threads number of threads used to parse the rows, which
+     *                are still returned in the order of the file
+     */
+    public static Stream<PackageUsage<Jar>> fromJarTsv(final InputStream content, final int threads, final Consumer<String> failed) {
+        return TsvReader.read(content, threads, failed);
+    }
 
-        if (version == version6) {
-            return bufferedReader.lines()
-                    .filter(ScanTsv::skipHeader) // skip header
-                    .filter(ScanTsv::skipFooter) // skip summary
-                    .map(new JarTsv6(failed)::read)
-                    .filter(Objects::nonNull);
+    /**
+     * Reads a plain, gzipped or block gzipped TSV file.  A block gzip
+     * file with an index is inflated as well as parsed on several threads
+     * and only the members holding the rows asked for are read.
+     *
+     * @return a stream that must be closed when done
+     */
+    public static Stream<PackageUsage<Jar>> fromJarTsv(final File file, final Rows rows, final int threads,
+                                                       final Consumer<String> failed) throws IOException {
+        if (BlockGzipFile.isIndexed(file)) {
+            final BlockGzipFile blocks = BlockGzipFile.open(file);
+            return blocks.read(rows, threads, failed).onClose(() -> close(blocks));
         }
 
-        if (version == version5) {
-            return bufferedReader.lines()
-                    .filter(ScanTsv::skipHeader) // skip header
-                    .filter(ScanTsv::skipFooter) // skip summary
-                    .map(new JarTsv5(failed)::read)
-                    .filter(Objects::nonNull);
+        final InputStream in = Gzip.inflate(IO.read(file));
+        return rows.slice(fromJarTsv(in, threads, failed)).onClose(() -> close(in));
+    }
 
+    private static void close(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        throw new UnsupportedTsvFormatException();
     }
 
-    private static boolean skipFooter(final String s) {
-        return !s.startsWith("0000000000000000000000000000000000000000\t");
-    }
+    /**
+     * @return the version of the TSV format with this header line or -1 if it is not known
+     */
+    static int version(final String header) {
+        final long version = XxHash64.hash(header);
 
-    private static boolean skipHeader(final String s) {
-        return !s.startsWith("SHA-1\t");
+        if (version == version7) return 7;
+        if (version == version6) return 6;
+        if (version == version5) return 5;
+        return -1;
     }
 
     public static String toTsv(final PackageUsage<Jar> jarUsage, final File parent) {
@@ -146,6 +178,20 @@ public class ScanTsv {
         return Join.join(",", strings);
     }
 
+    /**
+     * Writes the same text as {@link #versions(Jar)}
+     */
+    public static TsvWriter versions(final Jar jar, final TsvWriter out) {
+        final int[] versions = jar.getJavaVersions();
+        if (versions == null || versions.length == 0) return out.write(0);
+
+        for (int i = 0; i < versions.length; i++) {
+            if (i > 0) out.write(",");
+            out.write(versions[i]);
+        }
+        return out;
+    }
+
     public static String childPath(final File parent, final File file) {
         final String parentPath = parent.getAbsolutePath();
         final String childPath = file.getAbsolutePath();
@@ -160,9 +206,8 @@ public class ScanTsv {
 
     public static String tabbed(final Stream<?> stream) {
         return stream
-                .map(s -> s + "")
-                .reduce((s, s2) -> s + "\t" + s2)
-                .get();
+                .map(String::valueOf)
+                .collect(Collectors.joining("\t"));
     }
 
     public static String tabbed(final Stream<?> stream, final Stream<?> stream2) {
@@ -18,36 +18,42 @@ package org.tomitribe.jkta.usage.tsv;
 
 import org.tomitribe.jkta.usage.Jar;
 import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.UsageAdder;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
-
+/**
+ * The totals written in the footer of a jar TSV.  Safe to add
+ * to from several threads at once.
+ */
 public class Summary {
-    final AtomicInteger scanned = new AtomicInteger();
-    final AtomicInteger affected = new AtomicInteger();
-    final AtomicReference<PackageUsage<?>> total = new AtomicReference<>(new PackageUsage<>());
+    private final UsageAdder adder = new UsageAdder();
 
     public void add(final PackageUsage<Jar> usage) {
-        total.accumulateAndGet(usage, PackageUsage::add);
-        scanned.incrementAndGet();
-        if (usage.getJavax() > 0) affected.incrementAndGet();
+        adder.addJar(usage);
     }
 
     public int getScanned() {
-        return scanned.get();
+        return (int) adder.getScanned();
     }
 
     public int getAffected() {
-        return affected.get();
+        return (int) adder.getAffected();
+    }
+
+    public long getSize() {
+        return adder.getSize();
+    }
+
+    public long getClasses() {
+        return adder.getClasses();
     }
 
     public PackageUsage<?> getTotal() {
-        return total.get();
+        return adder.getTotal();
     }
 
     public String summary() {
-        final double affected = this.affected.get();
-        final double scanned = this.scanned.get();
+        final double affected = adder.getAffected();
+        final double scanned = adder.getScanned();
         final int percent = (int) ((affected / scanned) * 100);
         return String.format("total affected %s%% (%s of %s scanned)", percent, (int) affected, (int) scanned);
     }
@@ -0,0 +1,610 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads v5, v6 and v7 jar TSV files straight from bytes.
+ *
+ * The input is read in large chunks that always end on a line boundary.
+ * Each chunk is parsed on its own, so with more than one thread several
+ * chunks are parsed at once while the results are still returned in the
+ * order of the file.  Numbers and counts are parsed directly from the
+ * bytes; only the SHA-1 and path of each row become Strings.
+ *
+ * Rows that cannot be parsed are passed to the failed consumer just as
+ * the {@link Format#read(String)} implementations do.
+ */
+public class TsvReader {
+
+    private static final int CHUNK = 4 * 1024 * 1024;
+
+    private static final byte[] FOOTER = "0000000000000000000000000000000000000000\t".getBytes();
+    private static final byte[] HEADER = "SHA-1\t".getBytes();
+
+    private TsvReader() {
+    }
+
+    /**
+     * The column layout of each TSV version
+     */
+    enum Layout {
+        v5(false, false),
+        v6(true, false),
+        v7(true, true);
+
+        private final boolean details;
+        private final boolean versions;
+
+        Layout(final boolean details, final boolean versions) {
+            this.details = details;
+            this.versions = versions;
+        }
+    }
+
+    public static Stream<PackageUsage<Jar>> read(final InputStream in, final int threads, final Consumer<String> failed) {
+        return read(in, threads, failed, CHUNK);
+    }
+
+    static Stream<PackageUsage<Jar>> read(final InputStream in, final int threads, final Consumer<String> failed, final int chunkSize) {
+        final Chunks chunks = new Chunks(in, chunkSize);
+        final Layout layout = layout(chunks.header());
+
+        if (threads <= 1) {
+            final Iterator<List<PackageUsage<Jar>>> parsed = new Iterator<List<PackageUsage<Jar>>>() {
+                @Override
+                public boolean hasNext() {
+                    return chunks.hasNext();
+                }
+
+                @Override
+                public List<PackageUsage<Jar>> next() {
+                    return new Parser(layout, failed).parse(chunks.next());
+                }
+            };
+            return stream(parsed);
+        }
+
+        final Iterator<Supplier<Chunk>> read = new Iterator<Supplier<Chunk>>() {
+            @Override
+            public boolean hasNext() {
+                return chunks.hasNext();
+            }
+
+            @Override
+            public Supplier<Chunk> next() {
+                final Chunk chunk = chunks.next();
+                return () -> chunk;
+            }
+        };
+        return parallel(read, threads, layout, failed);
+    }
+
+    /**
+     * Parses blocks of whole lines that follow the given header line, such
+     * as the members of a block gzip file.  Each block is fetched and parsed
+     * on one of the threads, while the rows are still returned in order.
+     */
+    static Stream<PackageUsage<Jar>> read(final String header, final Iterator<Supplier<byte[]>> blocks, final int threads,
+                                          final Consumer<String> failed) {
+        final Layout layout = layout(header);
+
+        final Iterator<Supplier<Chunk>> chunks = new Iterator<Supplier<Chunk>>() {
+            @Override
+            public boolean hasNext() {
+                return blocks.hasNext();
+            }
+
+            @Override
+            public Supplier<Chunk> next() {
+                final Supplier<byte[]> block = blocks.next();
+                return () -> {
+                    final byte[] bytes = block.get();
+                    return new Chunk(bytes, bytes.length);
+                };
+            }
+        };
+
+        if (threads <= 1) {
+            final Iterator<List<PackageUsage<Jar>>> parsed = new Iterator<List<PackageUsage<Jar>>>() {
+                @Override
+                public boolean hasNext() {
+                    return chunks.hasNext();
+                }
+
+                @Override
+                public List<PackageUsage<Jar>> next() {
+                    return new Parser(layout, failed).parse(chunks.next().get());
+                }
+            };
+            return stream(parsed);
+        }
+
+        return parallel(chunks, threads, layout, failed);
+    }
+
+    private static Stream<PackageUsage<Jar>> parallel(final Iterator<Supplier<Chunk>> chunks, final int threads, final Layout layout,
+                                                      final Consumer<String> failed) {
+        final ExecutorService executor = executor(threads);
+        final Iterator<List<PackageUsage<Jar>>> parsed = new InOrder(chunks, executor, threads * 2, layout, synchronize(failed));
+        return stream(parsed).onClose(executor::shutdownNow);
+    }
+
+    /**
+     * Parses the input on the given number of threads and hands each chunk
+     * of rows to the consumer on the thread that parsed it.  Chunks are not
+     * handed over in file order, so the consumer must be thread safe.
+     * Returns once every chunk has been consumed.
+     */
+    public static void forEachChunk(final InputStream in, final int threads, final Consumer<String> failed,
+                                    final Consumer<List<PackageUsage<Jar>>> consumer) {
+        final Chunks chunks = new Chunks(in, CHUNK);
+        final Layout layout = layout(chunks.header());
+
+        if (threads <= 1) {
+            while (chunks.hasNext()) {
+                consumer.accept(new Parser(layout, failed).parse(chunks.next()));
+            }
+            return;
+        }
+
+        final ExecutorService executor = executor(threads);
+        final Consumer<String> synchronizedFailed = synchronize(failed);
+        final Queue<Future<?>> pending = new ArrayDeque<>();
+        try {
+            while (chunks.hasNext()) {
+                // Wait for the oldest so only a few chunks are held at once
+                if (pending.size() >= threads * 2) get(pending.remove());
+
+                final Chunk chunk = chunks.next();
+                pending.add(executor.submit(() -> consumer.accept(new Parser(layout, synchronizedFailed).parse(chunk))));
+            }
+
+            while (!pending.isEmpty()) {
+                get(pending.remove());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService executor(final int threads) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "jkta-tsv");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Chunks are parsed concurrently, the failed lines are not
+     */
+    private static Consumer<String> synchronize(final Consumer<String> failed) {
+        return line -> {
+            synchronized (failed) {
+                failed.accept(line);
+            }
+        };
+    }
+
+    private static <T> T get(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted reading TSV", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static Stream<PackageUsage<Jar>> stream(final Iterator<List<PackageUsage<Jar>>> chunks) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED), false)
+                .flatMap(List::stream);
+    }
+
+    private static Layout layout(final String header) {
+        switch (ScanTsv.version(header)) {
+            case 7: return Layout.v7;
+            case 6: return Layout.v6;
+            case 5: return Layout.v5;
+            default: throw new UnsupportedTsvFormatException();
+        }
+    }
+
+    /**
+     * Reads and parses chunks on the executor while keeping at
+     * most window chunks in memory, returning them in file order
+     */
+    private static class InOrder implements Iterator<List<PackageUsage<Jar>>> {
+        private final Iterator<Supplier<Chunk>> chunks;
+        private final ExecutorService executor;
+        private final int window;
+        private final Layout layout;
+        private final Consumer<String> failed;
+        private final Queue<Future<List<PackageUsage<Jar>>>> pending = new ArrayDeque<>();
+
+        InOrder(final Iterator<Supplier<Chunk>> chunks, final ExecutorService executor, final int window, final Layout layout, final Consumer<String> failed) {
+            this.chunks = chunks;
+            this.executor = executor;
+            this.window = window;
+            this.layout = layout;
+            this.failed = failed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            fill();
+            if (pending.isEmpty()) executor.shutdown();
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public List<PackageUsage<Jar>> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return get(pending.remove());
+        }
+
+        private void fill() {
+            while (pending.size() < window && chunks.hasNext()) {
+                final Supplier<Chunk> chunk = chunks.next();
+                pending.add(executor.submit(() -> new Parser(layout, failed).parse(chunk.get())));
+            }
+        }
+    }
+
+    private static class Chunk {
+        private final byte[] bytes;
+        private final int length;
+
+        Chunk(final byte[] bytes, final int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Splits the input into chunks of whole lines.  A line longer
+     * than the chunk size simply makes that chunk bigger.
+     */
+    private static class Chunks implements Iterator<Chunk> {
+        private final InputStream in;
+        private final int size;
+        private byte[] carry = new byte[0];
+        private int carried;
+        private boolean eof;
+
+        Chunks(final InputStream in, final int size) {
+            this.in = in;
+            this.size = size;
+        }
+
+        /**
+         * Reads and removes the first line
+         */
+        String header() {
+            fillUntilNewline();
+
+            int end = indexOf(carry, 0, carried, (byte) '\n');
+            if (end == -1) end = carried;
+
+            final String header = new String(carry, 0, trim(carry, 0, end), Charset.defaultCharset());
+
+            final int next = Math.min(end + 1, carried);
+            System.arraycopy(carry, next, carry, 0, carried - next);
+            carried -= next;
+            return header;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return carried > 0 || !eof && fill(carried);
+        }
+
+        @Override
+        public Chunk next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            final byte[] bytes = Arrays.copyOf(carry, Math.max(size, carried));
+            int length = carried;
+            carried = 0;
+
+            while (!eof && length < bytes.length) {
+                length += read(bytes, length);
+            }
+
+            // Keep any partial last line for the next chunk
+            int end = length;
+            if (!eof) {
+                end = lastIndexOf(bytes, 0, length, (byte) '\n') + 1;
+                if (end == 0) {
+                    // a single line longer than the chunk
+                    carry = bytes;
+                    carried = length;
+                    fillUntilNewline();
+                    return next();
+                }
+            }
+
+            carry = new byte[length - end];
+            carried = carry.length;
+            System.arraycopy(bytes, end, carry, 0, carried);
+
+            return new Chunk(bytes, end);
+        }
+
+        private void fillUntilNewline() {
+            while (!eof && indexOf(carry, 0, carried, (byte) '\n') == -1) {
+                if (carried == carry.length) carry = Arrays.copyOf(carry, Math.max(size, carry.length * 2));
+                carried += read(carry, carried);
+            }
+        }
+
+        private boolean fill(final int from) {
+            if (carry.length == 0) carry = new byte[size];
+            carried = from + read(carry, from);
+            return carried > 0;
+        }
+
+        private int read(final byte[] bytes, final int offset) {
+            try {
+                final int read = in.read(bytes, offset, bytes.length - offset);
+                if (read == -1) {
+                    eof = true;
+                    return 0;
+                }
+                return read;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Parses the rows of one chunk.  Not thread safe, each
+     * chunk gets its own Parser.
+     */
+    static class Parser {
+        private static final Charset CHARSET = Charset.defaultCharset();
+        private static final int PACKAGES = Package.values().length;
+
+        private final Layout layout;
+        private final Consumer<String> failed;
+
+        private byte[] bytes;
+        private int position;
+        private int end;
+
+        Parser(final Layout layout, final Consumer<String> failed) {
+            this.layout = layout;
+            this.failed = failed;
+        }
+
+        List<PackageUsage<Jar>> parse(final Chunk chunk) {
+            final List<PackageUsage<Jar>> usages = new ArrayList<>(chunk.length / 256);
+            bytes = chunk.bytes;
+
+            int start = 0;
+            while (start < chunk.length) {
+                int newline = indexOf(bytes, start, chunk.length, (byte) '\n');
+                if (newline == -1) newline = chunk.length;
+
+                final PackageUsage<Jar> usage = line(start, trim(bytes, start, newline));
+                if (usage != null) usages.add(usage);
+
+                start = newline + 1;
+            }
+
+            return usages;
+        }
+
+        private PackageUsage<Jar> line(final int start, final int end) {
+            if (startsWith(start, end, FOOTER)) return null;
+            // concatenated files repeat the header
+            if (startsWith(start, end, HEADER)) return null;
+
+            this.position = start;
+            this.end = end;
+
+            try {
+                return row();
+            } catch (RuntimeException e) {
+                failed.accept(new String(bytes, start, end - start, CHARSET));
+                return null;
+            }
+        }
+
+        private PackageUsage<Jar> row() {
+            final String hash = nextString();
+            final long lastModified = nextLong();
+
+            long internalDate = 0;
+            long size = -1;
+            long classes = -1;
+            int[] versions = new int[0];
+
+            if (layout.details) {
+                internalDate = nextLong();
+                size = nextLong();
+                classes = nextLong();
+            }
+
+            if (layout.versions) {
+                versions = nextInts();
+            }
+
+            final File file = new File(nextString());
+            if (position > this.end) throw new IllegalStateException("Incomplete TSV format");
+
+            final Jar jar = new Jar(file, hash, lastModified, internalDate, classes, size, versions);
+
+            final int javax = nextInt();
+            final int jakarta = nextInt();
+            final int[] packages = new int[PACKAGES];
+
+            for (int i = 0; position < this.end && !trailingTabs(); i++) {
+                packages[i] = nextInt();
+            }
+
+            return new PackageUsage<>(jar, javax, jakarta, packages);
+        }
+
+        private String nextString() {
+            final int tab = field();
+            final String string = new String(bytes, position, tab - position, CHARSET);
+            position = tab + 1;
+            return string;
+        }
+
+        private long nextLong() {
+            final int tab = field();
+            final long value = parseLong(position, tab);
+            position = tab + 1;
+            return value;
+        }
+
+        private int nextInt() {
+            final long value = nextLong();
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw new NumberFormatException();
+            return (int) value;
+        }
+
+        /**
+         * A comma separated list of ints
+         */
+        private int[] nextInts() {
+            final int tab = field();
+
+            int count = 1;
+            for (int i = position; i < tab; i++) {
+                if (bytes[i] == ',') count++;
+            }
+
+            final int[] ints = new int[count];
+            int start = position;
+            for (int i = 0; i < count; i++) {
+                int comma = indexOf(bytes, start, tab, (byte) ',');
+                if (comma == -1) comma = tab;
+
+                final long value = parseLong(start, comma);
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw new NumberFormatException();
+                ints[i] = (int) value;
+                start = comma + 1;
+            }
+
+            position = tab + 1;
+            return ints;
+        }
+
+        /**
+         * @return the end of the current field
+         */
+        private int field() {
+            if (position > end) throw new IllegalStateException("Incomplete TSV format");
+            final int tab = indexOf(bytes, position, end, (byte) '\t');
+            return tab == -1 ? end : tab;
+        }
+
+        /**
+         * String.split drops trailing empty fields, so trailing
+         * tabs are allowed after the counts
+         */
+        private boolean trailingTabs() {
+            for (int i = position; i < end; i++) {
+                if (bytes[i] != '\t') return false;
+            }
+            return true;
+        }
+
+        private long parseLong(final int start, final int end) {
+            if (start >= end) throw new NumberFormatException();
+
+            int i = start;
+            final boolean negative = bytes[i] == '-';
+            if (negative || bytes[i] == '+') i++;
+            if (i == end) throw new NumberFormatException();
+
+            // Anything that could overflow goes the slow way
+            if (end - i > 18) return Long.parseLong(new String(bytes, start, end - start, CHARSET));
+
+            long value = 0;
+            for (; i < end; i++) {
+                final int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) throw new NumberFormatException();
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        private boolean startsWith(final int start, final int end, final byte[] prefix) {
+            if (end - start < prefix.length) return false;
+            for (int i = 0; i < prefix.length; i++) {
+                if (bytes[start + i] != prefix[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the end of the line without any trailing carriage return
+     */
+    private static int trim(final byte[] bytes, final int start, final int end) {
+        return end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    private static int indexOf(final byte[] bytes, final int start, final int end, final byte b) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == b) return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(final byte[] bytes, final int start, final int end, final byte b) {
+        for (int i = end - 1; i >= start; i--) {
+            if (bytes[i] == b) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes TSV rows straight into a reusable byte buffer that is
+ * written to the underlying stream whenever it fills up.
+ *
+ * Numbers are encoded digit by digit and ascii strings char by char,
+ * so writing a row creates no garbage.  The output is byte-for-byte
+ * what PrintStream.println would have written for the same text:
+ * non-ascii strings use the default charset and lines end with the
+ * platform line separator, unless another charset is given.
+ */
+public class TsvWriter {
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes();
+
+    private final OutputStream out;
+    private final Charset charset;
+    private final byte[] buffer;
+    private final byte[] digits = new byte[20];
+    private int position;
+
+    public TsvWriter(final OutputStream out) {
+        this(out, 64 * 1024);
+    }
+
+    public TsvWriter(final OutputStream out, final int size) {
+        this(out, size, Charset.defaultCharset());
+    }
+
+    public TsvWriter(final OutputStream out, final int size, final Charset charset) {
+        this.out = out;
+        this.charset = charset;
+        this.buffer = new byte[Math.max(size, 64)];
+    }
+
+    public TsvWriter tab() {
+        return write((byte) '\t');
+    }
+
+    public TsvWriter newline() {
+        for (final byte b : NEWLINE) {
+            write(b);
+        }
+        return this;
+    }
+
+    public TsvWriter write(final String string) {
+        if (string == null) return write("null");
+
+        final int length = string.length();
+
+        for (int i = 0; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c >= 0x80) return encode(string, i);
+            write((byte) c);
+        }
+        return this;
+    }
+
+    public TsvWriter write(final long value) {
+        if (value == Long.MIN_VALUE) return write(Long.toString(value));
+
+        long remaining = value;
+        if (remaining < 0) {
+            write((byte) '-');
+            remaining = -remaining;
+        }
+
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+
+        while (count > 0) {
+            write(digits[--count]);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the ints separated by tabs
+     */
+    public TsvWriter write(final int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) tab();
+            write(values[i]);
+        }
+        return this;
+    }
+
+    public void flush() {
+        try {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The rest of a string that contains non-ascii characters
+     */
+    private TsvWriter encode(final String string, final int start) {
+        for (final byte b : string.substring(start).getBytes(charset)) {
+            write(b);
+        }
+        return this;
+    }
+
+    private TsvWriter write(final byte b) {
+        if (position == buffer.length) drain();
+        buffer[position++] = b;
+        return this;
+    }
+
+    private void drain() {
+        try {
+            out.write(buffer, 0, position);
+            position = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
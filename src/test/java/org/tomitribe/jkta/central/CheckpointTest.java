@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import com.amazonaws.regions.Regions;
+import org.junit.Test;
+import org.tomitribe.jkta.usage.Dir;
+import org.tomitribe.jkta.usage.ScanSettings;
+import org.tomitribe.jkta.usage.UsageCommand;
+import org.tomitribe.jkta.usage.corpus.CorpusCommand;
+import org.tomitribe.jkta.usage.corpus.Distribution;
+import org.tomitribe.jkta.usage.corpus.References;
+import org.tomitribe.jkta.usage.tsv.Gzip;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.jkta.usage.tsv.ScanTsvTest;
+import org.tomitribe.util.Duration;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.PrintString;
+import org.tomitribe.util.Size;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CheckpointTest {
+
+    @Test
+    public void journal() throws Exception {
+        final File file = new File(Files.tmpdir(), "scan.checkpoint");
+
+        try (Checkpoint checkpoint = Checkpoint.create(file, "scan-x.tsv.gz")) {
+            assertEquals("scan-x-00001.tsv.gz", checkpoint.nextSegment());
+            checkpoint.start("scan-x-00001.tsv.gz");
+            checkpoint.row("a/a.jar");
+            checkpoint.row("b/b.jar");
+            checkpoint.commit("scan-x-00001.tsv.gz", 2);
+
+            assertEquals("scan-x-00002.tsv.gz", checkpoint.nextSegment());
+            checkpoint.start("scan-x-00002.tsv.gz");
+            checkpoint.row("c/c.jar");
+        }
+
+        // a record cut short by the crash
+        java.nio.file.Files.write(file.toPath(), "row\td/d.j".getBytes(), StandardOpenOption.APPEND);
+
+        try (Checkpoint checkpoint = Checkpoint.resume(file)) {
+            assertEquals("scan-x.tsv.gz", checkpoint.getScan());
+            assertEquals(Collections.singletonList("scan-x-00001.tsv.gz"), checkpoint.getSegments());
+            assertEquals(Collections.singletonList("scan-x-00002.tsv.gz"), checkpoint.getUnfinished());
+            assertEquals(2, checkpoint.getDone());
+            assertTrue(checkpoint.isDone("a/a.jar"));
+            assertTrue(checkpoint.isDone("b/b.jar"));
+            assertFalse(checkpoint.isDone("c/c.jar"));
+            assertFalse(checkpoint.isDone("d/d.jar"));
+
+            assertEquals("scan-x-00003.tsv.gz", checkpoint.nextSegment());
+            checkpoint.start("scan-x-00003.tsv.gz");
+            checkpoint.row("c/c.jar");
+            checkpoint.commit("scan-x-00003.tsv.gz", 1);
+        }
+
+        try (Checkpoint checkpoint = Checkpoint.resume(file)) {
+            assertEquals(Arrays.asList("scan-x-00001.tsv.gz", "scan-x-00003.tsv.gz"), checkpoint.getSegments());
+            assertEquals(3, checkpoint.getDone());
+            assertTrue(checkpoint.isDone("c/c.jar"));
+        }
+    }
+
+    /**
+     * Segments are only committed once uploaded, and each repeats the header
+     */
+    @Test
+    public void segments() throws Exception {
+        final File dir = Files.tmpdir();
+        final File file = new File(dir, "scan.checkpoint");
+        final String tsv = "SHA-1\tLast Modified\tInternal Date\tSize\tClasses\tJava Version\tPath\tjavax uses total\n"
+                + "aa\t1\t1\t1\t1\t52\tone.jar\t0\t0\n"
+                + "bb\t1\t1\t1\t1\t52\ttwo.jar\t0\t0\n"
+                + "0000000000000000000000000000000000000000\t1\t1\t2\t2\t0\ttotal\t0\t0\n";
+
+        try (Checkpoint checkpoint = Checkpoint.create(file, "scan.tsv.gz")) {
+            final SegmentOutputStream out = new SegmentOutputStream(checkpoint, new LocalBucket(dir), 0, 0, TimeUnit.MILLISECONDS);
+            out.write(tsv.getBytes());
+            out.close();
+            assertEquals(Arrays.asList("scan-00001.tsv.gz", "scan-00002.tsv.gz"), checkpoint.getSegments());
+        }
+
+        final String header = tsv.substring(0, tsv.indexOf('\n') + 1);
+        assertEquals(header + "aa\t1\t1\t1\t1\t52\tone.jar\t0\t0\n", IO.slurp(Gzip.inflate(IO.read(new File(dir, "scan-00001.tsv.gz")))));
+        assertEquals(header + "bb\t1\t1\t1\t1\t52\ttwo.jar\t0\t0\n", IO.slurp(Gzip.inflate(IO.read(new File(dir, "scan-00002.tsv.gz")))));
+
+        try (Checkpoint checkpoint = Checkpoint.resume(file)) {
+            assertTrue(checkpoint.isDone("one.jar"));
+            assertTrue(checkpoint.isDone("two.jar"));
+        }
+    }
+
+    /**
+     * A scan that dies part way and is resumed must merge into
+     * the same rows and totals as a scan that never stopped
+     */
+    @Test
+    public void resume() throws Exception {
+        final File repository = Files.tmpdir();
+        new CorpusCommand().generate(600, 2, new Size("1kb"), Distribution.fixed, 0, 1, new References("*=0.05"), 1, repository);
+        final String jars = jars(repository);
+        assertEquals(600, jars.split("\n").length);
+
+        final File bucket = Files.tmpdir();
+        final File checkpoint = new File(Files.tmpdir(), "scan.checkpoint");
+
+        // Rows reach the segments a buffer full at a time, so die well after the first
+        try {
+            scan(dying(jars, 450), bucket, repository, checkpoint, "1 millisecond", false);
+            fail("the scan should have died");
+        } catch (Exception e) {
+            // expected
+        }
+
+        final int done;
+        try (Checkpoint journal = Checkpoint.resume(checkpoint)) {
+            done = journal.getDone();
+        }
+        assertTrue(done > 0);
+        assertTrue(done <= 450);
+
+        try {
+            scan(new ByteArrayInputStream(jars.getBytes()), bucket, repository, checkpoint, "1 millisecond", false);
+            fail("the checkpoint exists");
+        } catch (CheckpointExists e) {
+            // expected
+        }
+
+        final String resumed = scan(new ByteArrayInputStream(jars.getBytes()), bucket, repository, checkpoint, "1 day", true);
+        assertTrue(resumed, resumed.contains("after " + done + " jars"));
+
+        new CentralCommand().merge(new PrintString(), checkpoint, "file:" + bucket.getAbsolutePath(), (Regions) null, false, 0);
+
+        final String scan;
+        try (Checkpoint journal = Checkpoint.resume(checkpoint)) {
+            scan = journal.getScan();
+        }
+        final String merged = IO.slurp(Gzip.inflate(IO.read(new File(bucket, scan))));
+
+        final PrintString expected = new PrintString();
+        new UsageCommand().jars(ScanSettings.builder().repository(Dir.from(repository)).build(), new ByteArrayInputStream(jars.getBytes()))
+                .write(expected);
+
+        assertEquals(rows(expected.toString()), rows(merged));
+        assertEquals(totals(expected.toString()), totals(merged));
+        assertEquals(0, bucket.listFiles((d, name) -> name.endsWith(".parts") || name.endsWith(".tmp")).length);
+    }
+
+    private static String scan(final InputStream stdin, final File bucket, final File repository, final File checkpoint,
+                               final String interval, final boolean resume) throws Exception {
+        final PrintString stdout = new PrintString();
+        final ScanSettings settings = ScanSettings.builder().repository(Dir.from(repository)).build();
+        new CentralCommand().scanAndStream(stdout, stdin, settings, "file:" + bucket.getAbsolutePath(), (Regions) null,
+                new Size("5mb"), 2, 3, false, 2, checkpoint, new Duration(interval), resume);
+        return stdout.toString();
+    }
+
+    /**
+     * Hands out one path per read and then fails
+     */
+    private static InputStream dying(final String jars, final int paths) {
+        final List<String> lines = Arrays.asList(jars.split("\n"));
+        return new InputStream() {
+            private int line;
+            private byte[] bytes = new byte[0];
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                final byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0];
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                if (position == bytes.length) {
+                    if (line == paths) throw new IOException("Killed");
+                    bytes = (lines.get(line++) + "\n").getBytes();
+                    position = 0;
+                }
+                final int count = Math.min(len, bytes.length - position);
+                System.arraycopy(bytes, position, b, off, count);
+                position += count;
+                return count;
+            }
+        };
+    }
+
+    private static String jars(final File repository) {
+        return Files.collect(repository, ".*\\.jar").stream()
+                .map(file -> ScanTsv.childPath(repository, file))
+                .sorted()
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static List<String> rows(final String tsv) {
+        return Stream.of(tsv.split("\n"))
+                .filter(line -> !line.startsWith("0000000000000000000000000000000000000000"))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The footer totals without its dates or notes
+     */
+    private static String totals(final String tsv) {
+        final String footer = Stream.of(ScanTsvTest.normalize(tsv).split("\n"))
+                .filter(line -> line.startsWith("0000000000000000000000000000000000000000"))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        final String[] columns = footer.split("\t");
+        columns[6] = columns[6].replaceAll(", .*", "");
+        return String.join("\t", columns);
+    }
+}
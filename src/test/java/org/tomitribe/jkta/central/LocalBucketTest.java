@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.central;
+
+import com.amazonaws.regions.Regions;
+import org.junit.Test;
+import org.tomitribe.jkta.usage.Dir;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.ScanSettings;
+import org.tomitribe.jkta.usage.tsv.BlockGzipFile;
+import org.tomitribe.jkta.usage.tsv.Rows;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.util.Duration;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Mvn;
+import org.tomitribe.util.PrintString;
+import org.tomitribe.util.Size;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LocalBucketTest {
+
+    @Test
+    public void upload() throws Exception {
+        final File dir = Files.tmpdir();
+        final byte[] bytes = random(100_000);
+
+        final PartOutputStream out = new LocalBucket(dir, upload(1000, 4, 6)).upload("scan.tsv.gz");
+        write(out, bytes);
+        out.close();
+
+        assertEquals(100, out.getParts());
+        assertArrayEquals(bytes, IO.readBytes(new File(dir, "scan.tsv.gz")));
+        assertFalse(new File(dir, "scan.tsv.gz.parts").exists());
+    }
+
+    @Test
+    public void empty() throws Exception {
+        final File dir = Files.tmpdir();
+
+        new LocalBucket(dir, upload(1000, 2, 2)).upload("empty").close();
+
+        assertEquals(0, new File(dir, "empty").length());
+        assertTrue(new File(dir, "empty").exists());
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        final File dir = Files.tmpdir();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger most = new AtomicInteger();
+
+        final Bucket bucket = new Wrapped(dir, upload(1000, 4, 8), (number, next) -> {
+            most.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            next.run();
+        });
+
+        try (PartOutputStream out = bucket.upload("entry")) {
+            write(out, random(20_000));
+        }
+
+        assertTrue(most.get() > 1);
+        assertTrue(most.get() <= 4);
+        assertEquals(20_000, new File(dir, "entry").length());
+    }
+
+    /**
+     * Once every buffer holds a part the writer waits for an upload
+     */
+    @Test
+    public void backpressure() throws Exception {
+        final File dir = Files.tmpdir();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final Bucket bucket = new Wrapped(dir, upload(1000, 2, 3), (number, next) -> {
+            release.await();
+            next.run();
+        });
+
+        final PartOutputStream out = bucket.upload("entry");
+        final AtomicInteger written = new AtomicInteger();
+        final Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 10; i++) {
+                    out.write(new byte[1000]);
+                    written.incrementAndGet();
+                }
+                out.close();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.start();
+
+        Thread.sleep(300);
+        assertEquals(Thread.State.WAITING, writer.getState());
+        assertEquals(3, written.get());
+
+        release.countDown();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(10, written.get());
+        assertEquals(10_000, new File(dir, "entry").length());
+    }
+
+    @Test
+    public void failedPart() throws Exception {
+        final File dir = Files.tmpdir();
+
+        final Bucket bucket = new Wrapped(dir, upload(1000, 2, 2), (number, next) -> {
+            if (number == 3) throw new IOException("Connection reset");
+            next.run();
+        });
+
+        final PartOutputStream out = bucket.upload("entry");
+        try {
+            write(out, random(50_000));
+            out.close();
+            fail("the failed part must fail the upload");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Connection reset"));
+        }
+
+        out.abort();
+        assertFalse(new File(dir, "entry").exists());
+        assertFalse(new File(dir, "entry.parts").exists());
+    }
+
+    @Test
+    public void abort() throws Exception {
+        final File dir = Files.tmpdir();
+
+        final PartOutputStream out = new LocalBucket(dir, upload(1000, 2, 2)).upload("entry");
+        write(out, random(10_500));
+        out.abort();
+
+        assertFalse(new File(dir, "entry").exists());
+        assertFalse(new File(dir, "entry.parts").exists());
+    }
+
+    /**
+     * scan-and-stream with a local bucket needs no AWS credentials
+     */
+    @Test
+    public void scanAndStream() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+        final File dir = Files.tmpdir();
+
+        final PrintString stdout = new PrintString();
+        new CentralCommand().scanAndStream(stdout, new ByteArrayInputStream(zip.getName().getBytes()),
+                ScanSettings.builder().repository(Dir.from(zip.getParentFile())).build(), "file:" + dir.getAbsolutePath(), (Regions) null,
+                new Size("5mb"), 2, 3, false, 2, null, new Duration("15 minutes"), false);
+
+        final File[] entries = dir.listFiles();
+        assertEquals(1, entries.length);
+        assertTrue(stdout.toString(), stdout.toString().contains(entries[0].getName()));
+
+        final String tsv = IO.slurp(new GZIPInputStream(IO.read(entries[0])));
+        assertTrue(tsv.contains("\ttomcat-10.0.0-M5.zip\t"));
+    }
+
+    /**
+     * Block compressed scans upload the index next to the entry
+     */
+    @Test
+    public void scanAndStreamBlocks() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+        final File dir = Files.tmpdir();
+
+        new CentralCommand().scanAndStream(new PrintString(), new ByteArrayInputStream(zip.getName().getBytes()),
+                ScanSettings.builder().repository(Dir.from(zip.getParentFile())).build(), "file:" + dir.getAbsolutePath(), (Regions) null,
+                new Size("5mb"), 2, 3, true, 2, null, new Duration("15 minutes"), false);
+
+        final File[] entries = dir.listFiles((d, name) -> name.endsWith(".tsv.gz"));
+        assertEquals(1, entries.length);
+        assertTrue(BlockGzipFile.isIndexed(entries[0]));
+
+        try (Stream<PackageUsage<Jar>> usages = ScanTsv.fromJarTsv(entries[0], Rows.ALL, 2, s -> fail(s))) {
+            assertEquals(Collections.singletonList(zip.getName()), usages.map(usage -> usage.getContext().getJar().getName())
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    interface Part {
+        void upload(int number, Next next) throws Exception;
+    }
+
+    interface Next {
+        void run() throws IOException;
+    }
+
+    /**
+     * A local bucket whose parts go through the given code first
+     */
+    private static class Wrapped extends LocalBucket {
+        private final Part part;
+
+        Wrapped(final File dir, final Upload upload, final Part part) {
+            super(dir, upload);
+            this.part = part;
+        }
+
+        @Override
+        protected Multipart multipart(final File file) throws IOException {
+            final Multipart multipart = super.multipart(file);
+            return new Multipart() {
+                @Override
+                public void part(final int number, final byte[] bytes, final int length) throws IOException {
+                    try {
+                        part.upload(number, () -> multipart.part(number, bytes, length));
+                    } catch (IOException | RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public void complete(final int parts) throws IOException {
+                    multipart.complete(parts);
+                }
+
+                @Override
+                public void abort() {
+                    multipart.abort();
+                }
+            };
+        }
+    }
+
+    private static Upload upload(final long partSize, final int threads, final int buffers) {
+        return Upload.builder().partSize(partSize).threads(threads).buffers(buffers).build();
+    }
+
+    private static byte[] random(final int size) {
+        final byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes in uneven chunks so parts are filled across writes
+     */
+    private static void write(final OutputStream out, final byte[] bytes) throws IOException {
+        for (int i = 0; i < bytes.length; i += 777) {
+            out.write(bytes, i, Math.min(777, bytes.length - i));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.tomitribe.jkta.Bytecode;
+import org.tomitribe.jkta.transform.Transformation;
+import org.tomitribe.jkta.usage.Dir;
+import org.tomitribe.jkta.usage.JarUsage;
+import org.tomitribe.jkta.usage.ScanSettings;
+import org.tomitribe.jkta.usage.UsageCommand;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Mvn;
+import org.tomitribe.util.PrintString;
+import org.tomitribe.util.Zips;
+
+import javax.ejb.SessionBean;
+import java.io.Closeable;
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JfrTest {
+
+    @Test
+    public void events() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+
+        final List<RecordedEvent> events = record(() -> JarUsage.of(zip));
+
+        final List<RecordedEvent> jars = named(events, "JarScan");
+        assertEquals(1, jars.size());
+        assertEquals(zip.getPath(), jars.get(0).getString("path"));
+        assertEquals(zip.length(), jars.get(0).getLong("size"));
+        assertTrue(jars.get(0).getLong("classes") > 1000);
+
+        final List<RecordedEvent> nested = named(events, "ArchiveNested");
+        assertTrue(nested.stream().anyMatch(event -> event.getString("entry").endsWith("catalina.jar")));
+
+        final List<RecordedEvent> classes = named(events, "ClassParse");
+        assertTrue(classes.stream().anyMatch(event -> event.getBoolean("prefiltered")));
+        assertTrue(classes.stream().anyMatch(event -> !event.getBoolean("prefiltered")));
+        assertTrue(classes.stream().allMatch(event -> event.getLong("bytes") > 0));
+        assertTrue(classes.stream().anyMatch(event -> event.getString("name").equals("org/apache/catalina/core/StandardContext")));
+    }
+
+    /**
+     * The flag records into the file once the output has been written
+     */
+    @Test
+    public void flag() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+        final File tmpdir = Files.tmpdir();
+        Zips.unzip(zip, tmpdir);
+        final File jfr = new File(Files.tmpdir(), "scan.jfr");
+
+        final ScanSettings settings = ScanSettings.builder().repository(Dir.from(tmpdir)).jfr(jfr).build();
+        new UsageCommand().dir(settings, Dir.from(tmpdir)).write(new PrintString());
+
+        assertTrue(jfr.exists());
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(jfr.toPath());
+        assertFalse(events.isEmpty());
+        assertFalse(named(events, "JarScan").isEmpty());
+    }
+
+    /**
+     * Under the default settings only events past their threshold are
+     * kept, so the duration must be measured before it is checked
+     */
+    @Test
+    public void thresholds() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+        final File file = new File(Files.tmpdir(), "thresholds.jfr");
+
+        try (Closeable recording = Jfr.record(file)) {
+            JarUsage.of(zip);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+        final List<RecordedEvent> jars = named(events, "JarScan");
+        assertEquals(1, jars.size());
+        assertEquals(zip.getPath(), jars.get(0).getString("path"));
+        assertTrue(jars.get(0).getDuration().toMillis() >= 20);
+        assertTrue(named(events, "ClassParse").stream().allMatch(event -> event.getDuration().toMillis() >= 1));
+    }
+
+    @Test
+    public void transform() throws Exception {
+        final File jar = new File(Files.tmpdir(), "ejb.jar");
+        try (ZipOutputStream out = new ZipOutputStream(IO.write(jar))) {
+            out.putNextEntry(new ZipEntry("org/example/UsesEjb.class"));
+            out.write(Bytecode.readClassFile(UsesEjb.class));
+            out.closeEntry();
+        }
+
+        final List<RecordedEvent> events = named(record(() -> Transformation.transform(jar)), "Transform");
+
+        assertEquals(1, events.size());
+        assertEquals("org/example/UsesEjb.class", events.get(0).getString("entry"));
+        assertTrue(events.get(0).getBoolean("changed"));
+    }
+
+    public static class UsesEjb {
+        public SessionBean bean;
+    }
+
+    interface Scan {
+        void run() throws Exception;
+    }
+
+    /**
+     * Records the jkta events with no threshold so every one of them is kept
+     */
+    private static List<RecordedEvent> record(final Scan scan) throws Exception {
+        final File file = new File(Files.tmpdir(), "events.jfr");
+
+        try (Recording recording = new Recording()) {
+            for (final String event : new String[]{"JarScan", "ArchiveNested", "ClassParse", "Transform", "TsvWrite"}) {
+                recording.enable("org.tomitribe.jkta." + event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            scan.run();
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+
+        return RecordingFile.readAllEvents(file.toPath());
+    }
+
+    private static List<RecordedEvent> named(final List<RecordedEvent> events, final String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals("org.tomitribe.jkta." + name))
+                .collect(Collectors.toList());
+    }
+}
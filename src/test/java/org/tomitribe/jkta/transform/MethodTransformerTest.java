@@ -216,7 +216,7 @@ public class MethodTransformerTest {
     @Test
     public void visitInvokeDynamicInsn_Direct() {
         final PackageUsage usage = new PackageUsage();
-        final MethodScanner methodScanner = new MethodScanner(Opcodes.ASM8, new BytecodeUsage(usage, Opcodes.ASM8));
+        final MethodScanner methodScanner = new MethodScanner(Opcodes.ASM8, new BytecodeUsage(usage));
         methodScanner.visitInvokeDynamicInsn(
                 "accept",
                 "(Ljavax/ejb/Process;)Ljavax/jms/Consumer;",
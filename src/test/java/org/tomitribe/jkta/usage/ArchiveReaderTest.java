@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+import org.tomitribe.jkta.Bytecode;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Mvn;
+import org.tomitribe.util.Zips;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveReaderTest {
+
+    private static final ScanOptions STREAM = ScanOptions.builder().reader(ArchiveReader.stream).build();
+    private static final ScanOptions DIRECTORY = ScanOptions.builder().reader(ArchiveReader.directory).build();
+
+    /**
+     * Both readers must report exactly the same jar details and counts
+     * for the Tomcat zip and every jar inside it
+     */
+    @Test
+    public void sameAsStream() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+        final File tmpdir = Files.tmpdir();
+        Zips.unzip(zip, tmpdir);
+
+        final List<File> jars = Dir.from(tmpdir).searchScannables().collect(Collectors.toList());
+        jars.add(zip);
+        assertTrue(jars.size() > 20);
+
+        for (final File jar : jars) {
+            assertSame(jar);
+        }
+    }
+
+    /**
+     * Resources are skipped without being inflated, classes still counted
+     */
+    @Test
+    public void resources() throws Exception {
+        final File jar = new File(Files.tmpdir(), "resources.jar");
+        final Random random = new Random(42);
+
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < 20; i++) {
+                final byte[] bytes = new byte[100_000];
+                random.nextBytes(bytes);
+                out.putNextEntry(new ZipEntry("fonts/font-" + i + ".ttf"));
+                out.write(bytes);
+            }
+
+            final byte[] bytecode = Bytecode.readClassFile(ConstantPoolTest.UsesEjb.class);
+            out.putNextEntry(new ZipEntry("org/example/UsesEjb.class"));
+            out.write(bytecode);
+        }
+
+        final PackageUsage<Jar> usage = assertSame(jar);
+        assertEquals(1, usage.getContext().getClasses());
+        assertEquals(1, usage.get(Package.JAVAX_EJB));
+    }
+
+    /**
+     * Files without a central directory fall back to the stream reader
+     */
+    @Test
+    public void notAZip() throws Exception {
+        final File jar = new File(Files.tmpdir(), "broken.jar");
+        IO.copy("this is not a zip".getBytes(), jar);
+
+        final PackageUsage<Jar> usage = assertSame(jar);
+        assertEquals(0, usage.getContext().getClasses());
+    }
+
+    private static PackageUsage<Jar> assertSame(final File jar) throws Exception {
+        final PackageUsage<Jar> stream = JarUsage.of(jar, STREAM);
+        final PackageUsage<Jar> directory = JarUsage.of(jar, DIRECTORY);
+
+        assertEquals(jar.getName(), stream.getContext(), directory.getContext());
+        assertEquals(jar.getName(), stream.toTsv(), directory.toTsv());
+        return directory;
+    }
+}
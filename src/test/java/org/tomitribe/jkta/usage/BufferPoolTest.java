@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    /**
+     * A reservation over the limit waits for the bytes
+     * handed off to be released
+     */
+    @Test
+    public void reserveWaitsForHandedOff() throws Exception {
+        final BufferPool pool = new BufferPool(100);
+        pool.reserve(60);
+        pool.handOff(60);
+
+        final CountDownLatch reserved = new CountDownLatch(1);
+        start(() -> {
+            pool.reserve(60);
+            reserved.countDown();
+        });
+
+        assertFalse(reserved.await(200, TimeUnit.MILLISECONDS));
+        pool.release(60);
+        assertTrue(reserved.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Reservations not yet handed off never wait on each other, so
+     * threads inflating at the same time cannot block each other,
+     * but reads wait until they are released
+     */
+    @Test
+    public void readsWaitForReserved() throws Exception {
+        final BufferPool pool = new BufferPool(100);
+        pool.reserve(60);
+        pool.reserve(60);
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        start(() -> {
+            pool.acquire(10);
+            acquired.countDown();
+        });
+
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        pool.handOff(120);
+        pool.release(120);
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+    }
+
+    private interface Blocking {
+        void run() throws InterruptedException;
+    }
+
+    private static void start(final Blocking blocking) {
+        final Thread thread = new Thread(() -> {
+            try {
+                blocking.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.tomitribe.jkta.Bytecode;
+import org.tomitribe.jkta.usage.scan.ClassScanner;
+import org.tomitribe.jkta.usage.scan.ConstantPool;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Mvn;
+
+import javax.ejb.SessionBean;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConstantPoolTest {
+
+    @Test
+    public void noReferences() throws Exception {
+        final byte[] bytecode = Bytecode.readClassFile(Plain.class);
+        assertFalse(ConstantPool.references(bytecode, bytecode.length));
+    }
+
+    @Test
+    public void references() throws Exception {
+        final byte[] bytecode = Bytecode.readClassFile(UsesEjb.class);
+        assertTrue(ConstantPool.references(bytecode, bytecode.length));
+    }
+
+    @Test
+    public void version() throws Exception {
+        final byte[] bytecode = Bytecode.readClassFile(Plain.class);
+        assertEquals(new ClassReader(bytecode).readInt(4), ConstantPool.version(bytecode));
+
+        final PackageUsage<Object> usage = new PackageUsage<>();
+        final ClassScanner classScanner = new ClassScanner(usage);
+        new ClassReader(bytecode).accept(classScanner, 0);
+        assertEquals(classScanner.getVersion(), ClassScanner.scan(bytecode, new PackageUsage<>(), false));
+    }
+
+    @Test
+    public void truncated() throws Exception {
+        final byte[] bytecode = Bytecode.readClassFile(Plain.class);
+        assertTrue(ConstantPool.references(bytecode, 12));
+    }
+
+    /**
+     * Every class in the Tomcat distribution must produce exactly
+     * the same counts with and without the prefilter
+     */
+    @Test
+    public void sameAsFullVisit() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+
+        final AtomicInteger classes = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+
+        forEachClass(IO.read(zip), bytecode -> {
+            final PackageUsage<Object> full = new PackageUsage<>();
+            final PackageUsage<Object> filtered = new PackageUsage<>();
+
+            final int fullVersion = ClassScanner.scan(bytecode, full, true);
+            final int filteredVersion = ClassScanner.scan(bytecode, filtered, false);
+
+            assertEquals(fullVersion, filteredVersion);
+            assertEquals(full.getJavax(), filtered.getJavax());
+            assertEquals(full.getJakarta(), filtered.getJakarta());
+            assertArrayEquals(full.getPackages(), filtered.getPackages());
+
+            classes.incrementAndGet();
+            if (!ConstantPool.references(bytecode, bytecode.length)) {
+                skipped.incrementAndGet();
+                assertEquals(0, full.getJavax() + full.getJakarta());
+            }
+        });
+
+        assertTrue(classes.get() > 1000);
+        assertTrue(skipped.get() > 0);
+    }
+
+    /**
+     * The per thread scanner and buffer must give the same counts as
+     * a fresh scanner, whether or not the size is known up front and
+     * even if the size given is wrong
+     */
+    @Test
+    public void reusedScanner() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+
+        forEachClass(IO.read(zip), bytecode -> {
+            final PackageUsage<Object> fresh = new PackageUsage<>();
+            final ClassScanner classScanner = new ClassScanner(fresh);
+            new ClassReader(bytecode).accept(classScanner, 0);
+
+            for (final long size : new long[]{bytecode.length, -1, 10, bytecode.length * 2L}) {
+                final PackageUsage<Object> reused = new PackageUsage<>();
+                final int version = ClassScanner.scan(new ByteArrayInputStream(bytecode), size, reused, true);
+
+                assertEquals(classScanner.getVersion(), version);
+                assertEquals(fresh.toTsv(), reused.toTsv());
+            }
+        });
+    }
+
+    @Test
+    public void jarUsage() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+
+        final PackageUsage<Jar> full = JarUsage.of(zip, ScanOptions.builder().fullVisit(true).build());
+        final PackageUsage<Jar> filtered = JarUsage.of(zip);
+
+        assertEquals(full.toTsv(), filtered.toTsv());
+        assertEquals(full.getContext(), filtered.getContext());
+    }
+
+    interface ClassConsumer {
+        void accept(byte[] bytecode) throws IOException;
+    }
+
+    static void forEachClass(final InputStream in, final ClassConsumer consumer) throws IOException {
+        final ZipInputStream zipInputStream = new ZipInputStream(in);
+
+        ZipEntry entry;
+        while ((entry = zipInputStream.getNextEntry()) != null) {
+            if (entry.getName().endsWith(".class")) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                IO.copy(zipInputStream, bytes);
+                consumer.accept(bytes.toByteArray());
+            } else if (Is.Zip.accept(entry.getName())) {
+                forEachClass(zipInputStream, consumer);
+            }
+        }
+    }
+
+    public static class Plain {
+        public String name(final Object o) {
+            return String.valueOf(o);
+        }
+    }
+
+    public static class UsesEjb {
+        public SessionBean bean;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.tsv.ScanTsvTest;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Mvn;
+import org.tomitribe.util.PrintString;
+import org.tomitribe.util.Zips;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DedupeTest {
+
+    /**
+     * Each distinct content is handed to the scanner once, even with
+     * several threads asking for copies of it at the same time
+     */
+    @Test
+    public void scannedOnce() throws Exception {
+        final File dir = Files.tmpdir();
+        for (int i = 0; i < 3000; i++) {
+            IO.copy(("content " + (i % 1500)).getBytes(), new File(dir, "file-" + i + ".jar"));
+        }
+
+        final Dedupe dedupe = new Dedupe();
+        final AtomicInteger scanned = new AtomicInteger();
+
+        final List<PackageUsage<Jar>> usages = ParallelScan.map(Files.collect(dir).stream(), file -> {
+            try {
+                return dedupe.scan(file, mapped -> {
+                    scanned.incrementAndGet();
+                    return new PackageUsage<>(Jar.builder().jar(mapped.getFile()).sha1(mapped.getSha1()).build());
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, 8, Order.input).collect(Collectors.toList());
+
+        assertEquals(3000, usages.size());
+        assertEquals(1500, scanned.get());
+        assertEquals(1500, dedupe.getDistinct());
+        assertEquals(1500, dedupe.getDuplicates());
+
+        // every row keeps its own path
+        for (final PackageUsage<Jar> usage : usages) {
+            assertTrue(usage.getContext().getJar().isFile());
+        }
+        assertEquals(3000, usages.stream().map(usage -> usage.getContext().getJar()).distinct().count());
+        assertEquals(1500, usages.stream().map(usage -> usage.getContext().getSha1()).distinct().count());
+    }
+
+    /**
+     * Hashing through the reused buffer gives the SHA-1 of the mapping,
+     * including files larger than the buffer
+     */
+    @Test
+    public void digest() throws Exception {
+        final byte[] bytes = new byte[200 * 1024 + 7];
+        new Random(7).nextBytes(bytes);
+        final File file = new File(Files.tmpdir(), "large.jar");
+        IO.copy(bytes, file);
+
+        final byte[] expected = MessageDigest.getInstance("SHA-1").digest(bytes);
+        assertArrayEquals(expected, MappedJar.digest(file));
+        assertArrayEquals(expected, MappedJar.of(file).getDigest());
+        assertArrayEquals(expected, MappedJar.digest(file));
+    }
+
+    /**
+     * Copies of a jar whose scan failed are skipped rather than
+     * scanned again
+     */
+    @Test
+    public void failedScan() throws Exception {
+        final File dir = Files.tmpdir();
+        final File first = new File(dir, "first.jar");
+        final File copy = new File(dir, "copy.jar");
+        IO.copy("not a jar".getBytes(), first);
+        IO.copy("not a jar".getBytes(), copy);
+
+        final Dedupe dedupe = new Dedupe();
+        final AtomicInteger scanned = new AtomicInteger();
+
+        try {
+            dedupe.scan(first, mapped -> {
+                scanned.incrementAndGet();
+                throw new IllegalStateException("unreadable");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            // the first copy reports its own failure
+        }
+
+        assertNull(dedupe.scan(copy, mapped -> {
+            scanned.incrementAndGet();
+            return null;
+        }));
+        assertEquals(1, scanned.get());
+        assertEquals(1, dedupe.getDuplicates());
+    }
+
+    /**
+     * Copies of the Tomcat jars produce the same rows with and
+     * without --dedupe
+     */
+    @Test
+    public void sameRows() throws Exception {
+        final File tmpdir = Files.tmpdir();
+        Zips.unzip(Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5"), tmpdir);
+
+        final List<File> archives = Dir.from(tmpdir).searchScannables()
+                .filter(file -> !file.getName().endsWith(".class"))
+                .collect(Collectors.toList());
+        final List<File> jars = archives.stream()
+                .filter(file -> file.getName().endsWith(".jar"))
+                .collect(Collectors.toList());
+        final File copies = new File(tmpdir, "copies");
+        Files.mkdir(copies);
+        for (final File jar : jars) {
+            IO.copy(jar, new File(copies, jar.getName()));
+        }
+
+        final String plain = scan(tmpdir, false);
+        final String deduped = scan(tmpdir, true);
+
+        assertEquals(rows(plain), rows(deduped));
+        assertTrue(deduped, deduped.contains(String.format(", dedupe %s distinct %s duplicates\t", archives.size(), jars.size())));
+    }
+
+    private static String scan(final File tmpdir, final boolean dedupe) throws Exception {
+        final PrintString out = new PrintString();
+        final ScanSettings settings = ScanSettings.builder().repository(Dir.from(tmpdir)).threads(4).dedupe(dedupe).build();
+        new UsageCommand().dir(settings, Dir.from(tmpdir)).write(out);
+        return ScanTsvTest.normalize(out.toString());
+    }
+
+    private static String rows(final String tsv) {
+        return tsv.substring(0, tsv.lastIndexOf("\n0000000000000000000000000000000000000000"));
+    }
+}
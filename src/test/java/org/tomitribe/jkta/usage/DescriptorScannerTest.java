@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+import org.tomitribe.jkta.usage.scan.DescriptorScanner;
+import org.tomitribe.jkta.usage.scan.Usage;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Mvn;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DescriptorScannerTest {
+
+    @Test
+    public void fieldDescriptor() {
+        assertEquals(list("javax.ejb.EJB"), descriptor("Ljavax/ejb/EJB;"));
+        assertEquals(list("javax.ejb.EJB"), descriptor("[[Ljavax/ejb/EJB;"));
+        assertEquals(list(), descriptor("[I"));
+        assertEquals(list(), descriptor("J"));
+    }
+
+    @Test
+    public void methodDescriptor() {
+        assertEquals(list("java.lang.String", "javax.ejb.EJB", "java.util.List"),
+                descriptor("(ILjava/lang/String;[Ljavax/ejb/EJB;)Ljava/util/List;"));
+        assertEquals(list(), descriptor("()V"));
+    }
+
+    @Test
+    public void signature() {
+        assertEquals(list("java.lang.Object", "java.lang.Comparable", "java.util.Map", "java.lang.String",
+                "javax.ejb.EJB", "java.io.Serializable"),
+                signature("<T:Ljava/lang/Object;E::Ljava/lang/Comparable<TE;>;>" +
+                        "Ljava/util/Map<Ljava/lang/String;[Ljavax/ejb/EJB;>;Ljava/io/Serializable;"));
+
+        assertEquals(list("java.util.List", "java.util.Map$Entry", "java.io.IOException"),
+                signature("<T:Ljava/lang/Number;>(Ljava/util/List<+TT;>;)Ljava/util/Map$Entry<*-TT;>;^Ljava/io/IOException;^TT;")
+                        .subList(1, 4));
+
+        assertEquals(list("jakarta.faces.Outer", "java.lang.String", "javax.ejb.EJB"),
+                typeSignature("Ljakarta/faces/Outer<Ljava/lang/String;>.Inner<Ljavax/ejb/EJB;>;"));
+    }
+
+    /**
+     * Every descriptor and signature in the Tomcat distribution must yield
+     * the same class names ASM's own parsers would
+     */
+    @Test
+    public void sameAsAsm() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+
+        final Set<String> descriptors = new LinkedHashSet<>();
+        final Set<String> signatures = new LinkedHashSet<>();
+        final Set<String> typeSignatures = new LinkedHashSet<>();
+
+        ConstantPoolTest.forEachClass(IO.read(zip), bytecode -> {
+            new ClassReader(bytecode).accept(new Collector(descriptors, signatures, typeSignatures), 0);
+        });
+
+        assertTrue(descriptors.size() > 1000);
+        assertTrue(signatures.size() > 100);
+
+        for (final String descriptor : descriptors) {
+            assertEquals(descriptor, asmDescriptor(descriptor), descriptor(descriptor));
+        }
+
+        for (final String signature : signatures) {
+            final List<String> expected = new ArrayList<>();
+            new SignatureReader(signature).accept(new Names(expected));
+            assertEquals(signature, expected, signature(signature));
+        }
+
+        for (final String signature : typeSignatures) {
+            final List<String> expected = new ArrayList<>();
+            new SignatureReader(signature).acceptType(new Names(expected));
+            assertEquals(signature, expected, typeSignature(signature));
+        }
+    }
+
+    @Test
+    public void noAllocation() throws Exception {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+
+        final PackageUsage<Object> usage = new PackageUsage<>();
+        final String desc = "(ILjava/lang/String;[Ljavax/ejb/EJB;)Ljakarta/servlet/Servlet;";
+        final String signature = "<T:Ljava/lang/Object;>Ljava/util/Map<Ljava/lang/String;[Ljavax/ejb/EJB;>;";
+
+        for (int i = 0; i < 100_000; i++) {
+            DescriptorScanner.descriptor(desc, usage);
+            DescriptorScanner.signature(signature, usage);
+        }
+
+        final long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 100_000; i++) {
+            DescriptorScanner.descriptor(desc, usage);
+            DescriptorScanner.signature(signature, usage);
+        }
+        final long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(200_000 * 2, usage.getJavax());
+        assertTrue("allocated " + allocated, allocated < 10_000);
+    }
+
+    private static List<String> asmDescriptor(final String descriptor) {
+        final List<String> names = new ArrayList<>();
+        final Type type = Type.getType(descriptor);
+
+        if (type.getSort() == Type.METHOD) {
+            for (final Type argument : type.getArgumentTypes()) {
+                add(names, argument);
+            }
+            add(names, type.getReturnType());
+        } else {
+            add(names, type);
+        }
+        return names;
+    }
+
+    private static void add(final List<String> names, final Type type) {
+        final Type element = type.getSort() == Type.ARRAY ? type.getElementType() : type;
+        if (element.getSort() == Type.OBJECT) names.add(element.getClassName());
+    }
+
+    private static List<String> descriptor(final String descriptor) {
+        final Names names = new Names(new ArrayList<>());
+        DescriptorScanner.descriptor(descriptor, names);
+        return names.names;
+    }
+
+    private static List<String> signature(final String signature) {
+        final Names names = new Names(new ArrayList<>());
+        DescriptorScanner.signature(signature, names);
+        return names.names;
+    }
+
+    private static List<String> typeSignature(final String signature) {
+        final Names names = new Names(new ArrayList<>());
+        DescriptorScanner.typeSignature(signature, names);
+        return names.names;
+    }
+
+    private static List<String> list(final String... names) {
+        final List<String> list = new ArrayList<>();
+        for (final String name : names) list.add(name);
+        return list;
+    }
+
+    /**
+     * Records class names from either ASM or the DescriptorScanner.
+     * Inner class names after a '.' are not recorded by either.
+     */
+    private static class Names extends SignatureVisitor implements Usage<Object> {
+        private final List<String> names;
+
+        Names(final List<String> names) {
+            super(Opcodes.ASM8);
+            this.names = names;
+        }
+
+        @Override
+        public void visitClassType(final String name) {
+            names.add(name.replace('/', '.'));
+        }
+
+        @Override
+        public void accept(final String name) {
+            names.add(name);
+        }
+
+        @Override
+        public Object getContext() {
+            return null;
+        }
+    }
+
+    private static class Collector extends ClassVisitor {
+        private final Set<String> descriptors;
+        private final Set<String> signatures;
+        private final Set<String> typeSignatures;
+
+        Collector(final Set<String> descriptors, final Set<String> signatures, final Set<String> typeSignatures) {
+            super(Opcodes.ASM8);
+            this.descriptors = descriptors;
+            this.signatures = signatures;
+            this.typeSignatures = typeSignatures;
+        }
+
+        @Override
+        public void visit(final int version, final int access, final String name, final String signature,
+                          final String superName, final String[] interfaces) {
+            if (signature != null) signatures.add(signature);
+        }
+
+        @Override
+        public FieldVisitor visitField(final int access, final String name, final String descriptor,
+                                       final String signature, final Object value) {
+            descriptors.add(descriptor);
+            if (signature != null) typeSignatures.add(signature);
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access, final String name, final String descriptor,
+                                         final String signature, final String[] exceptions) {
+            descriptors.add(descriptor);
+            if (signature != null) signatures.add(signature);
+            return null;
+        }
+    }
+}
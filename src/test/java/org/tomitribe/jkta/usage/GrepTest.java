@@ -18,7 +18,13 @@ package org.tomitribe.jkta.usage;
 
 import org.junit.Test;
 import org.tomitribe.jkta.Results;
+import org.tomitribe.jkta.usage.columnar.Columnar;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
 import org.tomitribe.jkta.usage.tsv.ScanTsvTest;
+import org.tomitribe.util.IO;
+
+import java.io.File;
+import java.io.OutputStream;
 
 import static org.tomitribe.jkta.CommandAssertion.command;
 import static org.tomitribe.jkta.Resources.load;
@@ -55,6 +61,33 @@ public class GrepTest {
                 .exec("usage", "grep", "--javax=[1-9].*", "--javax-ws-rs=[1-9].*");
     }
 
+    @Test
+    public void whereMatches() throws Exception {
+        command(UsageCommand.class)
+                .input(load("scan-v0.5.tsv"))
+                .output(load("grep-javax-ws-rs.tsv"))
+                .results(this::normalize)
+                .exec("usage", "grep", "--where=javax > 0 && javax.ws.rs > 0");
+    }
+
+    /**
+     * Columnar files are matched on their count columns first
+     */
+    @Test
+    public void columnarMatches() throws Exception {
+        final File columnar = File.createTempFile("scan-", ".columnar");
+        columnar.deleteOnExit();
+
+        try (OutputStream out = IO.write(columnar)) {
+            Columnar.write(out, ScanTsv.fromJarTsv(IO.read(load("scan-v0.5.tsv"))), new File(""));
+        }
+
+        command(UsageCommand.class)
+                .output(load("grep-javax-ws-rs.tsv"))
+                .results(this::normalize)
+                .exec("usage", "grep", "--javax=[1-9].*", "--javax-ws-rs=[1-9].*", "--input=" + columnar.getAbsolutePath());
+    }
+
     private Results normalize(final Results results) {
         return new Results(results.getExpected(), ScanTsvTest.normalize(results.getActual()));
     }
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+import org.tomitribe.jkta.Resources;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class PackageMatcherTest {
+
+    private final PackageMatcher matcher = PackageMatcher.get();
+
+    @Test
+    public void subPackages() {
+        assertMatch(Package.JAVAX_SERVLET, "javax.servlet.http.HttpServlet");
+        assertMatch(Package.JAVAX_SERVLET_JSP, "javax.servlet.jsp.JspPage");
+        assertMatch(Package.JAVAX_SERVLET_JSP_JSTL, "javax.servlet.jsp.jstl.core.Config");
+        assertMatch(Package.JAKARTA_SERVLET, "jakarta.servlet.Servlet");
+        assertMatch(Package.JAKARTA_SERVLET_JSP, "jakarta.servlet.jsp.JspPage");
+        assertMatch(Package.JAVAX_ENTERPRISE, "javax.enterprise.inject.Produces");
+        assertMatch(Package.JAVAX_ENTERPRISE_CONCURRENT, "javax.enterprise.concurrent.ManagedExecutorService");
+        assertMatch(Package.JAVAX_ENTERPRISE_DEPLOY, "javax.enterprise.deploy.spi.Target");
+        assertMatch(Package.JAVAX_JSON, "javax.json.JsonObject");
+        assertMatch(Package.JAVAX_JSON_BIND, "javax.json.bind.Jsonb");
+    }
+
+    @Test
+    public void exclusions() {
+        assertMatch(null, "javax.annotation.processing.AbstractProcessor");
+        assertMatch(null, "javax.transaction.xa.XAResource");
+        assertMatch(Package.JAVAX_TRANSACTION, "javax.transaction.Transaction");
+        assertMatch(Package.JAVAX_ANNOTATION, "javax.annotation.Generated");
+    }
+
+    @Test
+    public void noMatch() {
+        assertMatch(null, "");
+        assertMatch(null, "j");
+        assertMatch(null, "javax");
+        assertMatch(null, "javax.");
+        assertMatch(null, "javax.swing.JFrame");
+        assertMatch(null, "java.lang.String");
+        assertMatch(null, "org.tomitribe.Foo");
+        assertMatch(null, "jakarta.servle");
+        assertMatch(null, "javax.servlét.Foo");
+    }
+
+    /**
+     * Internal names use '/' rather than '.'
+     */
+    @Test
+    public void internalNames() {
+        assertEquals(Package.JAVAX_SERVLET_JSP.ordinal(), matcher.match("javax/servlet/jsp/JspPage"));
+        assertEquals(Package.JAKARTA_WS_RS.ordinal(), matcher.match("jakarta/ws/rs/GET"));
+        assertEquals(-1, matcher.match("javax/transaction/xa/XAResource"));
+    }
+
+    @Test
+    public void range() {
+        final String descriptor = "(Ljava/lang/String;Ljavax/ejb/EJB;)Ljavax/servlet/jsp/JspPage;";
+
+        final int ejb = descriptor.indexOf("javax/ejb");
+        assertEquals(Package.JAVAX_EJB.ordinal(), matcher.match(descriptor, ejb, descriptor.indexOf(';', ejb)));
+
+        final int jsp = descriptor.indexOf("javax/servlet");
+        assertEquals(Package.JAVAX_SERVLET_JSP.ordinal(), matcher.match(descriptor, jsp, descriptor.length() - 1));
+
+        // Stopping short of the ".jsp" sub-package means plain javax.servlet
+        assertEquals(Package.JAVAX_SERVLET.ordinal(), matcher.match(descriptor, jsp, jsp + "javax/servlet/".length()));
+    }
+
+    /**
+     * The automaton must give exactly the same answer as checking
+     * each Package in order and taking the first match
+     */
+    @Test
+    public void sameAsFirstMatch() throws Exception {
+        final List<String> names = new ArrayList<>();
+
+        for (final Package aPackage : Package.values()) {
+            names.add(aPackage.getName());
+            names.add(aPackage.getName() + ".Foo");
+            names.add(aPackage.getName() + "Foo");
+            names.add(aPackage.getName().substring(0, aPackage.getName().length() - 1));
+            for (final String excluded : aPackage.getExcluded()) {
+                names.add(excluded);
+                names.add(excluded + ".Foo");
+                names.add(excluded.substring(0, excluded.length() - 1));
+            }
+        }
+
+        names.addAll(lines("javax-main-classes.txt"));
+        names.addAll(lines("javax-test-classes.txt"));
+        names.addAll(lines("javax-main-packages.txt"));
+
+        // Random mutations of the names we have
+        final Random random = new Random(42);
+        final String alphabet = "abcdefghijklmnopqrstuvwxyz.";
+        final int size = names.size();
+        for (int i = 0; i < 20000; i++) {
+            final char[] chars = names.get(random.nextInt(size)).toCharArray();
+            if (chars.length == 0) continue;
+            chars[random.nextInt(chars.length)] = alphabet.charAt(random.nextInt(alphabet.length()));
+            names.add(new String(chars));
+        }
+
+        for (final String name : names) {
+            assertEquals(name, firstMatch(name), matcher.match(name));
+            assertEquals(name, firstMatch(name), matcher.match(name.replace('.', '/')));
+        }
+    }
+
+    private void assertMatch(final Package expected, final String name) {
+        final int ordinal = expected == null ? -1 : expected.ordinal();
+        assertEquals(name, ordinal, matcher.match(name));
+        assertEquals(name, ordinal, firstMatch(name));
+    }
+
+    private static int firstMatch(final String reference) {
+        for (final Package aPackage : Package.values()) {
+            if (aPackage.matches(reference)) return aPackage.ordinal();
+        }
+        return -1;
+    }
+
+    private static List<String> lines(final String resource) throws Exception {
+        return Stream.of(Resources.load(resource).split("\n"))
+                .map(String::trim)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.tsv.ScanTsvTest;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Mvn;
+import org.tomitribe.util.PrintString;
+import org.tomitribe.util.Zips;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelScanTest {
+
+    @Test
+    public void inputOrder() throws Exception {
+        final List<File> files = files(40);
+
+        final List<String> names = ParallelScan.map(files.stream(), ParallelScanTest::slowName, 8, Order.input)
+                .collect(Collectors.toList());
+
+        assertEquals(names(files), names);
+    }
+
+    @Test
+    public void completionOrder() throws Exception {
+        final List<File> files = files(40);
+
+        final List<String> names = ParallelScan.map(files.stream(), ParallelScanTest::slowName, 8, Order.completion)
+                .sorted()
+                .collect(Collectors.toList());
+
+        final List<String> expected = names(files);
+        Collections.sort(expected);
+        assertEquals(expected, names);
+    }
+
+    @Test
+    public void largestFirst() throws Exception {
+        final List<File> files = files(10);
+        final List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+        final long count = ParallelScan.map(files.stream(), file -> {
+            started.add(file.getName());
+            return slowName(file);
+        }, 2, Order.completion)
+                .count();
+
+        assertEquals(10, count);
+        assertEquals(new HashSet<>(Arrays.asList("file-9", "file-8")), new HashSet<>(started.subList(0, 2)));
+        assertEquals(new HashSet<>(Arrays.asList("file-1", "file-0")), new HashSet<>(started.subList(8, 10)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failure() throws Exception {
+        final List<File> files = files(5);
+
+        ParallelScan.map(files.stream(), file -> {
+            throw new IllegalStateException(file.getName());
+        }, 4, Order.input).count();
+    }
+
+    /**
+     * Files are listed and scheduled a window at a time, and a slow first
+     * file never lets more than a window of results pile up behind it
+     */
+    @Test
+    public void bounded() throws Exception {
+        final List<File> files = files(200);
+        final AtomicInteger listed = new AtomicInteger();
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger consumed = new AtomicInteger();
+        final AtomicInteger listedAtFirstScan = new AtomicInteger(-1);
+        final AtomicInteger mostOutstanding = new AtomicInteger();
+
+        for (final Order order : Order.values()) {
+            listed.set(0);
+            started.set(0);
+            consumed.set(0);
+            listedAtFirstScan.set(-1);
+            mostOutstanding.set(0);
+
+            final List<String> names = ParallelScan.map(files.stream().peek(file -> listed.incrementAndGet()), file -> {
+                listedAtFirstScan.compareAndSet(-1, listed.get());
+                final int outstanding = started.incrementAndGet() - consumed.get();
+                mostOutstanding.accumulateAndGet(outstanding, Math::max);
+                if (file.getName().equals("file-0")) slowName(file);
+                return slowName(file);
+            }, 4, order, 8)
+                    .peek(name -> consumed.incrementAndGet())
+                    .collect(Collectors.toList());
+
+            assertEquals(200, names.size());
+            assertTrue(String.valueOf(listedAtFirstScan.get()), listedAtFirstScan.get() <= 16);
+            // one more may start between a result being read and being counted here
+            assertTrue(String.valueOf(mostOutstanding.get()), mostOutstanding.get() <= 8 + 1);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void listFailure() throws Exception {
+        final List<File> files = files(5);
+
+        ParallelScan.map(Stream.concat(files.stream(), Stream.of("boom").<File>map(s -> {
+            throw new IllegalStateException(s);
+        })), ParallelScanTest::slowName, 4, Order.input).count();
+    }
+
+    /**
+     * Scanning with several threads must produce the same rows and the
+     * same footer totals as a plain single threaded scan.
+     */
+    @Test
+    public void sameAsSequential() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+        final File tmpdir = Files.tmpdir();
+        Zips.unzip(zip, tmpdir);
+
+        final String sequential = scan(tmpdir, 1, Order.input);
+        final String parallel = scan(tmpdir, 6, Order.input);
+        final String completion = scan(tmpdir, 6, Order.completion);
+
+        assertEquals(sequential, parallel);
+        assertEquals(sorted(sequential), sorted(completion));
+    }
+
+    private static String scan(final File tmpdir, final int threads, final Order order) throws IOException {
+        final PrintString out = new PrintString();
+        final ScanSettings settings = ScanSettings.builder().repository(Dir.from(tmpdir)).threads(threads).order(order).build();
+        new UsageCommand().dir(settings, Dir.from(tmpdir)).write(out);
+        return ScanTsvTest.normalize(out.toString());
+    }
+
+    private static String sorted(final String tsv) {
+        return Stream.of(tsv.split("\n")).sorted().collect(Collectors.joining("\n"));
+    }
+
+    private static String slowName(final File file) {
+        try {
+            Thread.sleep(5 + (long) (Math.random() * 10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return file.getName();
+    }
+
+    private static List<String> names(final List<File> files) {
+        return files.stream().map(File::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * Creates files where file-N is N bytes long
+     */
+    private static List<File> files(final int count) throws IOException {
+        final File dir = Files.tmpdir();
+        final List<File> files = new ArrayList<>();
+        for (final int i : IntStream.range(0, count).toArray()) {
+            final File file = new File(dir, "file-" + i);
+            IO.copy(new byte[i], file);
+            files.add(file);
+        }
+        return files;
+    }
+}
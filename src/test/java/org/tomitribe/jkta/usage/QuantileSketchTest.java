@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+    @Test
+    public void empty() {
+        final QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.getPercentile(0.9)));
+        assertEquals(0, (long) sketch.getPercentile(0.9));
+    }
+
+    /**
+     * Up to the capacity the sketch must give exactly the
+     * value commons-math gives
+     */
+    @Test
+    public void exact() {
+        final Random random = new Random(42);
+
+        for (final int n : new int[]{1, 2, 3, 50, 109, 110, 111, 500, 1024}) {
+            final long[] values = values(random, n);
+            final QuantileSketch sketch = sketch(values);
+            final DescriptiveStatistics statistics = statistics(values);
+
+            for (final double p : new double[]{0.9, 1, 10, 50, 90, 99, 100}) {
+                assertEquals(n + " p" + p, statistics.getPercentile(p), sketch.getPercentile(p), 0.0);
+            }
+            assertTrue(sketch.isExact());
+        }
+    }
+
+    @Test
+    public void withinBound() {
+        final Random random = new Random(7);
+        final long[] values = values(random, 200_000);
+        final QuantileSketch sketch = sketch(values);
+
+        assertFalse(sketch.isExact());
+        assertRankWithinBound(values, sketch);
+    }
+
+    /**
+     * Merging sketches of parts stays within the bound of the whole
+     */
+    @Test
+    public void merge() {
+        final Random random = new Random(13);
+        final long[] values = values(random, 50_000);
+
+        final QuantileSketch merged = new QuantileSketch();
+        for (int start = 0; start < values.length; start += 7_000) {
+            merged.merge(sketch(Arrays.copyOfRange(values, start, Math.min(values.length, start + 7_000))));
+        }
+
+        assertEquals(values.length, merged.getCount());
+        assertRankWithinBound(values, merged);
+    }
+
+    @Test
+    public void mergeSmall() {
+        final long[] values = {5, 3, 9, 1, 7};
+        final QuantileSketch merged = sketch(Arrays.copyOfRange(values, 0, 2));
+        merged.merge(sketch(Arrays.copyOfRange(values, 2, 5)));
+        merged.merge(new QuantileSketch());
+
+        assertEquals(statistics(values).getPercentile(50), merged.getPercentile(50), 0.0);
+        assertEquals(1, merged.getPercentile(0.9), 0.0);
+        assertEquals(9, merged.getPercentile(100), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercentile() {
+        new QuantileSketch().getPercentile(0);
+    }
+
+    private static void assertRankWithinBound(final long[] values, final QuantileSketch sketch) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        final long n = values.length;
+        final long bound = n * sketch.getLevels() / QuantileSketch.DEFAULT_CAPACITY;
+
+        for (final double p : new double[]{0.9, 10, 25, 50, 75, 90, 99}) {
+            final long estimate = (long) sketch.getPercentile(p);
+            final long exactRank = (long) Math.floor(p * (n + 1) / 100);
+
+            final int lowest = lowerBound(sorted, estimate);
+            final int highest = lowerBound(sorted, estimate + 1);
+            final long error = exactRank < lowest ? lowest - exactRank : Math.max(0, exactRank - highest);
+
+            assertTrue("p" + p + " rank error " + error + " > " + bound, error <= bound);
+        }
+    }
+
+    private static int lowerBound(final long[] sorted, final long value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long[] values(final Random random, final int n) {
+        final long[] values = new long[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = 1_500_000_000_000L + (long) (random.nextGaussian() * 86_400_000L * 365);
+        }
+        return values;
+    }
+
+    private static QuantileSketch sketch(final long[] values) {
+        final QuantileSketch sketch = new QuantileSketch();
+        for (final long value : values) {
+            sketch.add(value);
+        }
+        return sketch;
+    }
+
+    private static DescriptiveStatistics statistics(final long[] values) {
+        final DescriptiveStatistics statistics = new DescriptiveStatistics();
+        for (final long value : values) {
+            statistics.addValue(value);
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.tsv.ScanTsvTest;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Mvn;
+import org.tomitribe.util.PrintString;
+import org.tomitribe.util.Size;
+import org.tomitribe.util.Zips;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScanPipelineTest {
+
+    /**
+     * The pipeline must produce the same rows and totals as a plain
+     * scan, however many threads each stage has and however little
+     * memory it may use to read ahead
+     */
+    @Test
+    public void sameAsSequential() throws Exception {
+        final File zip = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+        final File tmpdir = Files.tmpdir();
+        Zips.unzip(zip, tmpdir);
+
+        final String sequential = scan(tmpdir, null, "256mb", Order.input);
+
+        final String single = scan(tmpdir, new Stages("1,1,1"), "256mb", Order.input);
+        final String parallel = scan(tmpdir, new Stages("2,3,4"), "1mb", Order.input);
+        final String completion = scan(tmpdir, new Stages("3,2,2"), "256mb", Order.completion);
+
+        assertEquals(sequential, withoutPipeline(single));
+        assertEquals(sequential, withoutPipeline(parallel));
+        assertEquals(sorted(sequential), sorted(withoutPipeline(completion)));
+
+        assertTrue(parallel, parallel.contains(", pipeline read 2 threads "));
+        assertTrue(parallel, parallel.contains("% busy, inflate 3 threads "));
+        assertTrue(parallel, parallel.contains("% busy, parse 4 threads "));
+    }
+
+    @Test
+    public void failed() throws Exception {
+        final File missing = new File(Files.tmpdir(), "missing.jar");
+        final File jar = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+
+        final List<File> failed = new ArrayList<>();
+        final ScanPipeline pipeline = new ScanPipeline(new Stages(1, 1, 1), ScanOptions.defaults());
+        final List<PackageUsage<Jar>> results = pipeline.map(Stream.of(missing, jar), Order.input, (file, e) -> failed.add(file))
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(missing), failed);
+        assertEquals(2, results.size());
+        assertNull(results.get(0));
+        assertEquals(JarUsage.of(jar).toTsv(), results.get(1).toTsv());
+        assertEquals(JarUsage.of(jar).getContext(), results.get(1).getContext());
+    }
+
+    /**
+     * No more files are listed than the window ahead of the results taken
+     */
+    @Test
+    public void window() throws Exception {
+        final File dir = Files.tmpdir();
+        final List<File> files = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final File file = new File(dir, "file-" + i + ".jar");
+            IO.copy(("content " + i).getBytes(), file);
+            files.add(file);
+        }
+
+        final AtomicInteger listed = new AtomicInteger();
+        final ScanPipeline pipeline = new ScanPipeline(new Stages(2, 2, 2), ScanOptions.defaults());
+        try (Stream<PackageUsage<Jar>> results = pipeline.map(files.stream().peek(file -> listed.incrementAndGet()), Order.input,
+                (file, e) -> fail(e.getMessage()), 8)) {
+            final Iterator<PackageUsage<Jar>> iterator = results.iterator();
+            assertEquals(files.get(0), iterator.next().getContext().getJar());
+
+            Thread.sleep(200);
+            assertTrue(String.valueOf(listed.get()), listed.get() <= 9);
+
+            int taken = 1;
+            while (iterator.hasNext()) {
+                assertEquals(files.get(taken++), iterator.next().getContext().getJar());
+            }
+            assertEquals(100, taken);
+        }
+    }
+
+    @Test
+    public void stages() {
+        assertEquals(new Stages(2, 1, 4), new Stages("2,1,4"));
+        assertEquals(new Stages(2, 1, 4), new Stages(" 2, 1 ,4"));
+        assertEquals("2,1,4", new Stages("2,1,4").toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidStages() {
+        new Stages("2,4");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noThreads() {
+        new Stages("2,0,4");
+    }
+
+    private static String scan(final File tmpdir, final Stages stages, final String readAhead, final Order order) throws IOException {
+        final PrintString out = new PrintString();
+        final ScanSettings settings = ScanSettings.builder().repository(Dir.from(tmpdir)).order(order).pipeline(stages)
+                .readAhead(new Size(readAhead)).build();
+        new UsageCommand().dir(settings, Dir.from(tmpdir)).write(out);
+        return ScanTsvTest.normalize(out.toString());
+    }
+
+    private static String withoutPipeline(final String tsv) {
+        return tsv.replaceAll(", pipeline [^\t]*", "");
+    }
+
+    private static String sorted(final String tsv) {
+        return Stream.of(tsv.split("\n")).sorted().collect(Collectors.joining("\n"));
+    }
+}
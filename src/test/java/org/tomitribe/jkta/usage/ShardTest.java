@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+import org.tomitribe.crest.Main;
+import org.tomitribe.jkta.usage.corpus.CorpusCommand;
+import org.tomitribe.jkta.usage.corpus.Distribution;
+import org.tomitribe.jkta.usage.corpus.References;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.jkta.usage.tsv.ScanTsvTest;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.PrintString;
+import org.tomitribe.util.Size;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardTest {
+
+    @Test
+    public void parse() {
+        final Shard shard = new Shard("2/5");
+        assertEquals(2, shard.getIndex());
+        assertEquals(5, shard.getCount());
+        assertEquals("2/5", shard.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfRange() {
+        new Shard("5/5");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformed() {
+        new Shard("1-5");
+    }
+
+    /**
+     * Every path belongs to exactly one shard, whichever separator is used
+     */
+    @Test
+    public void distribution() {
+        final int count = 8;
+        final int[] sizes = new int[count];
+
+        for (int i = 0; i < 80000; i++) {
+            final String path = "org/example/lib" + i + "/" + i + "/lib" + i + "-" + i + ".jar";
+            final int of = Shard.of(path, count);
+            assertEquals(of, Shard.of(path.replace('/', '\\'), count));
+
+            int accepted = 0;
+            for (int index = 0; index < count; index++) {
+                if (new Shard(index, count).accept(path)) accepted++;
+            }
+            assertEquals(1, accepted);
+            sizes[of]++;
+        }
+
+        for (final int size : sizes) {
+            assertTrue(String.valueOf(size), size > 9000 && size < 11000);
+        }
+    }
+
+    /**
+     * Shards scanned in separate JVMs and merged must have the same rows
+     * and footer totals as one scan of every jar
+     */
+    @Test
+    public void separateJvms() throws Exception {
+        final File repository = Files.tmpdir();
+        new CorpusCommand().generate(200, 2, new Size("1kb"), Distribution.fixed, 0, 1, new References("*=0.05"), 1, repository);
+        final String jars = jars(repository);
+
+        final File work = Files.tmpdir();
+        final File list = new File(work, "jars.txt");
+        IO.copy(jars.getBytes(), list);
+
+        final int count = 3;
+        final List<Process> processes = new ArrayList<>();
+        final File[] outputs = new File[count];
+        for (int i = 0; i < count; i++) {
+            outputs[i] = new File(work, "scan-" + i + ".tsv");
+            processes.add(new ProcessBuilder(java(), "-cp", System.getProperty("java.class.path"), Main.class.getName(),
+                    "usage", "jars", "--repository=" + repository.getAbsolutePath(), "--shard=" + i + "/" + count)
+                    .redirectInput(list)
+                    .redirectOutput(outputs[i])
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start());
+        }
+        for (final Process process : processes) {
+            assertTrue(process.waitFor(2, TimeUnit.MINUTES));
+            assertEquals(0, process.exitValue());
+        }
+
+        // each shard scanned some of the jars and none scanned them twice
+        int scanned = 0;
+        for (final File output : outputs) {
+            final int rows = rows(IO.slurp(output)).size();
+            assertTrue(rows > 0);
+            scanned += rows;
+        }
+        assertEquals(200, scanned);
+
+        final PrintString merged = new PrintString();
+        new UsageCommand().merge(null, 1, 100000, outputs).write(merged);
+
+        final PrintString expected = new PrintString();
+        new UsageCommand().jars(ScanSettings.builder().repository(Dir.from(repository)).build(), new ByteArrayInputStream(jars.getBytes()))
+                .write(expected);
+
+        assertEquals(sorted(expected.toString()), sorted(merged.toString()));
+        assertEquals(totals(expected.toString()), totals(merged.toString()));
+    }
+
+    /**
+     * The shards of a directory scan cover the directory once
+     */
+    @Test
+    public void dir() throws Exception {
+        final File repository = Files.tmpdir();
+        new CorpusCommand().generate(60, 2, new Size("1kb"), Distribution.fixed, 0, 1, new References("*=0.05"), 1, repository);
+
+        final List<String> rows = IntStream.range(0, 4)
+                .mapToObj(i -> dir(repository, new Shard(i, 4)))
+                .flatMap(tsv -> rows(tsv).stream())
+                .sorted()
+                .collect(Collectors.toList());
+
+        final List<String> expected = rows(dir(repository, null));
+        expected.sort(null);
+        assertEquals(expected, rows);
+    }
+
+    private static String dir(final File repository, final Shard shard) {
+        final PrintString out = new PrintString();
+        try {
+            final ScanSettings settings = ScanSettings.builder().repository(Dir.from(repository)).shard(shard).build();
+            new UsageCommand().dir(settings, Dir.from(repository)).write(out);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    private static String java() {
+        return new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath();
+    }
+
+    private static String jars(final File repository) {
+        return Files.collect(repository, ".*\\.jar").stream()
+                .map(file -> ScanTsv.childPath(repository, file))
+                .sorted()
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static List<String> rows(final String tsv) {
+        return Stream.of(tsv.split("\n"))
+                .skip(1)
+                .filter(line -> !line.startsWith("0000000000000000000000000000000000000000"))
+                .collect(Collectors.toList());
+    }
+
+    private static String sorted(final String tsv) {
+        return Stream.of(ScanTsvTest.normalize(tsv).split("\n"))
+                .filter(line -> !line.startsWith("0000000000000000000000000000000000000000"))
+                .sorted()
+                .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * The footer totals without its dates or notes
+     */
+    private static String totals(final String tsv) {
+        final String footer = Stream.of(ScanTsvTest.normalize(tsv).split("\n"))
+                .filter(line -> line.startsWith("0000000000000000000000000000000000000000"))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        final String[] columns = footer.split("\t");
+        columns[6] = columns[6].replaceAll(", .*", "");
+        return String.join("\t", columns);
+    }
+}
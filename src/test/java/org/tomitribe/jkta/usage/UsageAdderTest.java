@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UsageAdderTest {
+
+    @Test
+    public void sameAsAdd() throws Exception {
+        final List<PackageUsage<Jar>> usages = usages(500);
+
+        final UsageAdder adder = new UsageAdder(8);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (final PackageUsage<Jar> usage : usages) {
+            executor.execute(() -> adder.addJar(usage));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        final PackageUsage<Jar> expected = usages.stream().reduce(new PackageUsage<>(), PackageUsage::add);
+        assertEquals(expected.toTsv(), adder.getTotal().toTsv());
+        assertEquals(500, adder.getScanned());
+        assertEquals(usages.stream().filter(usage -> usage.getJavax() > 0).count(), adder.getAffected());
+        assertEquals(usages.stream().mapToLong(usage -> Math.max(0, usage.getContext().getSize())).sum(), adder.getSize());
+        assertEquals(usages.stream().mapToLong(usage -> Math.max(0, usage.getContext().getClasses())).sum(), adder.getClasses());
+    }
+
+    /**
+     * Counters are longs, so large totals such as a size in bytes don't overflow
+     */
+    @Test
+    public void longCounters() {
+        final UsageAdder adder = new UsageAdder(1);
+        final Jar jar = Jar.builder().size(Integer.MAX_VALUE).classes(-1).build();
+        adder.addJar(new PackageUsage<>(jar));
+        adder.addJar(new PackageUsage<>(jar));
+
+        assertEquals(2L * Integer.MAX_VALUE, adder.getSize());
+        assertEquals(0, adder.getClasses());
+    }
+
+    private static List<PackageUsage<Jar>> usages(final int count) {
+        final Random random = new Random(3);
+        final List<PackageUsage<Jar>> usages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int[] packages = new int[Package.values().length];
+            int javax = 0;
+            for (int p = 0; p < packages.length; p++) {
+                packages[p] = random.nextInt(3) == 0 ? random.nextInt(100) : 0;
+                if (Package.values()[p].isJavax()) javax += packages[p];
+            }
+            final Jar jar = new Jar(new File("a.jar"), "", 0, 0, random.nextInt(10) - 1, random.nextInt(1000) - 1, new int[0]);
+            usages.add(new PackageUsage<>(jar, javax, 0, packages));
+        }
+        return usages;
+    }
+}
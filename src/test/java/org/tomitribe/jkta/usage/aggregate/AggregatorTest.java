@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.aggregate;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.columnar.Column;
+import org.tomitribe.jkta.usage.columnar.Columnar;
+import org.tomitribe.jkta.usage.tsv.BlockGzipOutputStream;
+import org.tomitribe.jkta.usage.tsv.BlockIndex;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AggregatorTest {
+
+    @Test
+    public void keys() {
+        final Jar jar = jar("org/apache/tomcat/tomcat-catalina/10.0.0/tomcat-catalina-10.0.0.jar", 52, 55);
+
+        assertEquals("org.apache.tomcat", By.groupId.key(jar));
+        assertEquals("org.apache.tomcat:tomcat-catalina", By.artifactId.key(jar));
+        assertEquals("org.apache.tomcat:tomcat-catalina:10.0.0", By.version.key(jar));
+        assertEquals("55", By.javaVersion.key(jar));
+
+        assertEquals(By.UNKNOWN, By.groupId.key(jar("lib/catalina.jar")));
+        assertEquals(By.UNKNOWN, By.groupId.key(jar("a/b/c/other.jar")));
+        assertEquals("0", By.javaVersion.key(jar("lib/catalina.jar")));
+    }
+
+    /**
+     * Spilling and threads must not change the totals
+     */
+    @Test
+    public void sameTotals() throws Exception {
+        final List<PackageUsage<Jar>> usages = usages(2000);
+        final byte[] tsv = tsv(usages);
+
+        for (final By by : By.values()) {
+            final String expected = expected(by, usages);
+
+            assertEquals(expected, aggregate(by, tsv, 1, 1000000, false));
+            assertEquals(expected, aggregate(by, tsv, 4, 1000000, false));
+            assertEquals(expected, aggregate(by, tsv, 1, 3, true));
+            assertEquals(expected, aggregate(by, tsv, 4, 3, true));
+            assertEquals(expected, aggregate(by, columnar(usages), 4, 3, true));
+        }
+    }
+
+    /**
+     * Gzipped and block gzipped files, as written by central scan-and-stream,
+     * must give the same totals as plain TSV
+     */
+    @Test
+    public void compressed() throws Exception {
+        final List<PackageUsage<Jar>> usages = usages(2000);
+        final byte[] tsv = tsv(usages);
+        final String expected = expected(By.groupId, usages);
+
+        final File gzipped = new File(Files.tmpdir(), "scan.tsv.gz");
+        try (OutputStream out = new GZIPOutputStream(IO.write(gzipped))) {
+            out.write(tsv);
+        }
+
+        final File blocks = new File(Files.tmpdir(), "scan.tsv.gz");
+        final BlockGzipOutputStream blockOut = new BlockGzipOutputStream(IO.write(blocks), 2);
+        blockOut.write(tsv);
+        blockOut.close();
+        try (OutputStream out = IO.write(BlockIndex.of(blocks))) {
+            blockOut.getIndex().write(out);
+        }
+
+        for (final File file : new File[]{gzipped, blocks}) {
+            assertEquals(expected, aggregate(By.groupId, file, 1));
+            assertEquals(expected, aggregate(By.groupId, file, 4));
+        }
+        assertEquals(expected, aggregate(By.groupId, IO.readBytes(gzipped), 4, 1000000, false));
+    }
+
+    private static String aggregate(final By by, final File input, final int threads) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Aggregator aggregator = new Aggregator(by, 1000000)) {
+            Columnar.forEachChunk(input, null, threads, EnumSet.allOf(Column.class), aggregator);
+            aggregator.write(out);
+        }
+        return out.toString();
+    }
+
+    private static String aggregate(final By by, final byte[] input, final int threads, final int maxKeys, final boolean spills) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Aggregator aggregator = new Aggregator(by, maxKeys)) {
+            Columnar.forEachChunk(null, new ByteArrayInputStream(input), threads, EnumSet.allOf(Column.class), aggregator);
+            aggregator.write(out);
+            assertEquals(spills, aggregator.getSpills() > 0);
+        }
+        return out.toString();
+    }
+
+    /**
+     * The totals computed the simple way
+     */
+    private static String expected(final By by, final List<PackageUsage<Jar>> usages) {
+        final Map<String, List<Long>> totals = new TreeMap<>();
+        for (final PackageUsage<Jar> usage : usages) {
+            final List<Long> values = new ArrayList<>();
+            values.add(1L);
+            values.add(usage.getContext().getClasses());
+            values.add(usage.getContext().getSize());
+            values.add((long) usage.getJavax());
+            values.add((long) usage.getJakarta());
+            for (final int count : usage.getPackages()) {
+                values.add((long) count);
+            }
+
+            totals.merge(by.key(usage.getContext()), values, (a, b) -> {
+                final List<Long> sum = new ArrayList<>();
+                for (int i = 0; i < a.size(); i++) {
+                    sum.add(a.get(i) + b.get(i));
+                }
+                return sum;
+            });
+        }
+
+        final StringBuilder sb = new StringBuilder(new Aggregator(by, 1).heading()).append(System.lineSeparator());
+        totals.forEach((key, values) -> {
+            sb.append(key);
+            values.forEach(value -> sb.append('\t').append(value));
+            sb.append(System.lineSeparator());
+        });
+        assertTrue(totals.size() > 3);
+        return sb.toString();
+    }
+
+    private static byte[] tsv(final List<PackageUsage<Jar>> usages) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScanTsv.toJarTsv(new PrintStream(bytes), usages.stream(), new File(""));
+        return bytes.toByteArray();
+    }
+
+    private static byte[] columnar(final List<PackageUsage<Jar>> usages) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Columnar.write(bytes, usages.stream(), new File(""));
+        return bytes.toByteArray();
+    }
+
+    private static List<PackageUsage<Jar>> usages(final int count) {
+        final Random random = new Random(7);
+        final String[] groups = {"org/apache/tomcat", "org/apache/openejb", "javax/servlet", "com/example"};
+        final List<PackageUsage<Jar>> usages = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final String artifact = "artifact" + random.nextInt(10);
+            final String version = "1." + random.nextInt(5);
+            final String path = random.nextInt(20) == 0
+                    ? "lib/other" + i + ".jar"
+                    : groups[random.nextInt(groups.length)] + "/" + artifact + "/" + version + "/" + artifact + "-" + version + ".jar";
+
+            final int[] packages = new int[Package.values().length];
+            int javax = 0;
+            int jakarta = 0;
+            for (int p = 0; p < packages.length; p++) {
+                if (random.nextInt(4) != 0) continue;
+                packages[p] = random.nextInt(1000);
+                if (Package.values()[p].isJavax()) javax += packages[p];
+                if (Package.values()[p].isJakarta()) jakarta += packages[p];
+            }
+
+            final Jar jar = new Jar(new File(path), String.format("%040x", i + 1), 1588703994000L, 1588729158000L,
+                    random.nextInt(500), random.nextInt(1000000), new int[]{50 + random.nextInt(5)});
+            usages.add(new PackageUsage<>(jar, javax, jakarta, packages));
+        }
+        return usages;
+    }
+
+    private static Jar jar(final String path, final int... versions) {
+        return Jar.builder().path(path).javaVersions(versions).build();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.cache;
+
+import org.junit.Test;
+import org.tomitribe.jkta.Bytecode;
+import org.tomitribe.jkta.usage.Dir;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.JarUsage;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.ScanOptions;
+import org.tomitribe.jkta.usage.ScanSettings;
+import org.tomitribe.jkta.usage.UsageCommand;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.Mvn;
+import org.tomitribe.util.PrintString;
+import org.tomitribe.util.Zips;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanCacheTest {
+
+    private static final ScanOptions OPTIONS = ScanOptions.defaults();
+
+    /**
+     * The first scan misses on every jar, a second scan with a reopened
+     * cache hits on all of them and reports exactly the same results
+     */
+    @Test
+    public void reopen() throws Exception {
+        final List<File> jars = tomcatJars();
+        final File cacheDir = Files.tmpdir();
+
+        try (ScanCache cache = ScanCache.open(cacheDir)) {
+            for (final File jar : jars) {
+                assertSame(JarUsage.of(jar, OPTIONS), cache.scan(jar, OPTIONS));
+            }
+            assertEquals(0, cache.getHits());
+            assertEquals(jars.size(), cache.getMisses());
+        }
+
+        try (ScanCache cache = ScanCache.open(cacheDir)) {
+            for (final File jar : jars) {
+                assertSame(JarUsage.of(jar, OPTIONS), cache.scan(jar, OPTIONS));
+            }
+            assertEquals(jars.size(), cache.getHits());
+            assertEquals(0, cache.getMisses());
+        }
+    }
+
+    /**
+     * A copy of a jar at a new path is found by its SHA-1
+     */
+    @Test
+    public void copied() throws Exception {
+        final File jar = tomcatJars().stream()
+                .filter(file -> file.getName().endsWith(".jar"))
+                .findFirst().get();
+        final File copy = new File(Files.tmpdir(), "copy.jar");
+        IO.copy(jar, copy);
+
+        try (ScanCache cache = ScanCache.open(Files.tmpdir())) {
+            cache.scan(jar, OPTIONS);
+            assertSame(JarUsage.of(copy, OPTIONS), cache.scan(copy, OPTIONS));
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void changed() throws Exception {
+        final List<File> jars = tomcatJars();
+        final File jar = new File(Files.tmpdir(), "changing.jar");
+        IO.copy(jars.get(0), jar);
+
+        try (ScanCache cache = ScanCache.open(Files.tmpdir())) {
+            cache.scan(jar, OPTIONS);
+
+            IO.copy(jars.get(1), jar);
+            assertSame(JarUsage.of(jar, OPTIONS), cache.scan(jar, OPTIONS));
+            assertEquals(0, cache.getHits());
+            assertEquals(2, cache.getMisses());
+        }
+    }
+
+    /**
+     * A record cut short at the end of the log is dropped and
+     * the jar is simply scanned again
+     */
+    @Test
+    public void truncated() throws Exception {
+        final List<File> jars = tomcatJars().subList(0, 3);
+        final File cacheDir = Files.tmpdir();
+
+        try (ScanCache cache = ScanCache.open(cacheDir)) {
+            for (final File jar : jars) {
+                cache.scan(jar, OPTIONS);
+            }
+        }
+
+        try (RandomAccessFile data = new RandomAccessFile(new File(cacheDir, "scans.dat"), "rw")) {
+            data.setLength(data.length() - 10);
+        }
+
+        try (ScanCache cache = ScanCache.open(cacheDir)) {
+            for (final File jar : jars) {
+                assertSame(JarUsage.of(jar, OPTIONS), cache.scan(jar, OPTIONS));
+            }
+            assertEquals(2, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    /**
+     * A cache written by another tool version or format is discarded
+     */
+    @Test
+    public void invalidated() throws Exception {
+        final File jar = tomcatJars().get(0);
+        final File cacheDir = Files.tmpdir();
+
+        try (ScanCache cache = ScanCache.open(cacheDir)) {
+            cache.scan(jar, OPTIONS);
+        }
+
+        try (RandomAccessFile data = new RandomAccessFile(new File(cacheDir, "scans.dat"), "rw")) {
+            data.seek(4);
+            data.writeLong(42);
+        }
+
+        try (ScanCache cache = ScanCache.open(cacheDir)) {
+            assertSame(JarUsage.of(jar, OPTIONS), cache.scan(jar, OPTIONS));
+            assertEquals(0, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    /**
+     * Enough entries to grow the index several times
+     */
+    @Test
+    public void grow() throws Exception {
+        final File dir = Files.tmpdir();
+        final byte[] bytecode = Bytecode.readClassFile(ScanCacheTest.class);
+        final File cacheDir = Files.tmpdir();
+
+        for (int i = 0; i < 5000; i++) {
+            IO.copy(bytecode, new File(dir, "Class" + i + ".class"));
+        }
+
+        try (ScanCache cache = ScanCache.open(cacheDir)) {
+            for (final File file : dir.listFiles()) {
+                cache.scan(file, OPTIONS);
+            }
+            assertEquals(0, cache.getHits());
+            assertEquals(5000, cache.getMisses());
+        }
+
+        try (ScanCache cache = ScanCache.open(cacheDir)) {
+            for (final File file : dir.listFiles()) {
+                assertSame(JarUsage.of(file, OPTIONS), cache.scan(file, OPTIONS));
+            }
+            assertEquals(5000, cache.getHits());
+        }
+    }
+
+    /**
+     * The hits and misses are added to the summary in the tsv footer
+     */
+    @Test
+    public void summary() throws Exception {
+        final File tmpdir = Files.tmpdir();
+        Zips.unzip(Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5"), tmpdir);
+        final File cacheDir = Files.tmpdir();
+        final int jars = (int) Dir.from(tmpdir).searchScannables().count();
+
+        final String first = scan(tmpdir, cacheDir);
+        final String second = scan(tmpdir, cacheDir);
+
+        assertTrue(footer(first), footer(first).contains(String.format(", cache 0 hits %s misses\t", jars)));
+        assertTrue(footer(second), footer(second).contains(String.format(", cache %s hits 0 misses\t", jars)));
+        assertEquals(rows(first), rows(second));
+    }
+
+    private static String scan(final File tmpdir, final File cacheDir) throws Exception {
+        final PrintString out = new PrintString();
+        final ScanSettings settings = ScanSettings.builder().repository(Dir.from(tmpdir)).threads(4).cacheDir(cacheDir).build();
+        new UsageCommand().dir(settings, Dir.from(tmpdir)).write(out);
+        return out.toString();
+    }
+
+    private static String footer(final String tsv) {
+        final String[] lines = tsv.split("\n");
+        return lines[lines.length - 1];
+    }
+
+    private static String rows(final String tsv) {
+        return tsv.substring(0, tsv.length() - footer(tsv).length() - 1);
+    }
+
+    private static List<File> tomcatJars() throws Exception {
+        final File tmpdir = Files.tmpdir();
+        Zips.unzip(Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5"), tmpdir);
+        final List<File> jars = Dir.from(tmpdir).searchScannables().collect(Collectors.toList());
+        assertTrue(jars.size() > 20);
+        return jars;
+    }
+
+    private static void assertSame(final PackageUsage<Jar> expected, final PackageUsage<Jar> actual) {
+        assertEquals(expected.getContext(), actual.getContext());
+        assertEquals(expected.toTsv(), actual.toTsv());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.columnar;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.util.IO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.tomitribe.jkta.Resources.load;
+
+public class ColumnarTest {
+
+    /**
+     * Small blocks so the rows span several of them
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        for (final String resource : new String[]{"scan-v0.5.tsv", "scan-v0.6.tsv", "scan-v0.7.tsv", "scan-v0.8.tsv"}) {
+            final List<String> expected = tsv(tsv(resource));
+
+            try (ColumnarReader reader = ColumnarReader.open(new ByteArrayInputStream(columnar(resource, 5)))) {
+                assertEquals(expected.size(), reader.getRows());
+                assertEquals(expected, tsv(reader.read()));
+            }
+        }
+    }
+
+    @Test
+    public void empty() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Columnar.write(bytes, Stream.empty(), new File(""));
+
+        try (ColumnarReader reader = ColumnarReader.open(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(0, reader.getRows());
+            assertEquals(0, reader.read().count());
+        }
+    }
+
+    @Test
+    public void someColumns() throws Exception {
+        final List<PackageUsage<Jar>> expected = tsv("scan-v0.8.tsv").collect(Collectors.toList());
+
+        try (ColumnarReader reader = ColumnarReader.open(new ByteArrayInputStream(columnar("scan-v0.8.tsv", 7)))) {
+            final List<PackageUsage<Jar>> actual = reader.read(EnumSet.of(Column.SIZE, Column.JAVAX), EnumSet.of(Package.JAVAX_SERVLET))
+                    .collect(Collectors.toList());
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                final PackageUsage<Jar> usage = actual.get(i);
+                assertEquals(expected.get(i).getContext().getSize(), usage.getContext().getSize());
+                assertEquals(expected.get(i).getJavax(), usage.getJavax());
+                assertEquals(expected.get(i).get(Package.JAVAX_SERVLET), usage.get(Package.JAVAX_SERVLET));
+                assertEquals(0, usage.getJakarta());
+                assertEquals(0, usage.get(Package.JAVAX_EJB));
+                assertEquals(0, usage.getContext().getClasses());
+                assertNull(usage.getContext().getJar());
+                assertNull(usage.getContext().getSha1());
+            }
+        }
+    }
+
+    @Test
+    public void where() throws Exception {
+        final Predicate<PackageUsage<?>> where = usage -> usage.get(Package.JAKARTA_SERVLET) > 0;
+
+        final List<String> expected = tsv(tsv("scan-v0.8.tsv").filter(where));
+        assertTrue(expected.size() > 0);
+
+        try (ColumnarReader reader = ColumnarReader.open(new ByteArrayInputStream(columnar("scan-v0.8.tsv", 7)))) {
+            assertEquals(expected, tsv(reader.read(where, EnumSet.of(Package.JAKARTA_SERVLET))));
+        }
+    }
+
+    @Test
+    public void detect() throws Exception {
+        final List<String> expected = tsv(tsv("scan-v0.8.tsv"));
+
+        try (Stream<PackageUsage<Jar>> usages = Columnar.read(null, IO.read(load("scan-v0.8.tsv")), 1, ColumnarReader::read)) {
+            assertEquals(expected, tsv(usages));
+        }
+
+        final File file = File.createTempFile("scan-", ".columnar");
+        file.deleteOnExit();
+        IO.copy(columnar("scan-v0.8.tsv", 7), file);
+
+        try (Stream<PackageUsage<Jar>> usages = Columnar.read(file, null, 1, ColumnarReader::read)) {
+            assertEquals(expected, tsv(usages));
+        }
+    }
+
+    private static byte[] columnar(final String resource, final int blockRows) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ColumnarWriter writer = new ColumnarWriter(bytes, new File(""), blockRows);
+        tsv(resource).forEach(writer::write);
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    private static Stream<PackageUsage<Jar>> tsv(final String resource) throws Exception {
+        return ScanTsv.fromJarTsv(IO.read(load(resource)));
+    }
+
+    private static List<String> tsv(final Stream<PackageUsage<Jar>> usages) {
+        return usages.map(usage -> ScanTsv.toTsv(usage, new File("")))
+                .collect(Collectors.toList());
+    }
+}
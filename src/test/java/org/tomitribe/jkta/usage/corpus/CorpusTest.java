@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.corpus;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.ArchiveReader;
+import org.tomitribe.jkta.usage.Dir;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.ScanSettings;
+import org.tomitribe.jkta.usage.UsageCommand;
+import org.tomitribe.jkta.usage.tsv.ScanTsvTest;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.PrintString;
+import org.tomitribe.util.Size;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CorpusTest {
+
+    /**
+     * Scanning the generated repository, however it is scanned, must
+     * report exactly what the generator says it should
+     */
+    @Test
+    public void scanMatchesExpected() throws Exception {
+        final File dir = generate(1, 40);
+        final String expected = sorted(IO.slurp(new File(dir, CorpusCommand.EXPECTED)));
+
+        assertEquals(expected, scan(dir, 1, ArchiveReader.stream));
+        assertEquals(expected, scan(dir, 4, ArchiveReader.stream));
+        assertEquals(expected, scan(dir, 1, ArchiveReader.directory));
+    }
+
+    @Test
+    public void deterministic() throws Exception {
+        final String first = IO.slurp(new File(generate(7, 20), CorpusCommand.EXPECTED));
+        final String second = IO.slurp(new File(generate(7, 20), CorpusCommand.EXPECTED));
+        final String other = IO.slurp(new File(generate(8, 20), CorpusCommand.EXPECTED));
+
+        assertEquals(ScanTsvTest.normalize(first), ScanTsvTest.normalize(second));
+        assertNotEquals(ScanTsvTest.normalize(first), ScanTsvTest.normalize(other));
+    }
+
+    @Test
+    public void nesting() throws Exception {
+        final File dir = generate(3, 40);
+
+        final List<String> names = Files.collect(dir).stream()
+                .map(File::getName)
+                .collect(Collectors.toList());
+
+        final long wars = names.stream().filter(name -> name.endsWith(".war")).count();
+        final long ears = names.stream().filter(name -> name.endsWith(".ear")).count();
+        assertTrue(wars > 0);
+        assertTrue(ears > 0);
+    }
+
+    @Test
+    public void references() {
+        final References references = new References("*=0.1, javax.servlet=0.5 ,jakarta.ejb=0");
+
+        assertEquals(0.5, references.get(Package.JAVAX_SERVLET), 0);
+        assertEquals(0, references.get(Package.JAKARTA_EJB), 0);
+        assertEquals(0.1, references.get(Package.JAVAX_EJB), 0);
+        assertEquals(0, new References("javax.servlet=1").get(Package.JAVAX_EJB), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPackage() {
+        new References("javax.nothing=0.1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badFraction() {
+        new References("*=2");
+    }
+
+    private static File generate(final long seed, final int jars) throws IOException {
+        final File dir = Files.tmpdir();
+        new CorpusCommand().generate(jars, 10, new Size("2kb"), Distribution.lognormal, 0.3, 2,
+                new References("*=0.05,javax.servlet=0.5"), seed, dir);
+        return dir;
+    }
+
+    private static String scan(final File dir, final int threads, final ArchiveReader reader) throws IOException {
+        final PrintString out = new PrintString();
+        final ScanSettings settings = ScanSettings.builder().repository(Dir.from(dir)).threads(threads).reader(reader).build();
+        new UsageCommand().dir(settings, Dir.from(dir)).write(out);
+        return sorted(out.toString());
+    }
+
+    private static String sorted(final String tsv) {
+        return Stream.of(ScanTsvTest.normalize(tsv).split("\n"))
+                .sorted()
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.merge;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.UsageCommand;
+import org.tomitribe.jkta.usage.tsv.ScanTsv;
+import org.tomitribe.jkta.usage.tsv.ScanTsvTest;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.PrintString;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MergeTest {
+
+    @Test
+    public void kWay() {
+        final List<Iterator<String>> inputs = Arrays.asList(
+                Arrays.asList("a1", "c1", "e1").iterator(),
+                Collections.<String>emptyIterator(),
+                Arrays.asList("b2", "c2", "d2", "f2").iterator(),
+                Arrays.asList("c3").iterator());
+
+        final List<String> merged = new ArrayList<>();
+        new Merge<>(inputs, (String a, String b) -> a.substring(0, 1).compareTo(b.substring(0, 1)))
+                .forEachRemaining(merged::add);
+
+        assertEquals(Arrays.asList("a1", "b2", "c1", "c2", "c3", "d2", "e1", "f2"), merged);
+    }
+
+    /**
+     * Spilling must not change the order or lose rows
+     */
+    @Test
+    public void externalSort() {
+        final List<PackageUsage<Jar>> usages = usages(2000, 0);
+        Collections.shuffle(usages, new Random(3));
+
+        for (final Key key : Key.values()) {
+            final List<String> expected = usages.stream()
+                    .sorted(key.comparator())
+                    .map(MergeTest::row)
+                    .collect(Collectors.toList());
+
+            try (ExternalSort sort = new ExternalSort(key.comparator(), 64)) {
+                usages.forEach(sort);
+                assertEquals(31, sort.getSpills());
+                assertEquals(31, sort.getRuns());
+
+                final List<String> actual = new ArrayList<>();
+                sort.sorted().forEachRemaining(usage -> actual.add(row(usage)));
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    /**
+     * With more runs than the fan-in the oldest are merged in passes
+     * first, and the order and rows must not change
+     */
+    @Test
+    public void fanIn() {
+        final List<PackageUsage<Jar>> usages = usages(2000, 0);
+        Collections.shuffle(usages, new Random(3));
+
+        final List<String> expected = usages.stream()
+                .sorted(Key.sha1.comparator())
+                .map(MergeTest::row)
+                .collect(Collectors.toList());
+
+        try (ExternalSort sort = new ExternalSort(Key.sha1.comparator(), 10, 4)) {
+            usages.forEach(sort);
+            assertEquals(200, sort.getRuns());
+
+            final List<String> actual = new ArrayList<>();
+            sort.sorted().forEachRemaining(usage -> actual.add(row(usage)));
+            assertEquals(expected, actual);
+            assertEquals(66, sort.getPasses());
+        }
+    }
+
+    /**
+     * Rows that arrive in order are appended to one run rather than
+     * spilled to a new run each time
+     */
+    @Test
+    public void sortedInput() {
+        final List<PackageUsage<Jar>> usages = usages(2000, 0);
+
+        try (ExternalSort sort = new ExternalSort(Key.sha1.comparator(), 64)) {
+            usages.forEach(sort);
+            assertEquals(31, sort.getSpills());
+            assertEquals(1, sort.getRuns());
+
+            final List<String> actual = new ArrayList<>();
+            sort.sorted().forEachRemaining(usage -> actual.add(row(usage)));
+            assertEquals(usages.stream().map(MergeTest::row).collect(Collectors.toList()), actual);
+        }
+    }
+
+    /**
+     * Overlapping unsorted inputs come out sorted with each SHA-1 once
+     * and the footer totals of the distinct rows
+     */
+    @Test
+    public void mergeBySha1() throws Exception {
+        final List<PackageUsage<Jar>> usages = usages(2000, 0);
+        final List<PackageUsage<Jar>> shuffled = new ArrayList<>(usages);
+        Collections.shuffle(shuffled, new Random(5));
+
+        final File a = tsv(shuffled.subList(0, 1200));
+        final File b = tsv(shuffled.subList(800, 2000));
+        final File c = tsv(shuffled.subList(100, 300));
+
+        final PrintString merged = new PrintString();
+        new UsageCommand().merge(Key.sha1, 2, 100, a, b, c).write(merged);
+
+        final PrintString expected = new PrintString();
+        ScanTsv.toJarTsv(expected, usages.stream(), new File(""), () -> "one scan");
+
+        assertEquals(rows(expected.toString()), rows(merged.toString()));
+        assertEquals(totals(expected.toString()), totals(merged.toString()));
+        assertTrue(merged.toString(), merged.toString().contains("3 inputs by sha1, 0 in order, 2600 rows sorted in 26 runs, 600 duplicates dropped"));
+
+        // a merged file is already in order and is merged straight from the file
+        final File previous = new File(Files.tmpdir(), "merged.tsv");
+        try (PrintStream out = new PrintStream(new FileOutputStream(previous))) {
+            out.print(merged);
+        }
+        final PrintString again = new PrintString();
+        new UsageCommand().merge(Key.sha1, 1, 100, previous, c).write(again);
+
+        assertEquals(rows(expected.toString()), rows(again.toString()));
+        assertTrue(again.toString(), again.toString().contains("2 inputs by sha1, 1 in order, 200 rows sorted in 2 runs, 200 duplicates dropped"));
+    }
+
+    /**
+     * Inputs in order are never sorted, however many rows they hold
+     */
+    @Test
+    public void mergeSorted() throws Exception {
+        final List<PackageUsage<Jar>> usages = usages(2000, 0);
+
+        final PrintString merged = new PrintString();
+        new UsageCommand().merge(Key.sha1, 1, 10, tsv(usages.subList(0, 1500)), tsv(usages.subList(1000, 2000))).write(merged);
+
+        final PrintString expected = new PrintString();
+        ScanTsv.toJarTsv(expected, usages.stream(), new File(""), () -> "one scan");
+
+        assertEquals(rows(expected.toString()), rows(merged.toString()));
+        assertTrue(merged.toString(), merged.toString().contains("2 inputs by sha1, 2 in order, 0 rows sorted in 0 runs, 500 duplicates dropped"));
+    }
+
+    /**
+     * Runs are read back as written whatever the default charset
+     */
+    @Test
+    public void nonAsciiPaths() {
+        final List<PackageUsage<Jar>> usages = Arrays.asList(
+                usage("lib/\u00e9t\u00e9.jar", 2, Package.JAVAX_SERVLET, 5),
+                usage("lib/\u65e5\u672c.jar", 1, Package.JAVAX_SERVLET, 7));
+
+        try (ExternalSort sort = new ExternalSort(Key.sha1.comparator(), 1)) {
+            usages.forEach(sort);
+            assertEquals(2, sort.getSpills());
+
+            final List<String> actual = new ArrayList<>();
+            sort.sorted().forEachRemaining(usage -> actual.add(row(usage)));
+            assertEquals(Arrays.asList(row(usages.get(1)), row(usages.get(0))), actual);
+        }
+    }
+
+    @Test
+    public void diffByPath() throws Exception {
+        final PackageUsage<Jar> same = usage("lib/same.jar", 1, Package.JAVAX_SERVLET, 5);
+        final PackageUsage<Jar> javax = usage("lib/moved.jar", 2, Package.JAVAX_SERVLET, 7);
+        final PackageUsage<Jar> jakarta = usage("lib/moved.jar", 3, Package.JAKARTA_SERVLET, 9);
+        final PackageUsage<Jar> removed = usage("lib/removed.jar", 4, Package.JAVAX_SERVLET, 2);
+        final PackageUsage<Jar> added = usage("lib/added.jar", 5, Package.JAKARTA_SERVLET, 3);
+
+        final File before = tsv(Arrays.asList(removed, javax, same));
+        final File after = tsv(Arrays.asList(same, added, jakarta));
+
+        final PrintString out = new PrintString();
+        new UsageCommand().diff(Key.path, 1, 2, before, after).write(out);
+
+        final String[] lines = out.toString().split("\n");
+        assertEquals(new Diff(Key.path).heading(), lines[0]);
+        assertEquals(5, lines.length);
+        assertEquals(diff("added", added, 0, 3, Package.JAKARTA_SERVLET, 3), lines[1]);
+        assertEquals(diff("changed", jakarta, -7, 9, Package.JAVAX_SERVLET, -7, Package.JAKARTA_SERVLET, 9), lines[2]);
+        assertEquals(diff("removed", removed, -2, 0, Package.JAVAX_SERVLET, -2), lines[3]);
+        assertEquals("total\t0000000000000000000000000000000000000000\t1 added, 1 removed, 1 changed\t-9\t12\t"
+                + counts(Package.JAVAX_SERVLET, -9, Package.JAKARTA_SERVLET, 12), lines[4]);
+    }
+
+    @Test
+    public void diffBySha1() throws Exception {
+        final PackageUsage<Jar> first = usage("lib/first.jar", 1, Package.JAVAX_SERVLET, 5);
+        final PackageUsage<Jar> renamed = usage("lib/renamed.jar", 1, Package.JAVAX_SERVLET, 5);
+        final PackageUsage<Jar> second = usage("lib/second.jar", 2, Package.JAVAX_SERVLET, 7);
+
+        final PrintString out = new PrintString();
+        new UsageCommand().diff(Key.sha1, 1, 100, tsv(Arrays.asList(first, second)), tsv(Arrays.asList(second, renamed, second))).write(out);
+
+        final String[] lines = out.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(diff("changed", renamed, 0, 0), lines[1]);
+        assertTrue(lines[2], lines[2].contains("0 added, 0 removed, 1 changed"));
+    }
+
+    /**
+     * Merged by path there can be several jars at one path, and each
+     * of them is compared with the jar of the same SHA-1
+     */
+    @Test
+    public void diffByPathDuplicates() throws Exception {
+        final PackageUsage<Jar> kept = usage("lib/twice.jar", 1, Package.JAVAX_SERVLET, 5);
+        final PackageUsage<Jar> removed = usage("lib/twice.jar", 2, Package.JAVAX_SERVLET, 7);
+        final PackageUsage<Jar> added = usage("lib/twice.jar", 3, Package.JAKARTA_SERVLET, 9);
+
+        final PrintString out = new PrintString();
+        new UsageCommand().diff(Key.path, 1, 100, tsv(Arrays.asList(kept, removed)), tsv(Arrays.asList(added, kept))).write(out);
+
+        final String[] lines = out.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals(diff("removed", removed, -7, 0, Package.JAVAX_SERVLET, -7), lines[1]);
+        assertEquals(diff("added", added, 0, 9, Package.JAKARTA_SERVLET, 9), lines[2]);
+        assertTrue(lines[3], lines[3].contains("1 added, 1 removed, 0 changed"));
+    }
+
+    private static String diff(final String change, final PackageUsage<Jar> usage, final int javax, final int jakarta, final Object... counts) {
+        return change + "\t" + usage.getContext().getSha1() + "\t" + usage.getContext().getJar().getPath()
+                + "\t" + javax + "\t" + jakarta + "\t" + counts(counts);
+    }
+
+    private static String counts(final Object... counts) {
+        final long[] values = new long[Package.values().length];
+        for (int i = 0; i < counts.length; i += 2) {
+            values[((Package) counts[i]).ordinal()] = ((Number) counts[i + 1]).longValue();
+        }
+        return Arrays.stream(values).mapToObj(Long::toString).collect(Collectors.joining("\t"));
+    }
+
+    private static PackageUsage<Jar> usage(final String path, final int sha1, final Package aPackage, final int count) {
+        final int[] packages = new int[Package.values().length];
+        packages[aPackage.ordinal()] = count;
+        final Jar jar = new Jar(new File(path), String.format("%040x", sha1), 1588703994000L, 1588729158000L, 10, 1000, new int[]{52});
+        return new PackageUsage<>(jar, aPackage.isJavax() ? count : 0, aPackage.isJakarta() ? count : 0, packages);
+    }
+
+    private static File tsv(final List<PackageUsage<Jar>> usages) throws IOException {
+        final File file = File.createTempFile("merge-", ".tsv", Files.tmpdir());
+        try (PrintStream out = new PrintStream(new FileOutputStream(file))) {
+            ScanTsv.toJarTsv(out, usages.stream(), new File(""));
+        }
+        return file;
+    }
+
+    private static String row(final PackageUsage<Jar> usage) {
+        return usage.getContext().getSha1() + "\t" + usage.getContext().getJar().getPath() + "\t" + usage.toTsv();
+    }
+
+    private static List<String> rows(final String tsv) {
+        return Stream.of(tsv.split("\n"))
+                .filter(line -> !line.startsWith("0000000000000000000000000000000000000000"))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The footer totals without its dates or notes
+     */
+    private static String totals(final String tsv) {
+        final String footer = Stream.of(ScanTsvTest.normalize(tsv).split("\n"))
+                .filter(line -> line.startsWith("0000000000000000000000000000000000000000"))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        final String[] columns = footer.split("\t");
+        columns[6] = columns[6].substring(0, columns[6].indexOf(','));
+        return String.join("\t", columns);
+    }
+
+    /**
+     * Rows in SHA-1 order with paths in the reverse order
+     */
+    private static List<PackageUsage<Jar>> usages(final int count, final int seed) {
+        final Random random = new Random(seed);
+        final List<PackageUsage<Jar>> usages = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final int[] packages = new int[Package.values().length];
+            int javax = 0;
+            int jakarta = 0;
+            for (int p = 0; p < packages.length; p++) {
+                if (random.nextInt(4) != 0) continue;
+                packages[p] = random.nextInt(1000);
+                if (Package.values()[p].isJavax()) javax += packages[p];
+                if (Package.values()[p].isJakarta()) jakarta += packages[p];
+            }
+
+            final Jar jar = new Jar(new File(String.format("lib/jar-%05d.jar", count - i)), String.format("%040x", i + 1),
+                    1588703994000L, 1588729158000L, random.nextInt(500), random.nextInt(1000000), new int[]{50 + random.nextInt(5)});
+            usages.add(new PackageUsage<>(jar, javax, jakarta, packages));
+        }
+        return usages;
+    }
+}
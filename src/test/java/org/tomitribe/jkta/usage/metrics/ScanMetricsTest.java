@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.metrics;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.JarUsage;
+import org.tomitribe.util.Mvn;
+import org.tomitribe.util.PrintString;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanMetricsTest {
+
+    @Test
+    public void scan() throws Exception {
+        final ScanMetrics metrics = ScanMetrics.get();
+        final long classes = metrics.getClasses();
+        final long inflated = metrics.getBytesInflated();
+        final long visits = metrics.getHistogram(Phase.visit).getCount();
+
+        final File jar = Mvn.mvn("org.apache.tomcat:tomcat:zip:10.0.0-M5");
+        final long scanned = JarUsage.of(jar).getContext().getClasses();
+
+        assertEquals(scanned, metrics.getClasses() - classes);
+        assertEquals(scanned, metrics.getHistogram(Phase.visit).getCount() - visits);
+        assertTrue(metrics.getBytesInflated() > inflated);
+        assertTrue(metrics.getSlowestJars().size() > 0);
+    }
+
+    @Test
+    public void jmx() throws Exception {
+        final ScanMetrics metrics = ScanMetrics.get();
+        metrics.record(Phase.write, 1000);
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(ScanMetrics.OBJECT_NAME);
+
+        assertEquals(metrics.getClasses(), server.getAttribute(name, "Classes"));
+
+        final TabularData latencies = (TabularData) server.getAttribute(name, "Latencies");
+        final Object count = latencies.get(new Object[]{"write.count"}).get("value");
+        assertTrue((Long) count > 0);
+    }
+
+    @Test
+    public void progress() throws Exception {
+        final ScanMetrics metrics = new ScanMetrics();
+        final PrintString out = new PrintString();
+
+        final Progress progress = new Progress(metrics, out, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 4; i++) {
+            metrics.listed();
+        }
+        metrics.jar(2048);
+        metrics.visited(10);
+
+        assertTrue(progress.line(), progress.line().startsWith("1 of 4 jars, 2.0 KB read, "));
+        assertTrue(progress.line(), progress.line().contains(", 1 classes, eta "));
+
+        progress.close();
+        assertTrue(out.toString(), out.toString().startsWith("1 of 4 jars"));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class SlowestJarsTest {
+
+    @Test
+    public void keepsSlowest() {
+        final SlowestJars slowest = new SlowestJars(3);
+        for (final int millis : new int[]{5, 1, 9, 3, 7, 2, 8}) {
+            slowest.record("jar-" + millis, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertEquals(Arrays.asList("jar-9 9 ms", "jar-8 8 ms", "jar-7 7 ms"), slowest.get());
+    }
+
+    @Test
+    public void fewerThanSize() {
+        final SlowestJars slowest = new SlowestJars(3);
+        slowest.record("a", TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(Arrays.asList("a 1 ms"), slowest.get());
+    }
+}
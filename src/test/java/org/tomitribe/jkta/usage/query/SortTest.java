@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.query;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class SortTest {
+
+    @Test
+    public void descending() {
+        assertEquals(Arrays.asList("d", "b", "c", "e", "a"), names(Sort.parse("javax.ejb").sort(usages(), 0)));
+        assertEquals(Arrays.asList("d", "b", "c", "e", "a"), names(Sort.parse("javax.ejb:desc").sort(usages(), 0)));
+    }
+
+    @Test
+    public void ascending() {
+        assertEquals(Arrays.asList("a", "b", "c", "e", "d"), names(Sort.parse("javax.ejb:asc").sort(usages(), 0)));
+    }
+
+    /**
+     * The top rows must be the same as sorting everything, ties included
+     */
+    @Test
+    public void limit() {
+        for (int limit = 1; limit <= 6; limit++) {
+            final List<String> all = names(Sort.parse("javax.ejb").sort(usages(), 0));
+            assertEquals(all.subList(0, Math.min(limit, all.size())), names(Sort.parse("javax.ejb").sort(usages(), limit)));
+
+            final List<String> ascending = names(Sort.parse("javax.ejb:asc").sort(usages(), 0));
+            assertEquals(ascending.subList(0, Math.min(limit, all.size())), names(Sort.parse("javax.ejb:asc").sort(usages(), limit)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid() {
+        Sort.parse("javax.ejb:up");
+    }
+
+    private static Stream<PackageUsage<Jar>> usages() {
+        return Stream.of(usage("a", 1), usage("b", 5), usage("c", 5), usage("d", 9), usage("e", 5));
+    }
+
+    private static PackageUsage<Jar> usage(final String name, final int count) {
+        final int[] packages = new int[Package.values().length];
+        packages[Package.JAVAX_EJB.ordinal()] = count;
+        final Jar jar = Jar.builder().path(name).build();
+        return new PackageUsage<>(jar, count, 0, packages);
+    }
+
+    private static List<String> names(final Stream<PackageUsage<Jar>> usages) {
+        return usages.map(usage -> usage.getContext().getJar().getName()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.query;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WhereTest {
+
+    @Test
+    public void comparisons() {
+        final PackageUsage<?> usage = usage(5, Package.JAVAX_EJB);
+
+        assertTrue(Where.parse("javax.ejb==5").test(usage));
+        assertTrue(Where.parse("javax.ejb!=4").test(usage));
+        assertTrue(Where.parse("javax.ejb>4").test(usage));
+        assertTrue(Where.parse("javax.ejb>=5").test(usage));
+        assertTrue(Where.parse("javax.ejb<6").test(usage));
+        assertTrue(Where.parse("javax.ejb<=5").test(usage));
+        assertTrue(Where.parse("javax==5").test(usage));
+        assertTrue(Where.parse("jakarta==0").test(usage));
+
+        assertFalse(Where.parse("javax.ejb>5").test(usage));
+        assertFalse(Where.parse("javax.ejb<5").test(usage));
+        assertFalse(Where.parse("javax.ejb!=5").test(usage));
+    }
+
+    @Test
+    public void precedence() {
+        final PackageUsage<?> usage = usage(5, Package.JAVAX_EJB);
+
+        assertTrue(Where.parse("javax.ejb>0 && (javax.ws.rs>=10 || jakarta.servlet==0)").test(usage));
+        assertFalse(Where.parse("javax.ejb>0 && (javax.ws.rs>=10 || jakarta.servlet>0)").test(usage));
+        assertTrue(Where.parse("javax.ws.rs>0 && javax.mail>0 || javax.ejb>0").test(usage));
+        assertFalse(Where.parse("javax.ws.rs>0 && (javax.mail>0 || javax.ejb>0)").test(usage));
+        assertTrue(Where.parse("!(javax.ejb==0)").test(usage));
+        assertFalse(Where.parse("! javax.ejb > 0").test(usage));
+        assertTrue(Where.parse("  javax.ejb  >  0  ").test(usage));
+    }
+
+    @Test
+    public void packages() {
+        final Where where = Where.parse("javax.ejb>0 && (javax.ws.rs>=10 || jakarta==0)");
+        assertEquals(EnumSet.of(Package.JAVAX_EJB, Package.JAVAX_WS_RS), where.getPackages());
+    }
+
+    @Test
+    public void invalid() {
+        assertInvalid("javax.foo>0", "Unknown field 'javax.foo'");
+        assertInvalid("javax.ejb 0", "Expected one of");
+        assertInvalid("javax.ejb>", "Expected a number");
+        assertInvalid("(javax.ejb>0", "Expected ')'");
+        assertInvalid("javax.ejb>0)", "Unexpected ')'");
+        assertInvalid("", "Expected a package name");
+    }
+
+    private static void assertInvalid(final String expression, final String message) {
+        try {
+            Where.parse(expression);
+            fail("Expected an error for " + expression);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    private static PackageUsage<?> usage(final int count, final Package aPackage) {
+        final int[] packages = new int[Package.values().length];
+        packages[aPackage.ordinal()] = count;
+        return new PackageUsage<>(null, aPackage.isJavax() ? count : 0, aPackage.isJakarta() ? count : 0, packages);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import org.junit.Test;
+import org.tomitribe.jkta.Results;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.jkta.usage.UsageCommand;
+import org.tomitribe.util.Files;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.PrintString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.tomitribe.jkta.CommandAssertion.command;
+import static org.tomitribe.jkta.Resources.load;
+
+public class BlockGzipTest {
+
+    /**
+     * Concatenated members must read as the plain TSV with any gzip reader
+     */
+    @Test
+    public void validGzip() throws Exception {
+        final String tsv = tsv();
+        final byte[] compressed = compress(tsv, 4, 4096, new BlockIndex[1]);
+
+        assertEquals(tsv, IO.slurp(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+        assertEquals(tsv, IO.slurp(Gzip.inflate(new ByteArrayInputStream(compressed))));
+    }
+
+    /**
+     * Members end on a line boundary and the header is a member of its own
+     */
+    @Test
+    public void index() throws Exception {
+        final String tsv = tsv();
+        final BlockIndex[] index = new BlockIndex[1];
+        final byte[] compressed = compress(tsv, 3, 4096, index);
+
+        final List<BlockIndex.Member> members = index[0].getMembers();
+        assertTrue(members.size() > 10);
+        assertEquals(new BlockIndex.Member(0, 1, 0, members.get(0).getLength(), tsv.indexOf('\n') + 1), members.get(0));
+        assertEquals(tsv.split("\n").length, index[0].getLines());
+
+        final String[] lines = tsv.split("\n");
+        long offset = 0;
+        long line = 0;
+        for (final BlockIndex.Member member : members) {
+            assertEquals(offset, member.getOffset());
+            assertEquals(line, member.getLine());
+
+            final byte[] bytes = new byte[member.getLength()];
+            System.arraycopy(compressed, (int) member.getOffset(), bytes, 0, bytes.length);
+            final String block = IO.slurp(new GZIPInputStream(new ByteArrayInputStream(bytes)));
+            assertEquals(member.getSize(), block.length());
+            assertTrue(block.endsWith("\n"));
+            assertEquals(lines[(int) line] + "\n", block.substring(0, block.indexOf('\n') + 1));
+
+            offset += member.getLength();
+            line += member.getLines();
+        }
+
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        index[0].write(written);
+        assertEquals(members, BlockIndex.read(new ByteArrayInputStream(written.toByteArray())).getMembers());
+    }
+
+    @Test
+    public void parallelRead() throws Exception {
+        final File file = write(tsv(), 4096);
+        final List<String> expected = rows(ScanTsv.fromJarTsv(IO.read(tsv().getBytes())));
+
+        for (final int threads : new int[]{1, 4}) {
+            try (Stream<PackageUsage<Jar>> usages = ScanTsv.fromJarTsv(file, Rows.ALL, threads, s -> fail(s))) {
+                assertEquals(expected, rows(usages));
+            }
+        }
+    }
+
+    /**
+     * Row ranges that start and end inside members, span several
+     * or fall past the end give the same rows as reading everything
+     */
+    @Test
+    public void rows() throws Exception {
+        final File file = write(tsv(), 2048);
+        final List<String> all = rows(ScanTsv.fromJarTsv(IO.read(tsv().getBytes())));
+
+        for (final Rows rows : new Rows[]{new Rows("0-1"), new Rows("5-9"), new Rows("3-250"), new Rows("600-"), new Rows(0, 10000)}) {
+            final List<String> expected = all.subList((int) Math.min(rows.getFrom(), all.size()), (int) Math.min(rows.getTo(), all.size()));
+            try (Stream<PackageUsage<Jar>> usages = ScanTsv.fromJarTsv(file, rows, 2, s -> fail(s))) {
+                assertEquals(rows.toString(), expected, rows(usages));
+            }
+        }
+    }
+
+    /**
+     * Without an index the file is still read, just as one stream
+     */
+    @Test
+    public void noIndex() throws Exception {
+        final File file = write(tsv(), 2048);
+        assertTrue(BlockIndex.of(file).delete());
+
+        final List<String> all = rows(ScanTsv.fromJarTsv(IO.read(tsv().getBytes())));
+        try (Stream<PackageUsage<Jar>> usages = ScanTsv.fromJarTsv(file, new Rows("5-9"), 2, s -> fail(s))) {
+            assertEquals(all.subList(5, 9), rows(usages));
+        }
+    }
+
+    /**
+     * A pipe can report nothing available between members
+     */
+    @Test
+    public void pipe() throws Exception {
+        final String tsv = tsv();
+        final byte[] compressed = compress(tsv, 2, 4096, new BlockIndex[1]);
+
+        final InputStream pipe = new ByteArrayInputStream(compressed) {
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        };
+        assertEquals(tsv, IO.slurp(Gzip.inflate(pipe)));
+    }
+
+    @Test
+    public void grep() throws Exception {
+        final String tsv = print(ScanTsv.fromJarTsv(IO.read(load("scan-v0.5.tsv"))));
+        final File file = write(tsv, 512);
+
+        command(UsageCommand.class)
+                .output(load("grep-javax.tsv"))
+                .results(BlockGzipTest::normalize)
+                .exec("usage", "grep", "--javax=[1-9].*", "--threads=3", "--input=" + file.getAbsolutePath());
+    }
+
+    @Test
+    public void parseRows() {
+        assertEquals(new Rows(10, 20), new Rows("10-20"));
+        assertEquals(new Rows(10, Long.MAX_VALUE), new Rows("10-"));
+        assertEquals("10-", new Rows("10-").toString());
+
+        for (final String invalid : new String[]{"10", "-10", "20-10", "a-b"}) {
+            try {
+                new Rows(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private static Results normalize(final Results results) {
+        return new Results(results.getExpected(), ScanTsvTest.normalize(results.getActual()));
+    }
+
+    /**
+     * The v0.8 sample repeated until it is several hundred rows
+     */
+    private static String tsv() throws IOException {
+        final List<PackageUsage<Jar>> usages = ScanTsv.fromJarTsv(IO.read(load("scan-v0.8.tsv"))).collect(Collectors.toList());
+        return print(IntStream.range(0, 20).boxed().flatMap(i -> usages.stream()));
+    }
+
+    private static String print(final Stream<PackageUsage<Jar>> usages) {
+        final PrintString out = new PrintString();
+        ScanTsv.toJarTsv(out, usages, new File(""));
+        return out.toString();
+    }
+
+    private static byte[] compress(final String tsv, final int threads, final int blockSize, final BlockIndex[] index) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BlockGzipOutputStream out = new BlockGzipOutputStream(bytes, threads, blockSize);
+
+        // uneven writes so lines and members are split across them
+        final byte[] content = tsv.getBytes();
+        for (int i = 0; i < content.length; i += 333) {
+            out.write(content, i, Math.min(333, content.length - i));
+        }
+        out.close();
+
+        index[0] = out.getIndex();
+        return bytes.toByteArray();
+    }
+
+    private static File write(final String tsv, final int blockSize) throws IOException {
+        final BlockIndex[] index = new BlockIndex[1];
+        final File file = new File(Files.tmpdir(), "scan.tsv.gz");
+        IO.copy(compress(tsv, 2, blockSize, index), file);
+
+        try (OutputStream out = IO.write(BlockIndex.of(file))) {
+            index[0].write(out);
+        }
+        return file;
+    }
+
+    private static List<String> rows(final Stream<PackageUsage<Jar>> usages) {
+        return usages.map(usage -> ScanTsv.toTsv(usage, new File(""))).collect(Collectors.toList());
+    }
+}
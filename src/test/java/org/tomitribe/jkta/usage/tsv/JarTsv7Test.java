@@ -23,9 +23,13 @@ import org.tomitribe.jkta.usage.Package;
 import org.tomitribe.jkta.usage.PackageUsage;
 
 import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class JarTsv7Test {
 
@@ -161,4 +165,35 @@ public class JarTsv7Test {
                 "\t4\t4\t4\t4\t4\t4\t4\t4\t2\t2\t4\t2\t2\t2\t2", ScanTsvTest.normalize(tsv7.summary()));
     }
 
+    /**
+     * Rows may be written from several scanning threads at once.  The
+     * footer totals must not lose any of them.
+     */
+    @Test
+    public void concurrentSummary() throws Exception {
+
+        final PackageUsage<Jar> usage = new JarTsv7().read("12345678901234567890123456789\t12345\t34567\t5555\t67\t34,56\t/foo/bar" +
+                "\t55\t48\t1\t1\t1\t2\t2\t2\t2\t2\t2\t2\t2\t2\t1\t1\t1\t1\t1\t2\t2\t2\t2\t2\t2\t2\t2\t" +
+                "2\t1\t1\t2\t1\t1\t2\t1\t1\t1\t1\t1\t1\t2\t2\t2\t2\t2\t2\t2\t2\t1\t1\t1\t1\t1\t2\t2\t2" +
+                "\t2\t2\t2\t2\t2\t1\t1\t2\t1\t1\t1\t1");
+
+        final JarTsv7 tsv7 = new JarTsv7();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> tsv7.write(usage));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        final String summary = tsv7.summary();
+        final String[] columns = summary.split("\t");
+        assertEquals("5555000", columns[3]);
+        assertEquals("67000", columns[4]);
+        assertEquals("total affected 100% (1000 of 1000 scanned)", columns[6]);
+        assertEquals("55000", columns[7]);
+        assertEquals("48000", columns[8]);
+        assertEquals("1000", columns[columns.length - 1]);
+    }
+
 }
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.util.IO;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.tomitribe.jkta.Resources.load;
+
+public class TsvReaderTest {
+
+    @Test
+    public void version5() throws Exception {
+        assertSameAsFormat("scan-v0.5.tsv", new JarTsv5(s -> {
+        })::read);
+    }
+
+    @Test
+    public void version6() throws Exception {
+        assertSameAsFormat("scan-v0.6.tsv", new JarTsv6(s -> {
+        })::read);
+    }
+
+    @Test
+    public void version7() throws Exception {
+        assertSameAsFormat("scan-v0.7.tsv", new JarTsv7(s -> {
+        })::read);
+        assertSameAsFormat("scan-v0.8.tsv", new JarTsv7(s -> {
+        })::read);
+    }
+
+    /**
+     * Tiny chunks force rows to be split across chunk boundaries
+     */
+    @Test
+    public void parallel() throws Exception {
+        final byte[] bytes = load("scan-v0.8.tsv").getBytes();
+
+        final List<String> expected = tsv(TsvReader.read(new ByteArrayInputStream(bytes), 1, s -> {
+        }));
+
+        for (final int chunk : new int[]{1, 7, 100, 1000}) {
+            final List<String> actual = tsv(TsvReader.read(new ByteArrayInputStream(bytes), 4, s -> {
+            }, chunk));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void crlf() throws Exception {
+        final String content = load("scan-v0.8.tsv");
+
+        final List<String> expected = tsv(read(content, s -> {
+        }));
+        final List<String> actual = tsv(read(content.replace("\n", "\r\n"), s -> {
+        }));
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void failed() throws Exception {
+        final String content = load("scan-v0.8.tsv");
+        final String[] lines = content.split("\n");
+
+        final List<String> bad = Arrays.asList(
+                "83997d867ea54f5e555a0865957d975875c5aa2d\tnotanumber\t0\t0\t0\t52\tlib/bad.jar\t0\t0",
+                "83997d867ea54f5e555a0865957d975875c5aa2d\t1\t0\t0\t0\t52\tlib/bad.jar",
+                "83997d867ea54f5e555a0865957d975875c5aa2d\t1\t0\t0\t0\t52\tlib/bad.jar\t0"
+        );
+
+        final List<String> withBad = new ArrayList<>(Arrays.asList(lines));
+        withBad.addAll(3, bad);
+
+        final List<String> failed = new ArrayList<>();
+        final List<PackageUsage<Jar>> usages = read(String.join("\n", withBad), failed::add)
+                .collect(Collectors.toList());
+
+        assertEquals(bad, failed);
+        assertEquals(32, usages.size());
+    }
+
+    /**
+     * Concatenated v5 files repeat the header, which must be skipped
+     * rather than reported as a failed row
+     */
+    @Test
+    public void version5RepeatedHeader() throws Exception {
+        final String content = load("scan-v0.5.tsv");
+        final String[] lines = content.split("\n");
+
+        final List<String> repeated = new ArrayList<>(Arrays.asList(lines));
+        repeated.add(4, lines[0]);
+        repeated.addAll(Arrays.asList(lines));
+
+        final List<String> failed = new ArrayList<>();
+        final List<String> expected = tsv(read(content, s -> {
+        }));
+        final List<String> actual = tsv(read(String.join("\n", repeated), failed::add));
+
+        assertEquals(new ArrayList<>(), failed);
+        final List<String> twice = new ArrayList<>(expected);
+        twice.addAll(expected);
+        assertEquals(twice, actual);
+    }
+
+    @Test(expected = UnsupportedTsvFormatException.class)
+    public void unsupported() throws Exception {
+        read("foo\tbar\n", s -> {
+        });
+    }
+
+    private static void assertSameAsFormat(final String resource, final Function<String, PackageUsage<Jar>> format) throws Exception {
+        final String content = load(resource);
+
+        final List<String> expected = tsv(Stream.of(content.split("\n"))
+                .skip(1)
+                .filter(s -> !s.startsWith("0000000000000000000000000000000000000000\t"))
+                .filter(s -> !s.startsWith("SHA-1\t"))
+                .map(format)
+                .filter(Objects::nonNull));
+
+        final List<String> sequential = tsv(read(content, s -> {
+        }));
+        final List<String> parallel = tsv(TsvReader.read(IO.read(content), 3, s -> {
+        }, 4096));
+
+        assertEquals(expected.size(), sequential.size());
+        assertEquals(expected, sequential);
+        assertEquals(expected, parallel);
+    }
+
+    private static Stream<PackageUsage<Jar>> read(final String content, final Consumer<String> failed) {
+        return ScanTsv.fromJarTsv(IO.read(content), failed);
+    }
+
+    private static List<String> tsv(final Stream<PackageUsage<Jar>> usages) {
+        return usages.map(usage -> ScanTsv.toTsv(usage, new File("")))
+                .collect(Collectors.toList());
+    }
+}
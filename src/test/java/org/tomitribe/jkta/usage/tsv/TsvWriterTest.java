@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.tomitribe.jkta.usage.tsv;
+
+import org.junit.Test;
+import org.tomitribe.jkta.usage.Jar;
+import org.tomitribe.jkta.usage.Package;
+import org.tomitribe.jkta.usage.PackageUsage;
+import org.tomitribe.util.IO;
+import org.tomitribe.util.PrintString;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.tomitribe.jkta.Resources.load;
+
+public class TsvWriterTest {
+
+    @Test
+    public void numbers() {
+        final long[] values = {0, 1, -1, 9, 10, 42, 1588703994000L, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+
+        final PrintString expected = new PrintString();
+        final PrintString actual = new PrintString();
+        final TsvWriter writer = new TsvWriter(actual, 64);
+
+        for (final long value : values) {
+            expected.print(value);
+            expected.print('\t');
+            writer.write(value).tab();
+        }
+        writer.flush();
+
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void strings() {
+        final String[] values = {"", "lib/catalina.jar", "lib/café/日本.jar", null};
+
+        final PrintString expected = new PrintString();
+        final PrintString actual = new PrintString();
+        final TsvWriter writer = new TsvWriter(actual, 64);
+
+        for (final String value : values) {
+            expected.println(value);
+            writer.write(value).newline();
+        }
+        writer.flush();
+
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    /**
+     * Rows written through the TsvWriter must be byte-for-byte the
+     * same as the String rows printed with println, including when
+     * the buffer fills up in the middle of a row
+     */
+    @Test
+    public void sameAsPrintln() throws Exception {
+        final List<PackageUsage<Jar>> usages = ScanTsv.fromJarTsv(IO.read(load("scan-v0.8.tsv")))
+                .collect(Collectors.toList());
+
+        final int[] counts = new int[Package.values().length];
+        counts[3] = -7;
+        counts[counts.length - 1] = 123456789;
+        final Jar jar = new Jar(new File("café.jar"), "da39a3ee5e6b4b0d3255bfef95601890afd80709", -1, 0, 0, Long.MAX_VALUE, null);
+        usages.add(new PackageUsage<>(jar, 3, 4, counts));
+
+        final PrintString expected = new PrintString();
+        final JarTsv7 strings = new JarTsv7(new File(""));
+        for (final PackageUsage<Jar> usage : usages) {
+            expected.println(strings.write(usage));
+        }
+
+        final PrintString actual = new PrintString();
+        final JarTsv7 bytes = new JarTsv7(new File(""));
+        final TsvWriter writer = new TsvWriter(actual, 100);
+        for (final PackageUsage<Jar> usage : usages) {
+            bytes.write(usage, writer);
+        }
+        writer.flush();
+
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(ScanTsvTest.normalize(strings.summary()), ScanTsvTest.normalize(bytes.summary()));
+    }
+}